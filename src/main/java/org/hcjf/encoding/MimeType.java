@@ -1658,6 +1658,10 @@ public class MimeType {
         typesBySuffix.put(ZSH, TEXT_X_SCRIPT_ZSH);
     }
 
+    private static final String TEXT_TYPE_PREFIX = "text/";
+    private static final String PARAMETERS_SEPARATOR = ";";
+    private static final String[] COMPRESSIBLE_SUBTYPES = {"json", "xml", "javascript", "ecmascript"};
+
     private final String text;
 
     private MimeType(String text) {
@@ -1677,6 +1681,35 @@ public class MimeType {
         return text;
     }
 
+    /**
+     * Verify if the content of this type is worth compressing.
+     * @return True if the type is compressible and false in the otherwise.
+     */
+    public final boolean isCompressible() {
+        return isCompressible(text);
+    }
+
+    /**
+     * Verify if the content of the type is worth compressing, only the text based types are compressible, the
+     * binary formats like images, audio, video and archives are already compressed.
+     * @param text Mime type text, can contains parameters like the charset.
+     * @return True if the type is compressible and false in the otherwise.
+     */
+    public static boolean isCompressible(String text) {
+        String type = text.toLowerCase();
+        int parametersIndex = type.indexOf(PARAMETERS_SEPARATOR);
+        if(parametersIndex >= 0) {
+            type = type.substring(0, parametersIndex);
+        }
+        type = type.trim();
+
+        boolean result = type.startsWith(TEXT_TYPE_PREFIX);
+        for (int i = 0; i < COMPRESSIBLE_SUBTYPES.length && !result; i++) {
+            result = type.contains(COMPRESSIBLE_SUBTYPES[i]);
+        }
+        return result;
+    }
+
     /**
      * Return the type indexed by the suffix
      * @param suffix Suffix to find the type.
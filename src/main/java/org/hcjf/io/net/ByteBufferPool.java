@@ -0,0 +1,208 @@
+package org.hcjf.io.net;
+
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is an arena of byte buffers organized by size classes, each size class is a power of two between
+ * the minimum and maximum size configured. The buffers are recycled first into a cache of the current thread and
+ * then into a shared queue of the size class. The requests bigger than the maximum size are not pooled.
+ * @author javaito
+ */
+public final class ByteBufferPool {
+
+    private static final ByteBufferPool instance;
+
+    static {
+        instance = new ByteBufferPool();
+    }
+
+    private final int[] sizes;
+    private final Queue<ByteBuffer>[] sharedBuffers;
+    private final AtomicInteger[] sharedCounters;
+    private final ThreadLocal<ArrayDeque<ByteBuffer>[]> threadCaches;
+    private final int maxSharedBuffers;
+    private final int threadCacheSize;
+    private final boolean direct;
+    private final boolean leakDetection;
+    private final Cleaner cleaner;
+    private final AtomicLong allocatedBuffers;
+    private final AtomicLong leakedBuffers;
+
+    private ByteBufferPool() {
+        int minSize = Integer.highestOneBit(SystemProperties.getInteger(SystemProperties.Net.BUFFER_POOL_MIN_SIZE));
+        int maxSize = SystemProperties.getInteger(SystemProperties.Net.BUFFER_POOL_MAX_SIZE);
+        int sizeClasses = 1;
+        while ((minSize << (sizeClasses - 1)) < maxSize) {
+            sizeClasses++;
+        }
+
+        sizes = new int[sizeClasses];
+        sharedBuffers = new Queue[sizeClasses];
+        sharedCounters = new AtomicInteger[sizeClasses];
+        for (int i = 0; i < sizeClasses; i++) {
+            sizes[i] = minSize << i;
+            sharedBuffers[i] = new ConcurrentLinkedQueue<>();
+            sharedCounters[i] = new AtomicInteger(0);
+        }
+
+        threadCaches = ThreadLocal.withInitial(() -> {
+            ArrayDeque<ByteBuffer>[] caches = new ArrayDeque[sizes.length];
+            for (int i = 0; i < caches.length; i++) {
+                caches[i] = new ArrayDeque<>();
+            }
+            return caches;
+        });
+        maxSharedBuffers = SystemProperties.getInteger(SystemProperties.Net.BUFFER_POOL_SHARED_SIZE);
+        threadCacheSize = SystemProperties.getInteger(SystemProperties.Net.BUFFER_POOL_THREAD_CACHE_SIZE);
+        direct = SystemProperties.getBoolean(SystemProperties.Net.BUFFER_POOL_DIRECT_ALLOCATE_MEMORY);
+        leakDetection = SystemProperties.getBoolean(SystemProperties.Net.BUFFER_POOL_LEAK_DETECTION);
+        cleaner = leakDetection ? Cleaner.create() : null;
+        allocatedBuffers = new AtomicLong();
+        leakedBuffers = new AtomicLong();
+    }
+
+    /**
+     * Returns the unique instance of the pool.
+     * @return Pool instance.
+     */
+    public static ByteBufferPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a buffer with a capacity at least of the size requested, the buffer is cleared and it has one
+     * reference that must be released when the buffer is not used anymore.
+     * @param size Minimum size of the buffer.
+     * @return Pooled buffer instance.
+     */
+    public PooledByteBuffer acquire(int size) {
+        int sizeClass = getSizeClass(size);
+        ByteBuffer buffer = null;
+        if(sizeClass >= 0) {
+            buffer = threadCaches.get()[sizeClass].pollFirst();
+            if (buffer == null) {
+                buffer = sharedBuffers[sizeClass].poll();
+                if (buffer != null) {
+                    sharedCounters[sizeClass].decrementAndGet();
+                }
+            }
+        }
+
+        if(buffer == null) {
+            buffer = allocate(sizeClass >= 0 ? sizes[sizeClass] : size);
+        }
+        buffer.clear();
+        return new PooledByteBuffer(this, buffer, sizeClass);
+    }
+
+    /**
+     * Returns the buffer to the pool, first to the cache of the current thread and if the cache is full then
+     * the buffer is stored into the shared queue of his size class. If the shared queue is full then the
+     * buffer is discarded.
+     * @param buffer Buffer instance.
+     * @param sizeClass Size class of the buffer.
+     */
+    void recycle(ByteBuffer buffer, int sizeClass) {
+        if(sizeClass >= 0) {
+            ArrayDeque<ByteBuffer> threadCache = threadCaches.get()[sizeClass];
+            if (threadCache.size() < threadCacheSize) {
+                threadCache.offerFirst(buffer);
+            } else if (sharedCounters[sizeClass].incrementAndGet() <= maxSharedBuffers) {
+                sharedBuffers[sizeClass].offer(buffer);
+            } else {
+                sharedCounters[sizeClass].decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Register the pooled buffer to report it if it is collected without be released.
+     * @param pooledBuffer Pooled buffer instance.
+     * @param released Flag that indicates if the buffer was released.
+     * @return Cleanable instance or null if the leak detection is not enabled.
+     */
+    Cleaner.Cleanable track(PooledByteBuffer pooledBuffer, AtomicBoolean released) {
+        Cleaner.Cleanable result = null;
+        if(leakDetection) {
+            result = cleaner.register(pooledBuffer, new LeakReport(released, new Throwable("Pooled buffer acquired here")));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of buffers allocated by the pool since the pool was created.
+     * @return Number of allocated buffers.
+     */
+    public long getAllocatedBuffers() {
+        return allocatedBuffers.get();
+    }
+
+    /**
+     * Returns the number of buffers that were collected without be released, this value is only
+     * calculated if the leak detection is enabled.
+     * @return Number of leaked buffers.
+     */
+    public long getLeakedBuffers() {
+        return leakedBuffers.get();
+    }
+
+    /**
+     * Returns the index of the smallest size class that contains the size requested.
+     * @param size Size requested.
+     * @return Index of the size class or -1 if the size is bigger than the maximum pooled size.
+     */
+    private int getSizeClass(int size) {
+        int result = -1;
+        for (int i = 0; i < sizes.length; i++) {
+            if(sizes[i] >= size) {
+                result = i;
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new buffer instance.
+     * @param capacity Capacity of the buffer.
+     * @return Buffer instance.
+     */
+    private ByteBuffer allocate(int capacity) {
+        allocatedBuffers.incrementAndGet();
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /**
+     * This action is executed when a pooled buffer is collected, if the buffer was not released
+     * then the acquisition trace is reported.
+     */
+    private class LeakReport implements Runnable {
+
+        private final AtomicBoolean released;
+        private final Throwable trace;
+
+        private LeakReport(AtomicBoolean released, Throwable trace) {
+            this.released = released;
+            this.trace = trace;
+        }
+
+        @Override
+        public void run() {
+            if(!released.get()) {
+                leakedBuffers.incrementAndGet();
+                Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG),
+                        "Pooled buffer collected without release", trace);
+            }
+        }
+    }
+}
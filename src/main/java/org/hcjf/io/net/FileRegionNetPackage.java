@@ -0,0 +1,125 @@
+package org.hcjf.io.net;
+
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Net package whose payload is a region of a file. The bytes of the region are not loaded into the heap,
+ * the net service transfers the region directly from the file channel to the socket channel when it's possible.
+ * The package takes the ownership of the file channel, the channel is closed when the package is released.
+ * @author javaito
+ */
+public class FileRegionNetPackage extends DefaultNetPackage {
+
+    private final FileChannel fileChannel;
+    private final long position;
+    private final long count;
+    private long transferred;
+    private boolean released;
+
+    /**
+     * Creates the package with the region of the file.
+     * @param remoteHost Remote host name.
+     * @param remoteAddress Remote address.
+     * @param remotePort Remote port.
+     * @param localPort Local port.
+     * @param fileChannel File channel.
+     * @param position Position of the first byte of the region.
+     * @param count Number of bytes of the region.
+     */
+    public FileRegionNetPackage(String remoteHost, String remoteAddress, int remotePort, int localPort,
+                                FileChannel fileChannel, long position, long count) {
+        super(remoteHost, remoteAddress, remotePort, localPort, null, ActionEvent.WRITE);
+        if(position < 0 || count < 0) {
+            throw new IllegalArgumentException("The position and count of the region must be positive values");
+        }
+        this.fileChannel = fileChannel;
+        this.position = position;
+        this.count = count;
+    }
+
+    /**
+     * Returns the file channel of the region.
+     * @return File channel.
+     */
+    public FileChannel getFileChannel() {
+        return fileChannel;
+    }
+
+    /**
+     * Returns the position of the first byte of the region.
+     * @return Position of the region.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes of the region.
+     * @return Size of the region.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes already written.
+     * @return Bytes transferred.
+     */
+    public long getTransferred() {
+        return transferred;
+    }
+
+    /**
+     * Adds bytes to the counter of bytes written.
+     * @param transferred Number of bytes written by the last operation.
+     */
+    public void addTransferred(long transferred) {
+        this.transferred += transferred;
+    }
+
+    /**
+     * Returns true if all the bytes of the region were written.
+     * @return Complete flag.
+     */
+    public boolean isComplete() {
+        return transferred >= count;
+    }
+
+    /**
+     * The payload of the region is never loaded into the heap.
+     * @return Always null.
+     */
+    @Override
+    public byte[] getPayload() {
+        return null;
+    }
+
+    /**
+     * The bytes of the region are not held into the heap, then the package doesn't count for the write
+     * watermarks of the session. The size of the region is returned by the method 'getCount'.
+     * @return Always zero.
+     */
+    @Override
+    public int getPayloadSize() {
+        return 0;
+    }
+
+    /**
+     * Closes the file channel of the region.
+     */
+    @Override
+    public synchronized void release() {
+        if(!released) {
+            released = true;
+            try {
+                fileChannel.close();
+            } catch (IOException ex) {
+                Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to close file region", ex);
+            }
+        }
+    }
+}
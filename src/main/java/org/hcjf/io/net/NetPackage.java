@@ -1,5 +1,6 @@
 package org.hcjf.io.net;
 
+import java.nio.ByteBuffer;
 import java.util.Date;
 import java.util.UUID;
 
@@ -9,18 +10,23 @@ import java.util.UUID;
  */
 public abstract class NetPackage {
 
-    private final UUID id;
-
-    public NetPackage() {
-        this.id = UUID.randomUUID();
-    }
+    private volatile UUID id;
 
     /**
-     * Return the package id.
+     * Return the package id, the id is created the first time that it is required.
      * @return Package id.
      */
     public final UUID getId() {
-        return id;
+        UUID result = id;
+        if(result == null) {
+            synchronized (this) {
+                result = id;
+                if(result == null) {
+                    result = id = UUID.randomUUID();
+                }
+            }
+        }
+        return result;
     }
 
     /**
@@ -41,6 +47,30 @@ public abstract class NetPackage {
      */
     public abstract byte[] getPayload();
 
+    /**
+     * Return a read-only buffer with the payload of the package.
+     * @return Payload buffer or null if the package has not payload.
+     */
+    public ByteBuffer getPayloadBuffer() {
+        byte[] payload = getPayload();
+        return payload == null ? null : ByteBuffer.wrap(payload).asReadOnlyBuffer();
+    }
+
+    /**
+     * Return the size of the payload.
+     * @return Size of the payload.
+     */
+    public int getPayloadSize() {
+        byte[] payload = getPayload();
+        return payload == null ? 0 : payload.length;
+    }
+
+    /**
+     * Releases the resources associated to the payload, after this call the payload could not be available.
+     */
+    public void release() {
+    }
+
     /**
      * Return the remote ip address.
      * @return Remote ip address.
@@ -3,23 +3,27 @@ package org.hcjf.io.net;
 import org.hcjf.errors.HCJFRuntimeException;
 import org.hcjf.io.net.ssl.SslClient;
 import org.hcjf.log.Log;
+import org.hcjf.log.debug.Agent;
+import org.hcjf.log.debug.Agents;
 import org.hcjf.properties.SystemProperties;
 import org.hcjf.service.Service;
 import org.hcjf.service.ServiceThread;
-import org.hcjf.utils.LruMap;
+import org.hcjf.utils.SynchronizedCountOperation;
 
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.management.*;
-import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class implements a service that provide an
@@ -31,23 +35,30 @@ import java.util.concurrent.atomic.AtomicInteger;
 public final class NetService extends Service<NetServiceConsumer> {
 
     private static final NetService instance;
+    private static final String CLIENT_WORKERS_NAME = "Net clients";
 
     static {
         instance = new NetService(SystemProperties.get(SystemProperties.Net.SERVICE_NAME));
     }
 
     private Map<NetServiceConsumer, ServerSocketChannel> serverSocketChannelMap;
-    private Map<NetSession, SelectableChannel> channels;
-    private Map<SelectableChannel, NetSession> sessionsByChannel;
+    private Map<NetSession, ChannelState> channels;
     private DatagramChannel udpServer;
-    private Map<NetSession, SocketAddress> addresses;
-    private Map<SocketAddress, NetSession> sessionsByAddress;
-    private Map<SelectableChannel, Long> lastWrite;
-    private Map<SelectableChannel, Queue<NetPackage>> outputQueue;
+    private UdpSessionTable udpSessions;
+    private int udpReceiveBatchSize;
+    private boolean udpConnectedPeersEnabled;
+    private int udpConnectedPeerThreshold;
     private Map<NetServiceConsumer,SelectorRunnable> selectors;
-    private Map<NetServiceConsumer,Future> tasks;
+    private Map<NetServiceConsumer,List<SelectorRunnable>> workers;
+    private List<SelectorRunnable> clientWorkers;
+    private List<Runnable> shutdownListeners;
     private SelectorHealthChecker selectorHealthChecker;
-    private Timer timer;
+    private SynchronizedCountOperation packagesPerWrite;
+    private SynchronizedCountOperation wakeupsPerSecond;
+    private AtomicLong writesCounter;
+    private AtomicLong wakeupsCounter;
+    private int gatheringWriteMaxPackages;
+    private TimingWheel timingWheel;
     private boolean creationTimeoutAvailable;
     private long creationTimeout;
     private boolean shuttingDown;
@@ -71,9 +82,10 @@ public final class NetService extends Service<NetServiceConsumer> {
      */
     @Override
     protected void init() {
-        this.timer = new Timer();
-        selectors = new HashMap<>();
-        tasks = new HashMap<>();
+        this.timingWheel = new TimingWheel();
+        selectors = new ConcurrentHashMap<>();
+        workers = new ConcurrentHashMap<>();
+        shutdownListeners = new CopyOnWriteArrayList<>();
 
         this.creationTimeoutAvailable = SystemProperties.getBoolean(SystemProperties.Net.CONNECTION_TIMEOUT_AVAILABLE);
         this.creationTimeout = SystemProperties.getLong(SystemProperties.Net.CONNECTION_TIMEOUT);
@@ -81,15 +93,26 @@ public final class NetService extends Service<NetServiceConsumer> {
             throw new IllegalArgumentException("Illegal creation timeout value: " + creationTimeout);
         }
 
-        lastWrite = Collections.synchronizedMap(new HashMap<>());
-        outputQueue = Collections.synchronizedMap(new HashMap<>());
         serverSocketChannelMap = Collections.synchronizedMap(new HashMap<>());
         channels = Collections.synchronizedMap(new TreeMap<>());
-        sessionsByChannel = Collections.synchronizedMap(new HashMap<>());
-        sessionsByAddress = Collections.synchronizedMap(new LruMap(SystemProperties.getInteger(SystemProperties.Net.IO_UDP_LRU_SESSIONS_SIZE)));
-        addresses = Collections.synchronizedMap(new LruMap<>(SystemProperties.getInteger(SystemProperties.Net.IO_UDP_LRU_ADDRESSES_SIZE)));
+        udpSessions = new UdpSessionTable(
+                SystemProperties.getInteger(SystemProperties.Net.IO_UDP_SESSIONS_SHARDS),
+                SystemProperties.getInteger(SystemProperties.Net.IO_UDP_LRU_SESSIONS_SIZE),
+                SystemProperties.getLong(SystemProperties.Net.IO_UDP_SESSION_TIMEOUT),
+                timingWheel, this::onUdpSessionRemoved);
+        udpReceiveBatchSize = SystemProperties.getInteger(SystemProperties.Net.IO_UDP_RECEIVE_BATCH_SIZE);
+        udpConnectedPeersEnabled = SystemProperties.getBoolean(SystemProperties.Net.IO_UDP_CONNECTED_PEERS_ENABLED);
+        udpConnectedPeerThreshold = SystemProperties.getInteger(SystemProperties.Net.IO_UDP_CONNECTED_PEER_THRESHOLD);
         selectorHealthChecker = new SelectorHealthChecker();
         fork(selectorHealthChecker);
+        fork(timingWheel);
+
+        gatheringWriteMaxPackages = SystemProperties.getInteger(SystemProperties.Net.IO_GATHERING_WRITE_MAX_PACKAGES);
+        packagesPerWrite = new SynchronizedCountOperation(SynchronizedCountOperation.getMeanOperation(), 1000L);
+        wakeupsPerSecond = new SynchronizedCountOperation(SynchronizedCountOperation.getRateOperation(), 1000L);
+        writesCounter = new AtomicLong();
+        wakeupsCounter = new AtomicLong();
+        Agents.register(new NetServiceAgent());
     }
 
     /**
@@ -101,9 +124,39 @@ public final class NetService extends Service<NetServiceConsumer> {
     @Override
     protected void shutdown(ShutdownStage stage) {
         shuttingDown = true;
-        for(SelectorRunnable selectorRunnable : selectors.values()) {
+        if(stage.equals(ShutdownStage.START)) {
+            for(Runnable listener : shutdownListeners) {
+                try {
+                    listener.run();
+                } catch (Exception ex) {
+                    Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Shutdown listener fail", ex);
+                }
+            }
+        }
+        //The maps are copied because the selectors of the clients are removed when their channels are destroyed.
+        for(SelectorRunnable selectorRunnable : new ArrayList<>(selectors.values())) {
             selectorRunnable.shutdown(stage);
         }
+        for(List<SelectorRunnable> consumerWorkers : new ArrayList<>(workers.values())) {
+            for(SelectorRunnable worker : consumerWorkers) {
+                worker.shutdown(stage);
+            }
+        }
+        for(SelectorRunnable worker : getClientWorkers()) {
+            worker.shutdown(stage);
+        }
+        if(stage.equals(ShutdownStage.END)) {
+            timingWheel.stop();
+        }
+    }
+
+    /**
+     * Adds a listener that is called at the beginning of the shutdown process of the service, before the sessions
+     * are disconnected, for example to close the connections kept by a pool.
+     * @param listener Shutdown listener.
+     */
+    public final void addShutdownListener(Runnable listener) {
+        shutdownListeners.add(listener);
     }
 
     /**
@@ -171,19 +224,79 @@ public final class NetService extends Service<NetServiceConsumer> {
         tcpServer.configureBlocking(false);
         InetSocketAddress tcpAddress = new InetSocketAddress(server.getPort());
         tcpServer.socket().bind(tcpAddress);
-        registerChannel(server, tcpServer, SelectionKey.OP_ACCEPT, server);
+        registerChannel(server, tcpServer, SelectionKey.OP_ACCEPT);
+        registerWorkers(server);
         serverSocketChannelMap.put(server, tcpServer);
     }
 
     /**
-     * This method registers a TCP client service.
+     * This method creates the pool of worker selectors for a TCP server. The main selector of the server
+     * only accepts the new connections and each accepted channel is registered into the least loaded worker.
+     * @param server TCP Server.
+     */
+    private void registerWorkers(NetServer server) {
+        workers.put(server, createWorkers(server));
+    }
+
+    /**
+     * Creates and starts a pool of worker selectors, the size of the pool is the value of the property
+     * 'hcjf.net.nio.selector.workers' or the number of available processors.
+     * @param consumer Consumer of the workers, null for the workers shared by all the tcp clients.
+     * @return List of workers.
+     */
+    private List<SelectorRunnable> createWorkers(NetServiceConsumer consumer) {
+        int workersSize = SystemProperties.getInteger(SystemProperties.Net.NIO_SELECTOR_WORKERS);
+        if(workersSize <= 0) {
+            workersSize = Runtime.getRuntime().availableProcessors();
+        }
+
+        List<SelectorRunnable> result = new ArrayList<>();
+        for (int i = 0; i < workersSize; i++) {
+            SelectorRunnable worker = new SelectorRunnable(consumer, i);
+            worker.start();
+            result.add(worker);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the pool of worker selectors shared by all the tcp clients, the pool is created with the
+     * first client.
+     * @return List of workers.
+     */
+    private synchronized List<SelectorRunnable> getClientWorkers() {
+        if(clientWorkers == null) {
+            clientWorkers = shuttingDown ? List.of() : createWorkers(null);
+        }
+        return clientWorkers;
+    }
+
+    /**
+     * This method registers a TCP client service. The channel of the client is registered into the least loaded
+     * worker shared by all the tcp clients, then the clients don't create selectors and threads.
      * @param client TCP Client.
      */
     private void registerTCPNetClient(NetClient client) throws IOException {
         final SocketChannel channel = SocketChannel.open();
         channel.configureBlocking(false);
         channel.connect(new InetSocketAddress(client.getHost(), client.getPort()));
-        registerChannel(client, channel, SelectionKey.OP_CONNECT | SelectionKey.OP_READ, client);
+
+        SelectorRunnable worker = null;
+        int minimumLoad = Integer.MAX_VALUE;
+        for(SelectorRunnable clientWorker : getClientWorkers()) {
+            int load = clientWorker.getSessionsCount();
+            if(load < minimumLoad) {
+                minimumLoad = load;
+                worker = clientWorker;
+            }
+        }
+        if(worker == null) {
+            channel.close();
+            throw new IOException("Net service shutting down");
+        }
+        ChannelState channelState = new ChannelState(client, channel);
+        channelState.setSelectorRunnable(worker);
+        worker.registerChannel(channel, SelectionKey.OP_CONNECT | SelectionKey.OP_READ, channelState);
     }
 
     /**
@@ -193,9 +306,14 @@ public final class NetService extends Service<NetServiceConsumer> {
     private void registerUDPNetServer(NetServer server) throws IOException {
         udpServer = DatagramChannel.open();
         udpServer.configureBlocking(false);
+        if(udpConnectedPeersEnabled) {
+            //All the channels connected with the hot peers are bound to the same local address.
+            udpServer.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        }
         InetSocketAddress udpAddress = new InetSocketAddress(server.getPort());
         udpServer.socket().bind(udpAddress);
-        registerChannel(server, udpServer, SelectionKey.OP_READ, server);
+        ChannelState channelState = registerChannel(server, udpServer, SelectionKey.OP_READ);
+        channelState.setAddress("", "", -1, udpServer.socket().getLocalPort());
     }
 
     /**
@@ -207,9 +325,12 @@ public final class NetService extends Service<NetServiceConsumer> {
         channel.configureBlocking(false);
         InetSocketAddress address = new InetSocketAddress(client.getHost(), client.getPort());
         channel.connect(address);
-        addresses.put(client.getSession(), address);
-        sessionsByAddress.put(channel.getRemoteAddress(), client.getSession());
-        registerChannel(client, channel, SelectionKey.OP_READ, client);
+        client.getSession().setDatagramAddress(channel.getRemoteAddress());
+        udpSessions.putIfAbsent(channel.getRemoteAddress(), client.getSession(), true);
+        ChannelState channelState = registerChannel(client, channel, SelectionKey.OP_READ);
+        channelState.setAddress(address.getHostString(), address.getAddress() == null ? "" : address.getAddress().getHostAddress(),
+                address.getPort(), channel.socket().getLocalPort());
+        bindSession(channelState, client.getSession());
         selectors.get(client).addSession(client.getSession());
     }
 
@@ -231,12 +352,12 @@ public final class NetService extends Service<NetServiceConsumer> {
     }
 
     /**
-     * Return the server timer
-     *
-     * @return server timer.
+     * Return the timing wheel of the service, this wheel is shared by all the connection timeouts and it's
+     * available for the consumers that need to schedule a big number of short timeouts.
+     * @return Timing wheel instance.
      */
-    private Timer getTimer() {
-        return timer;
+    public final TimingWheel getTimingWheel() {
+        return timingWheel;
     }
 
     /**
@@ -256,94 +377,236 @@ public final class NetService extends Service<NetServiceConsumer> {
     public final boolean checkSession(NetSession session) {
         boolean result = false;
 
-        SelectableChannel channel = channels.get(session);
-        if (channel != null) {
-            result = channel.isOpen();
+        ChannelState channelState = getChannelState(session);
+        if (channelState != null) {
+            result = channelState.getChannel().isOpen();
         }
 
         return result;
     }
 
     /**
-     * This method blocks the selector to add a new channel to the key system
+     * This method creates the main selector of the consumer and register the channel into the selector,
+     * the key of the channel is attached with a new channel state.
+     * @param consumer  Consumer of the channel.
      * @param channel   The new channel to be register
      * @param operation The first channel operation.
-     * @param attach    Object to be attached into the registered key.
+     * @return Channel state attached to the key.
      * @throws ClosedChannelException
      */
-    private void registerChannel(NetServiceConsumer consumer, SelectableChannel channel, int operation, Object attach) throws ClosedChannelException {
-        selectors.put(consumer, new SelectorRunnable(consumer));
-        tasks.put(consumer, fork(selectors.get(consumer)));
-        selectors.get(consumer).registerChannel(channel, operation, attach);
+    private ChannelState registerChannel(NetServiceConsumer consumer, SelectableChannel channel, int operation) throws ClosedChannelException {
+        SelectorRunnable selectorRunnable = new SelectorRunnable(consumer, null);
+        selectors.put(consumer, selectorRunnable);
+        selectorRunnable.start();
+        ChannelState channelState = new ChannelState(consumer, channel);
+        channelState.setSelectorRunnable(selectorRunnable);
+        selectorRunnable.registerChannel(channel, operation, channelState);
+        return channelState;
+    }
+
+    /**
+     * Returns the state of the channel associated to the session. The state referenced by the session is used
+     * if it is still open, in the otherwise the state is looked up using the session id, because the consumers
+     * could create new instances of the same session.
+     * @param session Net session.
+     * @return Channel state or null if the session has not a channel associated.
+     */
+    private ChannelState getChannelState(NetSession session) {
+        ChannelState result = session.getChannelState();
+        if(result == null || result.isClosed()) {
+            result = channels.get(session);
+        }
+        return result;
+    }
+
+    /**
+     * Links the session with the channel state.
+     * @param channelState Channel state.
+     * @param session Net session.
+     */
+    private void bindSession(ChannelState channelState, NetSession session) {
+        if(channelState.getChannel() instanceof SocketChannel) {
+            //The udp channels are shared by all the sessions of the consumer.
+            channelState.setSession(session);
+        }
+        session.setChannelState(channelState);
+        channels.put(session, channelState);
+        if(channelState.getChannel() instanceof SocketChannel) {
+            scheduleIdleTimeout(channelState);
+        }
+    }
+
+    /**
+     * Calculates the time until the next timeout of the channel.
+     * @param channelState Channel state.
+     * @param now Current timestamp.
+     * @return Time in milliseconds until the next check, zero or negative if the check is not necessary or
+     * some timeout was reached.
+     */
+    private long getIdleTimeoutDelay(ChannelState channelState, long now) {
+        NetServiceConsumer consumer = channelState.getConsumer();
+        long result = Long.MAX_VALUE;
+        if(consumer.getIdleTimeout() > 0) {
+            long lastActivity = Math.max(channelState.getLastRead(), channelState.getLastWrite());
+            result = Math.min(result, consumer.getIdleTimeout() - (now - lastActivity));
+        }
+        if(consumer.getReadIdleTimeout() > 0) {
+            result = Math.min(result, consumer.getReadIdleTimeout() - (now - channelState.getLastRead()));
+        }
+        if(consumer.getPendingWriteTimeout() > 0) {
+            if(channelState.getWriteWatermark().getPendingBytes() > 0) {
+                result = Math.min(result, consumer.getPendingWriteTimeout() - (now - channelState.getLastWrite()));
+            } else {
+                result = Math.min(result, consumer.getPendingWriteTimeout());
+            }
+        }
+        return result == Long.MAX_VALUE ? 0 : result;
+    }
+
+    /**
+     * Schedules the task that verifies the idle timeouts of the channel, only one task is scheduled by channel
+     * and only if the consumer has some idle timeout enabled.
+     * @param channelState Channel state.
+     */
+    private void scheduleIdleTimeout(ChannelState channelState) {
+        long delay = getIdleTimeoutDelay(channelState, System.currentTimeMillis());
+        if(delay > 0 && channelState.getIdleTimeout() == null) {
+            channelState.setIdleTimeout(getTimingWheel().schedule(new IdleTimeout(channelState), delay));
+        }
+    }
+
+    /**
+     * Returns the worker selector with less sessions assigned for the specific consumer, if the consumer
+     * has not workers then the main selector is returned.
+     * @param consumer Net service consumer.
+     * @return Least loaded selector runnable.
+     */
+    private SelectorRunnable getLeastLoadedWorker(NetServiceConsumer consumer) {
+        SelectorRunnable result = selectors.get(consumer);
+        List<SelectorRunnable> consumerWorkers = workers.get(consumer);
+        if(consumerWorkers != null) {
+            int minimumLoad = Integer.MAX_VALUE;
+            for(SelectorRunnable worker : consumerWorkers) {
+                int load = worker.getSessionsCount();
+                if(load < minimumLoad) {
+                    minimumLoad = load;
+                    result = worker;
+                }
+            }
+        }
+        return result;
     }
 
     /**
      * Creates a internal package of data.
-     * @param channel Socket channel.
+     * @param channelState Channel state.
+     * @param data Payload.
+     * @param event Action event.
+     * @return Returns the instance of net package.
+     */
+    private NetPackage createPackage(ChannelState channelState, byte[] data, NetPackage.ActionEvent event) {
+        return createPackage(channelState, data, null, event);
+    }
+
+    /**
+     * Creates a internal package of data. If the pooled buffer is not null then the package takes the
+     * reference of the buffer and the payload is a slice of the pooled memory. The addresses of the socket
+     * channels are resolved only once and then they are taken from the channel state.
+     * @param channelState Channel state.
      * @param data Payload.
+     * @param pooledBuffer Pooled buffer with the payload.
      * @param event Action event.
      * @return Returns the instance of net package.
      */
-    private NetPackage createPackage(SelectableChannel channel, byte[] data, NetPackage.ActionEvent event) {
+    private NetPackage createPackage(ChannelState channelState, byte[] data, PooledByteBuffer pooledBuffer, NetPackage.ActionEvent event) {
         NetPackage netPackage;
         String remoteHost;
         String remoteAddress;
         int remotePort;
         int localPort;
+        SelectableChannel channel = channelState.getChannel();
         if (channel instanceof SocketChannel) {
-            remoteHost = "";
-            if(SystemProperties.getBoolean(SystemProperties.Net.REMOTE_ADDRESS_INTO_NET_PACKAGE)) {
-                remoteHost = ((SocketChannel) channel).socket().getInetAddress().getHostName();
-            }
-            remoteAddress = ((SocketChannel) channel).socket().getInetAddress().getHostAddress();
-            remotePort = ((SocketChannel) channel).socket().getPort();
-            localPort = ((SocketChannel) channel).socket().getLocalPort();
-        } else if (channel instanceof DatagramChannel) {
-            remoteHost = "";
-            remoteAddress ="";
-            remotePort = -1;
-            localPort = -1;
-            try {
-                Field field = channel.getClass().getDeclaredField("sender");
-                field.setAccessible(true);
-                InetSocketAddress socketAddress = (InetSocketAddress) field.get(channel);
-                if(SystemProperties.getBoolean(SystemProperties.Net.REMOTE_ADDRESS_INTO_NET_PACKAGE)) {
-                    remoteHost = socketAddress.getAddress().getHostName();
+            if(!channelState.isAddressResolved()) {
+                remoteHost = "";
+                if (SystemProperties.getBoolean(SystemProperties.Net.REMOTE_ADDRESS_INTO_NET_PACKAGE)) {
+                    remoteHost = ((SocketChannel) channel).socket().getInetAddress().getHostName();
                 }
-                remoteAddress = socketAddress.getAddress().getHostAddress();
-                remotePort = socketAddress.getPort();
-                localPort = ((DatagramChannel) channel).socket().getLocalPort();
-            } catch (Exception ex){
-                Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "createPackage method exception", ex);
+                channelState.setAddress(remoteHost,
+                        ((SocketChannel) channel).socket().getInetAddress().getHostAddress(),
+                        ((SocketChannel) channel).socket().getPort(),
+                        ((SocketChannel) channel).socket().getLocalPort());
             }
+            remoteHost = channelState.getRemoteHost();
+            remoteAddress = channelState.getRemoteAddress();
+            remotePort = channelState.getRemotePort();
+            localPort = channelState.getLocalPort();
+        } else if (channel instanceof DatagramChannel) {
+            //The addresses of the udp channels are stored when the channel is registered.
+            remoteHost = channelState.isAddressResolved() ? channelState.getRemoteHost() : "";
+            remoteAddress = channelState.isAddressResolved() ? channelState.getRemoteAddress() : "";
+            remotePort = channelState.isAddressResolved() ? channelState.getRemotePort() : -1;
+            localPort = channelState.isAddressResolved() ? channelState.getLocalPort() : -1;
         } else {
             throw new IllegalArgumentException("Unknown channel type");
         }
 
-        netPackage = new DefaultNetPackage(remoteHost, remoteAddress, remotePort,
-                localPort, data, event);
+        if(pooledBuffer == null) {
+            netPackage = new DefaultNetPackage(remoteHost, remoteAddress, remotePort,
+                    localPort, data, event);
+        } else {
+            netPackage = new PooledNetPackage(remoteHost, remoteAddress, remotePort,
+                    localPort, pooledBuffer, event);
+        }
 
         return netPackage;
     }
 
+    /**
+     * Creates a write package with a region of a file.
+     * @param channelState State of the socket channel.
+     * @param fileChannel File channel.
+     * @param position Position of the first byte of the region.
+     * @param count Number of bytes of the region.
+     * @return Returns the instance of net package.
+     */
+    private NetPackage createFileRegionPackage(ChannelState channelState, FileChannel fileChannel, long position, long count) {
+        //The addresses of the channel are resolved using a empty write package.
+        NetPackage addressPackage = createPackage(channelState, null, NetPackage.ActionEvent.WRITE);
+        return new FileRegionNetPackage(addressPackage.getRemoteHost(), addressPackage.getRemoteAddress(),
+                addressPackage.getRemotePort(), addressPackage.getLocalPort(), fileChannel, position, count);
+    }
+
+    /**
+     * Creates a package with the datagram received from the remote address.
+     * @param channelState State of the udp channel.
+     * @param address Remote address of the datagram.
+     * @param pooledBuffer Pooled buffer with the datagram.
+     * @return Returns the instance of net package.
+     */
+    private NetPackage createDatagramPackage(ChannelState channelState, InetSocketAddress address, PooledByteBuffer pooledBuffer) {
+        String remoteHost = "";
+        if(SystemProperties.getBoolean(SystemProperties.Net.REMOTE_ADDRESS_INTO_NET_PACKAGE)) {
+            remoteHost = address.getHostName();
+        }
+        return new PooledNetPackage(remoteHost, address.getAddress().getHostAddress(), address.getPort(),
+                channelState.getLocalPort(), pooledBuffer, NetPackage.ActionEvent.READ);
+    }
+
     /**
      * This method notify to all the writer and put into the output buffer some package.
-     * @param channel Channel to write the package.
+     * @param channelState State of the channel to write the package.
      * @param netPackage Package.
      */
-    private void writeWakeup(SelectableChannel channel, NetPackage netPackage) {
-        SelectorRunnable selectorRunnable = selectors.get(netPackage.getSession().getConsumer());
-        selectorRunnable.writeWakeup(channel, netPackage);
+    private void writeWakeup(ChannelState channelState, NetPackage netPackage) {
+        channelState.getSelectorRunnable().writeWakeup(channelState, netPackage);
     }
 
     /**
      * This method notify to all the readers.
-     * @param channel Channel to write the package.
-     * @param session Net session instance.
+     * @param channelState State of the channel to read.
      */
-    private void readWakeup(SelectableChannel channel, NetSession session) {
-        SelectorRunnable selectorRunnable = selectors.get(session.getConsumer());
-        selectorRunnable.readWakeup(channel);
+    private void readWakeup(ChannelState channelState) {
+        channelState.getSelectorRunnable().readWakeup(channelState);
     }
 
     /**
@@ -356,11 +619,12 @@ public final class NetService extends Service<NetServiceConsumer> {
      */
     public final NetPackage writeData(NetSession session, byte[] data) throws IOException {
         NetPackage netPackage;
-        SelectableChannel channel = channels.get(session);
-        if (channel != null) {
-            netPackage = createPackage(channel, data, NetPackage.ActionEvent.WRITE);
+        ChannelState channelState = getChannelState(session);
+        if (channelState != null) {
+            netPackage = createPackage(channelState, data, NetPackage.ActionEvent.WRITE);
             netPackage.setSession(session);
-            writeWakeup(channel, netPackage);
+            addPendingBytes(channelState, netPackage);
+            writeWakeup(channelState, netPackage);
         } else {
             throw new IOException("Unknown session");
         }
@@ -368,14 +632,43 @@ public final class NetService extends Service<NetServiceConsumer> {
         return netPackage;
     }
 
+    /**
+     * This method put a region of a file on the output queue of the session. The region is written after all the
+     * packages queued before and the bytes are transferred from the file channel to the socket channel without
+     * copies into the heap, if the channel is ssl then the region is read in chunks using pooled buffers.
+     * The package takes the ownership of the file channel and the channel is closed when the region is written
+     * or when the write fails.
+     * @param session Net session.
+     * @param fileChannel File channel.
+     * @param position Position of the first byte of the region.
+     * @param count Number of bytes of the region.
+     * @return Return the created package.
+     * @throws IOException Exception to the write operation.
+     */
+    public final NetPackage writeFile(NetSession session, FileChannel fileChannel, long position, long count) throws IOException {
+        NetPackage netPackage;
+        ChannelState channelState = getChannelState(session);
+        if (channelState != null && channelState.getChannel() instanceof SocketChannel) {
+            netPackage = createFileRegionPackage(channelState, fileChannel, position, count);
+            netPackage.setSession(session);
+            addPendingBytes(channelState, netPackage);
+            writeWakeup(channelState, netPackage);
+        } else {
+            fileChannel.close();
+            throw new IOException(channelState == null ? "Unknown session" : "File regions are only supported over tcp");
+        }
+
+        return netPackage;
+    }
+
     /**
      * This method force the selector wakeup in order to read information from channel.
      * @param session Session instance.
      */
     public final void readData(NetSession session) throws IOException {
-        SelectableChannel channel = channels.get(session);
-        if(channel != null) {
-            readWakeup(channel, session);
+        ChannelState channelState = getChannelState(session);
+        if(channelState != null) {
+            readWakeup(channelState);
         } else {
             throw new IOException("Unknown session");
         }
@@ -388,13 +681,13 @@ public final class NetService extends Service<NetServiceConsumer> {
      * @param message Disconnection message.
      */
     public final void disconnect(NetSession session, String message) {
-        SelectableChannel channel = channels.get(session);
-        if (channel != null) {
-            synchronized (channel) {
-                if (channels.containsKey(session)) {
-                    NetPackage netPackage = createPackage(channel, message.getBytes(), NetPackage.ActionEvent.DISCONNECT);
+        ChannelState channelState = getChannelState(session);
+        if (channelState != null) {
+            synchronized (channelState.getChannel()) {
+                if (!channelState.isClosed()) {
+                    NetPackage netPackage = createPackage(channelState, message.getBytes(), NetPackage.ActionEvent.DISCONNECT);
                     netPackage.setSession(session);
-                    writeWakeup(channel, netPackage);
+                    writeWakeup(channelState, netPackage);
                 }
             }
         }
@@ -404,14 +697,13 @@ public final class NetService extends Service<NetServiceConsumer> {
      * This method must destroy the channel and remove all the
      * netPackage related.
      *
-     * @param channel Channel that will destroy.
+     * @param channelState State of the channel that will destroy.
      */
-    private void destroyChannel(SocketChannel channel) {
+    private void destroyChannel(ChannelState channelState) {
+        SocketChannel channel = (SocketChannel) channelState.getChannel();
         synchronized (channel) {
-            NetSession session = sessionsByChannel.remove(channel);
-            lastWrite.remove(channel);
-            outputQueue.remove(channel);
-            List<NetSession> removedSessions = new ArrayList<>();
+            NetSession session = channelState.close() ? channelState.getSession() : null;
+            SelectorRunnable channelSelector = channelState.getSelectorRunnable();
 
             try {
                 if (session != null) {
@@ -425,15 +717,24 @@ public final class NetService extends Service<NetServiceConsumer> {
                         }
                     }
 
-                    channels.remove(session);
-                    selectors.get(session.getConsumer()).removeSession(session);
+                    if(channels.get(session) == channelState) {
+                        channels.remove(session);
+                    }
+                    if(session.getChannelState() == channelState) {
+                        session.setChannelState(null);
+                    }
+                    if(channelSelector == null) {
+                        channelSelector = selectors.get(session.getConsumer());
+                    }
+                    if(channelSelector != null) {
+                        channelSelector.removeSession(session);
+                    }
                     if (session.getConsumer() instanceof NetServer) {
                         NetServer server = (NetServer) session.getConsumer();
                         if (server.isDisconnectAndRemove()) {
                             destroySession(session);
                         }
                     }
-                    removedSessions.add(session);
 
                     if(session.getConsumer() != null) {
                         session.getConsumer().onDisconnect(session, null);
@@ -441,12 +742,16 @@ public final class NetService extends Service<NetServiceConsumer> {
 
                     if(session.getConsumer() instanceof NetClient) {
                         SelectorRunnable selectorRunnable = selectors.remove(session.getConsumer());
-                        selectorRunnable.shutdown(ShutdownStage.START);
-                        selectorRunnable.shutdown(ShutdownStage.END);
+                        if(selectorRunnable != null) {
+                            selectorRunnable.shutdown(ShutdownStage.START);
+                            selectorRunnable.shutdown(ShutdownStage.END);
+                        }
                     }
                 }
 
-                if (channel.isConnected()) {
+                //The channels of the clients that are not connected yet are closed too, because they are registered
+                //into the workers shared with the other clients.
+                if (channel.isOpen()) {
                     channel.close();
                 }
             } catch (Exception ex) {
@@ -458,11 +763,19 @@ public final class NetService extends Service<NetServiceConsumer> {
     /**
      * This method updates the linking information  a channel with a particular session
      *
-     * @param oldChannel Obsolete channel.
-     * @param newChannel New channel.
+     * @param oldChannelState State of the obsolete channel.
+     * @param newChannelState State of the new channel.
      */
-    private void updateChannel(SocketChannel oldChannel, SocketChannel newChannel) {
-        NetSession session = sessionsByChannel.remove(oldChannel);
+    private void updateChannel(ChannelState oldChannelState, ChannelState newChannelState) {
+        SocketChannel oldChannel = (SocketChannel) oldChannelState.getChannel();
+        NetSession session = oldChannelState.getSession();
+        SelectorRunnable oldSelector = oldChannelState.getSelectorRunnable();
+        if(oldSelector != null) {
+            oldSelector.removeSession(session);
+        }
+        newChannelState.transferOutput(oldChannelState, session.getConsumer().getWriteHighWatermark());
+        oldChannelState.setSession(null);
+        oldChannelState.close();
 
         try {
             if (oldChannel.isConnected()) {
@@ -471,12 +784,156 @@ public final class NetService extends Service<NetServiceConsumer> {
             }
         } catch (Exception ex) {
         } finally {
-            channels.put(session, newChannel);
+            bindSession(newChannelState, session);
+        }
+    }
+
+    /**
+     * Adds and removes operations over the interest set of the key. This method is thread safe and could be
+     * called from the selector thread or from any io thread.
+     * @param key Selection key.
+     * @param addOps Operations to add into the interest set.
+     * @param removeOps Operations to remove from the interest set.
+     */
+    private void changeInterestOps(SelectionKey key, int addOps, int removeOps) {
+        if(key != null) {
+            synchronized (key) {
+                if (key.isValid()) {
+                    int ops = key.interestOps();
+                    int newOps = (ops | addOps) & ~removeOps;
+                    if (ops != newOps) {
+                        key.interestOps(newOps);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Enables the write interest of the channel in order to be notified when the channel is writable again
+     * and wakeup the selector to apply the new interest set.
+     * @param channelState Channel state.
+     */
+    private void enableWriteInterest(ChannelState channelState) {
+        SelectorRunnable selectorRunnable = channelState.getSelectorRunnable();
+        changeInterestOps(channelState.getKey(), SelectionKey.OP_WRITE, 0);
+        selectorRunnable.wakeup();
+    }
+
+    /**
+     * Adds the size of the package to the bytes queued over the channel, if the amount of bytes exceeds the high
+     * watermark of the consumer then the session is marked as not writable.
+     * @param channelState Channel state.
+     * @param netPackage Package queued.
+     */
+    private void addPendingBytes(ChannelState channelState, NetPackage netPackage) {
+        NetSession session = netPackage.getSession();
+        if(channelState.getWriteWatermark().getPendingBytes() == 0) {
+            //The pending write timeout starts when the first byte is queued.
+            channelState.setLastWrite(System.currentTimeMillis());
+        }
+        if(channelState.getWriteWatermark().add(netPackage.getPayloadSize(), session.getConsumer().getWriteHighWatermark())) {
+            onWritabilityChanged(session, false);
+        }
+    }
+
+    /**
+     * Removes the size of the package from the bytes queued over the channel, if the amount of bytes
+     * falls under the low watermark of the consumer then the session is marked as writable again.
+     * @param channelState Channel state.
+     * @param netPackage Package written or failed.
+     */
+    private void removePendingBytes(ChannelState channelState, NetPackage netPackage) {
+        NetSession session = netPackage.getSession();
+        if(channelState.getWriteWatermark().remove(netPackage.getPayloadSize(), session.getConsumer().getWriteLowWatermark())) {
+            onWritabilityChanged(session, true);
+        }
+    }
+
+    /**
+     * Notify to the consumer of the session that the writability of the session changed.
+     * @param session Session instance.
+     * @param writable Writable value.
+     */
+    private void onWritabilityChanged(NetSession session, boolean writable) {
+        try {
+            session.getConsumer().onWritabilityChanged(session, writable);
+        } catch (Exception ex) {
+            Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Writability consumer exception", ex);
+        }
+    }
+
+    /**
+     * Indicates if the amount of bytes queued over the session channel is under the high watermark.
+     * @param session Session instance.
+     * @return Returns true if the session is writable and false in the otherwise.
+     * @throws IOException If the session is unknown.
+     */
+    public final boolean isWritable(NetSession session) throws IOException {
+        ChannelState channelState = getChannelState(session);
+        if(channelState == null) {
+            throw new IOException("Unknown session");
+        }
+        return channelState.getWriteWatermark().isWritable();
+    }
+
+    /**
+     * Blocks the current thread until the session is writable or the timeout is reached. The io threads of the
+     * service never wait because the current thread could be the writer of the channel, in this case the method
+     * returns true immediately.
+     * @param session Session instance.
+     * @param timeout Maximum time to wait in milliseconds.
+     * @return Returns true if the session is writable and false if the timeout was reached.
+     * @throws IOException If the session is unknown.
+     */
+    public final boolean awaitWritable(NetSession session, long timeout) throws IOException {
+        boolean result = true;
+        ChannelState channelState = getChannelState(session);
+        if(channelState == null) {
+            throw new IOException("Unknown session");
+        }
+        if(!(Thread.currentThread() instanceof NetIOThread)) {
+            WriteWatermark writeWatermark = channelState.getWriteWatermark();
+            try {
+                result = writeWatermark.await(timeout);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                result = writeWatermark.isWritable();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the read interest of the session channel, the data is not read from the channel until the
+     * method resumeRead is called. This method doesn't have effect over udp sessions because the channel is shared.
+     * @param session Session instance.
+     * @throws IOException If the session is unknown.
+     */
+    public final void suspendRead(NetSession session) throws IOException {
+        ChannelState channelState = getChannelState(session);
+        if(channelState == null) {
+            throw new IOException("Unknown session");
         }
+        if(channelState.getChannel() instanceof SocketChannel) {
+            changeInterestOps(channelState.getKey(), 0, SelectionKey.OP_READ);
+        }
+    }
 
-        sessionsByChannel.put(newChannel, session);
-        outputQueue.put(newChannel, outputQueue.remove(oldChannel));
-        lastWrite.put(newChannel, lastWrite.remove(oldChannel));
+    /**
+     * Restores the read interest of the session channel and wakeup the selector to apply the new interest set.
+     * @param session Session instance.
+     * @throws IOException If the session is unknown.
+     */
+    public final void resumeRead(NetSession session) throws IOException {
+        ChannelState channelState = getChannelState(session);
+        if(channelState == null) {
+            throw new IOException("Unknown session");
+        }
+        if(channelState.getChannel() instanceof SocketChannel) {
+            changeInterestOps(channelState.getKey(), SelectionKey.OP_READ, 0);
+            channelState.getSelectorRunnable().wakeup();
+        }
     }
 
     /**
@@ -486,7 +943,7 @@ public final class NetService extends Service<NetServiceConsumer> {
      * @return Return true if the session is connected and false in the other case.
      */
     public final boolean isConnected(NetSession session) {
-        return channels.containsKey(session);
+        return getChannelState(session) != null;
     }
 
     /**
@@ -669,18 +1126,22 @@ public final class NetService extends Service<NetServiceConsumer> {
     private class SelectorRunnable implements Runnable {
 
         private final NetServiceConsumer consumer;
+        private final Integer workerIndex;
         private Selector selector;
         private final Object monitor;
         private Boolean blocking;
         private Set<NetSession> sessions;
         private final Queue<SelectionKey> readableKeys;
         private final Queue<SelectionKey> writableKeys;
+        private final AtomicBoolean wakeupPending;
         private final ThreadPoolExecutor readIoExecutor;
         private final ThreadPoolExecutor writeIoExecutor;
         private Boolean rogueState;
+        private Future task;
 
-        private SelectorRunnable(NetServiceConsumer consumer) {
+        private SelectorRunnable(NetServiceConsumer consumer, Integer workerIndex) {
             this.consumer = consumer;
+            this.workerIndex = workerIndex;
             this.monitor = new Object();
             this.blocking = false;
             this.sessions = new TreeSet<>();
@@ -693,6 +1154,7 @@ public final class NetService extends Service<NetServiceConsumer> {
 
             readableKeys = new ArrayBlockingQueue<>(SystemProperties.getInteger(SystemProperties.Net.IO_QUEUE_SIZE));
             writableKeys = new ArrayBlockingQueue<>(SystemProperties.getInteger(SystemProperties.Net.IO_QUEUE_SIZE));
+            wakeupPending = new AtomicBoolean(false);
 
             readIoExecutor = (ThreadPoolExecutor) Executors.newCachedThreadPool(new NetIOThreadFactory());
             readIoExecutor.setKeepAliveTime(SystemProperties.getInteger(SystemProperties.Net.IO_THREAD_POOL_KEEP_ALIVE_TIME), TimeUnit.SECONDS);
@@ -702,6 +1164,21 @@ public final class NetService extends Service<NetServiceConsumer> {
             fork(new Writer(), SystemProperties.get(SystemProperties.Net.IO_THREAD_POOL_NAME), writeIoExecutor);
         }
 
+        /**
+         * Starts the selection process over a service thread.
+         */
+        private void start() {
+            task = fork(this);
+        }
+
+        /**
+         * Returns true if the instance is a worker selector, only to read and write over the accepted channels.
+         * @return True if it is a worker and false if it is the main selector of the consumer.
+         */
+        private boolean isWorker() {
+            return workerIndex != null;
+        }
+
         /**
          * Set the rogue state into the selector.
          */
@@ -727,6 +1204,14 @@ public final class NetService extends Service<NetServiceConsumer> {
 
         public synchronized void removeSession(NetSession session) {sessions.remove(session);}
 
+        /**
+         * Returns the number of sessions assigned to the selector.
+         * @return Number of sessions.
+         */
+        public synchronized int getSessionsCount() {
+            return sessions.size();
+        }
+
         /**
          * Returns the selector instance.
          * @return Selector instance.
@@ -773,29 +1258,52 @@ public final class NetService extends Service<NetServiceConsumer> {
             }
         }
 
-        private void readWakeup(SelectableChannel channel) {
-            SelectionKey key = channel.keyFor(getSelector());
-            synchronized (readableKeys) {
-                if (key.isValid() && !writableKeys.contains(key)) {
-                    if(!readableKeys.offer(key)) {
+        private void readWakeup(ChannelState channelState) {
+            SelectionKey key = channelState.getKey();
+            if (key != null && !channelState.isWriteScheduled()) {
+                scheduleRead(key);
+            }
+        }
+
+        private void writeWakeup(ChannelState channelState, NetPackage netPackage) {
+            channelState.getOutputQueue().add(netPackage);
+            scheduleWrite(channelState.getKey());
+        }
+
+        /**
+         * Puts the key into the readable keys queue only if the key is not scheduled yet.
+         * @param key Readable key.
+         */
+        private void scheduleRead(SelectionKey key) {
+            ChannelState channelState = (ChannelState) key.attachment();
+            if (key.isValid() && channelState.setReadScheduled(true)) {
+                synchronized (readableKeys) {
+                    if (!readableKeys.offer(key)) {
+                        channelState.setReadScheduled(false);
                         Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to add readable key!!!!");
                     }
+                    readableKeys.notifyAll();
                 }
             }
-            writableKeys.notifyAll();
         }
 
-        private void writeWakeup(SelectableChannel channel, NetPackage netPackage) {
-            outputQueue.get(channel).add(netPackage);
-
-            SelectionKey key = channel.keyFor(getSelector());
-            synchronized (writableKeys) {
-                if (key.isValid() && !writableKeys.contains(key)) {
-                    if (!writableKeys.offer(key)) {
-                        Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to add writable key!!!!");
+        /**
+         * Puts the key into the writable keys queue only if the key is not scheduled yet, then all the packages
+         * added to the output queue of the channel before the writer takes the key are written together.
+         * @param key Writable key.
+         */
+        private void scheduleWrite(SelectionKey key) {
+            if (key != null && key.isValid()) {
+                ChannelState channelState = (ChannelState) key.attachment();
+                if (channelState.setWriteScheduled(true)) {
+                    synchronized (writableKeys) {
+                        if (!writableKeys.offer(key)) {
+                            channelState.setWriteScheduled(false);
+                            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to add writable key!!!!");
+                        }
+                        writableKeys.notifyAll();
                     }
                 }
-                writableKeys.notifyAll();
             }
         }
 
@@ -820,7 +1328,9 @@ public final class NetService extends Service<NetServiceConsumer> {
                         disconnect(session, "");
                     }
 
-                    tasks.remove(consumer).cancel(true);
+                    if(task != null) {
+                        task.cancel(true);
+                    }
                     wakeup();
                     break;
                 }
@@ -852,8 +1362,8 @@ public final class NetService extends Service<NetServiceConsumer> {
                             } else {
                                 key.cancel();
                             }
-                        } else {
-                            destroyChannel((SocketChannel) selectableChannel);
+                        } else if (selectableChannel instanceof SocketChannel) {
+                            destroyChannel((ChannelState) key.attachment());
                         }
                     } catch (Exception ex){
                         Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG),
@@ -888,25 +1398,34 @@ public final class NetService extends Service<NetServiceConsumer> {
             synchronized (monitor) {
                 blocking = false;
             }
+            wakeupPending.set(false);
             return result;
         }
 
         /**
          * This method wakeup the main thread in order to verify if there are some available keys into selector. All the
          * times verify if the selector is blocking into the select method, because only invoke the method wakeup of the
-         * selector if it is blocking in the select method.
+         * selector if it is blocking in the select method. The wakeups are coalesced, if there are a pending wakeup
+         * then the invocation is discarded because the selector will evaluate all the changes in the next select.
          */
         private void wakeup() {
-            synchronized (monitor) {
-                if(blocking) {
-                    getSelector().wakeup();
-                    blocking = false;
+            if(wakeupPending.compareAndSet(false, true)) {
+                synchronized (monitor) {
+                    if (blocking) {
+                        getSelector().wakeup();
+                        blocking = false;
+                        wakeupsCounter.incrementAndGet();
+                        wakeupsPerSecond.add(1);
+                    } else {
+                        wakeupPending.set(false);
+                    }
                 }
             }
         }
 
         private String getDescription() {
-            return consumer.getName();
+            String name = consumer == null ? CLIENT_WORKERS_NAME : consumer.getName();
+            return isWorker() ? String.format("%s (worker %d)", name, workerIndex) : name;
         }
 
         /**
@@ -933,7 +1452,8 @@ public final class NetService extends Service<NetServiceConsumer> {
                         String action = SystemProperties.get(SystemProperties.Net.NIO_SELECTOR_HEALTH_CHECKER_DANGEROUS_ACTION);
                         Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG),
                                 "Executing action %s for rogue state in server %s", action, getDescription());
-                        if(consumer instanceof NetServer) {
+                        //The action is applied over the selectors of the servers and over the shared client workers.
+                        if(consumer == null || consumer instanceof NetServer) {
                             switch (action) {
                                 case SelectorHealthChecker.Actions.SHUTDOWN: {System.exit(1); break;}
                                 case SelectorHealthChecker.Actions.RECREATE_SELECTOR: {createSelector(); break;}
@@ -954,31 +1474,22 @@ public final class NetService extends Service<NetServiceConsumer> {
                                 try {
                                     final SelectableChannel keyChannel = key.channel();
                                     if (keyChannel != null && key.channel().isOpen() && key.isValid()) {
-                                        final NetServiceConsumer consumer = (NetServiceConsumer) key.attachment();
+                                        final ChannelState channelState = (ChannelState) key.attachment();
                                         //If the kind of key is acceptable or connectable then
                                         //the processing do over this thread in the other case
                                         //the processing is delegated to the thread pool
                                         if (key.isAcceptable()) {
-                                            accept(key.channel(), (NetServer) consumer);
+                                            accept(key.channel(), (NetServer) channelState.getConsumer());
                                         } else if (key.isConnectable()) {
-                                            connect(key.channel(), (NetClient) consumer);
-                                        } else if (key.isReadable()) {
-                                            synchronized (readableKeys) {
-                                                if (key.isValid() && !readableKeys.contains(key)) {
-                                                    if (!readableKeys.offer(key)) {
-                                                        Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to add readable key!!!!");
-                                                    }
-                                                }
-                                                readableKeys.notifyAll();
+                                            connect(channelState);
+                                        } else {
+                                            if (key.isReadable()) {
+                                                scheduleRead(key);
                                             }
-                                        } else if (key.isWritable()) {
-                                            synchronized (writableKeys) {
-                                                if (key.isValid() && !writableKeys.contains(key)) {
-                                                    if (!writableKeys.offer(key)) {
-                                                        Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to add writable key!!!!");
-                                                    }
-                                                }
-                                                writableKeys.notifyAll();
+                                            if (key.isValid() && key.isWritable()) {
+                                                //The write interest is removed until the writer found again a full socket buffer.
+                                                changeInterestOps(key, 0, SelectionKey.OP_WRITE);
+                                                scheduleWrite(key);
                                             }
                                         }
                                     } else {
@@ -1000,16 +1511,20 @@ public final class NetService extends Service<NetServiceConsumer> {
                     Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Closing selector...", ex);
                 }
 
-                //Close all the servers.
-                if(NetServer.class.isAssignableFrom(consumer.getClass())) {
-                    ServerSocketChannel channel = serverSocketChannelMap.get(consumer);
-                    try {
-                        channel.close();
-                    } catch (IOException ex) {
-                        Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Closing channel...", ex);
+                if(!isWorker()) {
+                    //Close all the servers.
+                    if (NetServer.class.isAssignableFrom(consumer.getClass())) {
+                        ServerSocketChannel channel = serverSocketChannelMap.get(consumer);
+                        if (channel != null) {
+                            try {
+                                channel.close();
+                            } catch (IOException ex) {
+                                Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Closing channel...", ex);
+                            }
+                        }
                     }
+                    selectors.remove(consumer);
                 }
-                selectors.remove(consumer);
             } catch (Exception ex) {
                 Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unexpected error", ex);
             }
@@ -1034,13 +1549,14 @@ public final class NetService extends Service<NetServiceConsumer> {
                     }
                     if (key != null) {
                         try {
-                            NetServiceConsumer consumer = (NetServiceConsumer) key.attachment();
+                            ChannelState channelState = (ChannelState) key.attachment();
+                            channelState.setReadScheduled(false);
                             SelectableChannel keyChannel = key.channel();
                             if (keyChannel != null && key.channel().isOpen()) {
                                 synchronized (keyChannel) {
                                     try {
                                         if (key.isValid()) {
-                                            read(keyChannel, consumer);
+                                            read(channelState);
                                         }
                                     } catch (Exception ex) {
                                         Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Internal read exception", ex);
@@ -1081,14 +1597,16 @@ public final class NetService extends Service<NetServiceConsumer> {
                         key = writableKeys.poll();
                     }
                     if (key != null) {
+                        ChannelState channelState = (ChannelState) key.attachment();
+                        //The key is released before the write, then the packages added during the write schedule the key again.
+                        channelState.setWriteScheduled(false);
                         try {
-                            NetServiceConsumer consumer = (NetServiceConsumer) key.attachment();
                             SelectableChannel keyChannel = key.channel();
                             if (keyChannel != null && key.channel().isOpen()) {
                                 synchronized (keyChannel) {
                                     try {
                                         if (key.isValid()) {
-                                            write(keyChannel, consumer);
+                                            write(channelState);
                                         }
                                     } catch (Exception ex) {
                                         Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Internal write exception", ex);
@@ -1132,57 +1650,105 @@ public final class NetService extends Service<NetServiceConsumer> {
         }
     }
 
+    /**
+     * Creates the callback that the ssl peer uses to read the channel again when there are data to unwrap that
+     * doesn't depend on new bytes into the socket, for example when a delegated task of the handshake ends.
+     * @param channelState State of the channel.
+     * @return Callback instance.
+     */
+    private Runnable createSslReadyCallback(ChannelState channelState) {
+        return () -> {
+            SelectorRunnable selectorRunnable = channelState.getSelectorRunnable();
+            SelectionKey key = channelState.getKey();
+            if (selectorRunnable != null && key != null && !channelState.isClosed()) {
+                selectorRunnable.scheduleRead(key);
+            }
+        };
+    }
+
     /**
      * This method finalize the connection process when start a client connection.
      *
-     * @param keyChannel Key associated to the connection channel.
-     * @param client     Net client asociated to the connectable key.
+     * @param channelState State of the connection channel.
      */
-    private void connect(SelectableChannel keyChannel, NetClient client) {
+    private void connect(ChannelState channelState) {
+        NetClient client = (NetClient) channelState.getConsumer();
         if (!isShuttingDown()) {
             try {
-                SocketChannel channel = (SocketChannel) keyChannel;
+                SocketChannel channel = (SocketChannel) channelState.getChannel();
                 channel.configureBlocking(false);
                 channel.socket().setKeepAlive(true);
                 channel.socket().setSoTimeout(100);
                 channel.finishConnect();
+                //The connection is finished, then the key only keeps the read interest.
+                changeInterestOps(channelState.getKey(), 0, SelectionKey.OP_CONNECT);
                 setSocketOptions(channel, client);
 
                 NetSession session = getSession(client,
-                        createPackage(channel, null, NetPackage.ActionEvent.CONNECT),
-                        (SocketChannel) keyChannel);
+                        createPackage(channelState, null, NetPackage.ActionEvent.CONNECT), channel);
                 if(session != null) {
-                    selectors.get(client).addSession(session);
-                    sessionsByChannel.put(channel, session);
-                    channels.put(session, channel);
-                    outputQueue.put(channel, new LinkedBlockingQueue<>());
-                    lastWrite.put(channel, System.currentTimeMillis());
+                    channelState.getSelectorRunnable().addSession(session);
+                    bindSession(channelState, session);
 
                     if (client.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
-                        client.getSslPeer().init(channel);
+                        //The handshake of the client is driven by the ssl peer, then the channel is not read
+                        //by the selector until the handshake ends. The handshake waits for the server, then it's
+                        //executed out of the selector thread that is shared with other clients.
+                        changeInterestOps(channelState.getKey(), 0, SelectionKey.OP_READ);
+                        fork(() -> handshake(channelState));
+                    } else {
+                        NetPackage connectionPackage = createPackage(channelState, new byte[]{}, NetPackage.ActionEvent.CONNECT);
+                        onAction(connectionPackage, client);
                     }
-
-                    NetPackage connectionPackage = createPackage(keyChannel, new byte[]{}, NetPackage.ActionEvent.CONNECT);
-                    onAction(connectionPackage, client);
                 } else {
                     Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Rejected connection, session null");
                     channel.close();
                     client.onConnectFail();
                     SelectorRunnable selectorRunnable = selectors.remove(client);
-                    selectorRunnable.shutdown(ShutdownStage.START);
-                    selectorRunnable.shutdown(ShutdownStage.END);
+                    if(selectorRunnable != null) {
+                        selectorRunnable.shutdown(ShutdownStage.START);
+                        selectorRunnable.shutdown(ShutdownStage.END);
+                    }
                 }
             } catch (Exception ex) {
                 Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG),
                         "Error creating new client connection, %s:%d", ex, client.getHost(), client.getPort());
+                try {
+                    channelState.getChannel().close();
+                } catch (IOException e) {
+                }
                 client.onConnectFail();
                 SelectorRunnable selectorRunnable = selectors.remove(client);
-                selectorRunnable.shutdown(ShutdownStage.START);
-                selectorRunnable.shutdown(ShutdownStage.END);
+                if(selectorRunnable != null) {
+                    selectorRunnable.shutdown(ShutdownStage.START);
+                    selectorRunnable.shutdown(ShutdownStage.END);
+                }
             }
         }
     }
 
+    /**
+     * Executes the ssl handshake of a client channel and notifies the connection to the client when the handshake
+     * ends, if the handshake fails then the channel is destroyed.
+     * @param channelState State of the connection channel.
+     */
+    private void handshake(ChannelState channelState) {
+        NetClient client = (NetClient) channelState.getConsumer();
+        try {
+            client.getSslPeer().init((SocketChannel) channelState.getChannel(), createSslReadyCallback(channelState));
+        } catch (Exception ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG),
+                    "Error creating new client connection, %s:%d", ex, client.getHost(), client.getPort());
+            client.onConnectFail();
+            destroyChannel(channelState);
+            return;
+        }
+        changeInterestOps(channelState.getKey(), SelectionKey.OP_READ, 0);
+        channelState.getSelectorRunnable().wakeup();
+        NetPackage connectionPackage = createPackage(channelState, new byte[]{}, NetPackage.ActionEvent.CONNECT);
+        onAction(connectionPackage, client);
+    }
+
     /**
      * This internal method is called for the main thread when the selector accept
      * an acceptable key to create a new socket with a remote host.
@@ -1200,29 +1766,33 @@ public final class NetService extends Service<NetServiceConsumer> {
                 socketChannel.configureBlocking(false);
                 setSocketOptions(socketChannel, server);
 
+                ChannelState channelState = new ChannelState(server, socketChannel);
                 NetSession session = getSession(server,
-                        createPackage(socketChannel, null, NetPackage.ActionEvent.CONNECT),
+                        createPackage(channelState, null, NetPackage.ActionEvent.CONNECT),
                         socketChannel);
                 if(session != null) {
-                    if (channels.containsKey(session)) {
-                        updateChannel((SocketChannel) channels.remove(session), socketChannel);
+                    //The accepted channel is assigned to the worker with less sessions.
+                    SelectorRunnable worker = getLeastLoadedWorker(server);
+                    worker.addSession(session);
+                    channelState.setSelectorRunnable(worker);
+
+                    ChannelState previousChannelState = channels.get(session);
+                    if (previousChannelState != null) {
+                        updateChannel(previousChannelState, channelState);
                     } else {
-                        sessionsByChannel.put(socketChannel, session);
-                        outputQueue.put(socketChannel, new LinkedBlockingQueue<>());
-                        lastWrite.put(socketChannel, System.currentTimeMillis());
-                        channels.put(session, socketChannel);
-                        selectors.get(server).addSession(session);
+                        bindSession(channelState, session);
                     }
 
                     if (server.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
-                        server.getSslPeer().init(socketChannel);
+                        server.getSslPeer().init(socketChannel, createSslReadyCallback(channelState));
                     }
 
                     //A new readable key is created associated to the channel.
-                    socketChannel.register(selectors.get(server).getSelector(), SelectionKey.OP_READ, server);
+                    worker.registerChannel(socketChannel, SelectionKey.OP_READ, channelState);
 
                     if (isCreationTimeoutAvailable() && server.isCreationTimeoutAvailable()) {
-                        getTimer().schedule(new ConnectionTimeout(socketChannel), getCreationTimeout());
+                        channelState.setCreationTimeout(getTimingWheel().schedule(
+                                new ConnectionTimeout(channelState), getCreationTimeout()));
                     }
                 } else {
                     Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Rejected connection, session null");
@@ -1238,9 +1808,12 @@ public final class NetService extends Service<NetServiceConsumer> {
      * This method is called from the main thread in order to read data
      * from a particular key.
      *
-     * @param keyChannel Readable key from selector.
+     * @param channelState State of the readable channel.
      */
-    private void read(SelectableChannel keyChannel, NetServiceConsumer consumer) {
+    private void read(ChannelState channelState) {
+        SelectableChannel keyChannel = channelState.getChannel();
+        NetServiceConsumer consumer = channelState.getConsumer();
+        channelState.setLastRead(System.currentTimeMillis());
         if (!isShuttingDown()) {
             if (keyChannel instanceof SocketChannel) {
                 SocketChannel channel = (SocketChannel) keyChannel;
@@ -1248,12 +1821,14 @@ public final class NetService extends Service<NetServiceConsumer> {
                 //Ger the instance of the current IO thread.
                 NetIOThread ioThread = (NetIOThread) Thread.currentThread();
 
+                //The data is read into a pooled buffer that is released when the package is consumed.
+                PooledByteBuffer pooledBuffer = ByteBufferPool.getInstance().acquire(ioThread.getInputBufferSize());
+                NetPackage netPackage = null;
                 try  {
                     int readSize;
                     int totalSize = 0;
-                    ByteBuffer inputBuffer = ioThread.getInputBuffer();
-                    inputBuffer.clear();
-                    inputBuffer.rewind();
+                    ByteBuffer inputBuffer = pooledBuffer.getBuffer();
+                    inputBuffer.limit(ioThread.getInputBufferSize());
                     try {
                         if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
                             totalSize = consumer.getSslPeer().read(channel, inputBuffer);
@@ -1265,19 +1840,17 @@ public final class NetService extends Service<NetServiceConsumer> {
                             }
                         }
                     } catch (IOException ex) {
-                        destroyChannel(channel);
+                        destroyChannel(channelState);
                     }
 
                     if (totalSize == -1) {
-                        destroyChannel(channel);
+                        destroyChannel(channelState);
                     } else if (totalSize > 0) {
                         Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Total size read: %d", totalSize);
-                        byte[] data = new byte[inputBuffer.position()];
-                        inputBuffer.rewind();
-                        inputBuffer.get(data);
-                        NetPackage netPackage = createPackage(channel, data, NetPackage.ActionEvent.READ);
+                        inputBuffer.flip();
+                        netPackage = createPackage(channelState, null, pooledBuffer, NetPackage.ActionEvent.READ);
 
-                        NetSession session = sessionsByChannel.get(channel);
+                        NetSession session = channelState.getSession();
                         //Here the session is linked with the current thread
                         ((ServiceThread) Thread.currentThread()).setSession(session);
 
@@ -1286,7 +1859,13 @@ public final class NetService extends Service<NetServiceConsumer> {
                     }
                 } catch (Exception ex) {
                     Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Net service read exception, on TCP context", ex);
-                    destroyChannel(channel);
+                    destroyChannel(channelState);
+                } finally {
+                    if(netPackage != null) {
+                        netPackage.release();
+                    } else {
+                        pooledBuffer.release();
+                    }
                 }
             } else if (keyChannel instanceof DatagramChannel) {
                 DatagramChannel channel = (DatagramChannel) keyChannel;
@@ -1294,71 +1873,189 @@ public final class NetService extends Service<NetServiceConsumer> {
                 //Ger the instance of the current IO thread.
                 NetIOThread ioThread = (NetIOThread) Thread.currentThread();
 
+                //All the datagrams available are received using the same buffer, up to the size of the batch.
+                PooledByteBuffer receiveBuffer = ByteBufferPool.getInstance().acquire(ioThread.getInputBufferSize());
                 try {
-                    ByteArrayOutputStream readData = new ByteArrayOutputStream();
-                    ioThread.getInputBuffer().clear();
-                    ioThread.getInputBuffer().rewind();
-
-                    InetSocketAddress address = (InetSocketAddress) channel.receive(ioThread.getInputBuffer());
-                    readData.write(ioThread.getInputBuffer().array(), 0, ioThread.getInputBuffer().position());
-
-                    if (address != null) {
-                        NetPackage netPackage = createPackage(channel, readData.toByteArray(), NetPackage.ActionEvent.READ);
-                        NetSession session;
-                        session = sessionsByAddress.get(address);
-
-                        if(session == null && consumer instanceof NetServer) {
-                            session = ((NetServer) consumer).createSession(netPackage);
-                            sessionsByAddress.put(address, session);
-                        }
-
-                        if (!addresses.containsKey(session)) {
-                            addresses.put(session, address);
+                    ByteBuffer inputBuffer = receiveBuffer.getBuffer();
+                    for (int i = 0; i < udpReceiveBatchSize; i++) {
+                        inputBuffer.clear();
+                        InetSocketAddress address = (InetSocketAddress) channel.receive(inputBuffer);
+                        if (address == null) {
+                            break;
                         }
+                        inputBuffer.flip();
+                        readDatagram(channelState, address, inputBuffer);
+                    }
+                } catch (Exception ex) {
+                    Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Net service read exception, on UDP context", ex);
+                } finally {
+                    receiveBuffer.release();
+                }
+            }
+        }
+    }
 
-                        if (!channels.containsKey(session)) {
-                            channels.put(session, channel);
-                        }
+    /**
+     * Process a datagram received over the udp channel. The session is looked up into the udp session table
+     * using the remote address, if the address is unknown and the consumer is a server then a new session is
+     * created. The datagram is copied into a pooled buffer with the size of the datagram.
+     * @param channelState State of the udp channel.
+     * @param address Remote address of the datagram.
+     * @param datagram Buffer with the datagram.
+     */
+    private void readDatagram(ChannelState channelState, InetSocketAddress address, ByteBuffer datagram) {
+        NetServiceConsumer consumer = channelState.getConsumer();
+        PooledByteBuffer pooledBuffer = ByteBufferPool.getInstance().acquire(Math.max(datagram.remaining(), 1));
+        pooledBuffer.getBuffer().put(datagram).flip();
+        NetPackage netPackage = createDatagramPackage(channelState, address, pooledBuffer);
+        try {
+            UdpSessionTable.Entry entry = udpSessions.get(address);
+            if (entry == null && consumer instanceof NetServer) {
+                NetSession session = ((NetServer) consumer).createSession(netPackage);
+                if (session != null) {
+                    entry = udpSessions.putIfAbsent(address, session, false);
+                    entry.getSession().setDatagramAddress(address);
+                }
+            }
 
-                        //Here the session is linked with the current thread
-                        ((ServiceThread) Thread.currentThread()).setSession(session);
+            if (entry != null) {
+                NetSession session = entry.getSession();
+                ChannelState sessionChannelState = session.getChannelState();
+                if (sessionChannelState == null || sessionChannelState.isClosed()) {
+                    bindSession(channelState, session);
+                }
 
-                        netPackage.setSession(session);
+                //Here the session is linked with the current thread
+                ((ServiceThread) Thread.currentThread()).setSession(session);
 
-                        if (!outputQueue.containsKey(channel)) {
-                            outputQueue.put(channel, new LinkedBlockingQueue<>());
-                            lastWrite.put(channel, System.currentTimeMillis());
-                        }
+                netPackage.setSession(session);
 
-                        if (readData.size() > 0) {
-                            onAction(netPackage, consumer);
-                        }
-                    }
-                } catch (Exception ex) {
-                    Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Net service read exception, on UDP context", ex);
+                if (netPackage.getPayloadSize() > 0) {
+                    onAction(netPackage, consumer);
+                }
+
+                if (udpConnectedPeersEnabled && channelState.getChannel() == udpServer &&
+                        entry.getPeerChannelState() == null &&
+                        entry.hit(System.currentTimeMillis(), udpConnectedPeerThreshold)) {
+                    connectPeer(channelState, entry);
                 }
+            } else {
+                Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Datagram discarded, unknown address: %s", address);
             }
+        } finally {
+            netPackage.release();
+        }
+    }
+
+    /**
+     * Creates a datagram channel connected only with the hot peer and bound to the same local address of the
+     * server channel, then the kernel delivers the datagrams of the peer directly to this channel and
+     * the session table is not used to read the datagrams of the peer.
+     * @param serverChannelState State of the udp server channel.
+     * @param entry Entry of the peer.
+     */
+    private void connectPeer(ChannelState serverChannelState, UdpSessionTable.Entry entry) {
+        NetServiceConsumer consumer = serverChannelState.getConsumer();
+        InetSocketAddress address = (InetSocketAddress) entry.getAddress();
+        DatagramChannel channel = null;
+        try {
+            channel = DatagramChannel.open();
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(((DatagramChannel) serverChannelState.getChannel()).getLocalAddress());
+            channel.connect(address);
+            channel.configureBlocking(false);
+
+            ChannelState channelState = new ChannelState(consumer, channel);
+            channelState.setSession(entry.getSession());
+            channelState.setAddress("", address.getAddress().getHostAddress(), address.getPort(),
+                    serverChannelState.getLocalPort());
+            SelectorRunnable worker = getLeastLoadedWorker(consumer);
+            channelState.setSelectorRunnable(worker);
+            entry.setPeerChannelState(channelState);
+            bindSession(channelState, entry.getSession());
+            worker.registerChannel(channel, SelectionKey.OP_READ, channelState);
+            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Udp peer connected: %s", address);
+        } catch (Exception ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to connect the udp peer %s", ex, address);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the datagram channel connected with a peer, the next datagrams of the peer are received by the
+     * server channel.
+     * @param channelState State of the connected channel.
+     */
+    private void closePeerChannel(ChannelState channelState) {
+        channelState.close();
+        NetSession session = channelState.getSession();
+        if (session != null) {
+            channels.remove(session, channelState);
+            if (session.getChannelState() == channelState) {
+                session.setChannelState(null);
+            }
+        }
+        try {
+            SelectionKey key = channelState.getKey();
+            if (key != null) {
+                key.cancel();
+            }
+            channelState.getChannel().close();
+        } catch (IOException ex) {
+            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Fail to close udp peer channel", ex);
+        }
+    }
+
+    /**
+     * This method is called when an entry is expired or evicted from the udp session table.
+     * @param entry Entry removed.
+     */
+    private void onUdpSessionRemoved(UdpSessionTable.Entry entry) {
+        NetSession session = entry.getSession();
+        ChannelState peerChannelState = entry.getPeerChannelState();
+        if (peerChannelState != null) {
+            closePeerChannel(peerChannelState);
+        }
+        ChannelState channelState = session.getChannelState();
+        if (channelState != null) {
+            channels.remove(session, channelState);
+            session.setChannelState(null);
         }
     }
 
     /**
      * This method take the output queue associated to the consumer and write over the
      * session channel all the packages.
+     * If the socket buffer is full then the rest of the package is kept as a pending write and
+     * the channel is registered with the write interest in order to continue when the channel is writable.
      * If one of the packages is a disconnection package then the channel is closed and
      * the rest of the packages are discarded.
      *
-     * @param channel  Session channel.
-     * @param consumer Net service consumer.
+     * @param channelState State of the session channel.
      */
-    private void write(SelectableChannel channel, NetServiceConsumer consumer) {
+    private void write(ChannelState channelState) {
+        SelectableChannel channel = channelState.getChannel();
+        NetServiceConsumer consumer = channelState.getConsumer();
         NetIOThread ioThread = (NetIOThread) Thread.currentThread();
         try {
-            Queue<NetPackage> queue = outputQueue.get(channel);
+            Queue<NetPackage> queue = channelState.getOutputQueue();
 
-            if (queue != null) {
-                lastWrite.put(channel, System.currentTimeMillis());
+            if (!channelState.isClosed()) {
+                channelState.setLastWrite(System.currentTimeMillis());
                 boolean stop = false;
 
+                //The package partially written must be finished before to continue with the queue.
+                PendingWrite pendingWrite = channelState.getPendingWrite();
+                channelState.setPendingWrite(null);
+                if (pendingWrite != null) {
+                    stop = !(pendingWrite.isFileRegion() ? transfer(channelState, pendingWrite) : flush(channelState, pendingWrite));
+                }
+
                 while (!queue.isEmpty() && !stop) {
                     NetPackage netPackage = queue.poll();
                     if (netPackage == null) {
@@ -1369,11 +2066,29 @@ public final class NetService extends Service<NetServiceConsumer> {
 
                     switch (netPackage.getActionEvent()) {
                         case WRITE: {
+                            if (netPackage instanceof FileRegionNetPackage) {
+                                stop = !transfer(channelState, new PendingWrite((FileRegionNetPackage) netPackage));
+                                break;
+                            }
+
+                            if (channel instanceof SocketChannel) {
+                                //All the consecutive write packages of the queue are written with only one operation.
+                                List<NetPackage> packages = new ArrayList<>();
+                                packages.add(netPackage);
+                                NetPackage nextPackage = queue.peek();
+                                while (nextPackage != null && packages.size() < gatheringWriteMaxPackages &&
+                                        nextPackage.getActionEvent().equals(NetPackage.ActionEvent.WRITE) &&
+                                        !(nextPackage instanceof FileRegionNetPackage)) {
+                                    packages.add(queue.poll());
+                                    nextPackage = queue.peek();
+                                }
+                                stop = !flush(channelState, new PendingWrite(packages));
+                                break;
+                            }
+
                             try {
                                 byte[] byteData = netPackage.getPayload();
-                                if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
-                                    consumer.getSslPeer().write((SocketChannel) channel, ByteBuffer.wrap(byteData));
-                                } else {
+                                if (channel instanceof DatagramChannel) {
                                     if(byteData != null){
                                         if (byteData.length == 0) {
                                             Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Empty write data");
@@ -1386,16 +2101,10 @@ public final class NetService extends Service<NetServiceConsumer> {
                                             ioThread.getOutputBuffer().put(byteData, begin, length);
                                             ioThread.getOutputBuffer().rewind();
 
-                                            if (channel instanceof SocketChannel) {
-                                                int writtenData = 0;
-                                                while (writtenData < length) {
-                                                    writtenData += ((SocketChannel) channel).write(ioThread.getOutputBuffer());
-                                                }
-                                            } else if (channel instanceof DatagramChannel) {
-                                                SocketAddress address = addresses.get(netPackage.getSession());
-                                                if (sessionsByAddress.get(address).equals(netPackage.getSession())) {
-                                                    ((DatagramChannel) channel).send(ioThread.getOutputBuffer(), address);
-                                                }
+                                            SocketAddress address = netPackage.getSession().getDatagramAddress();
+                                            UdpSessionTable.Entry entry = address == null ? null : udpSessions.get(address);
+                                            if (entry != null && entry.getSession() == netPackage.getSession()) {
+                                                ((DatagramChannel) channel).send(ioThread.getOutputBuffer(), address);
                                             }
 
                                             ioThread.getOutputBuffer().rewind();
@@ -1412,41 +2121,42 @@ public final class NetService extends Service<NetServiceConsumer> {
                                 netPackage.setPackageStatus(NetPackage.PackageStatus.IO_ERROR);
                                 throw ex;
                             } finally {
+                                removePendingBytes(channelState, netPackage);
                                 onAction(netPackage, consumer);
                             }
 
-                            try {
-                                //Change the key operation to finish write loop
-                                channel.keyFor(selectors.get(consumer).getSelector()).interestOps(SelectionKey.OP_READ);
-                            } catch (Exception ex) {
-                                Log.e(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Write error", ex);
-                            }
-
                             break;
                         }
                         case DISCONNECT: {
                             if (channel instanceof SocketChannel) {
-                                destroyChannel((SocketChannel) channel);
+                                destroyChannel(channelState);
+                            } else if (channel instanceof DatagramChannel && consumer instanceof NetServer) {
+                                //The udp server sessions are removed from the table, if the session has a
+                                //connected channel then the channel is closed.
+                                SocketAddress address = session.getDatagramAddress();
+                                UdpSessionTable.Entry entry = address == null ? null : udpSessions.get(address);
+                                if (entry != null && entry.getSession() == session && udpSessions.remove(entry)) {
+                                    onUdpSessionRemoved(entry);
+                                }
+                                if (channel != udpServer) {
+                                    closePeerChannel(channelState);
+                                }
+                                if (((NetServer) consumer).isDisconnectAndRemove()) {
+                                    destroySession(session);
+                                }
                             } else if (channel instanceof DatagramChannel && !channel.equals(udpServer)) {
-                                outputQueue.remove(channel);
-                                lastWrite.remove(channel);
+                                channelState.close();
                                 channels.remove(netPackage.getSession());
-                                if (netPackage.getSession().getConsumer() instanceof NetServer) {
-                                    NetServer server = (NetServer) netPackage.getSession().getConsumer();
-                                    if (server.isDisconnectAndRemove()) {
-                                        destroySession(session);
-                                    }
-                                }
                             }
                             onAction(netPackage, consumer);
-                            stop = true;
+                            //The udp server channel is shared, then the packages of the other sessions must be written.
+                            stop = channel != udpServer;
                             break;
                         }
                     }
                 }
             }
         } catch (Exception ex) {
-            ex.printStackTrace();
             Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Write global thread exception", ex);
         } finally {
             ioThread.getOutputBuffer().clear();
@@ -1454,6 +2164,144 @@ public final class NetService extends Service<NetServiceConsumer> {
         }
     }
 
+    /**
+     * Writes over the channel all the bytes that the socket buffer accepts without blocking, all the buffers
+     * of the pending write are written using only one gathering operation. If the channel is ssl then each buffer
+     * is wrapped by the ssl peer, that keeps the records not accepted by the socket. The consumer is notified for each
+     * package completely written, if some package remains then it is kept as pending write and the write interest
+     * is enabled for the channel.
+     * @param channelState State of the socket channel.
+     * @param pendingWrite Packages and cursor of the remaining bytes.
+     * @return Returns true if all the packages were completely written and false in the otherwise.
+     * @throws IOException IO Exception.
+     */
+    private boolean flush(ChannelState channelState, PendingWrite pendingWrite) throws IOException {
+        boolean result;
+        SocketChannel channel = (SocketChannel) channelState.getChannel();
+        NetServiceConsumer consumer = channelState.getConsumer();
+        NetPackage[] packages = pendingWrite.getPackages();
+        ByteBuffer[] buffers = pendingWrite.getBuffers();
+        int offset = pendingWrite.getOffset();
+        int written = offset;
+        try {
+            if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
+                while (written < buffers.length && consumer.getSslPeer().write(channel, buffers[written])) {
+                    written++;
+                }
+            } else {
+                channel.write(buffers, offset, buffers.length - offset);
+                while (written < buffers.length && !buffers[written].hasRemaining()) {
+                    written++;
+                }
+            }
+            writesCounter.incrementAndGet();
+            packagesPerWrite.add(buffers.length - offset);
+        } catch (IOException ex) {
+            for (int i = offset; i < packages.length; i++) {
+                packages[i].setPackageStatus(NetPackage.PackageStatus.IO_ERROR);
+                removePendingBytes(channelState, packages[i]);
+                onAction(packages[i], consumer);
+            }
+            throw ex;
+        }
+
+        while (offset < written) {
+            packages[offset].setPackageStatus(NetPackage.PackageStatus.OK);
+            removePendingBytes(channelState, packages[offset]);
+            onAction(packages[offset], consumer);
+            offset++;
+        }
+        pendingWrite.setOffset(offset);
+
+        if (offset < buffers.length) {
+            channelState.setPendingWrite(pendingWrite);
+            enableWriteInterest(channelState);
+            result = false;
+        } else {
+            result = true;
+        }
+        return result;
+    }
+
+    /**
+     * Writes the region of the file of the pending write. If the channel is not ssl then the bytes are
+     * transferred from the file channel to the socket channel until the socket buffer is full, in this case
+     * the region is kept as pending write and the write interest is enabled for the channel. If the channel
+     * is ssl then only one chunk of the region is read into a pooled buffer and wrapped by the ssl peer, the
+     * region is kept as pending write until the next writable event.
+     * The consumer is notified and the package is released when the region is completely written or when
+     * the operation fails.
+     * @param channelState State of the socket channel.
+     * @param pendingWrite Pending write with the region of the file.
+     * @return Returns true if the region was completely written and false in the otherwise.
+     * @throws IOException IO Exception.
+     */
+    private boolean transfer(ChannelState channelState, PendingWrite pendingWrite) throws IOException {
+        boolean result;
+        SocketChannel channel = (SocketChannel) channelState.getChannel();
+        NetServiceConsumer consumer = channelState.getConsumer();
+        FileRegionNetPackage region = (FileRegionNetPackage) pendingWrite.getPackages()[0];
+        FileChannel fileChannel = region.getFileChannel();
+        try {
+            if (consumer.getProtocol().equals(TransportLayerProtocol.TCP_SSL)) {
+                //Only one chunk is written for each writable event, the region remains pending between the chunks
+                //in order to not stall the other channels of the writer.
+                PooledByteBuffer chunk = pendingWrite.getChunk();
+                if (chunk == null) {
+                    chunk = ByteBufferPool.getInstance().acquire(
+                            ((NetIOThread) Thread.currentThread()).getOutputBufferSize());
+                    pendingWrite.setChunk(chunk);
+                    ByteBuffer buffer = chunk.getBuffer();
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), region.getCount() - region.getTransferred()));
+                    int readSize = fileChannel.read(buffer, region.getPosition() + region.getTransferred());
+                    if (readSize < 0) {
+                        throw new EOFException("The file region exceeds the end of the file");
+                    }
+                    buffer.flip();
+                }
+                if (consumer.getSslPeer().write(channel, chunk.getBuffer())) {
+                    region.addTransferred(chunk.getBuffer().limit());
+                    pendingWrite.releaseChunk();
+                }
+                writesCounter.incrementAndGet();
+                packagesPerWrite.add(1);
+            } else {
+                long transferred;
+                do {
+                    transferred = fileChannel.transferTo(region.getPosition() + region.getTransferred(),
+                            region.getCount() - region.getTransferred(), channel);
+                    region.addTransferred(transferred);
+                } while (transferred > 0 && !region.isComplete());
+                writesCounter.incrementAndGet();
+                packagesPerWrite.add(1);
+                if (!region.isComplete() && region.getPosition() + region.getTransferred() >= fileChannel.size()) {
+                    throw new EOFException("The file region exceeds the end of the file");
+                }
+            }
+        } catch (IOException ex) {
+            pendingWrite.releaseChunk();
+            region.setPackageStatus(NetPackage.PackageStatus.IO_ERROR);
+            removePendingBytes(channelState, region);
+            region.release();
+            onAction(region, consumer);
+            throw ex;
+        }
+
+        if (region.isComplete()) {
+            region.setPackageStatus(NetPackage.PackageStatus.OK);
+            removePendingBytes(channelState, region);
+            region.release();
+            onAction(region, consumer);
+            result = true;
+        } else {
+            channelState.setPendingWrite(pendingWrite);
+            enableWriteInterest(channelState);
+            result = false;
+        }
+        return result;
+    }
+
     /**
      * This method put all the action events in a queue by session and then start a
      * new thread to notify all the consumers
@@ -1472,14 +2320,15 @@ public final class NetService extends Service<NetServiceConsumer> {
                         consumer.onDisconnect(netPackage);
                         break;
                     case READ:
-                        if(netPackage.getSession() != null && netPackage.getPayload() != null) {
-                            netPackage.getSession().addIngressPackage(netPackage.getPayload().length);
+                        if(netPackage.getSession() != null) {
+                            netPackage.getSession().addIngressPackage(netPackage.getPayloadSize());
                         }
                         consumer.onRead(netPackage);
                         break;
                     case WRITE:
-                        if(netPackage.getSession() != null && netPackage.getPayload() != null) {
-                            netPackage.getSession().addEgressPackage(netPackage.getPayload().length);
+                        if(netPackage.getSession() != null) {
+                            netPackage.getSession().addEgressPackage(netPackage instanceof FileRegionNetPackage ?
+                                    ((FileRegionNetPackage) netPackage).getCount() : netPackage.getPayloadSize());
                         }
                         consumer.onWrite(netPackage);
                         break;
@@ -1559,14 +2408,591 @@ public final class NetService extends Service<NetServiceConsumer> {
     }
 
     /**
-     * Timer task to destroy the channel if has not session assigned.
+     * Packages partially written over a channel and the cursor of the buffers that remain to write.
+     */
+    private static final class PendingWrite {
+
+        private final NetPackage[] packages;
+        private final ByteBuffer[] buffers;
+        private int offset;
+        private PooledByteBuffer chunk;
+
+        public PendingWrite(FileRegionNetPackage region) {
+            this.packages = new NetPackage[]{region};
+            this.buffers = null;
+            this.offset = 0;
+        }
+
+        public PendingWrite(List<NetPackage> packages) {
+            this.packages = packages.toArray(new NetPackage[0]);
+            this.buffers = new ByteBuffer[this.packages.length];
+            for (int i = 0; i < this.packages.length; i++) {
+                byte[] payload = this.packages[i].getPayload();
+                if(payload == null || payload.length == 0) {
+                    Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Empty write data");
+                    payload = new byte[0];
+                }
+                buffers[i] = ByteBuffer.wrap(payload);
+            }
+            this.offset = 0;
+        }
+
+        /**
+         * Returns true if the pending write is a region of a file instead of a set of buffers.
+         * @return File region flag.
+         */
+        public boolean isFileRegion() {
+            return buffers == null;
+        }
+
+        /**
+         * Returns the packages that are being written.
+         * @return Array of packages.
+         */
+        public NetPackage[] getPackages() {
+            return packages;
+        }
+
+        /**
+         * Returns the buffers of the packages, each buffer has the remaining bytes of his package.
+         * @return Array of buffers.
+         */
+        public ByteBuffer[] getBuffers() {
+            return buffers;
+        }
+
+        /**
+         * Returns the index of the first package that was not completely written.
+         * @return Index of the first pending package.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * Set the index of the first package that was not completely written.
+         * @param offset Index of the first pending package.
+         */
+        public void setOffset(int offset) {
+            this.offset = offset;
+        }
+
+        /**
+         * Returns the chunk of the file region read and not written yet, only the ssl channels use chunks.
+         * @return Pooled buffer with the chunk or null if there are not chunk pending.
+         */
+        public PooledByteBuffer getChunk() {
+            return chunk;
+        }
+
+        /**
+         * Set the chunk of the file region read and not written yet.
+         * @param chunk Pooled buffer with the chunk.
+         */
+        public void setChunk(PooledByteBuffer chunk) {
+            this.chunk = chunk;
+        }
+
+        /**
+         * Releases the chunk of the file region if there are one.
+         */
+        public void releaseChunk() {
+            if(chunk != null) {
+                chunk.release();
+                chunk = null;
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes queued over a channel and not written yet. When the amount of bytes exceeds the high
+     * watermark the channel is not writable until the amount of bytes falls under the low watermark.
      */
-    private class ConnectionTimeout extends TimerTask {
+    private static final class WriteWatermark {
+
+        private long pendingBytes;
+        private boolean writable;
+
+        public WriteWatermark() {
+            this.writable = true;
+        }
+
+        /**
+         * Adds bytes to the counter.
+         * @param bytes Number of bytes.
+         * @param highWatermark High watermark value.
+         * @return Returns true if the channel changes to not writable.
+         */
+        public synchronized boolean add(long bytes, long highWatermark) {
+            boolean result = false;
+            pendingBytes += bytes;
+            if(writable && pendingBytes > highWatermark) {
+                writable = false;
+                result = true;
+            }
+            return result;
+        }
+
+        /**
+         * Removes bytes from the counter and wakeup the waiting threads if the channel is writable again.
+         * @param bytes Number of bytes.
+         * @param lowWatermark Low watermark value.
+         * @return Returns true if the channel changes to writable.
+         */
+        public synchronized boolean remove(long bytes, long lowWatermark) {
+            boolean result = false;
+            pendingBytes = Math.max(0, pendingBytes - bytes);
+            if(!writable && pendingBytes <= lowWatermark) {
+                writable = true;
+                result = true;
+                notifyAll();
+            }
+            return result;
+        }
+
+        /**
+         * Marks the channel as writable and wakeup all the waiting threads, this method is called when
+         * the channel is destroyed.
+         */
+        public synchronized void discard() {
+            pendingBytes = 0;
+            writable = true;
+            notifyAll();
+        }
+
+        /**
+         * Returns the writable flag.
+         * @return Writable flag.
+         */
+        public synchronized boolean isWritable() {
+            return writable;
+        }
 
-        private final SocketChannel channel;
+        /**
+         * Returns the number of bytes queued and not written yet.
+         * @return Pending bytes.
+         */
+        public synchronized long getPendingBytes() {
+            return pendingBytes;
+        }
 
-        public ConnectionTimeout(SocketChannel channel) {
+        /**
+         * Waits until the channel is writable or the timeout is reached.
+         * @param timeout Maximum time to wait in milliseconds.
+         * @return Returns the writable flag.
+         * @throws InterruptedException If the thread is interrupted.
+         */
+        public synchronized boolean await(long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            long remaining = timeout;
+            while (!writable && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return writable;
+        }
+    }
+
+    /**
+     * This class contains all the state of a channel registered into the service, the instance is attached
+     * to the selection key of the channel and it is referenced from the session, then the read and write
+     * process doesn't need any global structure to find the information of the channel.
+     */
+    static final class ChannelState {
+
+        private final NetServiceConsumer consumer;
+        private final SelectableChannel channel;
+        private final Queue<NetPackage> outputQueue;
+        private final WriteWatermark writeWatermark;
+        private final AtomicBoolean readScheduled;
+        private final AtomicBoolean writeScheduled;
+        private volatile NetSession session;
+        private volatile SelectorRunnable selectorRunnable;
+        private volatile PendingWrite pendingWrite;
+        private volatile long lastWrite;
+        private volatile long lastRead;
+        private volatile TimingWheel.Timeout creationTimeout;
+        private volatile TimingWheel.Timeout idleTimeout;
+        private volatile boolean closed;
+        private volatile boolean addressResolved;
+        private String remoteHost;
+        private String remoteAddress;
+        private int remotePort;
+        private int localPort;
+
+        private ChannelState(NetServiceConsumer consumer, SelectableChannel channel) {
+            this.consumer = consumer;
             this.channel = channel;
+            this.outputQueue = new LinkedBlockingQueue<>();
+            this.writeWatermark = new WriteWatermark();
+            this.readScheduled = new AtomicBoolean(false);
+            this.writeScheduled = new AtomicBoolean(false);
+            this.lastWrite = System.currentTimeMillis();
+            this.lastRead = lastWrite;
+        }
+
+        /**
+         * Returns the consumer of the channel.
+         * @return Consumer instance.
+         */
+        public NetServiceConsumer getConsumer() {
+            return consumer;
+        }
+
+        /**
+         * Returns the channel instance.
+         * @return Channel instance.
+         */
+        public SelectableChannel getChannel() {
+            return channel;
+        }
+
+        /**
+         * Returns the session associated to the channel, the udp channels doesn't have session
+         * because the same channel is shared by all the sessions of the consumer.
+         * @return Session instance.
+         */
+        public NetSession getSession() {
+            return session;
+        }
+
+        /**
+         * Set the session associated to the channel.
+         * @param session Session instance.
+         */
+        public void setSession(NetSession session) {
+            this.session = session;
+        }
+
+        /**
+         * Returns the selector runnable where the channel is registered.
+         * @return Selector runnable instance.
+         */
+        private SelectorRunnable getSelectorRunnable() {
+            return selectorRunnable;
+        }
+
+        /**
+         * Set the selector runnable where the channel is registered.
+         * @param selectorRunnable Selector runnable instance.
+         */
+        private void setSelectorRunnable(SelectorRunnable selectorRunnable) {
+            this.selectorRunnable = selectorRunnable;
+        }
+
+        /**
+         * Returns the key of the channel into the selector or null if the channel is not registered yet.
+         * @return Selection key.
+         */
+        public SelectionKey getKey() {
+            SelectorRunnable selectorRunnable = this.selectorRunnable;
+            return selectorRunnable == null ? null : channel.keyFor(selectorRunnable.getSelector());
+        }
+
+        /**
+         * Returns the queue of packages to write over the channel.
+         * @return Output queue.
+         */
+        public Queue<NetPackage> getOutputQueue() {
+            return outputQueue;
+        }
+
+        /**
+         * Returns the counter of bytes queued over the channel.
+         * @return Write watermark.
+         */
+        public WriteWatermark getWriteWatermark() {
+            return writeWatermark;
+        }
+
+        /**
+         * Returns the packages partially written over the channel.
+         * @return Pending write or null.
+         */
+        public PendingWrite getPendingWrite() {
+            return pendingWrite;
+        }
+
+        /**
+         * Set the packages partially written over the channel.
+         * @param pendingWrite Pending write.
+         */
+        public void setPendingWrite(PendingWrite pendingWrite) {
+            this.pendingWrite = pendingWrite;
+        }
+
+        /**
+         * Returns the timestamp of the last write operation.
+         * @return Last write timestamp.
+         */
+        public long getLastWrite() {
+            return lastWrite;
+        }
+
+        /**
+         * Set the timestamp of the last write operation.
+         * @param lastWrite Last write timestamp.
+         */
+        public void setLastWrite(long lastWrite) {
+            this.lastWrite = lastWrite;
+        }
+
+        /**
+         * Returns the timestamp of the last read operation.
+         * @return Last read timestamp.
+         */
+        public long getLastRead() {
+            return lastRead;
+        }
+
+        /**
+         * Set the timestamp of the last read operation.
+         * @param lastRead Last read timestamp.
+         */
+        public void setLastRead(long lastRead) {
+            this.lastRead = lastRead;
+        }
+
+        /**
+         * Set the timeout that destroys the channel if it has not session assigned.
+         * @param creationTimeout Creation timeout.
+         */
+        public void setCreationTimeout(TimingWheel.Timeout creationTimeout) {
+            this.creationTimeout = creationTimeout;
+            if(closed) {
+                creationTimeout.cancel();
+            }
+        }
+
+        /**
+         * Returns the timeout that verifies the idle state of the channel.
+         * @return Idle timeout or null if it's not scheduled.
+         */
+        public TimingWheel.Timeout getIdleTimeout() {
+            return idleTimeout;
+        }
+
+        /**
+         * Set the timeout that verifies the idle state of the channel.
+         * @param idleTimeout Idle timeout.
+         */
+        public void setIdleTimeout(TimingWheel.Timeout idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            if(closed && idleTimeout != null) {
+                idleTimeout.cancel();
+            }
+        }
+
+        /**
+         * Set the read scheduled flag.
+         * @param readScheduled Read scheduled value.
+         * @return Returns true if the value of the flag changed.
+         */
+        public boolean setReadScheduled(boolean readScheduled) {
+            return this.readScheduled.compareAndSet(!readScheduled, readScheduled);
+        }
+
+        /**
+         * Set the write scheduled flag.
+         * @param writeScheduled Write scheduled value.
+         * @return Returns true if the value of the flag changed.
+         */
+        public boolean setWriteScheduled(boolean writeScheduled) {
+            return this.writeScheduled.compareAndSet(!writeScheduled, writeScheduled);
+        }
+
+        /**
+         * Returns true if the channel is into the writable keys queue.
+         * @return Write scheduled flag.
+         */
+        public boolean isWriteScheduled() {
+            return writeScheduled.get();
+        }
+
+        /**
+         * Returns true if the addresses of the channel were resolved.
+         * @return Address resolved flag.
+         */
+        public boolean isAddressResolved() {
+            return addressResolved;
+        }
+
+        /**
+         * Stores the addresses of the channel.
+         * @param remoteHost Remote host name.
+         * @param remoteAddress Remote address.
+         * @param remotePort Remote port.
+         * @param localPort Local port.
+         */
+        public void setAddress(String remoteHost, String remoteAddress, int remotePort, int localPort) {
+            this.remoteHost = remoteHost;
+            this.remoteAddress = remoteAddress;
+            this.remotePort = remotePort;
+            this.localPort = localPort;
+            this.addressResolved = true;
+        }
+
+        /**
+         * Returns the remote host name.
+         * @return Remote host name.
+         */
+        public String getRemoteHost() {
+            return remoteHost;
+        }
+
+        /**
+         * Returns the remote address.
+         * @return Remote address.
+         */
+        public String getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        /**
+         * Returns the remote port.
+         * @return Remote port.
+         */
+        public int getRemotePort() {
+            return remotePort;
+        }
+
+        /**
+         * Returns the local port.
+         * @return Local port.
+         */
+        public int getLocalPort() {
+            return localPort;
+        }
+
+        /**
+         * Returns true if the channel was closed.
+         * @return Closed flag.
+         */
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Moves all the packages queued over other channel to this channel.
+         * @param channelState Channel state to take the packages.
+         * @param highWatermark High watermark value.
+         */
+        public void transferOutput(ChannelState channelState, long highWatermark) {
+            long bytes = 0;
+            NetPackage netPackage = channelState.getOutputQueue().poll();
+            while (netPackage != null) {
+                bytes += netPackage.getPayloadSize();
+                outputQueue.add(netPackage);
+                netPackage = channelState.getOutputQueue().poll();
+            }
+            writeWatermark.add(bytes, highWatermark);
+        }
+
+        /**
+         * Marks the channel as closed, discards all the packages queued and notify to the threads that are
+         * waiting for the packages partially written that the connection was closed.
+         * @return Returns true if the channel was closed by this invocation and false if it was closed before.
+         */
+        public synchronized boolean close() {
+            boolean result = !closed;
+            if(result) {
+                closed = true;
+                //The resources of the discarded packages are released, for example the files of the regions.
+                NetPackage queuedPackage = outputQueue.poll();
+                while (queuedPackage != null) {
+                    queuedPackage.release();
+                    queuedPackage = outputQueue.poll();
+                }
+                PendingWrite pendingWrite = this.pendingWrite;
+                this.pendingWrite = null;
+                if(pendingWrite != null) {
+                    pendingWrite.releaseChunk();
+                    NetPackage[] packages = pendingWrite.getPackages();
+                    for (int i = pendingWrite.getOffset(); i < packages.length; i++) {
+                        packages[i].release();
+                        packages[i].setPackageStatus(NetPackage.PackageStatus.CONNECTION_CLOSE);
+                        synchronized (packages[i]) {
+                            packages[i].notifyAll();
+                        }
+                    }
+                }
+                writeWatermark.discard();
+                if(creationTimeout != null) {
+                    creationTimeout.cancel();
+                }
+                if(idleTimeout != null) {
+                    idleTimeout.cancel();
+                }
+            }
+            return result;
+        }
+    }
+
+    public interface NetServiceAgentMBean {
+
+        Double getPackagesPerWrite();
+        Double getWakeupsPerSecond();
+        Long getWrites();
+        Long getWakeups();
+        Integer getSelectors();
+
+    }
+
+    /**
+     * This agent exposes the counters of the write and selection process.
+     */
+    public class NetServiceAgent extends Agent implements NetServiceAgentMBean {
+
+        private static final String NAME = "NetService";
+
+        public NetServiceAgent() {
+            super(NAME, NetService.class.getPackageName());
+        }
+
+        @Override
+        public Double getPackagesPerWrite() {
+            return packagesPerWrite.getCurrentValue();
+        }
+
+        @Override
+        public Double getWakeupsPerSecond() {
+            return wakeupsPerSecond.getCurrentValue();
+        }
+
+        @Override
+        public Long getWrites() {
+            return writesCounter.get();
+        }
+
+        @Override
+        public Long getWakeups() {
+            return wakeupsCounter.get();
+        }
+
+        @Override
+        public Integer getSelectors() {
+            int result = selectors.size();
+            for(List<SelectorRunnable> consumerWorkers : workers.values()) {
+                result += consumerWorkers.size();
+            }
+            synchronized (NetService.this) {
+                if(clientWorkers != null) {
+                    result += clientWorkers.size();
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Timeout task to destroy the channel if has not session assigned.
+     */
+    private class ConnectionTimeout implements Runnable {
+
+        private final ChannelState channelState;
+
+        public ConnectionTimeout(ChannelState channelState) {
+            this.channelState = channelState;
         }
 
         /**
@@ -1575,9 +3001,9 @@ public final class NetService extends Service<NetServiceConsumer> {
         @Override
         public void run() {
             fork(() -> {
-                if (!sessionsByChannel.containsKey(channel)) {
+                if (channelState.getSession() == null) {
                     try {
-                        destroyChannel(channel);
+                        destroyChannel(channelState);
                     } catch (Exception ex) {
                         Log.e("CONNECTION_TIMEOUT_TASK", "Fork fail", ex);
                     }
@@ -1587,6 +3013,43 @@ public final class NetService extends Service<NetServiceConsumer> {
 
     }
 
+    /**
+     * Timeout task that verifies the idle, read idle and pending write timeouts of the consumer. If some
+     * timeout is reached then the channel is destroyed, in the otherwise the task is scheduled again
+     * for the next check.
+     */
+    private class IdleTimeout implements Runnable {
+
+        private final ChannelState channelState;
+
+        public IdleTimeout(ChannelState channelState) {
+            this.channelState = channelState;
+        }
+
+        /**
+         * Destroys the channel or schedules the next check.
+         */
+        @Override
+        public void run() {
+            if(!channelState.isClosed()) {
+                long nextCheck = getIdleTimeoutDelay(channelState, System.currentTimeMillis());
+                if(nextCheck > 0) {
+                    channelState.setIdleTimeout(getTimingWheel().schedule(this, nextCheck));
+                } else {
+                    Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Idle timeout reached: %s",
+                            channelState.getSession());
+                    fork(() -> {
+                        try {
+                            destroyChannel(channelState);
+                        } catch (Exception ex) {
+                            Log.e("CONNECTION_TIMEOUT_TASK", "Fork fail", ex);
+                        }
+                    });
+                }
+            }
+        }
+    }
+
     /**
      * Transport layer protocols.
      */
@@ -11,9 +11,14 @@ import org.hcjf.service.ServiceSession;
 import javax.net.ssl.SSLEngine;
 import java.io.IOException;
 import java.net.SocketOption;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * This consumer provide an interface for the net service.
@@ -28,13 +33,27 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
     private final NetService.TransportLayerProtocol protocol;
     private NetService service;
     private long writeWaitForTimeout;
+    private long writeHighWatermark;
+    private long writeLowWatermark;
+    private long writeBackpressureTimeout;
+    private long idleTimeout;
+    private long readIdleTimeout;
+    private long pendingWriteTimeout;
     private Boolean decoupledIoAction;
-    private Queue<DecoupledAction> actionsQueue;
+    private BlockingQueue<DecoupledAction> actionsQueue;
+    private int actionsQueueResumeSize;
+    private Map<ServiceSession, Queue<DecoupledAction>> overflowActions;
 
     public NetServiceConsumer(Integer port, NetService.TransportLayerProtocol protocol) {
         this.port = port;
         this.protocol = protocol;
         writeWaitForTimeout = SystemProperties.getLong(SystemProperties.Net.WRITE_TIMEOUT);
+        writeHighWatermark = SystemProperties.getLong(SystemProperties.Net.WRITE_HIGH_WATERMARK);
+        writeLowWatermark = SystemProperties.getLong(SystemProperties.Net.WRITE_LOW_WATERMARK);
+        writeBackpressureTimeout = SystemProperties.getLong(SystemProperties.Net.WRITE_BACKPRESSURE_TIMEOUT);
+        idleTimeout = SystemProperties.getLong(SystemProperties.Net.IDLE_TIMEOUT);
+        readIdleTimeout = SystemProperties.getLong(SystemProperties.Net.READ_IDLE_TIMEOUT);
+        pendingWriteTimeout = SystemProperties.getLong(SystemProperties.Net.PENDING_WRITE_TIMEOUT);
         name = String.format(NAME_TEMPLATE, getClass().getName(), protocol.toString(), port);
         decoupledIoAction = false;
     }
@@ -44,7 +63,8 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
     }
 
     /**
-     * This method activate the decoupled io actions.
+     * This method activate the decoupled io actions. When the queue of actions is full the read of the sessions
+     * that are trying to add actions is suspended until the queue is consumed up to the half of his size.
      * @param actionQueueSize Size of the actions queue.
      * @param workersNumber Number of workers to execute the actions.
      */
@@ -60,12 +80,17 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
 
         decoupledIoAction = true;
         actionsQueue = new ArrayBlockingQueue<>(actionQueueSize);
+        actionsQueueResumeSize = actionQueueSize / 2;
+        overflowActions = new LinkedHashMap<>();
         for (int i = 0; i < workersNumber; i++) {
             Service.run(() -> {
                 DecoupledAction decoupledAction;
                 while (!Thread.currentThread().isInterrupted()) {
                     synchronized (actionsQueue) {
                         decoupledAction = actionsQueue.poll();
+                        if(!overflowActions.isEmpty() && actionsQueue.size() <= actionsQueueResumeSize) {
+                            enqueueOverflowActions();
+                        }
                     }
 
                     if(decoupledAction != null) {
@@ -77,7 +102,9 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
                     } else {
                         try {
                             synchronized (actionsQueue) {
-                                actionsQueue.wait();
+                                if(actionsQueue.isEmpty()) {
+                                    actionsQueue.wait();
+                                }
                             }
                         } catch (Exception ex) {
                             break;
@@ -89,13 +116,32 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
     }
 
     /**
-     * Add a new decoupled action into the queue.
+     * Add a new decoupled action into the queue. This method never blocks the current thread, that is usually the
+     * reader of the selector or a worker of the decoupled actions. When the queue is full, or the session already
+     * has actions waiting out of the queue, the action is kept into the overflow of the session and the read of the
+     * session is suspended until the workers move the overflow into the queue.
      * @param decoupledAction Decoupled action instance.
      */
     protected final void addDecoupledAction(DecoupledAction decoupledAction) {
         if(isDecoupledIoAction()) {
             synchronized (actionsQueue) {
-                actionsQueue.add(decoupledAction);
+                ServiceSession session = decoupledAction.getServiceSession();
+                Queue<DecoupledAction> overflow = overflowActions.get(session);
+                if(overflow != null) {
+                    //The order of the actions of the session is kept.
+                    overflow.add(decoupledAction);
+                } else if(!actionsQueue.offer(decoupledAction)) {
+                    overflow = new LinkedList<>();
+                    overflow.add(decoupledAction);
+                    overflowActions.put(session, overflow);
+                    if(session instanceof NetSession) {
+                        try {
+                            service.suspendRead((NetSession) session);
+                        } catch (IOException ex) {
+                            Log.d(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Unable to suspend read", ex);
+                        }
+                    }
+                }
                 actionsQueue.notifyAll();
             }
         } else {
@@ -103,6 +149,33 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
         }
     }
 
+    /**
+     * Moves the overflow actions into the queue while the queue has space, the read of the session is restored
+     * when all its actions are into the queue. This method must be called with the monitor of the queue.
+     */
+    private void enqueueOverflowActions() {
+        Iterator<Map.Entry<ServiceSession, Queue<DecoupledAction>>> iterator = overflowActions.entrySet().iterator();
+        while(iterator.hasNext()) {
+            Map.Entry<ServiceSession, Queue<DecoupledAction>> entry = iterator.next();
+            Queue<DecoupledAction> overflow = entry.getValue();
+            while(!overflow.isEmpty() && actionsQueue.offer(overflow.peek())) {
+                overflow.poll();
+            }
+            if(!overflow.isEmpty()) {
+                break;
+            }
+            iterator.remove();
+            if(entry.getKey() instanceof NetSession) {
+                try {
+                    service.resumeRead((NetSession) entry.getKey());
+                } catch (IOException ex) {
+                    //The session was disconnected while it was suspended.
+                }
+            }
+        }
+        actionsQueue.notifyAll();
+    }
+
     /**
      * This method return a name to identify the consumer.
      * @return Consumer name.
@@ -127,6 +200,105 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
         this.writeWaitForTimeout = writeWaitForTimeout;
     }
 
+    /**
+     * Returns the amount of bytes queued over a session to mark the session as not writable.
+     * @return High watermark value.
+     */
+    public long getWriteHighWatermark() {
+        return writeHighWatermark;
+    }
+
+    /**
+     * Set the amount of bytes queued over a session to mark the session as not writable.
+     * @param writeHighWatermark High watermark value.
+     */
+    public void setWriteHighWatermark(long writeHighWatermark) {
+        this.writeHighWatermark = writeHighWatermark;
+    }
+
+    /**
+     * Returns the amount of bytes queued over a session to mark the session as writable again.
+     * @return Low watermark value.
+     */
+    public long getWriteLowWatermark() {
+        return writeLowWatermark;
+    }
+
+    /**
+     * Set the amount of bytes queued over a session to mark the session as writable again.
+     * @param writeLowWatermark Low watermark value.
+     */
+    public void setWriteLowWatermark(long writeLowWatermark) {
+        this.writeLowWatermark = writeLowWatermark;
+    }
+
+    /**
+     * Returns the maximum time that a write operation waits for a session that is not writable.
+     * @return Backpressure timeout.
+     */
+    public long getWriteBackpressureTimeout() {
+        return writeBackpressureTimeout;
+    }
+
+    /**
+     * Set the maximum time that a write operation waits for a session that is not writable.
+     * @param writeBackpressureTimeout Backpressure timeout.
+     */
+    public void setWriteBackpressureTimeout(long writeBackpressureTimeout) {
+        this.writeBackpressureTimeout = writeBackpressureTimeout;
+    }
+
+    /**
+     * Returns the time that a connection can be without reads nor writes before to be closed,
+     * zero or negative value means that the connections never expire by idle.
+     * @return Idle timeout.
+     */
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Set the time that a connection can be without reads nor writes before to be closed.
+     * @param idleTimeout Idle timeout, zero disables this timeout.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the time that a connection can be without reads before to be closed,
+     * zero or negative value means that this timeout is disabled.
+     * @return Read idle timeout.
+     */
+    public long getReadIdleTimeout() {
+        return readIdleTimeout;
+    }
+
+    /**
+     * Set the time that a connection can be without reads before to be closed.
+     * @param readIdleTimeout Read idle timeout, zero disables this timeout.
+     */
+    public void setReadIdleTimeout(long readIdleTimeout) {
+        this.readIdleTimeout = readIdleTimeout;
+    }
+
+    /**
+     * Returns the time that a connection can have pending bytes to write without progress before to be closed,
+     * zero or negative value means that this timeout is disabled.
+     * @return Pending write timeout.
+     */
+    public long getPendingWriteTimeout() {
+        return pendingWriteTimeout;
+    }
+
+    /**
+     * Set the time that a connection can have pending bytes to write without progress before to be closed.
+     * @param pendingWriteTimeout Pending write timeout, zero disables this timeout.
+     */
+    public void setPendingWriteTimeout(long pendingWriteTimeout) {
+        this.pendingWriteTimeout = pendingWriteTimeout;
+    }
+
     /**
      * This method ser the reference to net service,
      * this method only can be called from the net service
@@ -227,7 +399,8 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
     }
 
     /**
-     * This method writes some data over the session indicated.
+     * This method writes some data over the session indicated. If the session is not writable because the
+     * bytes queued exceed the high watermark, then the operation waits until the session is writable again.
      * @param session Net session.
      * @param payLoad Data to be written.
      * @param waitFor If this parameter is true then the operation generate
@@ -235,33 +408,97 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
      * @throws IOException Exception for io operations
      */
     protected final void write(S session, D payLoad, boolean waitFor) throws IOException {
+        if(!service.awaitWritable(session, getWriteBackpressureTimeout())) {
+            throw new IOException("Write buffer full");
+        }
+
         if(waitFor) {
-            NetPackage netPackage = service.writeData(session, encode(payLoad));
-            synchronized (netPackage) {
-                try {
+            waitFor(service.writeData(session, encode(payLoad)));
+        } else {
+            service.writeData(session, encode(payLoad));
+        }
+    }
+
+    /**
+     * This method writes a region of a file over the session indicated, the bytes of the region are transferred
+     * by the net service without load the file into the heap. The file channel is closed by the net service when
+     * the region is written or when the operation fails.
+     * @param session Net session.
+     * @param fileChannel File channel.
+     * @param position Position of the first byte of the region.
+     * @param count Number of bytes of the region.
+     * @param waitFor If this parameter is true then the operation generate
+     *                a blocking over the communication channel.
+     * @throws IOException Exception for io operations
+     */
+    protected final void writeFile(S session, FileChannel fileChannel, long position, long count, boolean waitFor) throws IOException {
+        if(!service.awaitWritable(session, getWriteBackpressureTimeout())) {
+            fileChannel.close();
+            throw new IOException("Write buffer full");
+        }
+
+        NetPackage netPackage = service.writeFile(session, fileChannel, position, count);
+        if(waitFor) {
+            waitFor(netPackage);
+        }
+    }
+
+    /**
+     * Waits until the package is written and verify the final status of the package.
+     * @param netPackage Package to wait.
+     * @throws IOException If the package was not written successfully.
+     */
+    private void waitFor(NetPackage netPackage) throws IOException {
+        synchronized (netPackage) {
+            try {
+                if(netPackage.getPackageStatus().equals(NetPackage.PackageStatus.WAITING)) {
                     netPackage.wait(getWriteWaitForTimeout());
-                } catch (InterruptedException e) {
-                    Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Write wait for interrupted", e);
                 }
+            } catch (InterruptedException e) {
+                Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Write wait for interrupted", e);
             }
+        }
 
-            switch (netPackage.getPackageStatus()) {
-                case CONNECTION_CLOSE: {
-                    throw new IOException("Connection Close");
-                }
-                case IO_ERROR: {
-                    throw new IOException("IO Error");
-                }
-                case REJECTED_SESSION_LOCK: {
-                    throw new IOException("Session locked");
-                }
-                case UNKNOWN_SESSION: {
-                    throw new IOException("Unknown session");
-                }
+        switch (netPackage.getPackageStatus()) {
+            case CONNECTION_CLOSE: {
+                throw new IOException("Connection Close");
             }
-        } else {
-            NetPackage netPackage = service.writeData(session, encode(payLoad));
+            case IO_ERROR: {
+                throw new IOException("IO Error");
+            }
+            case REJECTED_SESSION_LOCK: {
+                throw new IOException("Session locked");
+            }
+            case UNKNOWN_SESSION: {
+                throw new IOException("Unknown session");
+            }
+        }
+    }
+
+    /**
+     * This method writes some data over the session only if the session is writable, this operation never
+     * blocks the current thread.
+     * @param session Net session.
+     * @param payLoad Data to be written.
+     * @return Returns true if the data was queued and false if the session is not writable.
+     * @throws IOException Exception for io operations
+     */
+    protected final boolean tryWrite(S session, D payLoad) throws IOException {
+        boolean result = service.isWritable(session);
+        if(result) {
+            service.writeData(session, encode(payLoad));
         }
+        return result;
+    }
+
+    /**
+     * Returns true if the bytes queued over the session are under the high watermark.
+     * @param session Net session.
+     * @return Writable flag.
+     * @throws IOException If the session is unknown.
+     */
+    protected final boolean isWritable(S session) throws IOException {
+        return service.isWritable(session);
     }
 
     /**
@@ -359,6 +596,15 @@ public abstract class NetServiceConsumer<S extends NetSession, D extends Object>
      */
     protected void onWrite(S session, NetPackage netPackage){}
 
+    /**
+     * This method is called when the session changes from writable to not writable, because the bytes queued
+     * exceed the high watermark, or when the session is writable again, because the bytes queued fall under
+     * the low watermark.
+     * @param session Net session.
+     * @param writable Writable flag.
+     */
+    protected void onWritabilityChanged(S session, boolean writable) {}
+
     /**
      * This method decode the implementation data.
      * @param payLoad Implementation data.
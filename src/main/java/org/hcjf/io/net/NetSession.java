@@ -2,6 +2,7 @@ package org.hcjf.io.net;
 
 import org.hcjf.service.ServiceSession;
 
+import java.net.SocketAddress;
 import java.util.UUID;
 
 /**
@@ -14,6 +15,8 @@ public abstract class NetSession extends ServiceSession {
     private String remoteHost;
     private int remotePort;
     private boolean checked;
+    private volatile NetService.ChannelState channelState;
+    private volatile SocketAddress datagramAddress;
 
     public NetSession(UUID id, NetServiceConsumer consumer) {
         super(id);
@@ -26,6 +29,8 @@ public abstract class NetSession extends ServiceSession {
         this.remoteHost = netSession.remoteHost;
         this.remotePort = netSession.remotePort;
         this.checked = netSession.checked;
+        this.channelState = netSession.channelState;
+        this.datagramAddress = netSession.datagramAddress;
     }
 
     /**
@@ -52,6 +57,38 @@ public abstract class NetSession extends ServiceSession {
         this.checked = checked;
     }
 
+    /**
+     * Returns the state of the channel associated to the session.
+     * @return Channel state.
+     */
+    NetService.ChannelState getChannelState() {
+        return channelState;
+    }
+
+    /**
+     * Set the state of the channel associated to the session.
+     * @param channelState Channel state.
+     */
+    void setChannelState(NetService.ChannelState channelState) {
+        this.channelState = channelState;
+    }
+
+    /**
+     * Returns the remote address of the udp session.
+     * @return Remote address or null if the session is not an udp session.
+     */
+    SocketAddress getDatagramAddress() {
+        return datagramAddress;
+    }
+
+    /**
+     * Set the remote address of the udp session.
+     * @param datagramAddress Remote address.
+     */
+    void setDatagramAddress(SocketAddress datagramAddress) {
+        this.datagramAddress = datagramAddress;
+    }
+
     /**
      * Returns the remote host of the session.
      * @return Remote host.
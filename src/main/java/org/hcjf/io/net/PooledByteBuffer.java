@@ -0,0 +1,84 @@
+package org.hcjf.io.net;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference counted buffer acquired from the byte buffer pool. The buffer returns to the pool
+ * when the last reference is released.
+ * @author javaito
+ */
+public final class PooledByteBuffer {
+
+    private final ByteBufferPool pool;
+    private final ByteBuffer buffer;
+    private final int sizeClass;
+    private final AtomicInteger references;
+    private final AtomicBoolean released;
+    private final Cleaner.Cleanable cleanable;
+
+    PooledByteBuffer(ByteBufferPool pool, ByteBuffer buffer, int sizeClass) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.sizeClass = sizeClass;
+        this.references = new AtomicInteger(1);
+        this.released = new AtomicBoolean(false);
+        this.cleanable = pool.track(this, released);
+    }
+
+    /**
+     * Returns the pooled buffer instance.
+     * @return Buffer instance.
+     */
+    public ByteBuffer getBuffer() {
+        if(released.get()) {
+            throw new IllegalStateException("Pooled buffer already released");
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns the number of active references.
+     * @return Number of references.
+     */
+    public int getReferenceCount() {
+        return references.get();
+    }
+
+    /**
+     * Adds a new reference to the buffer.
+     * @return Returns the same instance.
+     */
+    public PooledByteBuffer retain() {
+        int current;
+        do {
+            current = references.get();
+            if (current <= 0) {
+                throw new IllegalStateException("Pooled buffer already released");
+            }
+        } while (!references.compareAndSet(current, current + 1));
+        return this;
+    }
+
+    /**
+     * Removes one reference of the buffer, if the counter arrives to zero then the buffer is returned to the pool.
+     * @return Returns true if the buffer was returned to the pool and false in the otherwise.
+     */
+    public boolean release() {
+        boolean result = false;
+        int current = references.decrementAndGet();
+        if(current == 0) {
+            released.set(true);
+            if(cleanable != null) {
+                cleanable.clean();
+            }
+            pool.recycle(buffer, sizeClass);
+            result = true;
+        } else if(current < 0) {
+            throw new IllegalStateException("Pooled buffer already released");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,81 @@
+package org.hcjf.io.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Net package whose payload is a read-only slice of a pooled buffer. The payload is only available
+ * until the package is released, if the payload is required as byte array then it is copied the first time.
+ * @author javaito
+ */
+public class PooledNetPackage extends DefaultNetPackage {
+
+    private final PooledByteBuffer pooledBuffer;
+    private final ByteBuffer payloadBuffer;
+    private byte[] payload;
+    private boolean released;
+
+    /**
+     * The package takes the reference of the pooled buffer, the bytes between the position and limit of
+     * the buffer are the payload of the package.
+     * @param remoteHost Remote host name.
+     * @param remoteAddress Remote address.
+     * @param remotePort Remote port.
+     * @param localPort Local port.
+     * @param pooledBuffer Pooled buffer with the payload.
+     * @param actionEvent Action event.
+     */
+    public PooledNetPackage(String remoteHost, String remoteAddress, int remotePort, int localPort,
+                            PooledByteBuffer pooledBuffer, ActionEvent actionEvent) {
+        super(remoteHost, remoteAddress, remotePort, localPort, null, actionEvent);
+        this.pooledBuffer = pooledBuffer;
+        this.payloadBuffer = pooledBuffer.getBuffer().slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Return the payload of the package, the first invocation copies the bytes of the pooled buffer.
+     * @return Payload of the package.
+     */
+    @Override
+    public synchronized byte[] getPayload() {
+        if(payload == null) {
+            if(released) {
+                throw new IllegalStateException("The payload of the package was released");
+            }
+            payload = new byte[payloadBuffer.remaining()];
+            payloadBuffer.duplicate().get(payload);
+        }
+        return payload;
+    }
+
+    /**
+     * Return a read-only view of the pooled memory, this buffer is valid only until the package is released.
+     * @return Payload buffer.
+     */
+    @Override
+    public synchronized ByteBuffer getPayloadBuffer() {
+        if(released) {
+            throw new IllegalStateException("The payload of the package was released");
+        }
+        return payloadBuffer.duplicate();
+    }
+
+    /**
+     * Return the size of the payload.
+     * @return Size of the payload.
+     */
+    @Override
+    public int getPayloadSize() {
+        return payloadBuffer.remaining();
+    }
+
+    /**
+     * Returns the pooled buffer to the pool.
+     */
+    @Override
+    public synchronized void release() {
+        if(!released) {
+            released = true;
+            pooledBuffer.release();
+        }
+    }
+}
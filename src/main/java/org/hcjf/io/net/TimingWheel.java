@@ -0,0 +1,307 @@
+package org.hcjf.io.net;
+
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hashed timing wheel to schedule a big number of timeouts with a low precision. The wheel is an array of
+ * buckets and each bucket contains a doubly linked list of timeouts, each tick of the wheel expires the
+ * timeouts of the current bucket. The insertion and cancellation are O(1) because the timeouts are
+ * added and removed by the worker thread of the wheel using two concurrent queues.
+ * The tasks of the expired timeouts are executed by the worker thread, then the tasks must be short or
+ * delegate the work to other thread.
+ * @author javaito
+ */
+public final class TimingWheel implements Runnable {
+
+    private static final int MAX_TRANSFERS_BY_TICK = 100000;
+
+    private final long tickDuration;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Queue<Timeout> newTimeouts;
+    private final Queue<Timeout> cancelledTimeouts;
+    private final AtomicLong pendingTimeouts;
+    private final long startTime;
+    private long tick;
+    private volatile boolean stopped;
+
+    /**
+     * Creates the wheel using the tick and size configured into the system properties.
+     */
+    public TimingWheel() {
+        this(SystemProperties.getLong(SystemProperties.Net.TIMING_WHEEL_TICK),
+                SystemProperties.getInteger(SystemProperties.Net.TIMING_WHEEL_SIZE));
+    }
+
+    /**
+     * Creates the wheel.
+     * @param tickDuration Duration of each tick in milliseconds.
+     * @param wheelSize Number of buckets of the wheel, this value is normalized to the next power of two.
+     */
+    public TimingWheel(long tickDuration, int wheelSize) {
+        if(tickDuration <= 0) {
+            throw new IllegalArgumentException("The tick duration must be bigger than zero: " + tickDuration);
+        }
+        if(wheelSize <= 0) {
+            throw new IllegalArgumentException("The wheel size must be bigger than zero: " + wheelSize);
+        }
+
+        int normalizedSize = Integer.highestOneBit(wheelSize);
+        if(normalizedSize < wheelSize) {
+            normalizedSize <<= 1;
+        }
+        this.tickDuration = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+        this.wheel = new Bucket[normalizedSize];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = normalizedSize - 1;
+        this.newTimeouts = new ConcurrentLinkedQueue<>();
+        this.cancelledTimeouts = new ConcurrentLinkedQueue<>();
+        this.pendingTimeouts = new AtomicLong();
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Schedules a task to be executed after the delay.
+     * @param task Task to execute.
+     * @param delay Delay in milliseconds.
+     * @return Timeout instance to cancel the execution of the task.
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        if(task == null) {
+            throw new NullPointerException("Null timeout task");
+        }
+        if(stopped) {
+            throw new IllegalStateException("The timing wheel is stopped");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 0)) - startTime;
+        Timeout timeout = new Timeout(this, task, deadline);
+        pendingTimeouts.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of timeouts scheduled and not expired or cancelled yet.
+     * @return Number of pending timeouts.
+     */
+    public long getPendingTimeouts() {
+        return pendingTimeouts.get();
+    }
+
+    /**
+     * Stops the worker of the wheel, the pending timeouts are discarded.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * This method run the worker of the wheel, each tick moves the new timeouts into the buckets, removes the
+     * cancelled timeouts and expires the timeouts of the current bucket.
+     */
+    @Override
+    public void run() {
+        while (!stopped && !Thread.currentThread().isInterrupted()) {
+            if(waitForNextTick()) {
+                removeCancelledTimeouts();
+                transferNewTimeouts();
+                wheel[(int) (tick & mask)].expire();
+                tick++;
+            }
+        }
+    }
+
+    /**
+     * Sleeps until the start of the next tick.
+     * @return Returns true if the tick was reached and false if the thread was interrupted.
+     */
+    private boolean waitForNextTick() {
+        long deadline = tickDuration * (tick + 1);
+        boolean result = true;
+        long sleepTime = TimeUnit.NANOSECONDS.toMillis(deadline - (System.nanoTime() - startTime) + 999999);
+        while (sleepTime > 0) {
+            try {
+                Thread.sleep(sleepTime);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                result = false;
+                break;
+            }
+            sleepTime = TimeUnit.NANOSECONDS.toMillis(deadline - (System.nanoTime() - startTime) + 999999);
+        }
+        return result;
+    }
+
+    /**
+     * Moves the timeouts scheduled since the last tick into the corresponding buckets.
+     */
+    private void transferNewTimeouts() {
+        Timeout timeout;
+        for (int i = 0; i < MAX_TRANSFERS_BY_TICK && (timeout = newTimeouts.poll()) != null; i++) {
+            if(timeout.getState() == Timeout.CANCELLED) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickDuration;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    /**
+     * Removes the cancelled timeouts from the buckets.
+     */
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if(timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    /**
+     * Scheduled task into the wheel.
+     */
+    public static final class Timeout {
+
+        private static final int INIT = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final TimingWheel timingWheel;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state;
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout previous;
+        private Bucket bucket;
+
+        private Timeout(TimingWheel timingWheel, Runnable task, long deadline) {
+            this.timingWheel = timingWheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(INIT);
+        }
+
+        private int getState() {
+            return state.get();
+        }
+
+        /**
+         * Cancels the timeout, the task is not executed if the cancellation is successful.
+         * @return Returns true if the timeout was cancelled and false if it was expired or cancelled before.
+         */
+        public boolean cancel() {
+            boolean result = state.compareAndSet(INIT, CANCELLED);
+            if(result) {
+                timingWheel.pendingTimeouts.decrementAndGet();
+                timingWheel.cancelledTimeouts.add(this);
+            }
+            return result;
+        }
+
+        /**
+         * Returns true if the timeout was cancelled.
+         * @return Cancelled flag.
+         */
+        public boolean isCancelled() {
+            return getState() == CANCELLED;
+        }
+
+        /**
+         * Returns true if the timeout was expired.
+         * @return Expired flag.
+         */
+        public boolean isExpired() {
+            return getState() == EXPIRED;
+        }
+
+        /**
+         * Executes the task if the timeout was not cancelled.
+         */
+        private void expire() {
+            if(state.compareAndSet(INIT, EXPIRED)) {
+                timingWheel.pendingTimeouts.decrementAndGet();
+                try {
+                    task.run();
+                } catch (Throwable throwable) {
+                    Log.w(SystemProperties.get(SystemProperties.Net.LOG_TAG), "Timeout task error", throwable);
+                }
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts, this structure is only accessed by the worker thread.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(Timeout timeout) {
+            timeout.bucket = this;
+            if(head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if(timeout.previous != null) {
+                timeout.previous.next = next;
+            }
+            if(timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            if(timeout == head) {
+                if(timeout == tail) {
+                    tail = null;
+                    head = null;
+                } else {
+                    head = next;
+                }
+            } else if(timeout == tail) {
+                tail = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return next;
+        }
+
+        /**
+         * Expires all the timeouts of the bucket that has not remaining rounds.
+         */
+        private void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if(timeout.remainingRounds <= 0) {
+                    next = remove(timeout);
+                    timeout.expire();
+                } else if(timeout.isCancelled()) {
+                    next = remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package org.hcjf.io.net;
+
+import java.net.SocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Table to link the remote addresses of the udp peers with the net sessions. The table is divided in
+ * shards in order to reduce the contention between the io threads, each shard is a concurrent map and the
+ * access to the entries doesn't change the structure of the map (unlike the lru maps).
+ * The entries expire when they are not accessed during the session timeout, the expiration is driven by
+ * the timing wheel of the service, then the cost of the expiration is O(1) by entry.
+ * If some shard is full then the entry with the oldest access of a small sample is evicted.
+ * @author javaito
+ */
+final class UdpSessionTable {
+
+    private static final int EVICTION_SAMPLE_SIZE = 8;
+    private static final long HIT_WINDOW = 1000;
+
+    private final ConcurrentHashMap<SocketAddress, Entry>[] shards;
+    private final int mask;
+    private final int shardCapacity;
+    private final long sessionTimeout;
+    private final TimingWheel timingWheel;
+    private final Consumer<Entry> removeListener;
+
+    /**
+     * Creates the table.
+     * @param shardsNumber Number of shards, this value is normalized to the next power of two.
+     * @param capacity Maximum number of entries of the table.
+     * @param sessionTimeout Time in milliseconds without access to remove an entry, zero or negative value
+     *                       means that the entries never expire.
+     * @param timingWheel Timing wheel to schedule the expiration of the entries.
+     * @param removeListener Listener called for each entry expired or evicted.
+     */
+    @SuppressWarnings("unchecked")
+    UdpSessionTable(int shardsNumber, int capacity, long sessionTimeout,
+                    TimingWheel timingWheel, Consumer<Entry> removeListener) {
+        int normalizedSize = Integer.highestOneBit(Math.max(shardsNumber, 1));
+        if(normalizedSize < shardsNumber) {
+            normalizedSize <<= 1;
+        }
+        this.shards = new ConcurrentHashMap[normalizedSize];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.mask = normalizedSize - 1;
+        this.shardCapacity = Math.max(capacity / normalizedSize, 1);
+        this.sessionTimeout = sessionTimeout;
+        this.timingWheel = timingWheel;
+        this.removeListener = removeListener;
+    }
+
+    /**
+     * Returns the shard of the address.
+     * @param address Remote address.
+     * @return Shard instance.
+     */
+    private ConcurrentHashMap<SocketAddress, Entry> getShard(SocketAddress address) {
+        int hash = address.hashCode();
+        return shards[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    /**
+     * Returns the entry of the address and updates the last access of the entry.
+     * @param address Remote address.
+     * @return Entry of the address or null if the address is not into the table.
+     */
+    Entry get(SocketAddress address) {
+        Entry result = getShard(address).get(address);
+        if(result != null) {
+            result.lastAccess = System.currentTimeMillis();
+        }
+        return result;
+    }
+
+    /**
+     * Adds a new entry into the table if the address is not linked with another session.
+     * @param address Remote address.
+     * @param session Net session.
+     * @param pinned If the entry is pinned then it never expires and it is never evicted.
+     * @return Returns the entry linked to the address, this entry could be an existing entry with other session.
+     */
+    Entry putIfAbsent(SocketAddress address, NetSession session, boolean pinned) {
+        ConcurrentHashMap<SocketAddress, Entry> shard = getShard(address);
+        Entry entry = new Entry(address, session, pinned);
+        Entry result = shard.putIfAbsent(address, entry);
+        if(result == null) {
+            result = entry;
+            if(shard.size() > shardCapacity) {
+                evict(shard, entry);
+            }
+            if(!pinned && sessionTimeout > 0) {
+                entry.timeout = timingWheel.schedule(() -> expire(entry), sessionTimeout);
+            }
+        }
+        result.lastAccess = System.currentTimeMillis();
+        return result;
+    }
+
+    /**
+     * Removes the entry from the table.
+     * @param entry Entry to remove.
+     * @return Returns true if the entry was removed by this invocation.
+     */
+    boolean remove(Entry entry) {
+        boolean result = getShard(entry.address).remove(entry.address, entry);
+        if(result && entry.timeout != null) {
+            entry.timeout.cancel();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of entries of the table.
+     * @return Size of the table.
+     */
+    int size() {
+        int result = 0;
+        for(ConcurrentHashMap<SocketAddress, Entry> shard : shards) {
+            result += shard.size();
+        }
+        return result;
+    }
+
+    /**
+     * Removes the entry with the oldest access of a sample of the shard.
+     * @param shard Shard full.
+     * @param newEntry Entry that must not be evicted.
+     */
+    private void evict(ConcurrentHashMap<SocketAddress, Entry> shard, Entry newEntry) {
+        Entry candidate = null;
+        Iterator<Entry> iterator = shard.values().iterator();
+        for (int i = 0; i < EVICTION_SAMPLE_SIZE && iterator.hasNext(); i++) {
+            Entry entry = iterator.next();
+            if(entry != newEntry && !entry.pinned &&
+                    (candidate == null || entry.lastAccess < candidate.lastAccess)) {
+                candidate = entry;
+            }
+        }
+        if(candidate != null && remove(candidate)) {
+            removeListener.accept(candidate);
+        }
+    }
+
+    /**
+     * This method is called by the timing wheel, if the entry was accessed during the session timeout then
+     * the expiration is scheduled again, in the otherwise the entry is removed.
+     * @param entry Entry to verify.
+     */
+    private void expire(Entry entry) {
+        long remaining = sessionTimeout - (System.currentTimeMillis() - entry.lastAccess);
+        if(remaining > 0) {
+            entry.timeout = timingWheel.schedule(() -> expire(entry), remaining);
+        } else if(getShard(entry.address).remove(entry.address, entry)) {
+            removeListener.accept(entry);
+        }
+    }
+
+    /**
+     * Entry of the table.
+     */
+    static final class Entry {
+
+        private final SocketAddress address;
+        private final NetSession session;
+        private final boolean pinned;
+        private volatile long lastAccess;
+        private volatile TimingWheel.Timeout timeout;
+        private volatile NetService.ChannelState peerChannelState;
+        private long hitWindowStart;
+        private int hitCounter;
+
+        private Entry(SocketAddress address, NetSession session, boolean pinned) {
+            this.address = address;
+            this.session = session;
+            this.pinned = pinned;
+        }
+
+        /**
+         * Returns the remote address.
+         * @return Remote address.
+         */
+        SocketAddress getAddress() {
+            return address;
+        }
+
+        /**
+         * Returns the session linked to the address.
+         * @return Net session.
+         */
+        NetSession getSession() {
+            return session;
+        }
+
+        /**
+         * Returns the state of the channel connected only with this peer.
+         * @return Channel state or null if the peer has not its own channel.
+         */
+        NetService.ChannelState getPeerChannelState() {
+            return peerChannelState;
+        }
+
+        /**
+         * Set the state of the channel connected only with this peer.
+         * @param peerChannelState Channel state.
+         */
+        void setPeerChannelState(NetService.ChannelState peerChannelState) {
+            this.peerChannelState = peerChannelState;
+        }
+
+        /**
+         * Counts a datagram received from the peer. This method is called only by the thread that is reading
+         * the channel, then the counter is not synchronized.
+         * @param now Current timestamp.
+         * @param threshold Number of datagrams by second to consider the peer as hot.
+         * @return Returns true only when the counter of the current second reaches the threshold.
+         */
+        boolean hit(long now, int threshold) {
+            if(now - hitWindowStart >= HIT_WINDOW) {
+                hitWindowStart = now;
+                hitCounter = 0;
+            }
+            return ++hitCounter == threshold;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.properties.SystemProperties;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in execution at the same time. The requests that exceed the limit wait into a
+ * bounded queue during the max queue time and the requests that can't be admitted must be rejected. The limit
+ * is adapted with the observed latency, it grows one unit for each window of requests completed with a latency
+ * near of the base latency and it decreases when the latency grows or the executions fail by timeout.
+ * @author javaito
+ */
+public class ConcurrencyLimiter {
+
+    private static final double BASE_LATENCY_DRIFT = 0.01;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final ReentrantLock lock;
+    private final Condition available;
+    private final Deque<Thread> queue;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final long maxQueueTime;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private volatile double limit;
+    private volatile int inFlight;
+    private double baseLatency;
+    private long lastDecrease;
+    private volatile long admitted;
+    private volatile long rejected;
+
+    /**
+     * Creates the limiter with the values of the system properties.
+     */
+    public ConcurrencyLimiter() {
+        this(SystemProperties.getInteger(SystemProperties.Net.Http.Admission.INITIAL_LIMIT),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Admission.MIN_LIMIT),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Admission.MAX_LIMIT),
+                SystemProperties.getInteger(SystemProperties.Net.Http.Admission.MAX_QUEUE_SIZE),
+                SystemProperties.getLong(SystemProperties.Net.Http.Admission.MAX_QUEUE_TIME));
+    }
+
+    /**
+     * Creates a limiter with a fixed limit.
+     * @param limit Max number of requests in execution.
+     * @param maxQueueSize Max number of requests waiting for the admission.
+     * @param maxQueueTime Max time in milliseconds that a request waits for the admission.
+     */
+    public ConcurrencyLimiter(int limit, int maxQueueSize, long maxQueueTime) {
+        this(limit, limit, limit, maxQueueSize, maxQueueTime);
+    }
+
+    /**
+     * Creates an adaptive limiter, the limit moves between the min and max limit.
+     * @param initialLimit Initial limit.
+     * @param minLimit Min limit.
+     * @param maxLimit Max limit.
+     * @param maxQueueSize Max number of requests waiting for the admission.
+     * @param maxQueueTime Max time in milliseconds that a request waits for the admission.
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int maxQueueSize, long maxQueueTime) {
+        if(minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits, initial: " + initialLimit +
+                    ", min: " + minLimit + ", max: " + maxLimit);
+        }
+        this.lock = new ReentrantLock();
+        this.available = lock.newCondition();
+        this.queue = new ArrayDeque<>();
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueueSize = maxQueueSize;
+        this.maxQueueTime = maxQueueTime;
+        this.backoffRatio = SystemProperties.getDouble(SystemProperties.Net.Http.Admission.BACKOFF_RATIO);
+        this.latencyTolerance = SystemProperties.getDouble(SystemProperties.Net.Http.Admission.LATENCY_TOLERANCE);
+    }
+
+    /**
+     * Try to admit the execution of a request. If the limit is reached the current thread waits into the queue,
+     * in order of arrival, until some execution ends or the max queue time is consumed.
+     * @return True if the request is admitted and false if the request must be rejected.
+     */
+    public boolean acquire() {
+        boolean result = false;
+        lock.lock();
+        try {
+            if(queue.isEmpty() && inFlight < getLimit()) {
+                result = true;
+            } else if(queue.size() < maxQueueSize) {
+                Thread thread = Thread.currentThread();
+                queue.addLast(thread);
+                try {
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(maxQueueTime);
+                    while (!(queue.peekFirst() == thread && inFlight < getLimit()) && remaining > 0) {
+                        remaining = available.awaitNanos(remaining);
+                    }
+                    result = queue.peekFirst() == thread && inFlight < getLimit();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    queue.remove(thread);
+                    //The next thread of the queue could be admitted.
+                    available.signalAll();
+                }
+            }
+
+            if(result) {
+                inFlight++;
+                admitted++;
+            } else {
+                rejected++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Ends the execution of an admitted request and adapts the limit with the latency of the execution.
+     * @param latency Latency of the execution in milliseconds.
+     * @param dropped True if the execution fails by timeout.
+     */
+    public void release(long latency, boolean dropped) {
+        lock.lock();
+        try {
+            inFlight--;
+            if(minLimit < maxLimit) {
+                long currentTime = System.currentTimeMillis();
+                if(baseLatency == 0 || latency < baseLatency) {
+                    baseLatency = Math.max(latency, 1);
+                } else {
+                    //The base latency follows slowly the latency of the context.
+                    baseLatency += (latency - baseLatency) * BASE_LATENCY_DRIFT;
+                }
+
+                double gradient = Math.max(MIN_GRADIENT, (baseLatency * latencyTolerance) / Math.max(latency, 1));
+                if(dropped || gradient < 1) {
+                    //The limit decreases only once for each latency window.
+                    if(currentTime - lastDecrease > latency) {
+                        limit = Math.max(minLimit, limit * (dropped ? backoffRatio : Math.min(backoffRatio, gradient)));
+                        lastDecrease = currentTime;
+                    }
+                } else if(inFlight + 1 >= getLimit() / 2) {
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ends an admitted request that was not executed, the limit is not adapted.
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current limit.
+     * @return Current limit.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Returns the number of requests in execution.
+     * @return Number of requests in execution.
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Returns the number of requests waiting for the admission.
+     * @return Queue size.
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of admitted requests.
+     * @return Number of admitted requests.
+     */
+    public long getAdmitted() {
+        return admitted;
+    }
+
+    /**
+     * Returns the number of rejected requests.
+     * @return Number of rejected requests.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,50 @@
+package org.hcjf.io.net.http;
+
+/**
+ * Incremental encoder of the response content (Content-Encoding), the content is set by fragments and the
+ * encoded bytes are taken as the connection needs them, then the complete body is never into the heap.
+ * @author javaito
+ */
+public interface ContentEncoder {
+
+    /**
+     * Sets the next fragment of the content, this method must be called only when the encoder needs input.
+     * @param data Array with the content.
+     * @param offset Offset of the fragment into the array.
+     * @param length Length of the fragment.
+     */
+    void setInput(byte[] data, int offset, int length);
+
+    /**
+     * Indicates that there are not more fragments of content.
+     */
+    void finish();
+
+    /**
+     * Puts the encoded bytes into the output array, all the input consumed by the encoder is flushed in order to
+     * send the encoded fragment without waiting for the rest of the content.
+     * @param output Output array.
+     * @param offset Offset into the output array.
+     * @param length Max number of bytes to put.
+     * @return Number of bytes put into the output array.
+     */
+    int encode(byte[] output, int offset, int length);
+
+    /**
+     * Verify if the encoder needs a new fragment of content.
+     * @return True if the encoder needs input and false if there are pending encoded bytes.
+     */
+    boolean needsInput();
+
+    /**
+     * Verify if all the encoded bytes were taken after the finish of the content.
+     * @return True if the encoder is finished and false in the otherwise.
+     */
+    boolean isFinished();
+
+    /**
+     * Releases the resources of the encoder.
+     */
+    void close();
+
+}
@@ -25,6 +25,9 @@ public abstract class Context {
     private final Pattern pattern;
     private final String contextRegex;
     private long timeout;
+    private boolean streamingBody;
+    private ConcurrencyLimiter limiter;
+    private boolean priority;
 
     /**
      * Constructor
@@ -101,6 +104,58 @@ public abstract class Context {
         this.timeout = timeout;
     }
 
+    /**
+     * Indicates if the context consumes the body of the requests incrementally. In this case the request is
+     * dispatched when its headers are complete and the body must be read using {@link HttpRequest#getBodyStream()}
+     * while it arrives.
+     * @return True if the context consumes the body incrementally.
+     */
+    public boolean isStreamingBody() {
+        return streamingBody;
+    }
+
+    /**
+     * Set the flag to indicate if the context consumes the body of the requests incrementally.
+     * @param streamingBody Streaming body flag.
+     */
+    public void setStreamingBody(boolean streamingBody) {
+        this.streamingBody = streamingBody;
+    }
+
+    /**
+     * Returns the limiter of the concurrent executions of the context.
+     * @return Limiter instance or null if the executions are not limited.
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Set the limiter of the concurrent executions of the context, the requests that the limiter doesn't admit
+     * are rejected with a service unavailable response.
+     * @param limiter Limiter instance.
+     */
+    public void setLimiter(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Indicates if the context is executed into the priority lane, the priority contexts are not limited by the
+     * limiter of the server, like the health checks.
+     * @return True if the context has priority.
+     */
+    public boolean isPriority() {
+        return priority;
+    }
+
+    /**
+     * Set the priority flag of the context.
+     * @param priority Priority flag.
+     */
+    public void setPriority(boolean priority) {
+        this.priority = priority;
+    }
+
     /**
      * This method is called when there are any error on the context execution.
      * @param request All the request information.
@@ -0,0 +1,280 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.properties.SystemProperties;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class finds the context that responds to a request path. The literal prefix of each context regex
+ * is indexed into a radix tree, then only the contexts whose prefix is a prefix of the path are evaluated,
+ * keeping the order in which the contexts were added. The contexts without literal prefix (alternations,
+ * pattern flags or regex at the beginning) are indexed into the root node and always evaluated.
+ * The result for each path is cached.
+ * @author javaito
+ */
+public class ContextRouter {
+
+    private static final char START_CONTEXT = '^';
+    private static final char ESCAPE = '\\';
+    private static final char QUOTE_START = 'Q';
+    private static final char QUOTE_END = 'E';
+    private static final char ALTERNATION = '|';
+    private static final char GROUP_START = '(';
+    private static final char GROUP_END = ')';
+    private static final char CLASS_START = '[';
+    private static final char CLASS_END = ']';
+    private static final String META_CHARACTERS = ".[]{}()*+?^$|";
+    private static final String QUANTIFIERS = "*+?{";
+    private static final Route NO_ROUTE = new Route(null, -1, "", false);
+
+    private final List<Route> routes;
+    private final Map<String, Route> cache;
+    private final int cacheSize;
+    private volatile Node root;
+
+    public ContextRouter() {
+        this.routes = new ArrayList<>();
+        this.cache = new ConcurrentHashMap<>();
+        this.cacheSize = SystemProperties.getInteger(SystemProperties.Net.Http.CONTEXT_ROUTER_CACHE_SIZE);
+        this.root = new Node("");
+    }
+
+    /**
+     * Adds a context into the router, the contexts added first have priority over the contexts added later.
+     * The tree is rebuilt in order to publish it without locking the lookups.
+     * @param context Context instance.
+     */
+    public synchronized void add(Context context) {
+        routes.add(createRoute(context, routes.size()));
+        Node newRoot = new Node("");
+        for(Route route : routes) {
+            newRoot.insert(route.prefix, route);
+        }
+        root = newRoot;
+        cache.clear();
+    }
+
+    /**
+     * Find the context that responds to the path.
+     * @param path Request's context name.
+     * @return Context matcher instance or null if there are not context for the path.
+     */
+    public HttpServer.ContextMatcher find(String path) {
+        HttpServer.ContextMatcher result = null;
+        Route cachedRoute = cache.get(path);
+        if(cachedRoute != null) {
+            if(cachedRoute != NO_ROUTE) {
+                result = match(cachedRoute, path);
+            }
+        }
+
+        if(result == null && cachedRoute != NO_ROUTE) {
+            Route matchedRoute = NO_ROUTE;
+            for(Route route : root.collect(path)) {
+                result = match(route, path);
+                if(result != null) {
+                    matchedRoute = route;
+                    break;
+                }
+            }
+            if(cache.size() >= cacheSize) {
+                cache.clear();
+            }
+            cache.put(path, matchedRoute);
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the route for the path, the literal routes are verified without regex.
+     * @param route Route instance.
+     * @param path Request's context name.
+     * @return Context matcher instance or null if the route doesn't match.
+     */
+    private HttpServer.ContextMatcher match(Route route, String path) {
+        HttpServer.ContextMatcher result = null;
+        if(!route.literal || route.prefix.equals(path)) {
+            Matcher matcher = route.context.getPattern().matcher(path);
+            if(matcher.matches()) {
+                result = new HttpServer.ContextMatcher(route.context, matcher);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the route for the context taking the literal prefix of the context pattern.
+     * @param context Context instance.
+     * @param order Order of the context.
+     * @return Route instance.
+     */
+    private static Route createRoute(Context context, int order) {
+        Pattern pattern = context.getPattern();
+        String regex = pattern.pattern();
+        StringBuilder prefix = new StringBuilder();
+        boolean literal = false;
+        if(pattern.flags() == 0 && !hasAlternation(regex)) {
+            literal = true;
+            int index = regex.length() > 0 && regex.charAt(0) == START_CONTEXT ? 1 : 0;
+            while(index < regex.length()) {
+                char current = regex.charAt(index);
+                int length = 1;
+                if(current == ESCAPE) {
+                    if(index + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(index + 1))) {
+                        literal = false;
+                        break;
+                    }
+                    current = regex.charAt(index + 1);
+                    length = 2;
+                } else if(META_CHARACTERS.indexOf(current) >= 0) {
+                    literal = false;
+                    break;
+                }
+
+                //A quantified character is not part of the literal prefix.
+                if(index + length < regex.length() && QUANTIFIERS.indexOf(regex.charAt(index + length)) >= 0) {
+                    literal = false;
+                    break;
+                }
+                prefix.append(current);
+                index += length;
+            }
+        }
+        return new Route(context, order, prefix.toString(), literal);
+    }
+
+    /**
+     * Verify if the regex contains an alternation at the first level, in this case the regex has not literal prefix.
+     * @param regex Regex to verify.
+     * @return True if the regex contains an alternation out of the groups and classes.
+     */
+    private static boolean hasAlternation(String regex) {
+        boolean result = false;
+        int groupDepth = 0;
+        int classDepth = 0;
+        for (int i = 0; i < regex.length() && !result; i++) {
+            char current = regex.charAt(i);
+            if(current == ESCAPE) {
+                if(i + 1 < regex.length() && regex.charAt(i + 1) == QUOTE_START) {
+                    int quoteEnd = regex.indexOf(new String(new char[]{ESCAPE, QUOTE_END}), i + 2);
+                    i = quoteEnd < 0 ? regex.length() : quoteEnd + 1;
+                } else {
+                    i++;
+                }
+            } else if(current == CLASS_START) {
+                classDepth++;
+            } else if(current == CLASS_END && classDepth > 0) {
+                classDepth--;
+            } else if(classDepth == 0) {
+                if(current == GROUP_START) {
+                    groupDepth++;
+                } else if(current == GROUP_END) {
+                    groupDepth--;
+                } else if(current == ALTERNATION && groupDepth == 0) {
+                    result = true;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Context indexed by the literal prefix of its pattern.
+     */
+    private static final class Route {
+
+        private final Context context;
+        private final int order;
+        private final String prefix;
+        private final boolean literal;
+
+        private Route(Context context, int order, String prefix, boolean literal) {
+            this.context = context;
+            this.order = order;
+            this.prefix = prefix;
+            this.literal = literal;
+        }
+    }
+
+    /**
+     * Node of the radix tree, each node stores the routes whose prefix ends into the node.
+     */
+    private static final class Node {
+
+        private String label;
+        private Map<Character, Node> children;
+        private List<Route> routes;
+
+        private Node(String label) {
+            this.label = label;
+            this.children = new HashMap<>();
+            this.routes = new ArrayList<>();
+        }
+
+        /**
+         * Inserts the route splitting the nodes when the prefix diverges from the label.
+         * @param prefix Remaining prefix from this node.
+         * @param route Route instance.
+         */
+        private void insert(String prefix, Route route) {
+            if(prefix.isEmpty()) {
+                routes.add(route);
+            } else {
+                Node child = children.get(prefix.charAt(0));
+                if(child == null) {
+                    child = new Node(prefix);
+                    children.put(prefix.charAt(0), child);
+                    child.routes.add(route);
+                } else {
+                    int common = 0;
+                    while(common < child.label.length() && common < prefix.length() &&
+                            child.label.charAt(common) == prefix.charAt(common)) {
+                        common++;
+                    }
+                    if(common < child.label.length()) {
+                        child.split(common);
+                    }
+                    child.insert(prefix.substring(common), route);
+                }
+            }
+        }
+
+        /**
+         * Split the node at the specific position of the label, the tail is moved to a new child node.
+         * @param position Position of the label.
+         */
+        private void split(int position) {
+            Node tail = new Node(label.substring(position));
+            tail.children = children;
+            tail.routes = routes;
+            label = label.substring(0, position);
+            children = new HashMap<>();
+            children.put(tail.label.charAt(0), tail);
+            routes = new ArrayList<>();
+        }
+
+        /**
+         * Collects the routes of all the nodes whose accumulated label is a prefix of the path.
+         * @param path Request's context name.
+         * @return Routes sorted by the order of the contexts.
+         */
+        private List<Route> collect(String path) {
+            List<Route> result = new ArrayList<>(routes);
+            Node node = this;
+            int index = 0;
+            while(index < path.length()) {
+                node = node.children.get(path.charAt(index));
+                if(node == null || !path.startsWith(node.label, index)) {
+                    break;
+                }
+                index += node.label.length();
+                result.addAll(node.routes);
+            }
+            result.sort(Comparator.comparingInt(R -> R.order));
+            return result;
+        }
+    }
+}
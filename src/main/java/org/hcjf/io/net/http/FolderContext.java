@@ -2,6 +2,9 @@ package org.hcjf.io.net.http;
 
 import org.hcjf.encoding.MimeType;
 import org.hcjf.errors.Errors;
+import org.hcjf.io.fs.FileSystemWatcherConsumer;
+import org.hcjf.io.fs.FileSystemWatcherService;
+import org.hcjf.io.net.http.pipeline.ByteRangesHttpPipelineResponse;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 
@@ -9,10 +12,13 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
 import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.JarFile;
-import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -22,11 +28,20 @@ import java.util.zip.ZipFile;
  */
 public class FolderContext extends Context {
 
+    private static final String RANGE_UNIT_SEPARATOR = "=";
+    private static final String RANGE_SEPARATOR = ",";
+    private static final String RANGE_BOUNDS_SEPARATOR = "-";
+
     private final Path baseFolder;
     private final String name;
     private String defaultFile;
     private final String[] names;
     private final MessageDigest messageDigest;
+    private final Map<Path, CachedFile> cache;
+    private final Set<Path> watchedFolders;
+    private final AtomicLong cacheGeneration;
+    private final long cacheMaxSize;
+    private long cacheSize;
 
     public FolderContext(String name, Path baseFolder, String defaultFile) {
         super(START_CONTEXT + URI_FOLDER_SEPARATOR + name + END_CONTEXT);
@@ -75,6 +90,11 @@ public class FolderContext extends Context {
         } catch (Exception ex) {
             throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_9), ex);
         }
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.watchedFolders = ConcurrentHashMap.newKeySet();
+        this.cacheGeneration = new AtomicLong();
+        this.cacheMaxSize = SystemProperties.getBoolean(SystemProperties.Net.Http.Folder.CACHE_ENABLED) ?
+                SystemProperties.getLong(SystemProperties.Net.Http.Folder.CACHE_MAX_SIZE) : 0;
     }
 
     public FolderContext(String name, Path baseFolder) {
@@ -260,78 +280,385 @@ public class FolderContext extends Context {
                     response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.HTML));
                     response.setResponseCode(HttpResponseCode.OK);
                     response.setBody(body);
+                } else if (isFileRegion(file)) {
+                    response = createFileRegionResponse(request, file);
                 } else {
-                    byte[] body;
-                    String checksum;
+                    response = createCachedFileResponse(request, file);
+                }
+            } else {
+                retry = onNonExistentFile(request, file);
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Verify if the file must be served as a region of the file, without load the file into the heap.
+     * @param file File to verify.
+     * @return Returns true if the size of the file is greater or equals than the minimum size of the regions.
+     */
+    private boolean isFileRegion(File file) {
+        long minSize = SystemProperties.getLong(SystemProperties.Net.Http.Folder.FILE_REGION_MIN_SIZE);
+        return minSize > 0 && file.length() >= minSize;
+    }
+
+    /**
+     * Creates the response for the large files, the body of this response is transferred from the file to the
+     * socket by the net service. These files are never compressed and the e-tag is calculated using the size
+     * and the last modification date, in order to avoid reading the file.
+     * @param request Http request instance.
+     * @param file File to response.
+     * @return Http response instance.
+     */
+    private HttpResponse createFileRegionResponse(HttpRequest request, File file) {
+        HttpResponse response;
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String checksum = Long.toHexString(length) + "-" + Long.toHexString(lastModified);
+        String lastModifiedValue = SystemProperties.getDateFormat(SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE).
+                format(new Date(lastModified));
+        String[] nameExtension = file.getName().split(SystemProperties.get(SystemProperties.Net.Http.Folder.FILE_EXTENSION_REGEX));
+        String extension = nameExtension.length == 2 ? nameExtension[1] : MimeType.BIN;
+        MimeType mimeType = MimeType.fromSuffix(extension);
+        String contentType = mimeType == null ? MimeType.BIN : mimeType.toString();
+
+        HttpHeader ifNonMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
+        List<ByteRangesHttpPipelineResponse.Range> ranges;
+        if (ifNonMatch != null && checksum.equals(ifNonMatch.getHeaderValue())) {
+            response = new HttpResponse();
+            response.setResponseCode(HttpResponseCode.NOT_MODIFIED);
+        } else if ((ranges = getRanges(request, length, checksum, lastModifiedValue)) == null) {
+            response = new HttpFileResponse(file.toPath(), 0, length);
+            response.setResponseCode(HttpResponseCode.OK);
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, HttpHeader.IDENTITY));
+        } else if (ranges.isEmpty()) {
+            response = createNotSatisfiableResponse(length);
+        } else if (ranges.size() == 1) {
+            ByteRangesHttpPipelineResponse.Range range = ranges.get(0);
+            response = new HttpFileResponse(file.toPath(), range.getStart(), range.getLength());
+            response.setResponseCode(HttpResponseCode.PARTIAL_CONTENT);
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_RANGE, range.toContentRange(length)));
+        } else {
+            //The content type of the multipart response contains the boundary.
+            response = new ByteRangesHttpPipelineResponse(file.toPath(), length, contentType, ranges,
+                    SystemProperties.getInteger(SystemProperties.Net.Http.Folder.RANGE_BUFFER_SIZE));
+        }
+
+        if (!response.containsHeader(HttpHeader.CONTENT_TYPE)) {
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, contentType));
+        }
+        response.addHeader(new HttpHeader(HttpHeader.ACCEPT_RANGES, HttpHeader.BYTES));
+        response.addHeader(new HttpHeader(HttpHeader.E_TAG, checksum));
+        response.addHeader(new HttpHeader(HttpHeader.LAST_MODIFIED, lastModifiedValue));
+        return response;
+    }
+
+    /**
+     * Returns the ranges of the file requested using the range header. The range header is ignored if the
+     * method is not GET, if the if-range header doesn't match with the e-tag or the last modified date,
+     * if the header is not valid or if the header contains too many ranges.
+     * https://tools.ietf.org/html/rfc7233#section-3.1
+     * @param request Http request instance.
+     * @param length Length of the file.
+     * @param checksum E-tag of the file.
+     * @param lastModified Last modified date of the file.
+     * @return List of the satisfiable ranges, empty list if there are not satisfiable ranges or null if
+     * the complete file must be sent.
+     */
+    private List<ByteRangesHttpPipelineResponse.Range> getRanges(HttpRequest request, long length,
+                                                                 String checksum, String lastModified) {
+        List<ByteRangesHttpPipelineResponse.Range> result = null;
+        HttpHeader rangeHeader = request.getHeader(HttpHeader.RANGE);
+        HttpHeader ifRangeHeader = request.getHeader(HttpHeader.IF_RANGE);
+        if (rangeHeader != null && request.getMethod().equals(HttpMethod.GET) && (ifRangeHeader == null ||
+                ifRangeHeader.getHeaderValue().equals(checksum) || ifRangeHeader.getHeaderValue().equals(lastModified))) {
+            String value = rangeHeader.getHeaderValue().trim();
+            String prefix = HttpHeader.BYTES + RANGE_UNIT_SEPARATOR;
+            if (value.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                String[] rangeSpecs = value.substring(prefix.length()).split(RANGE_SEPARATOR);
+                if (rangeSpecs.length <= SystemProperties.getInteger(SystemProperties.Net.Http.Folder.MAX_RANGES)) {
+                    result = new ArrayList<>();
                     try {
-                        body = Files.readAllBytes(file.toPath());
-                        synchronized (this) {
-                            checksum = new String(Base64.getEncoder().encode(messageDigest.digest(body)));
-                            messageDigest.reset();
+                        for (String rangeSpec : rangeSpecs) {
+                            rangeSpec = rangeSpec.trim();
+                            int separatorIndex = rangeSpec.indexOf(RANGE_BOUNDS_SEPARATOR);
+                            String first = rangeSpec.substring(0, separatorIndex).trim();
+                            String last = rangeSpec.substring(separatorIndex + 1).trim();
+                            long start;
+                            long end;
+                            if (first.isEmpty()) {
+                                //Suffix range, the last bytes of the file.
+                                long suffixLength = Long.parseLong(last);
+                                if (suffixLength < 0) {
+                                    throw new IllegalArgumentException("Invalid range " + rangeSpec);
+                                }
+                                start = suffixLength == 0 ? length : Math.max(0, length - suffixLength);
+                                end = length - 1;
+                            } else {
+                                start = Long.parseLong(first);
+                                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+                                if (!last.isEmpty() && Long.parseLong(last) < start) {
+                                    throw new IllegalArgumentException("Invalid range " + rangeSpec);
+                                }
+                            }
+                            if (start < 0) {
+                                throw new IllegalArgumentException("Invalid range " + rangeSpec);
+                            }
+                            if (start < length && start <= end) {
+                                result.add(new ByteRangesHttpPipelineResponse.Range(start, end));
+                            }
                         }
-                    } catch (IOException ex) {
-                        throw new RuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_4, Paths.get(request.getContext(), file.getName())), ex);
+                    } catch (Exception ex) {
+                        //The invalid range headers are ignored.
+                        result = null;
                     }
+                }
+            }
+        }
+        return result;
+    }
 
-                    Integer responseCode = HttpResponseCode.OK;
-                    HttpHeader ifNonMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
-                    if (ifNonMatch != null) {
-                        if (checksum.equals(ifNonMatch.getHeaderValue())) {
-                            responseCode = HttpResponseCode.NOT_MODIFIED;
-                        }
-                    }
+    /**
+     * Creates the response when there are not satisfiable ranges.
+     * @param length Length of the file.
+     * @return Http response instance.
+     */
+    private HttpResponse createNotSatisfiableResponse(long length) {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_RANGE, HttpHeader.BYTES + " */" + length));
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, "0"));
+        response.setBody(new byte[0]);
+        return response;
+    }
 
-                    String[] nameExtension = file.getName().split(SystemProperties.get(SystemProperties.Net.Http.Folder.FILE_EXTENSION_REGEX));
-                    String extension = nameExtension.length == 2 ? nameExtension[1] : MimeType.BIN;
-                    response.setResponseCode(responseCode);
-                    MimeType mimeType = MimeType.fromSuffix(extension);
-                    response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, mimeType == null ? MimeType.BIN : mimeType.toString()));
-                    response.addHeader(new HttpHeader(HttpHeader.E_TAG, checksum));
-                    response.addHeader(new HttpHeader(HttpHeader.LAST_MODIFIED,
-                            SystemProperties.getDateFormat(SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE).
-                                    format(new Date(file.lastModified()))));
-
-                    if (responseCode.equals(HttpResponseCode.OK)) {
-                        HttpHeader acceptEncodingHeader = request.getHeader(HttpHeader.ACCEPT_ENCODING);
-                        if (acceptEncodingHeader != null) {
-                            boolean notAcceptable = true;
-                            for (String group : acceptEncodingHeader.getGroups()) {
-                                if (group.equalsIgnoreCase(HttpHeader.GZIP) || group.equalsIgnoreCase(HttpHeader.DEFLATE)) {
-                                    try (ByteArrayOutputStream out = new ByteArrayOutputStream(); GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out)) {
-                                        gzipOutputStream.write(body);
-                                        gzipOutputStream.flush();
-                                        gzipOutputStream.finish();
-                                        body = out.toByteArray();
-                                        response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, HttpHeader.GZIP));
-                                        notAcceptable = false;
-                                        break;
-                                    } catch (Exception ex) {
-                                        Log.w(SystemProperties.get(SystemProperties.Net.Http.Folder.LOG_TAG), "Zip file process fail", ex);
-                                    }
-                                } else if (group.equalsIgnoreCase(HttpHeader.IDENTITY)) {
-                                    response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, HttpHeader.IDENTITY));
-                                    notAcceptable = false;
-                                    break;
-                                }
-                            }
+    /**
+     * Creates the response for the files stored into the cache, the body, the e-tag and the compressed
+     * variants of the file are calculated when the file is loaded into the cache.
+     * @param request Http request instance.
+     * @param file File to response.
+     * @return Http response instance.
+     */
+    private HttpResponse createCachedFileResponse(HttpRequest request, File file) {
+        CachedFile cachedFile = getCachedFile(request, file);
+        HttpResponse response = new HttpResponse();
+
+        Integer responseCode = HttpResponseCode.OK;
+        HttpHeader ifNonMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
+        if (ifNonMatch != null) {
+            if (cachedFile.checksum.equals(ifNonMatch.getHeaderValue())) {
+                responseCode = HttpResponseCode.NOT_MODIFIED;
+            }
+        }
+
+        List<ByteRangesHttpPipelineResponse.Range> ranges = null;
+        if (responseCode.equals(HttpResponseCode.OK)) {
+            ranges = getRanges(request, cachedFile.body.length, cachedFile.checksum, cachedFile.lastModified);
+        }
+
+        if (ranges != null) {
+            response = ranges.isEmpty() ? createNotSatisfiableResponse(cachedFile.body.length) :
+                    createRangesResponse(cachedFile, ranges);
+        } else {
+            response.setResponseCode(responseCode);
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, cachedFile.contentType));
+        }
+        response.addHeader(new HttpHeader(HttpHeader.ACCEPT_RANGES, HttpHeader.BYTES));
+        response.addHeader(new HttpHeader(HttpHeader.E_TAG, cachedFile.checksum));
+        response.addHeader(new HttpHeader(HttpHeader.LAST_MODIFIED, cachedFile.lastModified));
+
+        if (ranges == null && cachedFile.encodedBodies != null) {
+            response.addHeader(new HttpHeader(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING));
+        }
+
+        if (ranges == null && responseCode.equals(HttpResponseCode.OK)) {
+            //The encoding is negotiated in the same way that the rest of the responses of the server, if the
+            //negotiated encoding has not a variant of the file then the file is sent without encoding.
+            byte[] body = cachedFile.body;
+            String encoding = HttpHeader.IDENTITY;
+            if (cachedFile.encodedBodies != null) {
+                String negotiatedEncoding = HttpCompression.negotiate(request);
+                if (negotiatedEncoding != null && cachedFile.encodedBodies.containsKey(negotiatedEncoding)) {
+                    encoding = negotiatedEncoding;
+                    body = cachedFile.encodedBodies.get(negotiatedEncoding);
+                }
+            }
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, encoding));
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+            response.setBody(body);
+        }
+        return response;
+    }
+
+    /**
+     * Creates the partial content response with the ranges of the cached file, the ranges are never compressed.
+     * @param cachedFile Cached file instance.
+     * @param ranges Ranges to send.
+     * @return Http response instance.
+     */
+    private HttpResponse createRangesResponse(CachedFile cachedFile, List<ByteRangesHttpPipelineResponse.Range> ranges) {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.PARTIAL_CONTENT);
+        byte[] body;
+        if (ranges.size() == 1) {
+            ByteRangesHttpPipelineResponse.Range range = ranges.get(0);
+            body = Arrays.copyOfRange(cachedFile.body, (int) range.getStart(), (int) range.getEnd() + 1);
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, cachedFile.contentType));
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_RANGE, range.toContentRange(cachedFile.body.length)));
+        } else {
+            String boundary = ByteRangesHttpPipelineResponse.createBoundary();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (ByteRangesHttpPipelineResponse.Range range : ranges) {
+                out.writeBytes(ByteRangesHttpPipelineResponse.createPartHeader(
+                        boundary, cachedFile.contentType, range, cachedFile.body.length));
+                out.write(cachedFile.body, (int) range.getStart(), (int) range.getLength());
+            }
+            out.writeBytes(ByteRangesHttpPipelineResponse.createEnd(boundary));
+            body = out.toByteArray();
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, ByteRangesHttpPipelineResponse.createContentType(boundary)));
+        }
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, HttpHeader.IDENTITY));
+        response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+        response.setBody(body);
+        return response;
+    }
+
+    /**
+     * Returns the cached instance of the file, if the file is not into the cache then the file is loaded and stored
+     * into the cache evicting the least recently used files when the cache exceeds the maximum size.
+     * The folder of the file is watched in order to remove the file from the cache when it changes.
+     * @param request Http request instance.
+     * @param file File to load.
+     * @return Cached file instance.
+     */
+    private CachedFile getCachedFile(HttpRequest request, File file) {
+        Path path = file.toPath().toAbsolutePath();
+        CachedFile result;
+        synchronized (cache) {
+            result = cache.get(path);
+        }
+
+        if (result == null) {
+            if (cacheMaxSize > 0) {
+                watch(path.getParent());
+            }
 
-                            if (notAcceptable) {
-                                response.setResponseCode(HttpResponseCode.NOT_ACCEPTABLE);
+            //If the file changes while it is loading then the file is not stored.
+            long generation = cacheGeneration.get();
+            result = loadFile(request, file);
+            if (result.size() <= cacheMaxSize) {
+                synchronized (cache) {
+                    if (generation == cacheGeneration.get()) {
+                        CachedFile oldFile = cache.put(path, result);
+                        if (oldFile != null) {
+                            cacheSize -= oldFile.size();
+                        }
+                        cacheSize += result.size();
+                        Iterator<CachedFile> iterator = cache.values().iterator();
+                        while (cacheSize > cacheMaxSize && iterator.hasNext()) {
+                            CachedFile evictedFile = iterator.next();
+                            if (evictedFile != result) {
+                                cacheSize -= evictedFile.size();
+                                iterator.remove();
                             }
                         }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the file and creates all the information to response the file.
+     * @param request Http request instance.
+     * @param file File to load.
+     * @return Cached file instance.
+     */
+    private CachedFile loadFile(HttpRequest request, File file) {
+        byte[] body;
+        String checksum;
+        long lastModified = file.lastModified();
+        try {
+            body = Files.readAllBytes(file.toPath());
+            synchronized (this) {
+                checksum = new String(Base64.getEncoder().encode(messageDigest.digest(body)));
+                messageDigest.reset();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_4, Paths.get(request.getContext(), file.getName())), ex);
+        }
+
+        String[] nameExtension = file.getName().split(SystemProperties.get(SystemProperties.Net.Http.Folder.FILE_EXTENSION_REGEX));
+        String extension = nameExtension.length == 2 ? nameExtension[1] : MimeType.BIN;
+        MimeType mimeType = MimeType.fromSuffix(extension);
+        String contentType = mimeType == null ? MimeType.BIN : mimeType.toString();
+        return new CachedFile(body, encode(body, contentType), checksum, contentType,
+                SystemProperties.getDateFormat(SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE).
+                        format(new Date(lastModified)));
+    }
 
-                        if (responseCode.equals(HttpResponseCode.OK)) {
-                            response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
-                            response.setBody(body);
+    /**
+     * Encodes the body with each supported encoding of the server, only the compressible types with a size
+     * greater or equals than the minimum size of the compression are encoded.
+     * @param body Body to encode.
+     * @param contentType Content type of the file.
+     * @return Encoded bodies indexed by the encoding name, the encodings that don't reduce the size are not
+     * stored. Returns null if the file is never encoded.
+     */
+    private Map<String, byte[]> encode(byte[] body, String contentType) {
+        Map<String, byte[]> result = null;
+        if (SystemProperties.getBoolean(SystemProperties.Net.Http.Compression.ENABLED) &&
+                MimeType.isCompressible(contentType) &&
+                body.length >= SystemProperties.getInteger(SystemProperties.Net.Http.Compression.MIN_SIZE)) {
+            result = new HashMap<>();
+            for (String encoding : SystemProperties.getList(SystemProperties.Net.Http.Compression.ENCODINGS)) {
+                if (HttpCompression.isSupported(encoding)) {
+                    try {
+                        byte[] encodedBody = HttpCompression.encode(encoding, body);
+                        if (encodedBody != null) {
+                            result.put(encoding, encodedBody);
                         }
+                    } catch (Exception ex) {
+                        Log.w(SystemProperties.get(SystemProperties.Net.Http.Folder.LOG_TAG), "Zip file process fail", ex);
                     }
                 }
-            } else {
-                retry = onNonExistentFile(request, file);
             }
         }
+        return result;
+    }
 
-        return response;
+    /**
+     * Register a watcher for the folder, only the first call for each folder register the watcher.
+     * @param folder Folder to watch.
+     */
+    private void watch(Path folder) {
+        if (watchedFolders.add(folder)) {
+            try {
+                FileSystemWatcherService.getInstance().registerConsumer(new FolderWatcher(folder));
+            } catch (Exception ex) {
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.Folder.LOG_TAG), "Unable to watch folder %s", ex, folder);
+            }
+        }
+    }
+
+    /**
+     * Removes from the cache the path and all the paths bellow it.
+     * @param path Changed path, if the path is null then all the cache is removed.
+     */
+    private void invalidate(Path path) {
+        synchronized (cache) {
+            cacheGeneration.incrementAndGet();
+            Iterator<Map.Entry<Path, CachedFile>> iterator = cache.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, CachedFile> entry = iterator.next();
+                if (path == null || entry.getKey().startsWith(path)) {
+                    cacheSize -= entry.getValue().size();
+                    iterator.remove();
+                }
+            }
+        }
     }
 
     /**
@@ -345,4 +672,70 @@ public class FolderContext extends Context {
         throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_5, request.getContext()));
     }
 
+    /**
+     * Contains all the information of a file stored into the cache.
+     */
+    private static final class CachedFile {
+
+        private final byte[] body;
+        private final Map<String, byte[]> encodedBodies;
+        private final String checksum;
+        private final String contentType;
+        private final String lastModified;
+
+        private CachedFile(byte[] body, Map<String, byte[]> encodedBodies,
+                           String checksum, String contentType, String lastModified) {
+            this.body = body;
+            this.encodedBodies = encodedBodies;
+            this.checksum = checksum;
+            this.contentType = contentType;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Returns the size of all the bodies stored for the file.
+         * @return Size in bytes.
+         */
+        private long size() {
+            long result = body.length;
+            if (encodedBodies != null) {
+                for (byte[] encodedBody : encodedBodies.values()) {
+                    result += encodedBody.length;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Watcher of a folder that removes the changed files from the cache.
+     */
+    private final class FolderWatcher extends FileSystemWatcherConsumer {
+
+        private FolderWatcher(Path folder) {
+            super(folder, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+
+        @Override
+        protected void create(WatchEvent<Path> event) {
+            invalidate(getBasePath().resolve(event.context()));
+        }
+
+        @Override
+        protected void update(WatchEvent<Path> event) {
+            invalidate(getBasePath().resolve(event.context()));
+        }
+
+        @Override
+        protected void delete(WatchEvent<Path> event) {
+            invalidate(getBasePath().resolve(event.context()));
+        }
+
+        @Override
+        protected void overflow(WatchEvent<Path> event) {
+            invalidate(null);
+        }
+    }
+
 }
@@ -0,0 +1,188 @@
+package org.hcjf.io.net.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * This stream receives the body of a request while it arrives and delivers it to the thread that consumes the
+ * request. When the amount of buffered bytes reaches the size of the buffer the method onSuspend is called in
+ * order to stop the reading of the connection, and when the consumer reads up to the half of the buffer the
+ * method onResume is called to restore the reading.
+ * @author javaito
+ */
+public class HttpBodyInputStream extends InputStream implements HttpPackage.BodyConsumer {
+
+    private final Deque<byte[]> chunks;
+    private final int bufferSize;
+    private final long readTimeout;
+    private byte[] currentChunk;
+    private int currentPosition;
+    private int bufferedBytes;
+    private boolean done;
+    private boolean aborted;
+    private boolean closed;
+    private boolean suspended;
+
+    /**
+     * Constructor.
+     * @param bufferSize Number of bytes buffered before suspend the reading of the connection.
+     * @param readTimeout Maximum time in milliseconds waiting for the next fragment of the body.
+     */
+    public HttpBodyInputStream(int bufferSize, long readTimeout) {
+        this.chunks = new ArrayDeque<>();
+        this.bufferSize = bufferSize;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Stores a copy of the fragment until the consumer reads it, if the stream is closed the fragment is discarded.
+     * @param bodyFragment Decoded body fragment.
+     */
+    @Override
+    public synchronized void add(ByteBuffer bodyFragment) {
+        if(closed) {
+            bodyFragment.position(bodyFragment.limit());
+        } else if(bodyFragment.hasRemaining()) {
+            byte[] chunk = new byte[bodyFragment.remaining()];
+            bodyFragment.get(chunk);
+            chunks.add(chunk);
+            bufferedBytes += chunk.length;
+            if(!suspended && bufferedBytes >= bufferSize) {
+                suspended = true;
+                onSuspend();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Indicates that the body is complete, the consumer receives the end of the stream after the last byte.
+     */
+    @Override
+    public synchronized void done() {
+        done = true;
+        notifyAll();
+    }
+
+    /**
+     * Indicates that the body never will be completed because the connection was closed.
+     */
+    public synchronized void abort() {
+        aborted = true;
+        notifyAll();
+    }
+
+    /**
+     * Reads the next byte of the body.
+     * @return Next byte or -1 if the body is complete.
+     * @throws IOException If the connection is closed before the end of the body or the timeout is reached.
+     */
+    @Override
+    public int read() throws IOException {
+        byte[] data = new byte[1];
+        return read(data, 0, 1) < 0 ? -1 : data[0] & 0xFF;
+    }
+
+    /**
+     * Reads the available bytes of the body, waiting for the next fragment if there are no buffered bytes.
+     * @param target Target array.
+     * @param offset Offset of the target array.
+     * @param length Maximum number of bytes to read.
+     * @return Number of read bytes or -1 if the body is complete.
+     * @throws IOException If the connection is closed before the end of the body or the timeout is reached.
+     */
+    @Override
+    public int read(byte[] target, int offset, int length) throws IOException {
+        if(length == 0) {
+            return 0;
+        }
+
+        int result;
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + readTimeout;
+            while(currentChunk == null && chunks.isEmpty() && !done && !aborted && !closed) {
+                long waitTime = deadline - System.currentTimeMillis();
+                if(waitTime <= 0) {
+                    throw new SocketTimeoutException("Timeout waiting for the request body");
+                }
+                try {
+                    wait(waitTime);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the request body", ex);
+                }
+            }
+
+            if(closed) {
+                throw new IOException("Stream closed");
+            }
+
+            if(currentChunk == null) {
+                currentChunk = chunks.poll();
+                currentPosition = 0;
+            }
+
+            if(currentChunk != null) {
+                result = Math.min(length, currentChunk.length - currentPosition);
+                System.arraycopy(currentChunk, currentPosition, target, offset, result);
+                currentPosition += result;
+                bufferedBytes -= result;
+                if(currentPosition == currentChunk.length) {
+                    currentChunk = null;
+                }
+                if(suspended && bufferedBytes <= bufferSize / 2) {
+                    suspended = false;
+                    onResume();
+                }
+            } else if(aborted) {
+                throw new IOException("Connection closed before the end of the request body");
+            } else {
+                result = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of buffered bytes.
+     * @return Number of buffered bytes.
+     */
+    @Override
+    public synchronized int available() {
+        return bufferedBytes;
+    }
+
+    /**
+     * Closes the stream, the rest of the body is discarded when it arrives.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        chunks.clear();
+        currentChunk = null;
+        bufferedBytes = 0;
+        if(suspended) {
+            suspended = false;
+            onResume();
+        }
+        notifyAll();
+    }
+
+    /**
+     * This method is called when the buffer is full, by default do nothing. This method and onResume are
+     * called with the monitor of the stream taken then they must not block.
+     */
+    protected void onSuspend() {
+    }
+
+    /**
+     * This method is called when the consumer reads up to the half of the buffer after a suspension,
+     * by default do nothing.
+     */
+    protected void onResume() {
+    }
+}
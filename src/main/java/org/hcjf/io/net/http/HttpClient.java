@@ -1,61 +1,41 @@
 package org.hcjf.io.net.http;
 
-import org.hcjf.errors.Errors;
-import org.hcjf.errors.HCJFRuntimeException;
-import org.hcjf.io.net.NetClient;
-import org.hcjf.io.net.NetPackage;
-import org.hcjf.io.net.NetService;
-import org.hcjf.io.net.NetSession;
-import org.hcjf.io.net.ssl.SslClient;
-import org.hcjf.io.net.ssl.SslPeer;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLEngine;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
-import java.io.ByteArrayOutputStream;
 import java.net.URL;
-import java.util.UUID;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Client to invoke some http server.
  * @author javaito
  */
-public class HttpClient extends NetClient<HttpSession, HttpPackage> {
+public class HttpClient {
 
     public static final String HTTP_CLIENT_LOG_TAG = "HTTP_CLIENT";
-
-    private static final String CONNECTION_TIMEOUT_MESSAGE = "Connection timeout";
-    private static final String READ_TIMEOUT_MESSAGE = "Read timeout";
-    private static final String DISCONNECTION_MESSAGE = "Http client request end";
-    private static final String SESSION_NAME = "Http client session";
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD,
+            HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.OPTIONS, HttpMethod.TRACE);
 
     private final URL url;
-    private Status status;
-    private HttpResponse response;
+    private final String host;
+    private final Integer port;
     private HttpRequest request;
     private Long connectTimeout;
     private Long writeTimeout;
     private Long readTimeout;
-    private HttpSession session;
     private HttpPackage.HttpProtocol httpProtocol;
     private Boolean httpsInsecureConnection;
     private HttpResponseHandler responseHandler;
-    private final Object connectionMonitor = new Object();
-    private final Object readMonitor = new Object();
-    private SslClient sslClient;
 
     public HttpClient(URL url) {
-        super(url.getHost(), url.getPort() != -1 ? url.getPort() :
-                    url.getProtocol().equalsIgnoreCase(HttpPackage.HttpProtocol.HTTPS.toString()) ?
-                            SystemProperties.getInteger(SystemProperties.Net.Https.DEFAULT_CLIENT_PORT) :
-                            SystemProperties.getInteger(SystemProperties.Net.Http.DEFAULT_CLIENT_PORT),
-                    url.getProtocol().equalsIgnoreCase(HttpPackage.HttpProtocol.HTTPS.toString()) ?
-                            NetService.TransportLayerProtocol.TCP_SSL :
-                            NetService.TransportLayerProtocol.TCP);
         this.url = url;
+        this.host = url.getHost();
+        this.port = url.getPort() != -1 ? url.getPort() :
+                url.getProtocol().equalsIgnoreCase(HttpPackage.HttpProtocol.HTTPS.toString()) ?
+                        SystemProperties.getInteger(SystemProperties.Net.Https.DEFAULT_CLIENT_PORT) :
+                        SystemProperties.getInteger(SystemProperties.Net.Http.DEFAULT_CLIENT_PORT);
         this.connectTimeout = SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_CONNECT_TIMEOUT);
         this.writeTimeout = SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_WRITE_TIMEOUT);
         this.readTimeout = SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_READ_TIMEOUT);
@@ -66,10 +46,6 @@ public class HttpClient extends NetClient<HttpSession, HttpPackage> {
     }
 
     private void init() {
-        //Init defaults
-        this.response = null;
-        this.status = Status.INACTIVE;
-
         //Create default request
         request = new HttpRequest();
         request.setProtocol(httpProtocol);
@@ -210,207 +186,100 @@ public class HttpClient extends NetClient<HttpSession, HttpPackage> {
     }
 
     /**
-     * Creates the SSL engine.
-     * @return SSL engine instance.
-     */
-    @Override
-    protected synchronized SslPeer getSslPeer() {
-        if (sslClient == null) {
-            try {
-                sslClient = new SslClient("TLSv1.2", url.getHost(), url.getPort());
-            } catch (Exception ex) {
-                throw new HCJFRuntimeException("Ssl client fail", ex);
-            }
-        }
-        return sslClient;
-    }
-
-    /**
-     * This method return the object that represent the
-     * client's session.
-     * @return Client's session.
-     */
-    @Override
-    public HttpSession getSession() {
-        return session;
-    }
-
-    @Override
-    public HttpSession checkSession(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
-        return session;
-    }
-
-    /**
-     * This method decode the implementation data.
-     * @param payLoad Implementation data.
-     * @return Implementation data encoded.
+     * This method execute all the steps to do a http request. Obtains a connection from the pool,
+     * sends the request package and reads the response, then this response
+     * is returned as a method response. When the response is complete the connection is returned to the pool
+     * in order to be reused by the next request to the same host.
+     * @return Http response package.
      */
-    @Override
-    protected byte[] encode(HttpPackage payLoad) {
-        byte[] result = null;
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            out.write(payLoad.getProtocolHeader());
-            if(payLoad.getBody() != null) {
-                out.write(payLoad.getBody());
+    public final HttpResponse request() {
+        HttpResponse response;
+        if(getResponseHandler() == null) {
+            response = requestAsync().join();
+        } else {
+            Log.out(HTTP_CLIENT_LOG_TAG, "Request\r\n%s", request.toString());
+            HttpClientConnection connection = HttpConnectionPool.getInstance().acquire(
+                    httpProtocol, host, port, getConnectTimeout());
+            if(connection == null) {
+                response = createTimeoutResponse();
+            } else {
+                //The response is consumed by the handler, then the method returns after write the request.
+                response = connection.sendAsync(request, getWriteTimeout(), getReadTimeout(),
+                        getResponseHandler(), null).getNow(connection.getResponse());
             }
-            out.flush();
-            result = out.toByteArray();
-        } catch (Exception ex){}
-        return result;
-    }
-
-    /**
-     * This method decode the net package to obtain the implementation data
-     * @param netPackage Net package.
-     * @return Return the implementation data.
-     */
-    @Override
-    protected HttpPackage decode(NetPackage netPackage) {
-        if(response == null) {
-            response = new HttpResponse();
-            response.setProtocol(httpProtocol);
-            response.setTransferDecodingLayer(responseHandler);
         }
-        response.addData(netPackage.getPayload());
         return response;
     }
 
     /**
-     * Destroy the session.
-     * @param session Net session to be destroyed
+     * Sends the request without blocking the caller thread. The future is completed by the net service when the
+     * response is complete, then the dependent actions of the future must not block, use the async methods of
+     * the future to execute blocking actions.
+     * @return Future of the http response.
      */
-    @Override
-    public void destroySession(NetSession session) {
-        session = null;
+    public final CompletableFuture<HttpResponse> requestAsync() {
+        return requestAsync(null);
     }
 
     /**
-     *
-     * @param session Connected session.
-     * @param payLoad Decoded package payload.
-     * @param netPackage Original package.
+     * Sends the request without blocking the caller thread, the body of the response is delivered to the consumer
+     * as it arrives instead of being accumulated into the response, then the body of the response is empty.
+     * The consumer is called by the net service, then it must not block and must not retain the fragments.
+     * @param bodyConsumer Consumer of the response body.
+     * @return Future of the http response, the future is completed after the method done of the consumer.
      */
-    @Override
-    protected void onConnect(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
-        synchronized (connectionMonitor) {
-            if(status == Status.CONNECTING) {
-                status = Status.CONNECTED;
-                connectionMonitor.notifyAll();
-            }
-        }
-    }
-
-    @Override
-    protected void onDisconnect(HttpSession session, NetPackage netPackage) {
-        synchronized (this) {
-            notifyAll();
-        }
+    public final CompletableFuture<HttpResponse> requestAsync(HttpPackage.BodyConsumer bodyConsumer) {
+        long time = System.currentTimeMillis();
+        Log.out(HTTP_CLIENT_LOG_TAG, "Request\r\n%s", request.toString());
+        return requestAsync(bodyConsumer, IDEMPOTENT_METHODS.contains(request.getMethod())).thenApply(response -> {
+            Log.in(HTTP_CLIENT_LOG_TAG, "Response -> [Time: %d ms]\r\n%s",
+                    (System.currentTimeMillis() - time), response.toString());
+            return response;
+        });
     }
 
     /**
-     *
-     * @param session Net session.
-     * @param payLoad Net package decoded
-     * @param netPackage Net package.
+     * Obtains a connection from the pool and sends the request, if an idempotent request is sent over a reused
+     * connection that was closed by the server then the request is sent again using other connection. The other
+     * requests are not sent again because the server could have processed them before closing the connection.
+     * @param bodyConsumer Consumer of the response body, could be null.
+     * @param retry Indicates if the request could be sent again.
+     * @return Future of the http response.
      */
-    @Override
-    protected final void onRead(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
-        if(getResponseHandler() == null) {
-            if (response.isComplete()) {
-                synchronized (readMonitor) {
-                    status = Status.DONE;
-                    readMonitor.notifyAll();
-                }
-            }
-        }
+    private CompletableFuture<HttpResponse> requestAsync(HttpPackage.BodyConsumer bodyConsumer, boolean retry) {
+        return HttpConnectionPool.getInstance().acquireAsync(httpProtocol, host, port, getConnectTimeout())
+                .thenCompose(connection -> {
+                    CompletableFuture<HttpResponse> result;
+                    if(connection == null) {
+                        result = CompletableFuture.completedFuture(createTimeoutResponse());
+                    } else {
+                        boolean reused = connection.getRequestsCount() > 0;
+                        result = connection.sendAsync(request, getWriteTimeout(), getReadTimeout(), null, bodyConsumer)
+                                .thenCompose(response -> {
+                                    HttpConnectionPool.getInstance().release(connection);
+                                    CompletableFuture<HttpResponse> next;
+                                    if(response != null) {
+                                        next = CompletableFuture.completedFuture(response);
+                                    } else if(reused && retry) {
+                                        next = requestAsync(bodyConsumer, false);
+                                    } else {
+                                        next = CompletableFuture.completedFuture(createTimeoutResponse());
+                                    }
+                                    return next;
+                                });
+                    }
+                    return result;
+                });
     }
 
     /**
-     * This method execute all the steps to do a http request. Creates the connection,
-     * sends the request package and reads the response, then this response
-     * is returned as a method response.
-     * @return Http response package.
+     * Creates the response for the requests without connection or response.
+     * @return Http response instance.
      */
-    public final HttpResponse request() {
-        long time = System.currentTimeMillis();
-        Integer errorCode = null;
-
-        //Connection block
-        status = Status.CONNECTING;
-        synchronized (connectionMonitor) {
-            for (int i = 0; i < 3; i++) {
-                session = new HttpSession(UUID.randomUUID(), this);
-                session.setRequest(request);
-                session.setSessionName(SESSION_NAME);
-                connect();
-                if (status == Status.CONNECTING) {
-                    try {
-                        connectionMonitor.wait(getConnectTimeout());
-                    } catch (InterruptedException e) {
-                    }
-                }
-
-                if (status == Status.CONNECTING) {
-                    try {
-                        disconnect(getSession(), DISCONNECTION_MESSAGE);
-                        destroySession(getSession());
-                    } catch (Exception ex){}
-                } else {
-                    break;
-                }
-            }
-
-            if(status == Status.CONNECTING) {
-                status = Status.ERROR;
-                errorCode = HttpResponseCode.REQUEST_TIMEOUT;
-            }
-        }
-
-        //Request writing request and read response block
-        if(status != Status.ERROR) {
-            status = Status.WRITING;
-
-            Log.out(HTTP_CLIENT_LOG_TAG, "Request\r\n%s", request.toString());
-            try {
-                write(getSession(), request, true);
-            } catch (Exception ex) {
-                status = Status.ERROR;
-                errorCode = HttpResponseCode.BAD_REQUEST;
-            }
-
-            if(getResponseHandler() == null) {
-                synchronized (readMonitor) {
-                    if (status == Status.WRITING) {
-                        try {
-                            readMonitor.wait(getWriteTimeout());
-                        } catch (InterruptedException e) {
-                            e.printStackTrace();
-                        }
-                    }
-
-                    if (status == Status.WRITING) {
-                        status = Status.ERROR;
-                        errorCode = HttpResponseCode.REQUEST_TIMEOUT;
-                    }
-                }
-            }
-        }
-
-        HttpResponse response;
-        if(status == Status.ERROR) {
-            response = new HttpResponse();
-            response.setHttpVersion(HttpVersion.VERSION_1_1);
-            response.setResponseCode(errorCode);
-        } else {
-            response = this.response;
-        }
-
-        if(getResponseHandler() == null) {
-            disconnect(getSession(), DISCONNECTION_MESSAGE);
-        }
-
-        Log.in(HTTP_CLIENT_LOG_TAG, "Response -> [Time: %d ms]\r\n%s",
-                (System.currentTimeMillis() - time), response.toString());
+    private HttpResponse createTimeoutResponse() {
+        HttpResponse response = new HttpResponse();
+        response.setHttpVersion(HttpVersion.VERSION_1_1);
+        response.setResponseCode(HttpResponseCode.REQUEST_TIMEOUT);
         return response;
     }
 
@@ -419,23 +288,4 @@ public class HttpClient extends NetClient<HttpSession, HttpPackage> {
 
         return request();
     }
-
-    /**
-     * Clietn request status.
-     */
-    private enum Status {
-
-        INACTIVE,
-
-        CONNECTING,
-
-        CONNECTED,
-
-        WRITING,
-
-        DONE,
-
-        ERROR;
-
-    }
 }
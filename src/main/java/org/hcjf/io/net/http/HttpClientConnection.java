@@ -0,0 +1,713 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.io.net.NetClient;
+import org.hcjf.io.net.NetPackage;
+import org.hcjf.io.net.NetService;
+import org.hcjf.io.net.NetSession;
+import org.hcjf.io.net.TimingWheel;
+import org.hcjf.io.net.ssl.SslClient;
+import org.hcjf.io.net.ssl.SslPeer;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class represents a connection of the http client. The connections are kept by the {@link HttpConnectionPool}
+ * in order to send many requests to the same host using the same connection, each connection sends only one
+ * request at the same time. The connection and the response are notified using futures completed by the
+ * net service, then there are no threads blocked waiting for the response.
+ * @author javaito
+ */
+public class HttpClientConnection extends NetClient<HttpSession, HttpPackage> {
+
+    private static final String SESSION_NAME = "Http client session";
+    private static final String DISCONNECTION_MESSAGE = "Http client connection end";
+    private static final String READ_TIMEOUT_MESSAGE = "Read timeout";
+    private static final String SSL_PROTOCOL = "TLSv1.2";
+    private static final byte[] CHUNK_SEPARATOR = HttpPackage.STRING_LINE_SEPARATOR.getBytes();
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes();
+
+    private final String key;
+    private final HttpPackage.HttpProtocol httpProtocol;
+    private final Object monitor;
+    private final AtomicBoolean pooled;
+    private HttpSession session;
+    private Status status;
+    private HttpRequest request;
+    private HttpResponse response;
+    private HttpResponseHandler responseHandler;
+    private TimingWheel.Timeout responseTimeout;
+    private TimingWheel.Timeout connectTimeout;
+    private CompletableFuture<Boolean> connectFuture;
+    private CompletableFuture<HttpResponse> responseFuture;
+    private ResponseBodyConsumer bodyConsumer;
+    private volatile boolean requestBodyPending;
+    private Long readTimeout;
+    private SslClient sslClient;
+    private boolean reusable;
+    private int requestsCount;
+    private long lastUse;
+
+    /**
+     * Constructor.
+     * @param key Key of the pool where the connection is kept.
+     * @param host Remote host.
+     * @param port Remote port.
+     * @param httpProtocol Http protocol of the connection.
+     */
+    public HttpClientConnection(String key, String host, Integer port, HttpPackage.HttpProtocol httpProtocol) {
+        super(host, port, httpProtocol.equals(HttpPackage.HttpProtocol.HTTPS) ?
+                NetService.TransportLayerProtocol.TCP_SSL : NetService.TransportLayerProtocol.TCP);
+        this.key = key;
+        this.httpProtocol = httpProtocol;
+        this.monitor = new Object();
+        this.pooled = new AtomicBoolean(true);
+        this.status = Status.INACTIVE;
+    }
+
+    /**
+     * Returns the key of the pool where the connection is kept.
+     * @return Pool key.
+     */
+    public final String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the number of requests sent using this connection.
+     * @return Number of requests.
+     */
+    public final int getRequestsCount() {
+        return requestsCount;
+    }
+
+    /**
+     * Returns the timestamp of the end of the last request.
+     * @return Last use timestamp.
+     */
+    public final long getLastUse() {
+        return lastUse;
+    }
+
+    /**
+     * Verify if the connection can send the next request, the connection is reusable if it is open and the last
+     * response was complete and persistent.
+     * @return True if the connection is reusable.
+     */
+    public final boolean isReusable() {
+        synchronized (monitor) {
+            return reusable && status == Status.IDLE && getService() != null && getService().isConnected(session);
+        }
+    }
+
+    /**
+     * Marks the connection as removed of the pool, this method returns true only the first time.
+     * @return True if the connection was into the pool.
+     */
+    final boolean removeFromPool() {
+        return pooled.compareAndSet(true, false);
+    }
+
+    /**
+     * Creates the SSL peer, the ssl context is shared then the ssl sessions are resumed by the new connections
+     * to the same host.
+     * @return SSL peer instance.
+     */
+    @Override
+    protected synchronized SslPeer getSslPeer() {
+        if (sslClient == null) {
+            try {
+                sslClient = new SslClient(SSL_PROTOCOL, getHost(), getPort());
+            } catch (Exception ex) {
+                throw new HCJFRuntimeException("Ssl client fail", ex);
+            }
+        }
+        return sslClient;
+    }
+
+    /**
+     * This method return the object that represent the
+     * client's session.
+     * @return Client's session.
+     */
+    @Override
+    public HttpSession getSession() {
+        return session;
+    }
+
+    @Override
+    public HttpSession checkSession(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
+        return session;
+    }
+
+    /**
+     * This method decode the implementation data.
+     * @param payLoad Implementation data.
+     * @return Implementation data encoded.
+     */
+    @Override
+    protected byte[] encode(HttpPackage payLoad) {
+        byte[] result = null;
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            out.write(payLoad.getProtocolHeader());
+            if(payLoad.getBody() != null) {
+                out.write(payLoad.getBody());
+            }
+            out.flush();
+            result = out.toByteArray();
+        } catch (Exception ex){}
+        return result;
+    }
+
+    /**
+     * This method decode the net package to obtain the implementation data
+     * @param netPackage Net package.
+     * @return Return the implementation data.
+     */
+    @Override
+    protected HttpPackage decode(NetPackage netPackage) {
+        HttpResponse result;
+        synchronized (monitor) {
+            if(response == null) {
+                ResponseBodyConsumer consumer = bodyConsumer;
+                boolean head = request != null && HttpMethod.HEAD.equals(request.getMethod());
+                response = new HttpResponse() {
+                    @Override
+                    protected BodyConsumer createBodyConsumer() {
+                        return consumer;
+                    }
+
+                    @Override
+                    public boolean isBodyAllowed() {
+                        //The response of a head request never has body.
+                        return !head && super.isBodyAllowed();
+                    }
+                };
+                response.setProtocol(httpProtocol);
+                response.setTransferDecodingLayer(responseHandler);
+            }
+            result = response;
+        }
+        result.addData(netPackage.getPayload());
+        return result;
+    }
+
+    /**
+     * Destroy the session.
+     * @param session Net session to be destroyed
+     */
+    @Override
+    public void destroySession(NetSession session) {
+    }
+
+    /**
+     * Creates the connection, the future is completed by the net service when the connection is established
+     * or fails, then the caller thread is not blocked.
+     * @param connectTimeout Maximum time to wait the connection.
+     * @return Future completed with true if the connection was established and false in the otherwise.
+     */
+    public final CompletableFuture<Boolean> openAsync(Long connectTimeout) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        synchronized (monitor) {
+            status = Status.CONNECTING;
+            connectFuture = result;
+            session = new HttpSession(UUID.randomUUID(), this);
+            session.setSessionName(SESSION_NAME);
+            this.connectTimeout = NetService.getInstance().getTimingWheel().schedule(
+                    () -> onConnectResult(false), connectTimeout);
+        }
+        connect();
+        return result;
+    }
+
+    /**
+     * Completes the connection future, if the connection fails then the connection is closed.
+     * @param connected Result of the connection.
+     */
+    private void onConnectResult(boolean connected) {
+        CompletableFuture<Boolean> future = null;
+        synchronized (monitor) {
+            if(status == Status.CONNECTING) {
+                status = connected ? Status.IDLE : Status.CLOSED;
+                reusable = connected;
+                future = connectFuture;
+                connectFuture = null;
+                if(connectTimeout != null) {
+                    connectTimeout.cancel();
+                    connectTimeout = null;
+                }
+            }
+        }
+
+        if(future != null) {
+            if(!connected) {
+                close();
+            }
+            future.complete(connected);
+        }
+    }
+
+    /**
+     * Closes the connection and removes it from the pool.
+     */
+    public final void close() {
+        synchronized (monitor) {
+            status = Status.CLOSED;
+            reusable = false;
+        }
+        if(session != null && getService() != null) {
+            disconnect(session, DISCONNECTION_MESSAGE);
+        }
+        HttpConnectionPool.getInstance().remove(this);
+    }
+
+    /**
+     * Returns the response in course, this response could be incomplete.
+     * @return Response in course or null if there are no bytes of the response yet.
+     */
+    public final HttpResponse getResponse() {
+        synchronized (monitor) {
+            return response;
+        }
+    }
+
+    /**
+     * Sends the request without blocking the caller thread, the future is completed by the net service when
+     * the response is complete, when the timeout is reached or when the connection is closed. If there are a
+     * response handler then the connection is closed when the response is complete.
+     * @param request Http request.
+     * @param writeTimeout Time to write the request and receive the first bytes of the response.
+     * @param readTimeout Maximum time between two reads of the response.
+     * @param responseHandler Response handler, could be null.
+     * @param bodyConsumer Consumer of the response body, if it's not null then the body is delivered to the
+     *                     consumer as it arrives instead of being accumulated into the response. Could be null.
+     * @return Future completed with the http response, an error response if the request fails or null if the
+     * connection was closed by the server before the response.
+     */
+    public final CompletableFuture<HttpResponse> sendAsync(HttpRequest request, Long writeTimeout, Long readTimeout,
+                                                           HttpResponseHandler responseHandler,
+                                                           HttpPackage.BodyConsumer bodyConsumer) {
+        return send(request, null, writeTimeout, readTimeout, responseHandler, bodyConsumer);
+    }
+
+    /**
+     * Sends the request writing the body from the stream, the body is written by the caller thread as it's read
+     * from the stream and the future of the response is completed by the net service. If the request contains the
+     * chunked transfer encoding header then the body is written using chunks, in the otherwise the bytes are written
+     * as they are read and the request must contain the content length header.
+     * @param request Http request without body.
+     * @param bodyStream Stream of the request body.
+     * @param writeTimeout Time to write the request and receive the first bytes of the response.
+     * @param readTimeout Maximum time between two reads of the response.
+     * @param bodyConsumer Consumer of the response body, could be null.
+     * @return Future completed with the http response, an error response if the request fails or null if the
+     * connection was closed by the server before the response.
+     */
+    public final CompletableFuture<HttpResponse> sendAsync(HttpRequest request, InputStream bodyStream, Long writeTimeout,
+                                                           Long readTimeout, HttpPackage.BodyConsumer bodyConsumer) {
+        return send(request, bodyStream, writeTimeout, readTimeout, null, bodyConsumer);
+    }
+
+    /**
+     * Writes the request and the body stream if it's not null.
+     * @param request Http request.
+     * @param bodyStream Stream of the request body, could be null.
+     * @param writeTimeout Time to write the request and receive the first bytes of the response.
+     * @param readTimeout Maximum time between two reads of the response.
+     * @param responseHandler Response handler, could be null.
+     * @param bodyConsumer Consumer of the response body, could be null.
+     * @return Future of the response.
+     */
+    private CompletableFuture<HttpResponse> send(HttpRequest request, InputStream bodyStream, Long writeTimeout,
+                                                 Long readTimeout, HttpResponseHandler responseHandler,
+                                                 HttpPackage.BodyConsumer bodyConsumer) {
+        CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        boolean writing;
+        synchronized (monitor) {
+            //The state of a closed connection is not changed by the request.
+            writing = status == Status.IDLE;
+            if(writing) {
+                this.request = request;
+                this.response = null;
+                this.responseHandler = responseHandler;
+                this.bodyConsumer = bodyConsumer == null ? null : new ResponseBodyConsumer(bodyConsumer);
+                this.requestBodyPending = bodyStream != null;
+                this.reusable = false;
+                this.requestsCount++;
+                status = Status.WRITING;
+                responseFuture = result;
+            }
+        }
+
+        if(writing) {
+            session.setRequest(request);
+            try {
+                write(session, request, false);
+                if(bodyStream != null) {
+                    HttpHeader transferEncoding = request.getHeader(HttpHeader.TRANSFER_ENCODING);
+                    writeBody(bodyStream, transferEncoding != null &&
+                            transferEncoding.getHeaderValue().equalsIgnoreCase(HttpHeader.CHUNKED));
+                }
+                //The first timeout is the time to write the request and receive the first bytes of the response.
+                scheduleResponseTimeout(writeTimeout, readTimeout);
+            } catch (Exception ex) {
+                //The request could not be written, then the server is unavailable for this request.
+                onResponseError(HttpResponseCode.SERVICE_UNAVAILABLE, DISCONNECTION_MESSAGE);
+            }
+        } else {
+            //The connection was closed before the request.
+            result.complete(null);
+        }
+        return result;
+    }
+
+    /**
+     * Writes the body of the request reading the stream until the end, the writing stops if the response
+     * is done before the end of the body.
+     * @param bodyStream Stream of the body.
+     * @param chunked True if the body must be written using chunked transfer encoding.
+     * @throws IOException Exception reading the stream or writing the connection.
+     */
+    private void writeBody(InputStream bodyStream, boolean chunked) throws IOException {
+        byte[] buffer = new byte[SystemProperties.getInteger(SystemProperties.Net.Http.Proxy.STREAMING_CHUNK_SIZE)];
+        int read;
+        while(status == Status.WRITING && (read = bodyStream.read(buffer)) >= 0) {
+            if(read > 0) {
+                byte[] data;
+                if(chunked) {
+                    byte[] size = (Integer.toHexString(read) + HttpPackage.STRING_LINE_SEPARATOR).getBytes();
+                    data = new byte[size.length + read + CHUNK_SEPARATOR.length];
+                    System.arraycopy(size, 0, data, 0, size.length);
+                    System.arraycopy(buffer, 0, data, size.length, read);
+                    System.arraycopy(CHUNK_SEPARATOR, 0, data, size.length + read, CHUNK_SEPARATOR.length);
+                } else {
+                    data = Arrays.copyOf(buffer, read);
+                }
+                writeData(data);
+            }
+        }
+
+        if(status == Status.WRITING) {
+            if(chunked) {
+                writeData(LAST_CHUNK);
+            }
+            requestBodyPending = false;
+        }
+    }
+
+    /**
+     * Writes the bytes into the connection waiting while the connection is not writable.
+     * @param data Bytes to write.
+     * @throws IOException Exception writing the connection.
+     */
+    private void writeData(byte[] data) throws IOException {
+        if(!getService().awaitWritable(session, getWriteBackpressureTimeout())) {
+            throw new IOException("Write buffer full");
+        }
+        getService().writeData(session, data);
+    }
+
+    /**
+     * Stops the reading of the connection until the method resumeRead is called, the net service keeps the
+     * bytes into the socket buffer then the remote peer stops the writing.
+     */
+    public final void suspendRead() {
+        try {
+            getService().suspendRead(session);
+        } catch (IOException ex) {
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to suspend the read of the connection", ex);
+        }
+    }
+
+    /**
+     * Restores the reading of the connection.
+     */
+    public final void resumeRead() {
+        try {
+            getService().resumeRead(session);
+        } catch (IOException ex) {
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to resume the read of the connection", ex);
+        }
+    }
+
+    /**
+     * Creates the response for the requests that fail.
+     * @param errorCode Response code.
+     * @return Http response instance.
+     */
+    private HttpResponse createErrorResponse(Integer errorCode) {
+        HttpResponse response = new HttpResponse();
+        response.setHttpVersion(HttpVersion.VERSION_1_1);
+        response.setResponseCode(errorCode);
+        return response;
+    }
+
+    /**
+     * Verify if the connection remains open after the response. The responses without length are not
+     * persistent because the end of the body is the end of the connection.
+     * @param request Http request instance.
+     * @param response Http response instance.
+     * @return True if the connection could be reused.
+     */
+    private boolean isKeepAlive(HttpRequest request, HttpResponse response) {
+        boolean result;
+        HttpHeader requestConnection = request.getHeader(HttpHeader.CONNECTION);
+        HttpHeader responseConnection = response.getHeader(HttpHeader.CONNECTION);
+        if(requestConnection != null && !requestConnection.getHeaderValue().equalsIgnoreCase(HttpHeader.KEEP_ALIVE)) {
+            result = false;
+        } else if(responseConnection != null) {
+            result = responseConnection.getHeaderValue().equalsIgnoreCase(HttpHeader.KEEP_ALIVE);
+        } else {
+            result = HttpVersion.VERSION_1_1.equals(response.getHttpVersion());
+        }
+
+        if(result && !response.containsHeader(HttpHeader.CONTENT_LENGTH)) {
+            Integer responseCode = response.getResponseCode();
+            HttpHeader transferEncoding = response.getHeader(HttpHeader.TRANSFER_ENCODING);
+            result = (transferEncoding != null && transferEncoding.getHeaderValue().equalsIgnoreCase(HttpHeader.CHUNKED)) ||
+                    request.getMethod().equals(HttpMethod.HEAD) || responseCode == null ||
+                    responseCode < HttpResponseCode.OK || responseCode.equals(HttpResponseCode.NO_CONTENT) ||
+                    responseCode.equals(HttpResponseCode.NOT_MODIFIED);
+        }
+        return result;
+    }
+
+    /**
+     * Completes the connection future, if the connection was established after the connect timeout then
+     * the connection is closed.
+     * @param session Connected session.
+     * @param payLoad Decoded package payload.
+     * @param netPackage Original package.
+     */
+    @Override
+    protected void onConnect(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
+        boolean connecting;
+        synchronized (monitor) {
+            connecting = status == Status.CONNECTING;
+        }
+        if(connecting) {
+            onConnectResult(true);
+        } else {
+            disconnect(session, DISCONNECTION_MESSAGE);
+        }
+    }
+
+    /**
+     * Completes the connection future with false.
+     */
+    @Override
+    protected void onConnectFail() {
+        onConnectResult(false);
+    }
+
+    /**
+     * The connection closed by the server is removed from the pool and the request in course fails.
+     * @param session Net session.
+     * @param netPackage Net package.
+     */
+    @Override
+    protected void onDisconnect(HttpSession session, NetPackage netPackage) {
+        CompletableFuture<HttpResponse> future = null;
+        HttpResponse result = null;
+        onConnectResult(false);
+        synchronized (monitor) {
+            reusable = false;
+            if(status == Status.WRITING) {
+                future = responseFuture;
+                responseFuture = null;
+                //Without bytes of the response the request could be sent again using other connection.
+                result = response == null ? null : createErrorResponse(HttpResponseCode.REQUEST_TIMEOUT);
+                if(responseTimeout != null) {
+                    responseTimeout.cancel();
+                    responseTimeout = null;
+                }
+            }
+            status = Status.CLOSED;
+        }
+        HttpConnectionPool.getInstance().remove(this);
+        if(future != null) {
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Completes the response future when the response is complete, in the otherwise restarts the read timeout.
+     * @param session Net session.
+     * @param payLoad Net package decoded
+     * @param netPackage Net package.
+     */
+    @Override
+    protected final void onRead(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
+        CompletableFuture<HttpResponse> future = null;
+        HttpResponse result = null;
+        boolean handled = false;
+        synchronized (monitor) {
+            if (payLoad.isComplete()) {
+                cancelResponseTimeout();
+                if(status == Status.WRITING) {
+                    future = responseFuture;
+                    responseFuture = null;
+                    result = response;
+                    handled = responseHandler != null;
+                    //If the response arrives before the end of the request body then the connection is not reusable.
+                    reusable = !handled && !requestBodyPending && isKeepAlive(request, response);
+                    status = Status.IDLE;
+                    lastUse = System.currentTimeMillis();
+                    if(bodyConsumer != null) {
+                        bodyConsumer.complete(response);
+                        bodyConsumer = null;
+                    }
+                }
+            } else {
+                //Each read restarts the timeout, then the read timeout is the maximum time between two reads.
+                scheduleResponseTimeout(readTimeout, readTimeout);
+            }
+        }
+
+        if(handled) {
+            //The connections used by a response handler are not reused.
+            close();
+        }
+        if(future != null) {
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Schedules the timeout of the response into the timing wheel of the net service, if there are
+     * a previous timeout then it's cancelled.
+     * @param timeout Timeout value in milliseconds, zero or negative value means without timeout.
+     * @param readTimeout Timeout between two reads.
+     */
+    private void scheduleResponseTimeout(Long timeout, Long readTimeout) {
+        synchronized (monitor) {
+            this.readTimeout = readTimeout;
+            if(responseTimeout != null) {
+                responseTimeout.cancel();
+                responseTimeout = null;
+            }
+            if(timeout != null && timeout > 0 && status == Status.WRITING) {
+                responseTimeout = getService().getTimingWheel().schedule(this::onResponseTimeout, timeout);
+            }
+        }
+    }
+
+    /**
+     * Cancels the timeout of the response.
+     */
+    private void cancelResponseTimeout() {
+        synchronized (monitor) {
+            if(responseTimeout != null) {
+                responseTimeout.cancel();
+                responseTimeout = null;
+            }
+        }
+    }
+
+    /**
+     * This method is called by the timing wheel when the response is not read into the expected time,
+     * the connection is closed because the rest of the response could arrive later.
+     */
+    private void onResponseTimeout() {
+        onResponseError(HttpResponseCode.REQUEST_TIMEOUT, READ_TIMEOUT_MESSAGE);
+    }
+
+    /**
+     * Completes the response future with an error response and closes the connection.
+     * @param errorCode Response code.
+     * @param message Disconnection message.
+     */
+    private void onResponseError(Integer errorCode, String message) {
+        CompletableFuture<HttpResponse> future = null;
+        synchronized (monitor) {
+            if(status == Status.WRITING) {
+                status = Status.ERROR;
+                reusable = false;
+                future = responseFuture;
+                responseFuture = null;
+                if(responseTimeout != null) {
+                    responseTimeout.cancel();
+                    responseTimeout = null;
+                }
+            }
+        }
+        if(future != null) {
+            disconnect(session, message);
+            HttpConnectionPool.getInstance().remove(this);
+            future.complete(createErrorResponse(errorCode));
+        }
+    }
+
+    /**
+     * This consumer delivers the body of the response to the consumer of the request and verify that the
+     * methods start and done are called only once, even if the response has no body.
+     */
+    private static final class ResponseBodyConsumer implements HttpPackage.BodyConsumer {
+
+        private final HttpPackage.BodyConsumer consumer;
+        private boolean started;
+        private boolean done;
+
+        private ResponseBodyConsumer(HttpPackage.BodyConsumer consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public synchronized void start(HttpPackage httpPackage) {
+            if(!started) {
+                started = true;
+                consumer.start(httpPackage);
+            }
+        }
+
+        @Override
+        public void add(ByteBuffer bodyFragment) {
+            consumer.add(bodyFragment);
+        }
+
+        @Override
+        public synchronized void done() {
+            if(!done) {
+                done = true;
+                consumer.done();
+            }
+        }
+
+        /**
+         * Finishes the consumer when the response is complete.
+         * @param response Complete response.
+         */
+        private void complete(HttpResponse response) {
+            start(response);
+            done();
+        }
+    }
+
+    /**
+     * Connection status.
+     */
+    private enum Status {
+
+        INACTIVE,
+
+        CONNECTING,
+
+        IDLE,
+
+        WRITING,
+
+        ERROR,
+
+        CLOSED
+
+    }
+}
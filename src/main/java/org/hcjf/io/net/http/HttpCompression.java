@@ -0,0 +1,287 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Negotiates the content encoding of the responses and creates the encoders. The gzip and deflate encoders
+ * reuse a deflater instance per thread, other encodings like brotli can be registered by the application.
+ * @author javaito
+ */
+public final class HttpCompression {
+
+    private static final String QUALITY_PARAMETER = "q";
+    private static final String ANY_ENCODING = "*";
+    private static final int ENCODE_BUFFER_SIZE = 8192;
+
+    private static final Map<String, Supplier<ContentEncoder>> encoders;
+    private static final ThreadLocal<DeflaterHolder> gzipDeflaters;
+    private static final ThreadLocal<DeflaterHolder> deflateDeflaters;
+
+    static {
+        encoders = new ConcurrentHashMap<>();
+        gzipDeflaters = ThreadLocal.withInitial(() -> new DeflaterHolder(true));
+        deflateDeflaters = ThreadLocal.withInitial(() -> new DeflaterHolder(false));
+        encoders.put(HttpHeader.GZIP, () -> new DeflaterEncoder(true));
+        encoders.put(HttpHeader.DEFLATE, () -> new DeflaterEncoder(false));
+    }
+
+    private HttpCompression() {
+    }
+
+    /**
+     * Registers an encoder for a content encoding, the encoding is negotiated only if it is into the list of
+     * encodings of the system properties.
+     * @param encoding Name of the encoding, for example 'br'.
+     * @param encoderSupplier Supplier that creates a new encoder for each response.
+     */
+    public static void registerEncoding(String encoding, Supplier<ContentEncoder> encoderSupplier) {
+        encoders.put(encoding, encoderSupplier);
+    }
+
+    /**
+     * Verify if there are an encoder registered for the encoding.
+     * @param encoding Name of the encoding.
+     * @return True if the encoding is supported.
+     */
+    public static boolean isSupported(String encoding) {
+        return encoders.containsKey(encoding);
+    }
+
+    /**
+     * Returns the encoding accepted by the request with the greater quality value, if some encodings have the
+     * same quality then the first into the list of encodings of the system properties is selected.
+     * @param request Http request instance.
+     * @return Name of the encoding or null if the response must be sent without encoding.
+     */
+    public static String negotiate(HttpRequest request) {
+        String result = null;
+        HttpHeader acceptEncoding = request.getHeader(HttpHeader.ACCEPT_ENCODING);
+        if(acceptEncoding != null) {
+            float resultQuality = 0;
+            for(String encoding : SystemProperties.getList(SystemProperties.Net.Http.Compression.ENCODINGS)) {
+                if(encoders.containsKey(encoding)) {
+                    float quality = getQuality(acceptEncoding, encoding);
+                    if(quality > resultQuality) {
+                        result = encoding;
+                        resultQuality = quality;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the quality value of the encoding into the accept encoding header, the wildcard is used only if the
+     * encoding is not explicitly into the header.
+     * @param acceptEncoding Accept encoding header.
+     * @param encoding Encoding name.
+     * @return Quality value, zero if the encoding is not acceptable.
+     */
+    private static float getQuality(HttpHeader acceptEncoding, String encoding) {
+        String group = null;
+        for(String acceptedEncoding : acceptEncoding.getGroups()) {
+            if(acceptedEncoding.equalsIgnoreCase(encoding)) {
+                group = acceptedEncoding;
+                break;
+            } else if(acceptedEncoding.equals(ANY_ENCODING)) {
+                group = acceptedEncoding;
+            }
+        }
+
+        float result = 0;
+        if(group != null) {
+            String quality = acceptEncoding.getParameter(group, QUALITY_PARAMETER);
+            try {
+                result = quality == null ? 1 : Float.parseFloat(quality);
+            } catch (NumberFormatException ex) {
+                result = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new encoder for the encoding.
+     * @param encoding Encoding name.
+     * @return Encoder instance.
+     */
+    public static ContentEncoder createEncoder(String encoding) {
+        Supplier<ContentEncoder> encoderSupplier = encoders.get(encoding);
+        if(encoderSupplier == null) {
+            throw new HCJFRuntimeException("Content encoding not supported: %s", encoding);
+        }
+        return encoderSupplier.get();
+    }
+
+    /**
+     * Encodes the complete body.
+     * @param encoding Encoding name.
+     * @param body Body to encode.
+     * @return Encoded body or null if the encoded body is not smaller than the original body.
+     */
+    public static byte[] encode(String encoding, byte[] body) {
+        byte[] result = null;
+        ContentEncoder encoder = createEncoder(encoding);
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            byte[] buffer = new byte[ENCODE_BUFFER_SIZE];
+            encoder.setInput(body, 0, body.length);
+            encoder.finish();
+            while(!encoder.isFinished() && out.size() < body.length) {
+                out.write(buffer, 0, encoder.encode(buffer, 0, buffer.length));
+            }
+            if(encoder.isFinished() && out.size() < body.length) {
+                result = out.toByteArray();
+            }
+        } catch (Exception ex) {
+            throw new HCJFRuntimeException("Unable to encode the body with %s", ex, encoding);
+        } finally {
+            encoder.close();
+        }
+        return result;
+    }
+
+    /**
+     * Deflater of a thread, the deflater is marked as used while an encoder owns it.
+     */
+    private static final class DeflaterHolder {
+
+        private final Deflater deflater;
+        private boolean inUse;
+
+        private DeflaterHolder(boolean gzip) {
+            this.deflater = new Deflater(SystemProperties.getInteger(SystemProperties.Net.Http.Compression.LEVEL), gzip);
+        }
+    }
+
+    /**
+     * Gzip and deflate encoder, the gzip encoder writes the header and the trailer around the raw deflate data.
+     */
+    private static final class DeflaterEncoder implements ContentEncoder {
+
+        private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+        private static final int GZIP_TRAILER_SIZE = 8;
+
+        private final boolean gzip;
+        private final DeflaterHolder holder;
+        private final boolean shared;
+        private final CRC32 crc;
+        private byte[] pending;
+        private int pendingOffset;
+        private boolean finishing;
+        private boolean outputFull;
+
+        private DeflaterEncoder(boolean gzip) {
+            this.gzip = gzip;
+            DeflaterHolder threadHolder = (gzip ? gzipDeflaters : deflateDeflaters).get();
+            if(threadHolder.inUse) {
+                //The thread is encoding another response.
+                holder = new DeflaterHolder(gzip);
+                shared = false;
+            } else {
+                holder = threadHolder;
+                shared = true;
+            }
+            holder.inUse = true;
+            holder.deflater.reset();
+            crc = gzip ? new CRC32() : null;
+            pending = gzip ? GZIP_HEADER : null;
+        }
+
+        @Override
+        public void setInput(byte[] data, int offset, int length) {
+            holder.deflater.setInput(data, offset, length);
+            if(gzip) {
+                crc.update(data, offset, length);
+            }
+        }
+
+        @Override
+        public void finish() {
+            finishing = true;
+            holder.deflater.finish();
+        }
+
+        @Override
+        public int encode(byte[] output, int offset, int length) {
+            Deflater deflater = holder.deflater;
+            int result = writePending(output, offset, length);
+            if(pending == null && !deflater.finished()) {
+                int available = length - result;
+                int size = deflater.deflate(output, offset + result, available,
+                        finishing ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                outputFull = size == available;
+                result += size;
+                if(deflater.finished() && gzip) {
+                    pending = createGzipTrailer();
+                    pendingOffset = 0;
+                    result += writePending(output, offset + result, length - result);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean needsInput() {
+            return !finishing && !outputFull && holder.deflater.needsInput();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return pending == null && holder.deflater.finished();
+        }
+
+        @Override
+        public void close() {
+            if(shared) {
+                holder.deflater.reset();
+                holder.inUse = false;
+            } else {
+                holder.deflater.end();
+            }
+        }
+
+        /**
+         * Puts the pending bytes of the gzip header or trailer into the output array.
+         * @param output Output array.
+         * @param offset Offset into the output array.
+         * @param length Max number of bytes to put.
+         * @return Number of bytes put into the output array.
+         */
+        private int writePending(byte[] output, int offset, int length) {
+            int result = 0;
+            if(pending != null) {
+                result = Math.min(length, pending.length - pendingOffset);
+                System.arraycopy(pending, pendingOffset, output, offset, result);
+                pendingOffset += result;
+                if(pendingOffset == pending.length) {
+                    pending = null;
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Creates the gzip trailer with the crc and the size of the content, both in little endian.
+         * @return Trailer bytes.
+         */
+        private byte[] createGzipTrailer() {
+            byte[] trailer = new byte[GZIP_TRAILER_SIZE];
+            long checksum = crc.getValue();
+            long size = holder.deflater.getBytesRead();
+            for (int i = 0; i < 4; i++) {
+                trailer[i] = (byte) (checksum >> (i * 8));
+                trailer[i + 4] = (byte) (size >> (i * 8));
+            }
+            return trailer;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.io.net.NetService;
+import org.hcjf.io.net.TimingWheel;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps the persistent connections of the http clients grouped by protocol, host and port. Each
+ * group has a limit of connections, the idle connections are reused in lifo order and closed when the idle
+ * timeout is reached. The requests over the limit of connections wait into a bounded queue of the host without
+ * blocking any thread.
+ * @author javaito
+ */
+public final class HttpConnectionPool {
+
+    private static final HttpConnectionPool instance;
+
+    static {
+        instance = new HttpConnectionPool();
+    }
+
+    private static final String KEY_FORMAT = "%s://%s:%d";
+    private static final int CONNECT_ATTEMPTS = 3;
+
+    private final Map<String, HostPool> hostPools;
+    private final Object sweepMonitor;
+    private TimingWheel.Timeout sweepTimeout;
+
+    private HttpConnectionPool() {
+        this.hostPools = new ConcurrentHashMap<>();
+        this.sweepMonitor = new Object();
+        NetService.getInstance().addShutdownListener(this::shutdown);
+    }
+
+    /**
+     * Returns the singleton instance of the pool.
+     * @return Pool instance.
+     */
+    public static HttpConnectionPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns a connected connection to the host, this method blocks the caller thread until the connection is
+     * available.
+     * @param protocol Http protocol.
+     * @param host Remote host.
+     * @param port Remote port.
+     * @param connectTimeout Maximum time to obtain the connection.
+     * @return Connection instance or null if the connection is not available into the timeout.
+     */
+    public HttpClientConnection acquire(HttpPackage.HttpProtocol protocol, String host, Integer port, Long connectTimeout) {
+        return acquireAsync(protocol, host, port, connectTimeout).join();
+    }
+
+    /**
+     * Returns a future of a connected connection to the host, if there are an idle connection then this connection
+     * is reused, in the otherwise a new connection is created. If the host has all its connections in use then the
+     * request waits into the queue of the host until some connection is released or the connect timeout is reached,
+     * if the queue is full then the future is completed with null immediately.
+     * @param protocol Http protocol.
+     * @param host Remote host.
+     * @param port Remote port.
+     * @param connectTimeout Maximum time to obtain the connection.
+     * @return Future completed with the connection instance or null if the connection is not available into the timeout.
+     */
+    public CompletableFuture<HttpClientConnection> acquireAsync(HttpPackage.HttpProtocol protocol, String host,
+                                                                Integer port, Long connectTimeout) {
+        String key = String.format(KEY_FORMAT, protocol.toString().toLowerCase(), host, port);
+        HostPool hostPool = hostPools.computeIfAbsent(key, k -> new HostPool(k, protocol, host, port));
+        boolean enabled = SystemProperties.getBoolean(SystemProperties.Net.Http.CLIENT_POOL_ENABLED);
+        int maxConnections = SystemProperties.getInteger(SystemProperties.Net.Http.CLIENT_POOL_MAX_CONNECTIONS_PER_HOST);
+        int maxPendingRequests = SystemProperties.getInteger(SystemProperties.Net.Http.CLIENT_POOL_MAX_PENDING_REQUESTS_PER_HOST);
+        CompletableFuture<HttpClientConnection> result = new CompletableFuture<>();
+        long deadline = System.currentTimeMillis() + connectTimeout;
+
+        HttpClientConnection connection = null;
+        List<HttpClientConnection> staleConnections = new ArrayList<>();
+        boolean create = false;
+        synchronized (hostPool) {
+            connection = pollIdleConnection(hostPool, staleConnections);
+            if(connection == null) {
+                if(!enabled || hostPool.size < maxConnections) {
+                    hostPool.size++;
+                    create = true;
+                } else if(hostPool.pendingRequests.size() < maxPendingRequests) {
+                    PendingRequest pendingRequest = new PendingRequest(result, deadline);
+                    hostPool.pendingRequests.add(pendingRequest);
+                    TimingWheel.Timeout timeout = NetService.getInstance().getTimingWheel().schedule(() -> {
+                        synchronized (hostPool) {
+                            hostPool.pendingRequests.remove(pendingRequest);
+                        }
+                        result.complete(null);
+                    }, connectTimeout);
+                    result.whenComplete((c, t) -> timeout.cancel());
+                } else {
+                    Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                            "Http client pending requests limit reached: %s", key);
+                    result.complete(null);
+                }
+            }
+        }
+
+        closeConnections(staleConnections);
+        if(connection != null) {
+            result.complete(connection);
+        } else if(create) {
+            openConnection(hostPool, result, deadline, 1);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first reusable idle connection of the host, the stale connections are added into the list.
+     * This method must be called with the monitor of the host pool.
+     * @param hostPool Host pool.
+     * @param staleConnections List to collect the stale connections.
+     * @return Idle connection or null if there are no reusable connections.
+     */
+    private HttpClientConnection pollIdleConnection(HostPool hostPool, List<HttpClientConnection> staleConnections) {
+        long idleTimeout = SystemProperties.getLong(SystemProperties.Net.Http.CLIENT_POOL_IDLE_TIMEOUT);
+        HttpClientConnection result = null;
+        while(!hostPool.idleConnections.isEmpty() && result == null) {
+            HttpClientConnection connection = hostPool.idleConnections.pollFirst();
+            if(connection.isReusable() && System.currentTimeMillis() - connection.getLastUse() < idleTimeout) {
+                result = connection;
+            } else {
+                staleConnections.add(connection);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Opens a new connection for the host, the place of the connection into the host must be reserved by the
+     * caller. If the connection fails then it's retried until the number of attempts is reached.
+     * @param hostPool Host pool.
+     * @param future Future to complete with the connection.
+     * @param deadline Time limit to obtain the connection.
+     * @param attempt Number of the attempt.
+     */
+    private void openConnection(HostPool hostPool, CompletableFuture<HttpClientConnection> future, long deadline, int attempt) {
+        HttpClientConnection connection = new HttpClientConnection(hostPool.key, hostPool.host, hostPool.port, hostPool.protocol);
+        connection.openAsync(Math.max(deadline - System.currentTimeMillis(), 1)).thenAccept(connected -> {
+            if(connected) {
+                if(!future.complete(connection)) {
+                    //The request was cancelled while the connection was created.
+                    release(connection);
+                }
+            } else {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                        "Http client connection fail (%d/%d): %s", attempt, CONNECT_ATTEMPTS, hostPool.key);
+                boolean retry = false;
+                if(attempt < CONNECT_ATTEMPTS && System.currentTimeMillis() < deadline) {
+                    synchronized (hostPool) {
+                        //The failed connection released its place, then the place is reserved again if it is free yet.
+                        if(!SystemProperties.getBoolean(SystemProperties.Net.Http.CLIENT_POOL_ENABLED) ||
+                                hostPool.size < SystemProperties.getInteger(
+                                        SystemProperties.Net.Http.CLIENT_POOL_MAX_CONNECTIONS_PER_HOST)) {
+                            hostPool.size++;
+                            retry = true;
+                        }
+                    }
+                }
+
+                if(retry) {
+                    openConnection(hostPool, future, deadline, attempt + 1);
+                } else {
+                    future.complete(null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the connection to the pool, if there are pending requests for the host then the connection is
+     * delivered to the first pending request. If the connection is not reusable then is closed.
+     * @param connection Connection instance.
+     */
+    public void release(HttpClientConnection connection) {
+        boolean pooled = false;
+        if(SystemProperties.getBoolean(SystemProperties.Net.Http.CLIENT_POOL_ENABLED) && connection.isReusable()) {
+            HostPool hostPool = hostPools.get(connection.getKey());
+            if(hostPool != null) {
+                pooled = true;
+                PendingRequest pendingRequest;
+                do {
+                    synchronized (hostPool) {
+                        pendingRequest = hostPool.pendingRequests.poll();
+                        if(pendingRequest == null) {
+                            hostPool.idleConnections.offerFirst(connection);
+                        }
+                    }
+                } while(pendingRequest != null && !pendingRequest.future.complete(connection));
+
+                if(pendingRequest == null) {
+                    scheduleSweep();
+                }
+            }
+        }
+
+        if(!pooled) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Removes the connection from the pool releasing its place, this method is called when the connection is closed.
+     * If there are pending requests for the host then a new connection is created for the first of them.
+     * @param connection Connection instance.
+     */
+    void remove(HttpClientConnection connection) {
+        if(connection.removeFromPool()) {
+            HostPool hostPool = hostPools.get(connection.getKey());
+            if(hostPool != null) {
+                PendingRequest pendingRequest;
+                synchronized (hostPool) {
+                    hostPool.idleConnections.remove(connection);
+                    pendingRequest = hostPool.pendingRequests.poll();
+                    if(pendingRequest == null) {
+                        hostPool.size--;
+                    }
+                }
+
+                if(pendingRequest != null) {
+                    //The place of the removed connection is used by the pending request.
+                    openConnection(hostPool, pendingRequest.future, pendingRequest.deadline, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes all the connections of the list.
+     * @param connections Connections to close.
+     */
+    private void closeConnections(List<HttpClientConnection> connections) {
+        for(HttpClientConnection connection : connections) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Returns the number of open connections of the host.
+     * @param protocol Http protocol.
+     * @param host Remote host.
+     * @param port Remote port.
+     * @return Number of open connections.
+     */
+    public int getConnectionsCount(HttpPackage.HttpProtocol protocol, String host, Integer port) {
+        int result = 0;
+        HostPool hostPool = hostPools.get(String.format(KEY_FORMAT, protocol.toString().toLowerCase(), host, port));
+        if(hostPool != null) {
+            synchronized (hostPool) {
+                result = hostPool.size;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Schedules the task to close the idle connections if it's not scheduled yet.
+     */
+    private void scheduleSweep() {
+        synchronized (sweepMonitor) {
+            if(sweepTimeout == null) {
+                sweepTimeout = NetService.getInstance().getTimingWheel().schedule(this::sweep,
+                        SystemProperties.getLong(SystemProperties.Net.Http.CLIENT_POOL_IDLE_TIMEOUT));
+            }
+        }
+    }
+
+    /**
+     * Closes the connections that reached the idle timeout and the connections closed by the server,
+     * then schedules the next sweep if there are idle connections yet.
+     */
+    private void sweep() {
+        long idleTimeout = SystemProperties.getLong(SystemProperties.Net.Http.CLIENT_POOL_IDLE_TIMEOUT);
+        long now = System.currentTimeMillis();
+        List<HttpClientConnection> staleConnections = new ArrayList<>();
+        boolean pending = false;
+        for(HostPool hostPool : hostPools.values()) {
+            synchronized (hostPool) {
+                Iterator<HttpClientConnection> iterator = hostPool.idleConnections.iterator();
+                while(iterator.hasNext()) {
+                    HttpClientConnection connection = iterator.next();
+                    if(!connection.isReusable() || now - connection.getLastUse() >= idleTimeout) {
+                        iterator.remove();
+                        staleConnections.add(connection);
+                    }
+                }
+                pending |= !hostPool.idleConnections.isEmpty();
+            }
+        }
+
+        closeConnections(staleConnections);
+
+        synchronized (sweepMonitor) {
+            sweepTimeout = null;
+        }
+        if(pending) {
+            scheduleSweep();
+        }
+    }
+
+    /**
+     * Closes all the idle connections and completes the pending requests with null, this method is called
+     * at the beginning of the shutdown process of the net service.
+     */
+    private void shutdown() {
+        List<HttpClientConnection> idleConnections = new ArrayList<>();
+        List<PendingRequest> pendingRequests = new ArrayList<>();
+        for(HostPool hostPool : hostPools.values()) {
+            synchronized (hostPool) {
+                idleConnections.addAll(hostPool.idleConnections);
+                hostPool.idleConnections.clear();
+                pendingRequests.addAll(hostPool.pendingRequests);
+                hostPool.pendingRequests.clear();
+            }
+        }
+
+        closeConnections(idleConnections);
+        for(PendingRequest pendingRequest : pendingRequests) {
+            pendingRequest.future.complete(null);
+        }
+    }
+
+    /**
+     * Connections of a host.
+     */
+    private static final class HostPool {
+
+        private final String key;
+        private final HttpPackage.HttpProtocol protocol;
+        private final String host;
+        private final Integer port;
+        private final Deque<HttpClientConnection> idleConnections;
+        private final Queue<PendingRequest> pendingRequests;
+        private int size;
+
+        private HostPool(String key, HttpPackage.HttpProtocol protocol, String host, Integer port) {
+            this.key = key;
+            this.protocol = protocol;
+            this.host = host;
+            this.port = port;
+            this.idleConnections = new ArrayDeque<>();
+            this.pendingRequests = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Request waiting for a connection of the host.
+     */
+    private static final class PendingRequest {
+
+        private final CompletableFuture<HttpClientConnection> future;
+        private final long deadline;
+
+        private PendingRequest(CompletableFuture<HttpClientConnection> future, long deadline) {
+            this.future = future;
+            this.deadline = deadline;
+        }
+    }
+}
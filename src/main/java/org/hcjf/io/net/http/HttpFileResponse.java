@@ -0,0 +1,65 @@
+package org.hcjf.io.net.http;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Http response whose body is a region of a file. The server writes the header of the response and then
+ * the region is transferred from the file to the socket without load the file into the heap.
+ * @author javaito
+ */
+public class HttpFileResponse extends HttpResponse {
+
+    private final Path path;
+    private final long position;
+    private final long count;
+
+    /**
+     * Creates a response with the region of the file, the content length header is added with the size of
+     * the region.
+     * @param path Path of the file.
+     * @param position Position of the first byte of the region.
+     * @param count Number of bytes of the region.
+     */
+    public HttpFileResponse(Path path, long position, long count) {
+        this.path = path;
+        this.position = position;
+        this.count = count;
+        addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Long.toString(count)));
+    }
+
+    /**
+     * Returns the path of the file.
+     * @return Path of the file.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the position of the first byte of the region.
+     * @return Position of the region.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes of the region.
+     * @return Size of the region.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Opens a new channel to read the file, the channel is owned by the caller.
+     * @return File channel.
+     * @throws IOException If the file can't be opened.
+     */
+    public FileChannel openChannel() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+}
@@ -18,6 +18,7 @@ public class HttpHeader {
     public static final String ACCEPT_CHARSET = "Accept-Charset";
     public static final String ACCEPT_ENCODING = "Accept-Encoding";
     public static final String ACCEPT_LANGUAGE = "Accept-Language";
+    public static final String ACCEPT_RANGES = "Accept-Ranges";
     public static final String AUTHORIZATION = "Authorization";
     public static final String EXPECT = "Expect";
     public static final String FROM = "From";
@@ -38,6 +39,7 @@ public class HttpHeader {
     public static final String CONTENT_DISPOSITION = "Content-Disposition";
     public static final String CONTENT_LENGTH = "Content-Length";
     public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String CONTENT_RANGE = "Content-Range";
     public static final String SERVER = "Server";
     public static final String DATE = "Date";
     public static final String LAST_MODIFIED = "Last-Modified";
@@ -59,6 +61,8 @@ public class HttpHeader {
     public static final String ACCESS_CONTROL_REQUEST_ORIGIN = "Access-Control-Request-Origin";
     public static final String ACCESS_CONTROL_REQUEST_METHODS = "Access-Control-Request-Methods";
     public static final String TRANSFER_ENCODING = "Transfer-Encoding";
+    public static final String VARY = "Vary";
+    public static final String RETRY_AFTER = "Retry-After";
 
     //non-standard header names
     public static final String DNT = "DNT";
@@ -89,11 +93,14 @@ public class HttpHeader {
     public static final String APPLICATION_X_WWW_FORM_URLENCODED = "application/x-www-form-urlencoded";
     public static final String MULTIPART_FORM_DATA = "multipart/form-data";
     public static final String BOUNDARY = "boundary";
+    public static final String MULTIPART_BYTERANGES = "multipart/byteranges";
+    public static final String BYTES = "bytes";
     public static final String CLOSED = "Closed";
     public static final String HTTP2_REQUEST = "h2c";
     public static final String HTTPS2_REQUEST = "h2";
     public static final String KEEP_ALIVE = "Keep-Alive";
     public static final String DEFAULT_USER_AGENT = "HCJF";
+    public static final String BROTLI = "br";
     public static final String DEFLATE = "deflate";
     public static final String GZIP = "gzip";
     public static final String IDENTITY = "identity";
@@ -110,7 +117,7 @@ public class HttpHeader {
 
     private final String headerName;
     private final String headerValue;
-    private final Map<String, Map<String, String>> headerGroups;
+    private Map<String, Map<String, String>> headerGroups;
 
     public HttpHeader(String header) {
         this(header.substring(0, header.indexOf(HEADER_ASSIGNATION)).trim(),
@@ -120,8 +127,6 @@ public class HttpHeader {
     public HttpHeader(String headerName, String headerValue) {
         this.headerName = headerName;
         this.headerValue = headerValue;
-        this.headerGroups = new HashMap<>();
-        parse();
     }
 
     /**
@@ -169,7 +174,7 @@ public class HttpHeader {
      * @return Header groups.
      */
     public final Set<String> getGroups() {
-        return headerGroups.keySet();
+        return getHeaderGroups().keySet();
     }
 
     /**
@@ -187,7 +192,19 @@ public class HttpHeader {
             throw new IllegalArgumentException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_8));
         }
 
-        return headerGroups.get(groupName).get(parameterName);
+        return getHeaderGroups().get(groupName).get(parameterName);
+    }
+
+    /**
+     * Returns the header groups, the groups are parsed the first time that are accessed.
+     * @return Header groups.
+     */
+    private synchronized Map<String, Map<String, String>> getHeaderGroups() {
+        if(headerGroups == null) {
+            headerGroups = new HashMap<>();
+            parse();
+        }
+        return headerGroups;
     }
 
     /**
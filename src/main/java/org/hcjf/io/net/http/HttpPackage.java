@@ -1,6 +1,7 @@
 package org.hcjf.io.net.http;
 
 import org.hcjf.errors.Errors;
+import org.hcjf.errors.HCJFRuntimeException;
 import org.hcjf.layers.Layer;
 import org.hcjf.layers.LayerInterface;
 import org.hcjf.layers.Layers;
@@ -27,6 +28,12 @@ public abstract class HttpPackage {
     public static final String HTTP_FIELD_SEPARATOR = "&";
     public static final String HTTP_FIELD_ASSIGNATION = "=";
     public static final String HTTP_CONTEXT_SEPARATOR = "/";
+    private static final byte HEADER_ASSIGNATION = ':';
+    private static final byte[] CONTENT_LENGTH_BYTES = HttpHeader.CONTENT_LENGTH.toLowerCase().getBytes();
+    private static final byte[] TRANSFER_ENCODING_BYTES = HttpHeader.TRANSFER_ENCODING.toLowerCase().getBytes();
+    private static final byte[] CHUNKED_BYTES = HttpHeader.CHUNKED.getBytes();
+    private static final int RAW_HEADER_FIELDS = 4;
+    private static final int INITIAL_HEADER_BUFFER_SIZE = 512;
 
     static {
         Layers.publishLayer(ChunkedDecoderLayer.class);
@@ -39,11 +46,23 @@ public abstract class HttpPackage {
     private byte[] body;
 
     //This fields are only for internal parsing.
-    private List<String> lines;
     private boolean onBody;
     private boolean complete;
-    private ByteArrayOutputStream currentBuffer;
-    private TransferDecodingLayerInterface transferDecodingLayer;
+    private byte[] headerBuffer;
+    private int headerSize;
+    private int lineStart;
+    private int firstLineStart;
+    private int firstLineEnd;
+    private int[] rawHeaders;
+    private int rawHeaderCount;
+    private boolean rawHeadersPending;
+    private int transferEncodingIndex;
+    private long contentLength;
+    private byte[] bodyBuffer;
+    private long bodySize;
+    private TransferDecoder transferDecoder;
+    private BodyConsumer bodyConsumer;
+    private byte[] leftover;
 
     public HttpPackage() {
         this.httpVersion = HttpVersion.VERSION_1_1;
@@ -51,9 +70,13 @@ public abstract class HttpPackage {
         this.cookies = new HashMap<>();
         this.body = new byte[0];
         this.protocol = HttpProtocol.HTTP;
+        this.firstLineEnd = -1;
+        this.transferEncodingIndex = -1;
+        this.contentLength = -1;
     }
 
     protected HttpPackage(HttpPackage httpPackage) {
+        httpPackage.materializeHeaders();
         this.httpVersion = httpPackage.httpVersion;
         this.headers = httpPackage.headers;
         this.cookies = httpPackage.cookies;
@@ -117,12 +140,21 @@ public abstract class HttpPackage {
         return complete;
     }
 
-    public TransferDecodingLayerInterface getTransferDecodingLayer() {
-        return transferDecodingLayer;
+    /**
+     * Returns the bytes received after the end of the package, this bytes are the beginning of the next
+     * package when the client pipelines the requests.
+     * @return Leftover bytes or null if there are not bytes after the package.
+     */
+    public final byte[] getLeftover() {
+        return leftover;
+    }
+
+    public TransferDecoder getTransferDecodingLayer() {
+        return transferDecoder;
     }
 
     public void setTransferDecodingLayer(TransferDecodingLayerInterface transferDecodingLayer) {
-        this.transferDecodingLayer = transferDecodingLayer;
+        this.transferDecoder = transferDecodingLayer;
     }
 
     /**
@@ -134,6 +166,15 @@ public abstract class HttpPackage {
             throw new NullPointerException("Null header");
         }
 
+        materializeHeaders();
+        putHeader(header);
+    }
+
+    /**
+     * Stores the header into the package, the cookie headers are stored as cookies.
+     * @param header Header instance.
+     */
+    private void putHeader(HttpHeader header) {
         if(header.getHeaderName().equals(HttpHeader.COOKIE)) {
             processCookieHeader(header);
         } else if(header.getHeaderName().equals(HttpHeader.SET_COOKIE) ||
@@ -211,6 +252,7 @@ public abstract class HttpPackage {
      * @return List of the headers.
      */
     public final Collection<HttpHeader> getHeaders() {
+        materializeHeaders();
         return Collections.unmodifiableCollection(headers.values());
     }
 
@@ -226,6 +268,9 @@ public abstract class HttpPackage {
                 result = headers.get(name);
             }
         }
+        if(result == null && rawHeadersPending) {
+            result = materializeHeader(headerName);
+        }
         return result;
     }
 
@@ -238,6 +283,25 @@ public abstract class HttpPackage {
         return getHeader(headerName) != null;
     }
 
+    /**
+     * Removes the header with the specific name.
+     * @param headerName Name of the header to remove.
+     * @return Removed header or null if there are'nt any header with this name.
+     */
+    public final HttpHeader removeHeader(String headerName) {
+        materializeHeaders();
+        HttpHeader result = null;
+        Iterator<String> iterator = headers.keySet().iterator();
+        while(iterator.hasNext()) {
+            String name = iterator.next();
+            if(name.equalsIgnoreCase(headerName)) {
+                result = headers.get(name);
+                iterator.remove();
+            }
+        }
+        return result;
+    }
+
     /**
      * Add a cookie to the http package.
      * @param cookie Cookie instance.
@@ -255,6 +319,7 @@ public abstract class HttpPackage {
      * @return Collection with all the cookies.
      */
     public final Collection<Cookie> getCookies() {
+        materializeHeaders();
         return Collections.unmodifiableCollection(cookies.values());
     }
 
@@ -264,6 +329,7 @@ public abstract class HttpPackage {
      * @return Cookie instance.
      */
     public final Cookie getCookie(String name) {
+        materializeHeaders();
         return cookies.get(name);
     }
 
@@ -273,6 +339,7 @@ public abstract class HttpPackage {
      * @return True if the cookie is contained and false in the otherwise.
      */
     public final boolean containsCookie(String name) {
+        materializeHeaders();
         return cookies.containsKey(name);
     }
 
@@ -280,72 +347,29 @@ public abstract class HttpPackage {
      * Add a portion of data into the package.
      * @param data Portion of data.
      */
-    public final synchronized void addData(byte[] data) {
+    public final void addData(byte[] data) {
+        addData(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Add a portion of data into the package. The header block is copied into an internal buffer where only
+     * the offsets of each header are recorded, the header instances are created when they are accessed.
+     * The body is copied directly into the body buffer or into the transfer decoder.
+     * @param data Portion of data, the buffer is not retained after this method returns.
+     */
+    public final synchronized void addData(ByteBuffer data) {
         if(!complete) {
-            if (currentBuffer == null) {
-                currentBuffer = new ByteArrayOutputStream();
-                lines = new ArrayList<>();
-                onBody = false;
-                complete = false;
+            if (!onBody) {
+                onBody = parseHeaders(data);
             }
 
             if (onBody) {
                 writeBody(data);
-            } else {
-                String line;
-                for (int i = 0; i < data.length; i++) {
-                    if (i+1 == data.length) {
-                        //Verify if the last byte into the data array is not '\n' then this byte is part of the message
-                        //payload, this case is common when the headers are very large.
-                        if(data[i] != LINE_SEPARATOR_LF) {
-                            currentBuffer.write(data[i]);
-                        }
-                    } else {
-                        if (data[i] == LINE_SEPARATOR_CR && data[i + 1] == LINE_SEPARATOR_LF) {
-                            if (currentBuffer.size() == 0) {
-
-                                for (int j = 1; j < lines.size(); j++) {
-                                    addHeader(new HttpHeader(lines.get(j)));
-                                }
-
-                                HttpHeader transferEncodingHeader = getHeader(HttpHeader.TRANSFER_ENCODING);
-                                if (transferEncodingHeader != null && transferDecodingLayer == null) {
-                                    try {
-                                        transferDecodingLayer = Layers.get(TransferDecodingLayerInterface.class, transferEncodingHeader.getHeaderValue());
-                                    } catch (Exception ex) {
-                                        Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
-                                                "Transfer decoding layer not found", ex);
-                                    }
-                                }
-
-                                //The previous line is empty
-                                //Start body, because there are two CRLF together
-                                currentBuffer.reset();
-                                writeBody(data, i + 2, data.length - (i + 2));
-                                onBody = true;
-                                break;
-                            } else {
-                                //The current body is a new line
-                                line = new String(currentBuffer.toByteArray()).trim();
-                                if (!line.isEmpty()) {
-                                    lines.add(line);
-                                }
-                                currentBuffer.reset();
-                                i++;
-                            }
-                        } else {
-                            currentBuffer.write(data[i]);
-                        }
-                    }
-                }
-            }
-
-            if (onBody) {
                 if (bodyDone()) {
                     setBody(getAccumulatedBody());
-                    processFirstLine(lines.get(0));
                     processBody();
-                    currentBuffer = null;
+                    bodyBuffer = null;
+                    bodyConsumer = null;
                     complete = true;
                 }
             }
@@ -355,36 +379,307 @@ public abstract class HttpPackage {
     }
 
     /**
-     * This method store the fragment information into the specific
-     * decoder implementation
-     * @param data Fragment information.
+     * Copies the data into the header buffer and look for the end of the lines from the last position.
+     * @param data Portion of data.
+     * @return Returns true if the header block is complete, in this case the position of the data is the
+     * first byte of the body.
+     */
+    private boolean parseHeaders(ByteBuffer data) {
+        boolean result = false;
+        int start = headerSize;
+        int length = data.remaining();
+        if(headerBuffer == null) {
+            headerBuffer = new byte[Math.max(INITIAL_HEADER_BUFFER_SIZE, length)];
+            rawHeaders = new int[RAW_HEADER_FIELDS * 16];
+        } else if(headerBuffer.length - headerSize < length) {
+            headerBuffer = Arrays.copyOf(headerBuffer, Math.max(headerBuffer.length * 2, headerSize + length));
+        }
+        data.duplicate().get(headerBuffer, headerSize, length);
+        headerSize += length;
+        if(headerSize > SystemProperties.getInteger(SystemProperties.Net.Http.MAX_PACKAGE_SIZE)) {
+            throw new HCJFRuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_PACKAGE_OVERFLOW));
+        }
+
+        for (int i = start; i < headerSize; i++) {
+            if(headerBuffer[i] == LINE_SEPARATOR_LF) {
+                int lineEnd = i > lineStart && headerBuffer[i - 1] == LINE_SEPARATOR_CR ? i - 1 : i;
+                if(lineEnd == lineStart) {
+                    if(firstLineEnd >= 0) {
+                        //Two line separators together, the header block is done and the rest of the data is body.
+                        data.position(data.position() + (i + 1 - start));
+                        headerSize = i + 1;
+                        onHeadersDone();
+                        result = true;
+                        break;
+                    }
+                    //The empty lines before the first line are ignored.
+                } else if(firstLineEnd < 0) {
+                    firstLineStart = lineStart;
+                    firstLineEnd = lineEnd;
+                } else {
+                    addRawHeader(lineStart, lineEnd);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records the offsets of the header name and the header value. The headers used by the parser are
+     * recognized comparing the bytes of the name.
+     * @param start Start of the line.
+     * @param end End of the line.
+     */
+    private void addRawHeader(int start, int end) {
+        int assignation = start;
+        while(assignation < end && headerBuffer[assignation] != HEADER_ASSIGNATION) {
+            assignation++;
+        }
+        if(assignation == end) {
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Invalid header line ignored");
+            return;
+        }
+
+        int nameStart = skipWhitespaces(start, assignation);
+        int nameEnd = trimWhitespaces(nameStart, assignation);
+        int valueStart = skipWhitespaces(assignation + 1, end);
+        int valueEnd = trimWhitespaces(valueStart, end);
+
+        if(rawHeaders.length < (rawHeaderCount + 1) * RAW_HEADER_FIELDS) {
+            rawHeaders = Arrays.copyOf(rawHeaders, rawHeaders.length * 2);
+        }
+        int index = rawHeaderCount * RAW_HEADER_FIELDS;
+        rawHeaders[index] = nameStart;
+        rawHeaders[index + 1] = nameEnd;
+        rawHeaders[index + 2] = valueStart;
+        rawHeaders[index + 3] = valueEnd;
+
+        if(equalsIgnoreCase(nameStart, nameEnd, CONTENT_LENGTH_BYTES)) {
+            contentLength = parseLong(valueStart, valueEnd);
+        } else if(equalsIgnoreCase(nameStart, nameEnd, TRANSFER_ENCODING_BYTES)) {
+            transferEncodingIndex = rawHeaderCount;
+        }
+        rawHeaderCount++;
+        rawHeadersPending = true;
+    }
+
+    /**
+     * This method is called when the header block is complete to process the first line and prepare the body buffers.
+     */
+    private void onHeadersDone() {
+        processFirstLine(new String(headerBuffer, firstLineStart, firstLineEnd - firstLineStart).trim());
+        if(!isBodyAllowed()) {
+            //The package is complete at the end of the header block.
+            contentLength = 0;
+            return;
+        }
+        if(transferEncodingIndex >= 0 && transferDecoder == null) {
+            int index = transferEncodingIndex * RAW_HEADER_FIELDS;
+            if(equalsIgnoreCase(rawHeaders[index + 2], rawHeaders[index + 3], CHUNKED_BYTES)) {
+                bodyConsumer = createBodyConsumer();
+                if(bodyConsumer != null) {
+                    bodyConsumer.start(this);
+                }
+                transferDecoder = new ChunkedDecoder(bodyConsumer);
+            } else {
+                String transferEncoding = new String(headerBuffer, rawHeaders[index + 2], rawHeaders[index + 3] - rawHeaders[index + 2]);
+                try {
+                    transferDecoder = Layers.get(TransferDecodingLayerInterface.class, transferEncoding);
+                } catch (Exception ex) {
+                    Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                            "Transfer decoding layer not found", ex);
+                }
+            }
+        }
+
+        if(transferDecoder == null && contentLength > 0) {
+            bodyConsumer = createBodyConsumer();
+            if(bodyConsumer == null) {
+                if (contentLength > SystemProperties.getInteger(SystemProperties.Net.Http.MAX_PACKAGE_SIZE)) {
+                    throw new HCJFRuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_PACKAGE_OVERFLOW));
+                }
+                bodyBuffer = new byte[(int) contentLength];
+            } else {
+                bodyConsumer.start(this);
+            }
+        }
+    }
+
+    /**
+     * Indicates if the package could have body, this method is called when the header block is done. If the
+     * package can't have body then the content length and transfer encoding headers are ignored by the parser.
+     * @return True if the package could have body, by default returns true.
+     */
+    protected boolean isBodyAllowed() {
+        return true;
+    }
+
+    /**
+     * Creates the consumer of the body when the headers are done, if the package has a consumer then the body
+     * is not accumulated and each fragment is delivered to the consumer as it arrives. The consumer is
+     * responsible of the limits of the body size.
+     * @return Body consumer instance or null to accumulate the body, by default returns null.
+     */
+    protected BodyConsumer createBodyConsumer() {
+        return null;
+    }
+
+    /**
+     * Returns the consumer of the body of the package, the consumer is available until the body is processed.
+     * @return Body consumer instance or null if the body is accumulated.
+     */
+    protected final BodyConsumer getBodyConsumer() {
+        return bodyConsumer;
+    }
+
+    /**
+     * Creates the header instances of all the recorded offsets.
+     */
+    private synchronized void materializeHeaders() {
+        if(rawHeadersPending) {
+            for (int i = 0; i < rawHeaderCount; i++) {
+                if(rawHeaders[i * RAW_HEADER_FIELDS] >= 0) {
+                    putHeader(createRawHeader(i));
+                    rawHeaders[i * RAW_HEADER_FIELDS] = -1;
+                }
+            }
+            rawHeadersPending = false;
+            if(complete) {
+                headerBuffer = null;
+                rawHeaders = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the header instance with the specific name, if the name is present many times then the last
+     * value is used in the same way that the complete materialization.
+     * @param headerName Name of the header.
+     * @return Header instance or null if the header is not present.
+     */
+    private synchronized HttpHeader materializeHeader(String headerName) {
+        HttpHeader result = null;
+        if(rawHeadersPending) {
+            if(headerName.equalsIgnoreCase(HttpHeader.COOKIE) || headerName.equalsIgnoreCase(HttpHeader.SET_COOKIE) ||
+                    headerName.equalsIgnoreCase(HttpHeader.SET_COOKIE2)) {
+                materializeHeaders();
+            } else {
+                byte[] name = headerName.toLowerCase().getBytes();
+                for (int i = 0; i < rawHeaderCount; i++) {
+                    int index = i * RAW_HEADER_FIELDS;
+                    if(rawHeaders[index] >= 0 && equalsIgnoreCase(rawHeaders[index], rawHeaders[index + 1], name)) {
+                        result = createRawHeader(i);
+                        rawHeaders[index] = -1;
+                    }
+                }
+                if(result != null) {
+                    putHeader(result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the header instance using the offsets recorded by the parser.
+     * @param rawHeaderIndex Index of the header.
+     * @return Header instance.
      */
-    private void writeBody(byte[] data) {
-        writeBody(data, 0, data.length);
+    private HttpHeader createRawHeader(int rawHeaderIndex) {
+        int index = rawHeaderIndex * RAW_HEADER_FIELDS;
+        return new HttpHeader(
+                new String(headerBuffer, rawHeaders[index], rawHeaders[index + 1] - rawHeaders[index]),
+                new String(headerBuffer, rawHeaders[index + 2], rawHeaders[index + 3] - rawHeaders[index + 2]));
+    }
+
+    private int skipWhitespaces(int start, int end) {
+        while(start < end && headerBuffer[start] <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimWhitespaces(int start, int end) {
+        while(end > start && headerBuffer[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
     }
 
     /**
-     * This method store the fragment information into the specific
-     * decoder implementation
+     * Compares a region of the header buffer with a lower case ascii value.
+     * @param start Start of the region.
+     * @param end End of the region.
+     * @param lowerCaseValue Value to compare.
+     * @return True if the region is equals to the value ignoring the case.
+     */
+    private boolean equalsIgnoreCase(int start, int end, byte[] lowerCaseValue) {
+        boolean result = end - start == lowerCaseValue.length;
+        for (int i = 0; result && i < lowerCaseValue.length; i++) {
+            byte value = headerBuffer[start + i];
+            if(value >= 'A' && value <= 'Z') {
+                value += 'a' - 'A';
+            }
+            result = value == lowerCaseValue[i];
+        }
+        return result;
+    }
+
+    private long parseLong(int start, int end) {
+        if(start == end) {
+            throw new NumberFormatException("Empty content length");
+        }
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = headerBuffer[i] - '0';
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid content length");
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * This method store the fragment information into the body buffer or into the specific decoder
+     * implementation.
      * @param data Fragment information.
-     * @param offset Start index into the array.
-     * @param length End index into the array.
-     */
-    private void writeBody(byte[] data, int offset, int length) {
-        if(transferDecodingLayer == null) {
-            currentBuffer.write(data, offset, length);
-            if(currentBuffer.size() > SystemProperties.getInteger(SystemProperties.Net.Http.MAX_PACKAGE_SIZE)) {
-                throw new RuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_PACKAGE_OVERFLOW));
+     */
+    private void writeBody(ByteBuffer data) {
+        if(transferDecoder == null) {
+            int length = (int) Math.min(data.remaining(), Math.max(0, contentLength - bodySize));
+            if(length > 0) {
+                if(bodyConsumer == null) {
+                    data.get(bodyBuffer, (int) bodySize, length);
+                } else {
+                    ByteBuffer fragment = data.duplicate();
+                    fragment.limit(fragment.position() + length);
+                    bodyConsumer.add(fragment);
+                    data.position(data.position() + length);
+                }
+                bodySize += length;
+            }
+            if(data.hasRemaining()) {
+                //The bytes after the content length belong to the next package.
+                leftover = new byte[data.remaining()];
+                data.get(leftover);
             }
         } else {
-            byte[] fragment;
-            if(offset == 0 && length == data.length) {
+            ByteBuffer fragment;
+            if(transferDecoder instanceof ChunkedDecoder) {
                 fragment = data;
             } else {
-                fragment = new byte[length];
-                System.arraycopy(data, offset, fragment, 0, length);
+                //The layers could keep the fragment then the data is copied.
+                fragment = ByteBuffer.allocate(data.remaining());
+                fragment.put(data).flip();
+            }
+            transferDecoder.add(fragment);
+            if(fragment.hasRemaining() && transferDecoder.done(this)) {
+                //The decoder stops at the end of the body, the remaining bytes belong to the next package.
+                leftover = new byte[fragment.remaining()];
+                fragment.get(leftover);
             }
-            transferDecodingLayer.add(ByteBuffer.wrap(fragment));
         }
     }
 
@@ -394,10 +689,19 @@ public abstract class HttpPackage {
      */
     private byte[] getAccumulatedBody() {
         byte[] result;
-        if(transferDecodingLayer == null) {
-            result = currentBuffer.toByteArray();
+        if(transferDecoder == null) {
+            result = bodyBuffer == null ? new byte[0] : bodyBuffer;
         } else {
-            result = transferDecodingLayer.getBody();
+            result = transferDecoder.getBody();
+        }
+
+        if(bodyConsumer != null) {
+            if(result.length > 0) {
+                //The body decoded by a transfer decoding layer is delivered when it is complete.
+                bodyConsumer.add(ByteBuffer.wrap(result));
+                result = new byte[0];
+            }
+            bodyConsumer.done();
         }
         return result;
     }
@@ -408,15 +712,10 @@ public abstract class HttpPackage {
      */
     protected boolean bodyDone() {
         boolean result;
-        if(transferDecodingLayer == null) {
-            int length = 0;
-            HttpHeader contentLengthHeader = getHeader(HttpHeader.CONTENT_LENGTH);
-            if (contentLengthHeader != null) {
-                length = Integer.parseInt(contentLengthHeader.getHeaderValue().trim());
-            }
-            result = currentBuffer.size() >= length;
+        if(transferDecoder == null) {
+            result = bodySize >= contentLength;
         } else {
-            result = transferDecodingLayer.done(this);
+            result = transferDecoder.done(this);
         }
         return result;
     }
@@ -459,9 +758,33 @@ public abstract class HttpPackage {
     }
 
     /**
-     * Specify the interface for all the implementations of http body decode method.
+     * Consumer of the body of the package, receives the decoded fragments of the body as they arrive.
      */
-    public interface TransferDecodingLayerInterface extends LayerInterface {
+    public interface BodyConsumer {
+
+        /**
+         * This method is called when the headers of the package are complete, before the first fragment of the body.
+         * @param httpPackage Package with the first line and the headers processed.
+         */
+        default void start(HttpPackage httpPackage) {}
+
+        /**
+         * Consumes the fragment, the buffer is not retained after this method returns.
+         * @param bodyFragment Decoded body fragment.
+         */
+        void add(ByteBuffer bodyFragment);
+
+        /**
+         * This method is called when the body is complete.
+         */
+        void done();
+
+    }
+
+    /**
+     * Decoder of the body of the package depending on the transfer encoding.
+     */
+    public interface TransferDecoder {
 
         /**
          * Add a new fragment for the current body.
@@ -485,26 +808,40 @@ public abstract class HttpPackage {
     }
 
     /**
-     * This decoder implementation resolve the chunked encoding method for http.
+     * Specify the interface for all the implementations of http body decode method published as layers.
      */
-    public static class ChunkedDecoderLayer extends Layer implements TransferDecodingLayerInterface {
+    public interface TransferDecodingLayerInterface extends LayerInterface, TransferDecoder {
+    }
+
+    /**
+     * This decoder implementation resolve the chunked encoding method for http. The data of each chunk
+     * is copied in bulk and the decoder stops at the end of the last chunk and its trailer.
+     */
+    public static class ChunkedDecoder implements TransferDecoder {
 
-        private static final int DEFAULT_SIZE = -1;
         private static final byte SLASH_R_BYTE = '\r';
+        private static final byte SLASH_N_BYTE = '\n';
+        private static final byte EXTENSION_BYTE = ';';
 
+        private State state;
         private int fragmentSize;
-        private int byteWritten;
-        private final ByteArrayOutputStream lengthBuffer;
+        private boolean extension;
+        private int trailerLineLength;
         private final ByteArrayOutputStream bodyBuffer;
-        private boolean done;
+        private final BodyConsumer bodyConsumer;
 
-        public ChunkedDecoderLayer() {
-            super(HttpHeader.CHUNKED, false);
-            fragmentSize = DEFAULT_SIZE;
-            byteWritten = 0;
-            bodyBuffer = new ByteArrayOutputStream();
-            lengthBuffer = new ByteArrayOutputStream();
-            done = false;
+        public ChunkedDecoder() {
+            this(null);
+        }
+
+        /**
+         * Creates the decoder that delivers the data of each chunk to the consumer instead of accumulate it.
+         * @param bodyConsumer Body consumer, if the consumer is null then the data is accumulated.
+         */
+        public ChunkedDecoder(BodyConsumer bodyConsumer) {
+            this.state = State.SIZE;
+            this.bodyConsumer = bodyConsumer;
+            this.bodyBuffer = new ByteArrayOutputStream();
         }
 
         /**
@@ -513,32 +850,65 @@ public abstract class HttpPackage {
          */
         @Override
         public void add(ByteBuffer bodyFragment) {
-            byte currentByte;
-            while(bodyFragment.position() < bodyFragment.limit()) {
-                if(fragmentSize == DEFAULT_SIZE) {
-                    currentByte = bodyFragment.get();
-                    if(currentByte == SLASH_R_BYTE) {
-                        fragmentSize = Integer.parseInt(lengthBuffer.toString(), 16);
-                        lengthBuffer.reset();
-                        byteWritten = DEFAULT_SIZE;
+            while(state != State.DONE && bodyFragment.hasRemaining()) {
+                switch (state) {
+                    case SIZE: {
+                        byte currentByte = bodyFragment.get();
+                        if(currentByte == SLASH_N_BYTE) {
+                            state = fragmentSize == 0 ? State.TRAILER : State.DATA;
+                            extension = false;
+                            trailerLineLength = 0;
+                        } else if(currentByte == EXTENSION_BYTE) {
+                            extension = true;
+                        } else if(!extension && currentByte != SLASH_R_BYTE) {
+                            int digit = Character.digit(currentByte, 16);
+                            if(digit < 0) {
+                                throw new HCJFRuntimeException("Invalid chunk size");
+                            }
+                            fragmentSize = fragmentSize * 16 + digit;
+                        }
+                        break;
+                    }
+                    case DATA: {
+                        int length = Math.min(fragmentSize, bodyFragment.remaining());
+                        if(bodyConsumer != null) {
+                            ByteBuffer data = bodyFragment.duplicate();
+                            data.limit(data.position() + length);
+                            bodyConsumer.add(data);
+                            bodyFragment.position(bodyFragment.position() + length);
+                        } else if(bodyFragment.hasArray()) {
+                            bodyBuffer.write(bodyFragment.array(), bodyFragment.arrayOffset() + bodyFragment.position(), length);
+                            bodyFragment.position(bodyFragment.position() + length);
+                        } else {
+                            byte[] data = new byte[length];
+                            bodyFragment.get(data);
+                            bodyBuffer.write(data, 0, length);
+                        }
+                        fragmentSize -= length;
                         if(fragmentSize == 0) {
-                            done = true;
-                            break;
+                            state = State.DATA_END;
                         }
-                    } else {
-                        lengthBuffer.write(currentByte);
+                        break;
                     }
-                } else {
-                    if(byteWritten == DEFAULT_SIZE) {
-                        bodyFragment.get(); //Discards the '\n' byte
-                        byteWritten++;
-                    } else if(byteWritten == fragmentSize) {
-                        bodyFragment.get(); //Discards the '\r' byte
-                        bodyFragment.get(); //Discards the '\n' byte
-                        fragmentSize = DEFAULT_SIZE;
-                    } else {
-                        bodyBuffer.write(bodyFragment.get());
-                        byteWritten++;
+                    case DATA_END: {
+                        //Discards the line separator after the data of the chunk.
+                        if(bodyFragment.get() == SLASH_N_BYTE) {
+                            state = State.SIZE;
+                        }
+                        break;
+                    }
+                    case TRAILER: {
+                        //The last chunk is followed by the trailer lines and an empty line.
+                        byte currentByte = bodyFragment.get();
+                        if(currentByte == SLASH_N_BYTE) {
+                            if(trailerLineLength == 0) {
+                                state = State.DONE;
+                            }
+                            trailerLineLength = 0;
+                        } else if(currentByte != SLASH_R_BYTE) {
+                            trailerLineLength++;
+                        }
+                        break;
                     }
                 }
             }
@@ -546,14 +916,14 @@ public abstract class HttpPackage {
 
         /**
          * Verify if the body is complete. The body is complete when the
-         * chunked size into the fragment is zero.
-         * * @param httpPackage Package to verify if the body is complete.
+         * chunked size into the fragment is zero and the trailer is done.
+         * @param httpPackage Package to verify if the body is complete.
          * For this particular implementation this param is unuseful.
          * @return True if the body is complete and false in the otherwise
          */
         @Override
         public boolean done(HttpPackage httpPackage) {
-            return done;
+            return state == State.DONE;
         }
 
         /**
@@ -566,6 +936,48 @@ public abstract class HttpPackage {
             return bodyBuffer.toByteArray();
         }
 
+        private enum State {
+
+            SIZE,
+
+            DATA,
+
+            DATA_END,
+
+            TRAILER,
+
+            DONE
+
+        }
+    }
+
+    /**
+     * Chunked decoder published as layer, the packages use the decoder directly without the layer lookup.
+     */
+    public static class ChunkedDecoderLayer extends Layer implements TransferDecodingLayerInterface {
+
+        private final ChunkedDecoder decoder;
+
+        public ChunkedDecoderLayer() {
+            super(HttpHeader.CHUNKED, false);
+            decoder = new ChunkedDecoder();
+        }
+
+        @Override
+        public void add(ByteBuffer bodyFragment) {
+            decoder.add(bodyFragment);
+        }
+
+        @Override
+        public boolean done(HttpPackage httpPackage) {
+            return decoder.done(httpPackage);
+        }
+
+        @Override
+        public byte[] getBody() {
+            return decoder.getBody();
+        }
+
     }
 
 }
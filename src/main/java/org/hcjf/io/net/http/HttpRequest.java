@@ -1,13 +1,19 @@
 package org.hcjf.io.net.http;
 
 import org.hcjf.encoding.MimeType;
+import org.hcjf.errors.HCJFRuntimeException;
 import org.hcjf.layers.Layers;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
 import org.hcjf.utils.Strings;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.regex.Matcher;
 
@@ -27,6 +33,7 @@ public class HttpRequest extends HttpPackage {
     private final Map<String, Object> parameters;
     private final List<String> pathParts;
     private Matcher matcher;
+    private HttpBodyInputStream bodyStream;
 
     static {
         Layers.publishLayer(FormUrlEncodedDecoder.class);
@@ -155,6 +162,49 @@ public class HttpRequest extends HttpPackage {
         parameters.put(parameterName, parameterValue);
     }
 
+    /**
+     * Returns a stream to read the body of the request. If the request is consumed by a streaming context then
+     * the stream delivers the body while it arrives, in the otherwise the stream reads the complete body.
+     * @return Body stream.
+     */
+    public final InputStream getBodyStream() {
+        return bodyStream == null ? new ByteArrayInputStream(getBody()) : bodyStream;
+    }
+
+    /**
+     * Set the stream that receives the body while it arrives, this stream is used as the consumer of the body.
+     * @param bodyStream Body stream instance.
+     */
+    protected final void setBodyStream(HttpBodyInputStream bodyStream) {
+        this.bodyStream = bodyStream;
+    }
+
+    /**
+     * Verify if the body of the request is delivered while it arrives.
+     * @return True if the body is streamed and false in the otherwise.
+     */
+    public final boolean isStreamingBody() {
+        return bodyStream != null;
+    }
+
+    /**
+     * Deletes the temporary files of the attached files of the request, the files that must be kept
+     * have to be moved before the end of the request.
+     */
+    public final void deleteTempFiles() {
+        for(Object value : parameters.values()) {
+            if(value instanceof AttachFile) {
+                ((AttachFile) value).delete();
+            } else if(value instanceof Collection) {
+                for(Object element : (Collection) value) {
+                    if(element instanceof AttachFile) {
+                        ((AttachFile) element).delete();
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Return a list with all the parts of the request path.
      * If the path is /path1/path2/pathN, then the method response with
@@ -165,13 +215,31 @@ public class HttpRequest extends HttpPackage {
         return pathParts;
     }
 
+    /**
+     * Returns the body stream if the request is streamed or creates a multipart parser for the multipart/form-data
+     * bodies in order to parse the body as it arrives instead of accumulate it.
+     * @return Body consumer instance or null to accumulate the body.
+     */
+    @Override
+    protected BodyConsumer createBodyConsumer() {
+        BodyConsumer result = bodyStream;
+        HttpHeader contentType = getHeader(HttpHeader.CONTENT_TYPE);
+        if(result == null && contentType != null && contentType.getHeaderValue().startsWith(HttpHeader.MULTIPART_FORM_DATA) &&
+                SystemProperties.getBoolean(SystemProperties.Net.Http.MULTIPART_STREAMING_ENABLED)) {
+            result = new MultipartFormDataParser(contentType);
+        }
+        return result;
+    }
+
     /**
      * This method process the body of the complete request.
      */
     @Override
     protected void processBody() {
         HttpHeader contentType = getHeader(HttpHeader.CONTENT_TYPE);
-        if(contentType != null) {
+        if(getBodyConsumer() instanceof MultipartFormDataParser) {
+            parameters.putAll(((MultipartFormDataParser) getBodyConsumer()).getParameters());
+        } else if(contentType != null && bodyStream == null) {
             try {
                 RequestBodyDecoderLayer bodyDecoderLayer = Layers.get(RequestBodyDecoderLayer.class,
                         L -> contentType.getHeaderValue().startsWith(L.getImplName()));
@@ -343,12 +411,33 @@ public class HttpRequest extends HttpPackage {
         private final String fileName;
         private final MimeType mimeType;
         private final byte[] file;
+        private final Path path;
+        private final long size;
 
         public AttachFile(String name, String fileName, MimeType mimeType, byte[] file) {
             this.name = name;
             this.fileName = fileName;
             this.mimeType = mimeType;
             this.file = file;
+            this.path = null;
+            this.size = file.length;
+        }
+
+        /**
+         * Creates an attached file whose content is stored into a temporary file.
+         * @param name Name of the block of data.
+         * @param fileName File name.
+         * @param mimeType Mime type of the file.
+         * @param path Path of the temporary file.
+         * @param size Size of the content.
+         */
+        public AttachFile(String name, String fileName, MimeType mimeType, Path path, long size) {
+            this.name = name;
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+            this.file = null;
+            this.path = path;
+            this.size = size;
         }
 
         /**
@@ -372,11 +461,67 @@ public class HttpRequest extends HttpPackage {
         }
 
         /**
-         * Returns the content of the file.
+         * Returns the content of the file, if the content is stored into a temporary file then the
+         * content is loaded into memory.
          * @return File content.
          */
         public byte[] getFile() {
-            return file;
+            byte[] result = file;
+            if(result == null) {
+                try {
+                    result = Files.readAllBytes(path);
+                } catch (IOException ex) {
+                    throw new HCJFRuntimeException("Unable to read attached file %s", ex, path);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the path of the temporary file that contains the content.
+         * @return Path of the temporary file or null if the content is into memory.
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the size of the content.
+         * @return Size of the content.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns a stream to read the content without load it into memory.
+         * @return Input stream of the content.
+         */
+        public InputStream getInputStream() {
+            InputStream result;
+            if(file != null) {
+                result = new ByteArrayInputStream(file);
+            } else {
+                try {
+                    result = Files.newInputStream(path);
+                } catch (IOException ex) {
+                    throw new HCJFRuntimeException("Unable to read attached file %s", ex, path);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Deletes the temporary file of the content, if the content is into memory then this method has no effect.
+         */
+        public void delete() {
+            if(path != null) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException ex) {
+                    Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to delete attached file %s", ex, path);
+                }
+            }
         }
     }
 }
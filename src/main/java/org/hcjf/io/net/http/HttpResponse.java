@@ -59,6 +59,16 @@ public class HttpResponse extends HttpPackage {
         this.reasonPhrase = reasonPhrase;
     }
 
+    /**
+     * The responses with the codes 1xx, 204 and 304 never have body.
+     * @return True if the response could have body.
+     */
+    @Override
+    public boolean isBodyAllowed() {
+        return responseCode == null || (responseCode >= HttpResponseCode.OK &&
+                !responseCode.equals(HttpResponseCode.NO_CONTENT) && !responseCode.equals(HttpResponseCode.NOT_MODIFIED));
+    }
+
     /**
      * This kind of http package never process his body.
      */
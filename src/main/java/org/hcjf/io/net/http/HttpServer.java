@@ -1,15 +1,17 @@
 package org.hcjf.io.net.http;
 
+import org.hcjf.encoding.MimeType;
+import org.hcjf.errors.HCJFServiceTimeoutException;
 import org.hcjf.io.net.NetPackage;
 import org.hcjf.io.net.NetServer;
 import org.hcjf.io.net.NetService;
 import org.hcjf.io.net.NetSession;
+import org.hcjf.io.net.http.http2.Http2Connection;
+import org.hcjf.io.net.http.http2.Http2Exception;
 import org.hcjf.io.net.http.http2.Stream;
 import org.hcjf.io.net.http.http2.StreamSettings;
-import org.hcjf.io.net.http.http2.frames.DataFrame;
 import org.hcjf.io.net.http.http2.frames.Http2Frame;
-import org.hcjf.io.net.http.http2.frames.SettingsFrame;
-import org.hcjf.io.net.http.http2.frames.WindowsUpdateFrame;
+import org.hcjf.io.net.http.http2.hpack.HeaderField;
 import org.hcjf.io.net.http.pipeline.HttpPipelineResponse;
 import org.hcjf.log.Log;
 import org.hcjf.properties.SystemProperties;
@@ -19,10 +21,14 @@ import org.hcjf.utils.Strings;
 import org.hcjf.utils.io.net.http.HttpUtils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,11 +38,15 @@ import java.util.regex.Pattern;
  */
 public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
 
-    private final Map<NetSession, HttpRequest> requestBuffers;
+    private final Map<NetSession, RequestPipeline> pipelines;
+    private final Map<NetSession, byte[]> prefaces;
     private final List<Context> contexts;
+    private final ContextRouter router;
     private HttpSessionManager sessionManager;
     private HttpPackage.HttpProtocol httpProtocol;
     private final Map<String,AccessControl> accessControlMap;
+    private final boolean http2Enabled;
+    private ConcurrencyLimiter limiter;
 
     public HttpServer() {
         this(SystemProperties.getInteger(SystemProperties.Net.Http.DEFAULT_SERVER_PORT));
@@ -49,10 +59,16 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
     protected HttpServer(Integer port, boolean sslProtocol) {
         super(port, sslProtocol ? NetService.TransportLayerProtocol.TCP_SSL :
                 NetService.TransportLayerProtocol.TCP, false, true);
-        requestBuffers = new HashMap<>();
+        pipelines = new ConcurrentHashMap<>();
+        prefaces = new ConcurrentHashMap<>();
         contexts = new ArrayList<>();
+        router = new ContextRouter();
         accessControlMap = new HashMap<>();
         httpProtocol = sslProtocol ? HttpPackage.HttpProtocol.HTTPS : HttpPackage.HttpProtocol.HTTP;
+        http2Enabled = SystemProperties.getBoolean(SystemProperties.Net.Http.Http2.ENABLED);
+        if(SystemProperties.getBoolean(SystemProperties.Net.Http.Admission.ENABLED)) {
+            limiter = new ConcurrencyLimiter();
+        }
         if(SystemProperties.getBoolean(SystemProperties.Net.Http.SERVER_DECOUPLED_IO_ACTION)) {
             decoupleIoAction(
                     SystemProperties.getInteger(SystemProperties.Net.Http.SERVER_IO_QUEUE_SIZE),
@@ -92,6 +108,22 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
         this.sessionManager = sessionManager;
     }
 
+    /**
+     * Returns the limiter of the concurrent executions of all the contexts without priority.
+     * @return Limiter instance or null if the executions are not limited.
+     */
+    public final ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Set the limiter of the concurrent executions of all the contexts without priority.
+     * @param limiter Limiter instance.
+     */
+    public final void setLimiter(ConcurrencyLimiter limiter) {
+        this.limiter = limiter;
+    }
+
     /**
      * This method must implements the session creation based on
      * the net package that incoming.
@@ -121,6 +153,11 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
      */
     @Override
     public HttpSession checkSession(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
+        if(payLoad == null) {
+            //The http2 packages are not decoded as requests, each stream is checked when its request is complete.
+            return session;
+        }
+
         HttpSessionManager sessionManager = getSessionManager();
         if(sessionManager == null) {
             sessionManager = HttpSessionManager.DEFAULT;
@@ -151,7 +188,9 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
                 out.flush();
             } else {
                 out.write(payLoad.getProtocolHeader());
-                out.write(payLoad.getBody());
+                if(payLoad.getBody() != null) {
+                    out.write(payLoad.getBody());
+                }
                 out.flush();
             }
             result = out.toByteArray();
@@ -167,57 +206,37 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
     @Override
     protected final HttpPackage decode(NetPackage netPackage) {
         HttpRequest request = null;
-        if(((HttpSession)netPackage.getSession()).getHttpVersion().equals(HttpVersion.VERSION_2_0)) {
-            Stream stream = ((HttpSession)netPackage.getSession()).getStream();
-            byte[] data = netPackage.getPayload();
-            if(stream.getHttpClientPreface() == null) {
-                String httpClientPreface = new String(data, 0, 24);
-                stream.setHttpClientPreface(httpClientPreface);
-                stream.addData(data, 24);
+        HttpSession session = (HttpSession) netPackage.getSession();
+        Http2Connection http2Connection = session.getHttp2Connection();
+        byte[] preface = null;
+        if(http2Connection == null && http2Enabled && !pipelines.containsKey(session)) {
+            //The bytes received while they are a part of the preface are kept until the protocol is decided.
+            byte[] payload = netPackage.getPayload();
+            preface = prefaces.remove(session);
+            if(preface == null) {
+                preface = payload;
             } else {
-                stream.addData(data, 0);
+                int length = preface.length;
+                preface = Arrays.copyOf(preface, length + payload.length);
+                System.arraycopy(payload, 0, preface, length, payload.length);
             }
-
-            for(Http2Frame frame : stream.getAndRemoveFrames()) {
-                if(frame instanceof SettingsFrame) {
-                    SettingsFrame settingsFrame = (SettingsFrame) frame;
-                    if(settingsFrame.getFlags() != 0x01) {
-                        try {
-                            byte[] responseData = SettingsFrame.createDefaultSettingsFrame(0).serialize().array();
-                            getService().writeData(netPackage.getSession(), responseData);
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    } else {
-                        DataFrame dataFrame = new DataFrame(0, (byte)0, 0);
-                        dataFrame.setData(ByteBuffer.wrap("Hola Mundo".getBytes()));
-                        dataFrame.setPathLength((byte)0);
-                        try {
-                            getService().writeData(netPackage.getSession(), dataFrame.serialize().array());
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                } else if (frame instanceof WindowsUpdateFrame) {
-                    WindowsUpdateFrame windowsUpdateFrame = (WindowsUpdateFrame) frame;
-                    try {
-                        byte[] responseData = windowsUpdateFrame.serialize().array();
-                        getService().writeData(netPackage.getSession(), responseData);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
+            if(Http2Connection.isIncompletePreface(preface)) {
+                prefaces.put(session, preface);
+                return null;
             }
-        } else {
-            request = requestBuffers.get(netPackage.getSession());
-            if (request == null) {
-                synchronized (requestBuffers) {
-                    request = new HttpRequest();
-                    request.setProtocol(httpProtocol);
-                    requestBuffers.put(netPackage.getSession(), request);
-                }
+            if(Http2Connection.isPreface(preface)) {
+                //The client starts the connection with the http2 preface, with prior knowledge or negotiated by alpn.
+                http2Connection = createHttp2Connection(session);
+                session.setHttpVersion(HttpVersion.VERSION_2_0);
+                session.setHttp2Connection(http2Connection);
             }
-            request.addData(netPackage.getPayload());
+        }
+
+        if(http2Connection != null) {
+            http2Connection.addData(preface == null ? netPackage.getPayload() : preface);
+        } else {
+            request = pipelines.computeIfAbsent(session, S -> new RequestPipeline(session)).addData(
+                    preface == null ? netPackage.getPayloadBuffer() : ByteBuffer.wrap(preface));
         }
         return request;
     }
@@ -237,6 +256,7 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
 
         if(!duplicated) {
             contexts.add(context);
+            router.add(context);
             Log.i(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Context added: [%s] %s",
                     context.getClass().getName(),  context.getContextRegex());
         } else {
@@ -251,18 +271,7 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
      * @return Founded context.
      */
     protected ContextMatcher findContext(String contextName) {
-        ContextMatcher result = null;
-        Matcher matcher;
-
-        for(Context context : contexts) {
-            matcher = context.getPattern().matcher(contextName);
-            if(matcher.matches()) {
-                result = new ContextMatcher(context, matcher);
-                break;
-            }
-        }
-
-        return result;
+        return router.find(contextName);
     }
 
     /**
@@ -287,18 +296,12 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
      */
     @Override
     protected final void onRead(HttpSession session, HttpPackage payLoad, NetPackage netPackage) {
-        if(session.getStream() != null) {
-
-        } else {
-            if (payLoad.isComplete()) {
-                //Remove the http buffer because the payload is complete.
-                requestBuffers.remove(session);
-                addDecoupledAction(new DecoupledAction(session) {
-                    @Override
-                    public void onAction() {
-                        processRequest(session, (HttpRequest) payLoad);
-                    }
-                });
+        //The http2 requests are dispatched by the connection when each stream is complete and the streaming
+        //requests are dispatched when the headers are complete.
+        if (payLoad != null && (payLoad.isComplete() || ((HttpRequest) payLoad).isStreamingBody())) {
+            RequestPipeline pipeline = pipelines.get(session);
+            if (pipeline != null) {
+                pipeline.dispatch();
             }
         }
     }
@@ -311,139 +314,548 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
     private void processRequest(HttpSession session, HttpRequest request) {
         session.setHttpVersion(request.getHttpVersion());
 
-        //Flag to pipe line.
-        boolean connectionKeepAlive = false;
-
         //Value to calculate the request execution time
         long time = System.currentTimeMillis();
 
-        HttpResponse response = null;
+        HttpResponse response;
         if (SystemProperties.getBoolean(SystemProperties.Net.Http.INPUT_LOG_ENABLED)) {
             Log.in(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request\r\n%s", request.toString());
         }
+
+        HttpHeader upgrade = request.getHeader(HttpHeader.UPGRADE);
+        if (http2Enabled && session.isChecked() && httpProtocol.equals(HttpPackage.HttpProtocol.HTTP) &&
+                upgrade != null && upgrade.getHeaderValue().trim().equalsIgnoreCase(HttpHeader.HTTP2_REQUEST) &&
+                request.containsHeader(HttpHeader.HTTP2_SETTINGS)) {
+            if (upgradeToHttp2(session, request)) {
+                return;
+            }
+        }
+
+        if (session.isChecked()) {
+            response = createResponse(request);
+        } else {
+            response = addOriginHeader(request, onNotCheckedSession(request));
+            response.setProtocol(httpProtocol);
+        }
+        request.deleteTempFiles();
+        if (request.isStreamingBody()) {
+            //The rest of the body that the context didn't read is discarded.
+            try {
+                request.getBodyStream().close();
+            } catch (IOException ex) {}
+        }
+
+        boolean connectionKeepAlive = isKeepAlive(request, response);
+        if (!connectionKeepAlive && !response.containsHeader(HttpHeader.CONNECTION)) {
+            response.addHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.CLOSED));
+        }
+
+        RequestPipeline pipeline = pipelines.get(session);
+        if (pipeline != null) {
+            pipeline.complete(request, response, connectionKeepAlive, time);
+        } else {
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Session closed, the response is discarded");
+        }
+    }
+
+    /**
+     * Writes the response of a request, this method is called by the pipeline of the session following the order
+     * of the requests.
+     * @param session Http session instance.
+     * @param response Http response instance.
+     * @param connectionKeepAlive True if the connection must be kept open after the response.
+     * @param time Start time of the request.
+     * @return Returns true if the connection remains open for the next response of the pipeline.
+     */
+    private boolean writeResponse(HttpSession session, HttpResponse response, boolean connectionKeepAlive, long time) {
         try {
-            if (session.isChecked()) {
-                HttpHeader upgrade = request.getHeader(HttpHeader.UPGRADE);
-                if (upgrade != null && upgrade.getHeaderValue().equals(HttpHeader.HTTP2_REQUEST)) {
-                    session.setHttpVersion(HttpVersion.VERSION_2_0);
-                    HttpHeader connection = request.getHeader(HttpHeader.CONNECTION);
-                    HttpHeader http2Settings = request.getHeader(HttpHeader.HTTP2_SETTINGS);
-
-                    SettingsFrame settingsFrame = SettingsFrame.createDefaultSettingsFrame(0);
-
-                    if (upgrade.getHeaderValue().trim().equalsIgnoreCase(HttpHeader.HTTP2_REQUEST)) {
-                        session.setStream(new Stream(1, new StreamSettings()));
-                        response = new HttpResponse();
-                        response.setResponseCode(HttpResponseCode.SWITCHING_PROTOCOLS);
-                        response.addHeader(upgrade);
-                        response.setBody(settingsFrame.serialize().array());
-                    } else {
-                        throw new IllegalArgumentException("Unsupported upgrade connection " + upgrade.getHeaderValue());
+            if (response instanceof HttpPipelineResponse) {
+                //The streaming response ends with the disconnection.
+                connectionKeepAlive = false;
+                final HttpResponse finalResponse = response;
+                Service.run(() -> {
+                    HttpPipelineResponse pipelineResponse = (HttpPipelineResponse) finalResponse;
+                    pipelineResponse.onStart();
+                    try {
+                        while (pipelineResponse.read() >= 0) {
+                            write(session, finalResponse, false);
+                        }
+                    } catch (Throwable throwable) {
+                        //The connection is closed without the end of the body then the client can detect the error.
+                        Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error", throwable);
+                    } finally {
+                        pipelineResponse.onEnd();
+                        pipelineResponse.release();
+                        disconnect(session, "Http request end.");
                     }
-                } else {
-                    ContextMatcher contextMatcher = findContext(request.getContext());
-                    if (contextMatcher != null) {
-                        Context context = contextMatcher.getContext();
-                        HttpHeader originHeader = request.getHeader(HttpHeader.ORIGIN);
-                        try {
-                            request.setMatcher(contextMatcher.getMatcher());
-                            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request context: %s", request.getContext());
-                            if (originHeader != null && request.getMethod().equals(HttpMethod.OPTIONS)) {
-                                response = context.onOptions(originHeader, accessControlMap);
-                            } else {
-                                if (context.getTimeout() > 0) {
-                                    response = Service.call(() -> context.onContext(request),
-                                            ServiceSession.getCurrentIdentity(), context.getTimeout());
-                                } else {
-                                    response = context.onContext(request);
-                                }
-                                if (originHeader != null) {
-                                    URL url = new URL(originHeader.getHeaderValue());
-                                    AccessControl accessControl;
-                                    if ((accessControl = HttpUtils.getAccessControl(url.getHost(), accessControlMap)) != null) {
-                                        if (!accessControl.getExposeHeaders().isEmpty()) {
-                                            response.addHeader(new HttpHeader(HttpHeader.ACCESS_CONTROL_EXPOSE_HEADERS,
-                                                    Strings.join(accessControl.getExposeHeaders(), Strings.ARGUMENT_SEPARATOR)));
-                                        }
-                                    }
-                                }
-                            }
-                            if (request.containsHeader(HttpHeader.CONNECTION)) {
-                                if (request.getHeader(HttpHeader.CONNECTION).getHeaderValue().equalsIgnoreCase(HttpHeader.KEEP_ALIVE)) {
-                                    Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http connection keep alive");
-                                    connectionKeepAlive = true;
+                }, ServiceSession.getCurrentIdentity());
+            } else if (response instanceof HttpFileResponse) {
+                //The header is written as a common package and then the region of the file is queued.
+                HttpFileResponse fileResponse = (HttpFileResponse) response;
+                FileChannel fileChannel = fileResponse.openChannel();
+                try {
+                    write(session, response, false);
+                } catch (IOException ex) {
+                    fileChannel.close();
+                    throw ex;
+                }
+                writeFile(session, fileChannel, fileResponse.getPosition(), fileResponse.getCount(), false);
+            } else {
+                write(session, response, false);
+            }
+
+            if (SystemProperties.getBoolean(SystemProperties.Net.Http.OUTPUT_LOG_ENABLED)) {
+                Log.out(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Response -> [Time: %d ms] \r\n%s",
+                        (System.currentTimeMillis() - time), response.toString());
+            }
+        } catch (Throwable throwable) {
+            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error", throwable);
+            connectionKeepAlive = false;
+        }
+
+        if (!connectionKeepAlive && !(response instanceof HttpPipelineResponse)) {
+            disconnect(session, "Http request end.");
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http connection closed by server.");
+        }
+        return connectionKeepAlive;
+    }
+
+    /**
+     * Verify if the connection must be kept open after the response. The http/1.1 connections are persistent
+     * by default and the http/1.0 connections only with the keep alive header. The responses without length
+     * are delimited closing the connection.
+     * @param request Http request instance.
+     * @param response Http response instance.
+     * @return True if the connection is persistent and false in the otherwise.
+     */
+    private boolean isKeepAlive(HttpRequest request, HttpResponse response) {
+        boolean result;
+        HttpHeader requestConnection = request.getHeader(HttpHeader.CONNECTION);
+        HttpHeader responseConnection = response.getHeader(HttpHeader.CONNECTION);
+        if (responseConnection != null && !responseConnection.getHeaderValue().equalsIgnoreCase(HttpHeader.KEEP_ALIVE)) {
+            result = false;
+        } else if (requestConnection != null) {
+            result = requestConnection.getHeaderValue().equalsIgnoreCase(HttpHeader.KEEP_ALIVE);
+        } else {
+            result = HttpVersion.VERSION_1_1.equals(request.getHttpVersion());
+        }
+
+        if (result && !response.containsHeader(HttpHeader.CONTENT_LENGTH)) {
+            HttpHeader transferEncoding = response.getHeader(HttpHeader.TRANSFER_ENCODING);
+            result = transferEncoding != null && transferEncoding.getHeaderValue().equalsIgnoreCase(HttpHeader.CHUNKED);
+        }
+
+        if (result) {
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http connection keep alive");
+        }
+        return result;
+    }
+
+    /**
+     * Creates the response for a checked request, this method is shared by the http1 and http2 requests.
+     * @param request Http request instance.
+     * @return Http response instance.
+     */
+    private HttpResponse createResponse(HttpRequest request) {
+        HttpResponse response = null;
+        try {
+            ContextMatcher contextMatcher = findContext(request.getContext());
+            if (contextMatcher != null) {
+                Context context = contextMatcher.getContext();
+                HttpHeader originHeader = request.getHeader(HttpHeader.ORIGIN);
+                try {
+                    request.setMatcher(contextMatcher.getMatcher());
+                    Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request context: %s", request.getContext());
+                    if (originHeader != null && request.getMethod().equals(HttpMethod.OPTIONS)) {
+                        response = context.onOptions(originHeader, accessControlMap);
+                    } else {
+                        response = executeContext(context, request);
+                        if (originHeader != null) {
+                            URL url = new URL(originHeader.getHeaderValue());
+                            AccessControl accessControl;
+                            if ((accessControl = HttpUtils.getAccessControl(url.getHost(), accessControlMap)) != null) {
+                                if (!accessControl.getExposeHeaders().isEmpty()) {
+                                    response.addHeader(new HttpHeader(HttpHeader.ACCESS_CONTROL_EXPOSE_HEADERS,
+                                            Strings.join(accessControl.getExposeHeaders(), Strings.ARGUMENT_SEPARATOR)));
                                 }
                             }
-                        } catch (Throwable throwable) {
-                            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Exception on context %s", throwable, context.getContextRegex());
-                            response = context.onError(request, throwable);
-                            if (response == null) {
-                                response = createDefaultErrorResponse(throwable);
-                            }
                         }
-                    } else {
-                        response = onContextNotFound(request);
                     }
-
+                } catch (Throwable throwable) {
+                    Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Exception on context %s", throwable, context.getContextRegex());
+                    response = context.onError(request, throwable);
                     if (response == null) {
-                        response = onUnresponsiveContext(request);
+                        response = createDefaultErrorResponse(throwable);
                     }
-
-                    response.addHeader(new HttpHeader(HttpHeader.DATE,
-                            SystemProperties.getDateFormat(
-                                    SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE).format(new Date())));
-                    response.addHeader(new HttpHeader(HttpHeader.SERVER,
-                            SystemProperties.get(SystemProperties.Net.Http.SERVER_NAME)));
                 }
             } else {
-                response = onNotCheckedSession(request);
+                response = onContextNotFound(request);
+            }
+
+            if (response == null) {
+                response = onUnresponsiveContext(request);
             }
+
+            response.addHeader(new HttpHeader(HttpHeader.DATE,
+                    SystemProperties.getDateFormat(
+                            SystemProperties.Net.Http.RESPONSE_DATE_HEADER_FORMAT_VALUE).format(new Date())));
+            response.addHeader(new HttpHeader(HttpHeader.SERVER,
+                    SystemProperties.get(SystemProperties.Net.Http.SERVER_NAME)));
         } catch (Throwable throwable) {
             response = createDefaultErrorResponse(throwable);
         }
 
         response = addOriginHeader(request, response);
+        response.setProtocol(httpProtocol);
+        encodeResponse(request, response);
+        if (isContentLengthRequired(response)) {
+            Integer length = response.getBody() == null ? 0 : response.getBody().length;
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, length.toString()));
+        }
+        return response;
+    }
 
-        try {
-            response.setProtocol(httpProtocol);
-            if (isContentLengthRequired(response)) {
-                Integer length = response.getBody() == null ? 0 : response.getBody().length;
-                response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, length.toString()));
+    /**
+     * Executes the context if the limiters of the server and the context admit the request, the priority contexts
+     * are only limited by their own limiter. The latency of each execution adapts the limits.
+     * @param context Context instance.
+     * @param request Http request instance.
+     * @return Http response instance.
+     */
+    private HttpResponse executeContext(Context context, HttpRequest request) {
+        HttpResponse response;
+        ConcurrencyLimiter serverLimiter = context.isPriority() ? null : limiter;
+        ConcurrencyLimiter contextLimiter = context.getLimiter();
+        if (serverLimiter != null && !serverLimiter.acquire()) {
+            response = onOverloadedContext(request);
+        } else if (contextLimiter != null && !contextLimiter.acquire()) {
+            if (serverLimiter != null) {
+                serverLimiter.cancel();
             }
-
-            if (response instanceof HttpPipelineResponse) {
-                connectionKeepAlive = true;
-                final HttpResponse finalResponse = response;
-                Service.run(() -> {
-                    HttpPipelineResponse pipelineResponse = (HttpPipelineResponse) finalResponse;
-                    pipelineResponse.onStart();
-                    while (pipelineResponse.read() >= 0) {
+            response = onOverloadedContext(request);
+        } else {
+            long startTime = System.currentTimeMillis();
+            if (context.getTimeout() > 0) {
+                //The execution continues after the timeout, then the slots are released when the execution ends.
+                AtomicBoolean started = new AtomicBoolean();
+                AtomicBoolean dropped = new AtomicBoolean();
+                try {
+                    response = Service.call(() -> {
+                        if (!started.compareAndSet(false, true)) {
+                            return null;
+                        }
                         try {
-                            write(session, finalResponse, false);
-                        } catch (IOException e) {
-                            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error", e);
-                            break;
+                            return context.onContext(request);
+                        } finally {
+                            releaseLimiters(serverLimiter, contextLimiter, startTime, dropped.get());
                         }
+                    }, ServiceSession.getCurrentIdentity(), context.getTimeout());
+                } catch (HCJFServiceTimeoutException ex) {
+                    dropped.set(true);
+                    if (started.compareAndSet(false, true)) {
+                        //The execution was cancelled before starting.
+                        releaseLimiters(serverLimiter, contextLimiter, startTime, true);
                     }
-                    pipelineResponse.onEnd();
-                    disconnect(session, "Http request end.");
-                }, ServiceSession.getCurrentIdentity());
+                    throw ex;
+                }
             } else {
+                try {
+                    response = context.onContext(request);
+                } finally {
+                    releaseLimiters(serverLimiter, contextLimiter, startTime, false);
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Releases the slots of the limiters of an execution.
+     * @param serverLimiter Limiter of the server, could be null.
+     * @param contextLimiter Limiter of the context, could be null.
+     * @param startTime Start time of the execution.
+     * @param dropped True if the execution was dropped by timeout.
+     */
+    private void releaseLimiters(ConcurrencyLimiter serverLimiter, ConcurrencyLimiter contextLimiter,
+                                 long startTime, boolean dropped) {
+        long latency = System.currentTimeMillis() - startTime;
+        if (contextLimiter != null) {
+            contextLimiter.release(latency, dropped);
+        }
+        if (serverLimiter != null) {
+            serverLimiter.release(latency, dropped);
+        }
+    }
+
+    /**
+     * Encodes the body of the response with the content encoding negotiated with the client. The responses with
+     * content encoding, the partial responses, the file regions, the small bodies and the binary types are
+     * sent without changes. The pipeline responses are encoded incrementally on each read.
+     * @param request Http request instance.
+     * @param response Http response instance.
+     */
+    private void encodeResponse(HttpRequest request, HttpResponse response) {
+        HttpHeader contentType = response.getHeader(HttpHeader.CONTENT_TYPE);
+        if (SystemProperties.getBoolean(SystemProperties.Net.Http.Compression.ENABLED) &&
+                contentType != null && MimeType.isCompressible(contentType.getHeaderValue()) &&
+                !(response instanceof HttpFileResponse) &&
+                !response.containsHeader(HttpHeader.CONTENT_ENCODING) &&
+                !response.containsHeader(HttpHeader.CONTENT_RANGE) &&
+                !HttpResponseCode.PARTIAL_CONTENT.equals(response.getResponseCode())) {
+            byte[] body = response.getBody();
+            boolean pipeline = response instanceof HttpPipelineResponse;
+            if (pipeline || (body != null &&
+                    body.length >= SystemProperties.getInteger(SystemProperties.Net.Http.Compression.MIN_SIZE))) {
+                response.addHeader(new HttpHeader(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING));
+                String encoding = HttpCompression.negotiate(request);
+                if (encoding != null) {
+                    if (pipeline) {
+                        //The length of the encoded content is unknown.
+                        ((HttpPipelineResponse) response).setContentEncoding(encoding);
+                        response.removeHeader(HttpHeader.CONTENT_LENGTH);
+                        response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, encoding));
+                    } else {
+                        byte[] encodedBody = HttpCompression.encode(encoding, body);
+                        if (encodedBody != null) {
+                            response.setBody(encodedBody);
+                            response.addHeader(new HttpHeader(HttpHeader.CONTENT_ENCODING, encoding));
+                            if (response.removeHeader(HttpHeader.CONTENT_LENGTH) != null) {
+                                response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH,
+                                        Integer.toString(encodedBody.length)));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Upgrades the http1 connection to a h2c connection, the request of the upgrade is the first stream of
+     * the connection and it is processed as a http2 request.
+     * https://httpwg.org/specs/rfc7540.html#discover-http
+     * @param session Http session instance.
+     * @param request Request with the upgrade headers.
+     * @return Returns true if the connection was upgraded and false if the request must be processed as http1.
+     */
+    private boolean upgradeToHttp2(HttpSession session, HttpRequest request) {
+        Http2Connection connection = createHttp2Connection(session);
+        Stream stream;
+        synchronized (connection) {
+            try {
+                stream = connection.upgrade(request.getHeader(HttpHeader.HTTP2_SETTINGS).getHeaderValue());
+            } catch (Http2Exception ex) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Invalid http2 settings, the upgrade is ignored");
+                return false;
+            }
+
+            HttpResponse response = new HttpResponse();
+            response.setProtocol(httpProtocol);
+            response.setResponseCode(HttpResponseCode.SWITCHING_PROTOCOLS);
+            response.addHeader(new HttpHeader(HttpHeader.CONNECTION, HttpHeader.UPGRADE));
+            response.addHeader(new HttpHeader(HttpHeader.UPGRADE, HttpHeader.HTTP2_REQUEST));
+            try {
                 write(session, response, false);
+                session.setHttpVersion(HttpVersion.VERSION_2_0);
+                session.setHttp2Connection(connection);
+                connection.start();
+                //The response of the upgrade request is sent over the stream 1.
+                request.setHttpVersion(HttpVersion.VERSION_2_0);
+            } catch (Throwable throwable) {
+                Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http2 upgrade error", throwable);
+                disconnect(session, "Http2 upgrade error.");
+                return true;
+            }
+        }
+        pipelines.remove(session);
+        processHttp2Request(session, connection, stream, request);
+        return true;
+    }
+
+    /**
+     * Creates the http2 connection associated to the session.
+     * @param session Http session instance.
+     * @return Http2 connection.
+     */
+    private Http2Connection createHttp2Connection(HttpSession session) {
+        return new Http2Connection(new StreamSettings()) {
+
+            @Override
+            protected void onWrite(byte[] data) throws IOException {
+                getService().writeData(session, data);
             }
 
-            if (SystemProperties.getBoolean(SystemProperties.Net.Http.OUTPUT_LOG_ENABLED)) {
-                Log.out(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Response -> [Time: %d ms] \r\n%s",
-                        (System.currentTimeMillis() - time), response.toString());
+            @Override
+            protected void onRequest(Stream stream) {
+                Http2Connection connection = this;
+                Service.run(() -> processHttp2Request(session, connection, stream, null),
+                        ServiceSession.getCurrentIdentity());
+            }
+
+            @Override
+            protected void onClose() {
+                disconnect(session, "Http2 connection closed.");
+            }
+        };
+    }
+
+    /**
+     * Process the request of a http2 stream, each stream is processed into its own thread then the
+     * streams of the connection are processed concurrently.
+     * @param session Http session instance.
+     * @param connection Http2 connection.
+     * @param stream Stream of the request.
+     * @param request Request instance if the request was created with the upgrade, otherwise the
+     *                request is created using the headers and the body of the stream.
+     */
+    private void processHttp2Request(HttpSession session, Http2Connection connection, Stream stream, HttpRequest request) {
+        long time = System.currentTimeMillis();
+        if (request == null) {
+            try {
+                request = createHttp2Request(stream);
+            } catch (Exception ex) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Malformed http2 request on %s", stream);
+                connection.resetStream(stream, Http2Frame.Error.PROTOCOL_ERROR);
+                return;
             }
+        }
+
+        if (SystemProperties.getBoolean(SystemProperties.Net.Http.INPUT_LOG_ENABLED)) {
+            Log.in(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request %s\r\n%s", stream, request.toString());
+        }
+
+        HttpResponse response;
+        try {
+            checkSession(session, request, null);
+            response = createResponse(request);
         } catch (Throwable throwable) {
-            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server error", throwable);
-            connectionKeepAlive = false;
-        } finally {
-            if (!connectionKeepAlive && !session.getHttpVersion().equals(HttpVersion.VERSION_2_0)) {
-                disconnect(session, "Http request end.");
-                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http connection closed by server.");
+            ContextMatcher contextMatcher = findContext(request.getContext());
+            response = contextMatcher == null ? null : contextMatcher.getContext().onError(request, throwable);
+            if (response == null) {
+                response = createDefaultErrorResponse(throwable);
+            }
+            response = addOriginHeader(request, response);
+        }
+        request.deleteTempFiles();
+
+        writeHttp2Response(connection, stream, request, response);
+
+        if (SystemProperties.getBoolean(SystemProperties.Net.Http.OUTPUT_LOG_ENABLED)) {
+            Log.out(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Response %s -> [Time: %d ms] \r\n%s",
+                    stream, (System.currentTimeMillis() - time), response.toString());
+        }
+    }
+
+    /**
+     * Creates the http request using the headers and the body of the stream.
+     * https://httpwg.org/specs/rfc7540.html#HttpRequest
+     * @param stream Complete stream.
+     * @return Http request instance.
+     */
+    private HttpRequest createHttp2Request(Stream stream) {
+        HttpRequest request = new HttpRequest();
+        request.setProtocol(httpProtocol);
+        String method = null;
+        String path = null;
+        String authority = null;
+        Map<String,String> headers = new LinkedHashMap<>();
+        List<String> cookies = new ArrayList<>();
+        for (HeaderField field : stream.getHeaders()) {
+            switch (field.getName()) {
+                case ":method": method = field.getValue(); break;
+                case ":path": path = field.getValue(); break;
+                case ":authority": authority = field.getValue(); break;
+                case ":scheme": break;
+                case "cookie": cookies.add(field.getValue()); break;
+                default: headers.merge(field.getName(), field.getValue(), (v1, v2) -> v1 + ", " + v2);
+            }
+        }
+        if (authority != null && !headers.containsKey(HttpHeader.HOST.toLowerCase())) {
+            headers.put(HttpHeader.HOST, authority);
+        }
+        if (!cookies.isEmpty()) {
+            //The cookie header could be split in many fields.
+            //https://httpwg.org/specs/rfc7540.html#CompressCookie
+            headers.put(HttpHeader.COOKIE, String.join("; ", cookies));
+        }
+        for (Map.Entry<String,String> header : headers.entrySet()) {
+            request.addHeader(new HttpHeader(header.getKey(), header.getValue()));
+        }
+        request.processFirstLine(Strings.join(List.of(method, path, HttpVersion.VERSION_2_0), " "));
+        request.setBody(stream.getBody().toByteArray());
+        request.processBody();
+        return request;
+    }
+
+    /**
+     * Writes the response into the stream, the body is sent in data frames bounded by the flow control
+     * of the connection.
+     * @param connection Http2 connection.
+     * @param stream Stream of the request.
+     * @param request Http request instance.
+     * @param response Http response instance.
+     */
+    private void writeHttp2Response(Http2Connection connection, Stream stream, HttpRequest request, HttpResponse response) {
+        List<HeaderField> fields = new ArrayList<>();
+        fields.add(new HeaderField(":status", response.getResponseCode().toString()));
+        for (HttpHeader header : response.getHeaders()) {
+            String name = header.getHeaderName().toLowerCase();
+            if (!Http2Connection.CONNECTION_HEADERS.contains(name)) {
+                fields.add(new HeaderField(name, header.getHeaderValue()));
+            }
+        }
+        for (Cookie cookie : response.getCookies()) {
+            fields.add(new HeaderField(cookie instanceof Cookie2 ?
+                    HttpHeader.SET_COOKIE2.toLowerCase() : HttpHeader.SET_COOKIE.toLowerCase(), cookie.toString()));
+        }
+
+        try {
+            if (response instanceof HttpPipelineResponse) {
+                HttpPipelineResponse pipelineResponse = (HttpPipelineResponse) response;
+                connection.sendHeaders(stream, fields, false);
+                pipelineResponse.onStart();
+                try {
+                    ByteBuffer mainBuffer = pipelineResponse.getMainBuffer();
+                    while (pipelineResponse.readContent() >= 0) {
+                        //The main buffer is reused by the pipeline then the content is copied.
+                        byte[] data = Arrays.copyOf(mainBuffer.array(), mainBuffer.position());
+                        connection.sendData(stream, data, 0, data.length, false);
+                    }
+                    connection.sendData(stream, new byte[0], 0, 0, true);
+                } finally {
+                    pipelineResponse.onEnd();
+                    pipelineResponse.release();
+                }
+            } else if (response instanceof HttpFileResponse) {
+                HttpFileResponse fileResponse = (HttpFileResponse) response;
+                try (FileChannel fileChannel = fileResponse.openChannel()) {
+                    long position = fileResponse.getPosition();
+                    long remaining = fileResponse.getCount();
+                    connection.sendHeaders(stream, fields, remaining == 0);
+                    int chunkSize = connection.getRemoteSettings().getMaxFrameSize();
+                    while (remaining > 0) {
+                        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(chunkSize, remaining));
+                        while (buffer.hasRemaining()) {
+                            if (fileChannel.read(buffer, position + buffer.position()) < 0) {
+                                throw new EOFException("Unexpected end of file " + fileResponse.getPath());
+                            }
+                        }
+                        position += buffer.capacity();
+                        remaining -= buffer.capacity();
+                        connection.sendData(stream, buffer.array(), 0, buffer.capacity(), remaining == 0);
+                    }
+                }
+            } else {
+                byte[] body = response.getBody();
+                boolean withoutBody = body == null || body.length == 0 || request.getMethod().equals(HttpMethod.HEAD);
+                connection.sendHeaders(stream, fields, withoutBody);
+                if (!withoutBody) {
+                    connection.sendData(stream, body, 0, body.length, true);
+                }
             }
+        } catch (Throwable throwable) {
+            Log.e(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http2 server error on %s", throwable, stream);
+            connection.resetStream(stream, Http2Frame.Error.INTERNAL_ERROR);
         }
     }
 
@@ -545,6 +957,23 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
         return  Context.addDefaultResponseHeaders(response, body.getBytes());
     }
 
+    /**
+     * This method must create the response package when the request is rejected by the limiters because the
+     * context is overloaded.
+     * @param request Http request.
+     * @return Service unavailable response.
+     */
+    protected HttpResponse onOverloadedContext(HttpRequest request) {
+        HttpResponse response = new HttpResponse();
+        String body = "Context overloaded: " + request.getContext();
+        response.setResponseCode(HttpResponseCode.SERVICE_UNAVAILABLE);
+        response.addHeader(new HttpHeader(HttpHeader.RETRY_AFTER,
+                SystemProperties.get(SystemProperties.Net.Http.Admission.RETRY_AFTER)));
+        Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Request rejected, context overloaded: %s",
+                request.getContext());
+        return  Context.addDefaultResponseHeaders(response, body.getBytes());
+    }
+
     /**
      * This method must create the response package when the session check fail.
      * @param request Http request.
@@ -564,7 +993,15 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
      */
     @Override
     protected final void onDisconnect(HttpSession session, NetPackage netPackage) {
-        requestBuffers.remove(session);
+        prefaces.remove(session);
+        RequestPipeline pipeline = pipelines.remove(session);
+        if(pipeline != null) {
+            pipeline.close();
+        }
+        Http2Connection http2Connection = session.getHttp2Connection();
+        if(http2Connection != null) {
+            http2Connection.close();
+        }
     }
 
     /**
@@ -601,6 +1038,303 @@ public class HttpServer extends NetServer<HttpSession, HttpPackage>  {
         Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http server stopped.");
     }
 
+    /**
+     * This class keeps the requests of a session in the same order that they were received. The requests are
+     * processed concurrently up to the maximum depth of the pipeline but the responses are written strictly
+     * in order, then the clients can send many requests without wait for each response. When the pipeline is
+     * full the rest of the data is not parsed and the read of the session is suspended until some response
+     * is written.
+     */
+    private final class RequestPipeline {
+
+        private final HttpSession session;
+        private final Deque<PipelineEntry> entries;
+        private final int maxDepth;
+        private HttpRequest buffer;
+        private HttpBodyInputStream bufferBodyStream;
+        private ByteBuffer backlog;
+        private int inFlight;
+        private boolean writing;
+        private boolean closed;
+
+        private RequestPipeline(HttpSession session) {
+            this.session = session;
+            this.entries = new ArrayDeque<>();
+            this.maxDepth = SystemProperties.getInteger(SystemProperties.Net.Http.PIPELINE_MAX_DEPTH);
+            this.buffer = createBuffer();
+        }
+
+        /**
+         * Creates the request that receives the next data of the session, if the context of the request consumes
+         * the body incrementally then the body is delivered using a stream.
+         * @return Request instance.
+         */
+        private HttpRequest createBuffer() {
+            bufferBodyStream = null;
+            HttpRequest request = new HttpRequest() {
+                @Override
+                protected BodyConsumer createBodyConsumer() {
+                    ContextMatcher contextMatcher = findContext(getContext());
+                    if (contextMatcher != null && contextMatcher.getContext().isStreamingBody()) {
+                        bufferBodyStream = createBodyStream();
+                        setBodyStream(bufferBodyStream);
+                    }
+                    return super.createBodyConsumer();
+                }
+            };
+            request.setProtocol(httpProtocol);
+            return request;
+        }
+
+        /**
+         * Creates the stream of the body, the read of the session is suspended while the buffer of the stream is full.
+         * @return Body stream instance.
+         */
+        private HttpBodyInputStream createBodyStream() {
+            return new HttpBodyInputStream(
+                    SystemProperties.getInteger(SystemProperties.Net.Http.STREAMING_BODY_BUFFER_SIZE),
+                    SystemProperties.getLong(SystemProperties.Net.Http.STREAMING_BODY_READ_TIMEOUT)) {
+
+                @Override
+                protected void onSuspend() {
+                    try {
+                        getService().suspendRead(session);
+                    } catch (IOException ex) {
+                        Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to suspend read", ex);
+                    }
+                }
+
+                @Override
+                protected void onResume() {
+                    try {
+                        getService().resumeRead(session);
+                    } catch (IOException ex) {
+                        //The session was disconnected while it was suspended.
+                    }
+                }
+            };
+        }
+
+        /**
+         * Adds the data into the current request, the bytes after a complete request are the beginning
+         * of the next request.
+         * @param data Received data, the buffer is not retained.
+         * @return Returns the first request completed with this data or the incomplete request.
+         */
+        private synchronized HttpRequest addData(ByteBuffer data) {
+            HttpRequest result;
+            if (backlog != null) {
+                //The pipeline is full, the data is kept without parsing until the pipeline has space.
+                ByteBuffer newBacklog = ByteBuffer.allocate(backlog.remaining() + data.remaining());
+                newBacklog.put(backlog).put(data).flip();
+                backlog = newBacklog;
+                suspendRead();
+                result = buffer;
+            } else {
+                result = parse(data);
+            }
+            return result;
+        }
+
+        /**
+         * Parses the data while the number of requests into the pipeline is smaller than the maximum depth, the
+         * rest of the data is kept as backlog and the read of the session is suspended.
+         * This method must be called with the monitor of the pipeline.
+         * @param data Data to parse.
+         * @return Returns the first request completed with this data or the incomplete request.
+         */
+        private HttpRequest parse(ByteBuffer data) {
+            HttpRequest result = null;
+            while (data != null) {
+                if (entries.size() >= maxDepth && !buffer.isStreamingBody()) {
+                    //The body of a streaming request already queued is parsed always.
+                    backlog = ByteBuffer.allocate(data.remaining());
+                    backlog.put(data).flip();
+                    suspendRead();
+                    break;
+                }
+                boolean queued = buffer.isStreamingBody();
+                buffer.addData(data);
+                if (buffer.isComplete()) {
+                    if (result == null) {
+                        result = buffer;
+                    }
+                    if (!queued) {
+                        entries.add(new PipelineEntry(buffer));
+                    }
+                    data = buffer.getLeftover() == null ? null : ByteBuffer.wrap(buffer.getLeftover());
+                    buffer = createBuffer();
+                } else {
+                    if (!queued && buffer.isStreamingBody()) {
+                        //The streaming request is queued before the end of the body.
+                        entries.add(new PipelineEntry(buffer));
+                    }
+                    data = null;
+                }
+            }
+            return result == null ? buffer : result;
+        }
+
+        /**
+         * Parses the backlog if the pipeline has space for new requests, the read of the session is resumed
+         * when all the backlog was parsed.
+         */
+        private void drainBacklog() {
+            boolean resume = false;
+            synchronized (this) {
+                if (!closed && backlog != null && entries.size() < maxDepth) {
+                    ByteBuffer data = backlog;
+                    backlog = null;
+                    parse(data);
+                    resume = backlog == null;
+                }
+            }
+            if (resume) {
+                try {
+                    getService().resumeRead(session);
+                } catch (IOException ex) {
+                    //The session was disconnected while it was suspended.
+                }
+            }
+        }
+
+        /**
+         * Suspends the read of the session because the pipeline is full.
+         */
+        private void suspendRead() {
+            try {
+                getService().suspendRead(session);
+            } catch (IOException ex) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to suspend read", ex);
+            }
+        }
+
+        /**
+         * Starts the processing of the waiting requests while the number of requests in flight is
+         * smaller than the maximum depth.
+         */
+        private void dispatch() {
+            List<PipelineEntry> dispatched = new ArrayList<>();
+            synchronized (this) {
+                for (PipelineEntry entry : entries) {
+                    if (closed || inFlight >= maxDepth) {
+                        break;
+                    }
+                    if (!entry.dispatched) {
+                        entry.dispatched = true;
+                        inFlight++;
+                        dispatched.add(entry);
+                    }
+                }
+            }
+
+            //The actions are added out of the monitor because the action could be executed by the current thread.
+            for (PipelineEntry entry : dispatched) {
+                if (entry.request.isStreamingBody()) {
+                    //The streaming requests wait for the body then they are processed into its own thread
+                    //in order to don't block the workers of the decoupled actions.
+                    Service.run(() -> processRequest(session, entry.request), session);
+                } else {
+                    addDecoupledAction(new DecoupledAction(session) {
+                        @Override
+                        public void onAction() {
+                            processRequest(session, entry.request);
+                        }
+                    });
+                }
+            }
+        }
+
+        /**
+         * Stores the response of the request and writes all the responses that are ready at the head of
+         * the pipeline. The responses are taken with the monitor of the pipeline but they are written out of
+         * the monitor, because the write could wait for the session, and only one thread writes at the same time
+         * in order to keep the order of the responses.
+         * @param request Http request instance.
+         * @param response Http response instance.
+         * @param keepAlive True if the connection must be kept open after the response.
+         * @param time Start time of the request.
+         */
+        private void complete(HttpRequest request, HttpResponse response, boolean keepAlive, long time) {
+            boolean writer;
+            synchronized (this) {
+                for (PipelineEntry entry : entries) {
+                    if (entry.request == request) {
+                        entry.response = response;
+                        entry.keepAlive = keepAlive;
+                        entry.time = time;
+                        break;
+                    }
+                }
+                //If other thread is writing then that thread writes this response too.
+                writer = !writing;
+                writing = true;
+            }
+
+            if (writer) {
+                List<PipelineEntry> ready = takeReady();
+                while (!ready.isEmpty()) {
+                    for (PipelineEntry entry : ready) {
+                        if (!writeResponse(session, entry.response, entry.keepAlive, entry.time)) {
+                            close();
+                            break;
+                        }
+                    }
+                    ready = takeReady();
+                }
+            }
+            drainBacklog();
+            dispatch();
+        }
+
+        /**
+         * Removes from the head of the pipeline all the entries with the response ready, if there are not
+         * entries ready then the writing flag is released.
+         * @return List of entries ready to write.
+         */
+        private synchronized List<PipelineEntry> takeReady() {
+            List<PipelineEntry> result = new ArrayList<>();
+            PipelineEntry head;
+            while (!closed && (head = entries.peek()) != null && head.response != null) {
+                entries.poll();
+                inFlight--;
+                result.add(head);
+            }
+            if (result.isEmpty()) {
+                writing = false;
+            }
+            return result;
+        }
+
+        /**
+         * Discards all the pending requests.
+         */
+        private synchronized void close() {
+            closed = true;
+            entries.clear();
+            backlog = null;
+            if (bufferBodyStream != null) {
+                bufferBodyStream.abort();
+            }
+        }
+    }
+
+    /**
+     * Request of the pipeline and its response when the response is ready.
+     */
+    private static final class PipelineEntry {
+
+        private final HttpRequest request;
+        private HttpResponse response;
+        private boolean keepAlive;
+        private boolean dispatched;
+        private long time;
+
+        private PipelineEntry(HttpRequest request) {
+            this.request = request;
+        }
+    }
+
     public static class ContextMatcher {
 
         private final Context context;
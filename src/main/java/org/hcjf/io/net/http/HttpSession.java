@@ -2,7 +2,7 @@ package org.hcjf.io.net.http;
 
 import org.hcjf.io.net.NetServiceConsumer;
 import org.hcjf.io.net.NetSession;
-import org.hcjf.io.net.http.http2.Stream;
+import org.hcjf.io.net.http.http2.Http2Connection;
 
 import java.util.UUID;
 
@@ -13,7 +13,7 @@ import java.util.UUID;
 public class HttpSession extends NetSession {
 
     private HttpRequest request;
-    private Stream stream;
+    private volatile Http2Connection http2Connection;
     private String httpVersion;
 
     /**
@@ -29,7 +29,7 @@ public class HttpSession extends NetSession {
     protected HttpSession(HttpSession httpSession) {
         super(httpSession);
         this.request = httpSession.request;
-        this.stream = httpSession.stream;
+        this.http2Connection = httpSession.http2Connection;
     }
 
     /**
@@ -49,19 +49,19 @@ public class HttpSession extends NetSession {
     }
 
     /**
-     * Returns the http2 stream object associated to the session.
-     * @return Http2 stream object.
+     * Returns the http2 connection associated to the session.
+     * @return Http2 connection object, null if the session uses http/1.x
      */
-    public final Stream getStream() {
-        return stream;
+    public final Http2Connection getHttp2Connection() {
+        return http2Connection;
     }
 
     /**
-     * Set the http2 stream object associated to the session.
-     * @param stream Http2 stream object.
+     * Set the http2 connection associated to the session.
+     * @param http2Connection Http2 connection object.
      */
-    public final void setStream(Stream stream) {
-        this.stream = stream;
+    public final void setHttp2Connection(Http2Connection http2Connection) {
+        this.http2Connection = http2Connection;
     }
 
     /**
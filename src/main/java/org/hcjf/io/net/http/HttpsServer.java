@@ -9,6 +9,7 @@ import org.hcjf.properties.SystemProperties;
 import javax.net.ssl.*;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.KeyStore;
 import java.security.Provider;
@@ -19,6 +20,9 @@ import java.security.SecureRandom;
  */
 public class HttpsServer extends HttpServer {
 
+    private static final String H2_PROTOCOL = "h2";
+    private static final String HTTP1_PROTOCOL = "http/1.1";
+
     private String keystorePassword;
     private String keyPassword;
     private Path keystoreFilePath;
@@ -58,7 +62,14 @@ public class HttpsServer extends HttpServer {
     protected SslPeer getSslPeer() {
         if (sslServer == null) {
             try {
-                sslServer = new SslServer("TLSv1.2");
+                TrustManager[] trustManagers = null;
+                if(getTrustedCertsFilePath() != null && Files.exists(getTrustedCertsFilePath())) {
+                    trustManagers = createTrustManagers();
+                }
+                sslServer = new SslServer(getSslProtocol(), createKeyManagers(), trustManagers);
+                if(SystemProperties.getBoolean(SystemProperties.Net.Http.Http2.ENABLED)) {
+                    sslServer.setApplicationProtocols(H2_PROTOCOL, HTTP1_PROTOCOL);
+                }
             } catch (Exception ex) {
                 throw new HCJFRuntimeException("Ssl server fail", ex);
             }
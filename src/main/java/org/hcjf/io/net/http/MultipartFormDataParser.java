@@ -0,0 +1,424 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.encoding.MimeType;
+import org.hcjf.errors.Errors;
+import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+import org.hcjf.utils.Strings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class parses a multipart/form-data body incrementally, each fragment is consumed when it arrives and
+ * only the bytes that could be a part of a boundary are kept between fragments. The boundaries are found
+ * using the Boyer-Moore-Horspool algorithm. The fields are kept in memory and the files bigger than the
+ * memory threshold are written into temporary files.
+ * https://tools.ietf.org/html/rfc7578
+ * @author javaito
+ */
+public class MultipartFormDataParser implements HttpPackage.BodyConsumer {
+
+    private static final byte[] DELIMITER_START = (HttpPackage.STRING_LINE_SEPARATOR + "--").getBytes();
+    private static final byte[] LINE_SEPARATOR = HttpPackage.STRING_LINE_SEPARATOR.getBytes();
+    private static final byte CLOSE_DELIMITER = '-';
+    private static final int ALPHABET_SIZE = 256;
+    private static final int MAX_PART_HEADERS_SIZE = 16 * 1024;
+    private static final String NAME_FIELD = "name";
+    private static final String FILE_NAME_FIELD = "filename";
+    private static final String FIELDS_SEPARATOR = ";";
+    private static final String HEADER_ASSIGNATION = ":";
+    private static final String TEMP_FILE_PREFIX = "hcjf-multipart-";
+
+    private final byte[] delimiter;
+    private final int[] shifts;
+    private final String charset;
+    private final int memoryThreshold;
+    private final int maxFieldSize;
+    private final long maxSize;
+    private final Map<String,Object> parameters;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private long size;
+    private State state;
+
+    //Information of the current part
+    private int partHeadersSize;
+    private String partName;
+    private String partFileName;
+    private MimeType partMimeType;
+    private long partSize;
+    private ByteArrayOutputStream partMemory;
+    private Path partPath;
+    private OutputStream partOutputStream;
+
+    /**
+     * Creates the parser using the boundary and the charset of the content type header.
+     * @param contentType Content type header of the request.
+     */
+    public MultipartFormDataParser(HttpHeader contentType) {
+        String boundary = contentType.getParameter(HttpHeader.MULTIPART_FORM_DATA, HttpHeader.BOUNDARY);
+        if(boundary == null) {
+            throw new HCJFRuntimeException("Multipart boundary not found");
+        }
+        String charset = contentType.getParameter(HttpHeader.MULTIPART_FORM_DATA, HttpHeader.PARAM_CHARSET);
+
+        this.charset = charset == null ? SystemProperties.getDefaultCharset() : charset;
+        this.memoryThreshold = SystemProperties.getInteger(SystemProperties.Net.Http.MULTIPART_MEMORY_THRESHOLD);
+        this.maxFieldSize = SystemProperties.getInteger(SystemProperties.Net.Http.MAX_PACKAGE_SIZE);
+        this.maxSize = SystemProperties.getLong(SystemProperties.Net.Http.MULTIPART_MAX_SIZE);
+        this.parameters = new HashMap<>();
+        this.delimiter = new byte[DELIMITER_START.length + boundary.length()];
+        System.arraycopy(DELIMITER_START, 0, delimiter, 0, DELIMITER_START.length);
+        System.arraycopy(boundary.getBytes(), 0, delimiter, DELIMITER_START.length, boundary.length());
+        this.shifts = new int[ALPHABET_SIZE];
+        Arrays.fill(shifts, delimiter.length);
+        for (int i = 0; i < delimiter.length - 1; i++) {
+            shifts[delimiter[i] & 0xFF] = delimiter.length - 1 - i;
+        }
+
+        //The first boundary is not preceded by a line separator, then the line separator is added in order to
+        //find all the boundaries with the same delimiter.
+        this.buffer = new byte[delimiter.length * 2];
+        System.arraycopy(LINE_SEPARATOR, 0, buffer, 0, LINE_SEPARATOR.length);
+        this.limit = LINE_SEPARATOR.length;
+        this.state = State.PREAMBLE;
+    }
+
+    /**
+     * Returns the decoded parameters, the fields are stored as strings and the files as {@link HttpRequest.AttachFile}
+     * instances, if there are many files with the same name then the files are stored into a list.
+     * @return Decoded parameters.
+     */
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Consumes the fragment of the body.
+     * @param bodyFragment Body fragment.
+     */
+    @Override
+    public void add(ByteBuffer bodyFragment) {
+        int length = bodyFragment.remaining();
+        size += length;
+        if(size > maxSize) {
+            release();
+            throw new HCJFRuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_PACKAGE_OVERFLOW));
+        }
+
+        if(buffer.length - limit < length) {
+            buffer = Arrays.copyOf(buffer, limit + length);
+        }
+        bodyFragment.get(buffer, limit, length);
+        limit += length;
+        try {
+            parse();
+        } catch (IOException ex) {
+            release();
+            throw new HCJFRuntimeException("Unable to store multipart file", ex);
+        } catch (RuntimeException ex) {
+            release();
+            throw ex;
+        }
+
+        //The bytes that are not consumed yet are moved to the start of the buffer.
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+    }
+
+    /**
+     * This method is called when the body is complete, if the last part is not closed then it is discarded.
+     */
+    @Override
+    public void done() {
+        if(state != State.EPILOGUE) {
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Incomplete multipart body, the last part is discarded");
+            releasePart();
+        }
+        buffer = null;
+    }
+
+    /**
+     * Parses the bytes into the buffer until the buffer hasn't enough bytes to take a decision.
+     * @throws IOException Exception writing the temporary files.
+     */
+    private void parse() throws IOException {
+        boolean more = true;
+        while(more) {
+            switch (state) {
+                case PREAMBLE:
+                case DATA: {
+                    int index = indexOf(position, limit);
+                    if(index >= 0) {
+                        if(state == State.DATA) {
+                            writePart(position, index - position);
+                            finishPart();
+                        }
+                        position = index + delimiter.length;
+                        state = State.DELIMITER_END;
+                    } else {
+                        //The last bytes could be the start of the delimiter.
+                        int end = Math.max(position, limit - delimiter.length + 1);
+                        if(state == State.DATA) {
+                            writePart(position, end - position);
+                        }
+                        position = end;
+                        more = false;
+                    }
+                    break;
+                }
+                case DELIMITER_END: {
+                    if(limit - position < 2) {
+                        more = false;
+                    } else if(buffer[position] == CLOSE_DELIMITER && buffer[position + 1] == CLOSE_DELIMITER) {
+                        state = State.EPILOGUE;
+                    } else if(buffer[position] == LINE_SEPARATOR[0] && buffer[position + 1] == LINE_SEPARATOR[1]) {
+                        position += LINE_SEPARATOR.length;
+                        partHeadersSize = 0;
+                        state = State.HEADERS;
+                    } else if(buffer[position] == ' ' || buffer[position] == '\t') {
+                        //Transport padding after the boundary.
+                        position++;
+                    } else {
+                        throw new HCJFRuntimeException("Invalid multipart boundary");
+                    }
+                    break;
+                }
+                case HEADERS: {
+                    int lineEnd = position;
+                    while(lineEnd < limit - 1 && (buffer[lineEnd] != LINE_SEPARATOR[0] || buffer[lineEnd + 1] != LINE_SEPARATOR[1])) {
+                        lineEnd++;
+                    }
+                    if(lineEnd >= limit - 1) {
+                        if(partHeadersSize + limit - position > MAX_PART_HEADERS_SIZE) {
+                            throw new HCJFRuntimeException("Multipart headers too large");
+                        }
+                        more = false;
+                    } else {
+                        partHeadersSize += lineEnd - position + LINE_SEPARATOR.length;
+                        if(lineEnd == position) {
+                            startPart();
+                            state = State.DATA;
+                        } else {
+                            addPartHeader(new String(buffer, position, lineEnd - position, charset).trim());
+                        }
+                        position = lineEnd + LINE_SEPARATOR.length;
+                    }
+                    break;
+                }
+                case EPILOGUE: {
+                    position = limit;
+                    more = false;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the delimiter into the buffer using the Boyer-Moore-Horspool algorithm.
+     * @param from First position of the search.
+     * @param to End of the search, exclusive.
+     * @return Position of the delimiter or -1 if the delimiter is not found.
+     */
+    private int indexOf(int from, int to) {
+        int result = -1;
+        int last = delimiter.length - 1;
+        int index = from;
+        while(result < 0 && index + last < to) {
+            int i = last;
+            while(i >= 0 && buffer[index + i] == delimiter[i]) {
+                i--;
+            }
+            if(i < 0) {
+                result = index;
+            } else {
+                index += shifts[buffer[index + last] & 0xFF];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the information of a header line of the current part.
+     * @param line Header line.
+     */
+    private void addPartHeader(String line) {
+        if(line.contains(HEADER_ASSIGNATION)) {
+            HttpHeader header = new HttpHeader(line);
+            if(header.getHeaderName().equalsIgnoreCase(HttpHeader.CONTENT_DISPOSITION)) {
+                for(String headerPart : header.getHeaderValue().split(FIELDS_SEPARATOR)) {
+                    String field = headerPart.trim();
+                    if(field.startsWith(NAME_FIELD)) {
+                        partName = getFieldValue(field);
+                    } else if(field.startsWith(FILE_NAME_FIELD)) {
+                        partFileName = getFieldValue(field);
+                    }
+                }
+            } else if(header.getHeaderName().equalsIgnoreCase(HttpHeader.CONTENT_TYPE)) {
+                partMimeType = MimeType.fromString(header.getHeaderValue());
+            }
+        }
+    }
+
+    /**
+     * Returns the value of the content disposition field without quotes.
+     * @param field Content disposition field.
+     * @return Value of the field.
+     */
+    private String getFieldValue(String field) {
+        return field.substring(field.indexOf(Strings.ASSIGNATION) + 1).trim().replace("\"", Strings.EMPTY_STRING);
+    }
+
+    /**
+     * Starts the content of the current part.
+     */
+    private void startPart() {
+        partSize = 0;
+        partMemory = new ByteArrayOutputStream();
+    }
+
+    /**
+     * Writes the bytes of the content of the current part into memory or into the temporary file. The parts
+     * without name are discarded.
+     * @param offset Start of the content into the buffer.
+     * @param length Number of bytes.
+     * @throws IOException Exception writing the temporary file.
+     */
+    private void writePart(int offset, int length) throws IOException {
+        if(partName != null && length > 0) {
+            partSize += length;
+            if(partFileName == null) {
+                if(partSize > maxFieldSize) {
+                    throw new HCJFRuntimeException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_PACKAGE_OVERFLOW));
+                }
+            } else if(partOutputStream == null && partSize > memoryThreshold) {
+                partPath = Files.createTempFile(
+                        SystemProperties.getPath(SystemProperties.Net.Http.MULTIPART_TEMP_FOLDER), TEMP_FILE_PREFIX, null);
+                partOutputStream = Files.newOutputStream(partPath);
+                partMemory.writeTo(partOutputStream);
+                partMemory = null;
+            }
+
+            if(partOutputStream != null) {
+                partOutputStream.write(buffer, offset, length);
+            } else {
+                partMemory.write(buffer, offset, length);
+            }
+        }
+    }
+
+    /**
+     * Creates the parameter of the current part.
+     * @throws IOException Exception closing the temporary file.
+     */
+    private void finishPart() throws IOException {
+        if(partName != null) {
+            if(partFileName != null) {
+                MimeType mimeType = partMimeType == null ? MimeType.APPLICATION_X_BINARY : partMimeType;
+                HttpRequest.AttachFile attachFile;
+                if(partOutputStream != null) {
+                    partOutputStream.close();
+                    attachFile = new HttpRequest.AttachFile(partName, partFileName, mimeType, partPath, partSize);
+                } else {
+                    attachFile = new HttpRequest.AttachFile(partName, partFileName, mimeType, partMemory.toByteArray());
+                }
+                addAttachFile(attachFile);
+            } else {
+                String value = partMemory.toString();
+                try {
+                    parameters.put(partName, URLDecoder.decode(value, charset));
+                } catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+                    Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to decode http parameter, %s:%s", partName, value);
+                    parameters.put(partName, value);
+                }
+            }
+        }
+        partName = null;
+        partFileName = null;
+        partMimeType = null;
+        partMemory = null;
+        partPath = null;
+        partOutputStream = null;
+    }
+
+    /**
+     * Adds the file into the parameters, if there are other files with the same name then the files are
+     * stored into a list.
+     * @param attachFile Attach file instance.
+     */
+    private void addAttachFile(HttpRequest.AttachFile attachFile) {
+        Object currentValue = parameters.get(attachFile.getName());
+        if(currentValue instanceof ArrayList) {
+            ((ArrayList<HttpRequest.AttachFile>) currentValue).add(attachFile);
+        } else if(currentValue instanceof HttpRequest.AttachFile) {
+            ArrayList<HttpRequest.AttachFile> attachFiles = new ArrayList<>();
+            attachFiles.add((HttpRequest.AttachFile) currentValue);
+            attachFiles.add(attachFile);
+            parameters.put(attachFile.getName(), attachFiles);
+        } else {
+            parameters.put(attachFile.getName(), attachFile);
+        }
+    }
+
+    /**
+     * Discards the current part and all the parsed files when the body can't be parsed.
+     */
+    private void release() {
+        releasePart();
+        for(Object value : parameters.values()) {
+            if(value instanceof HttpRequest.AttachFile) {
+                ((HttpRequest.AttachFile) value).delete();
+            } else if(value instanceof ArrayList) {
+                ((ArrayList<HttpRequest.AttachFile>) value).forEach(HttpRequest.AttachFile::delete);
+            }
+        }
+        parameters.clear();
+    }
+
+    /**
+     * Discards the current part removing the temporary file.
+     */
+    private void releasePart() {
+        if(partOutputStream != null) {
+            try {
+                partOutputStream.close();
+                Files.deleteIfExists(partPath);
+            } catch (IOException ex) {
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to delete multipart file %s", ex, partPath);
+            }
+        }
+        partName = null;
+        partMemory = null;
+        partPath = null;
+        partOutputStream = null;
+    }
+
+    private enum State {
+
+        PREAMBLE,
+
+        DELIMITER_END,
+
+        HEADERS,
+
+        DATA,
+
+        EPILOGUE
+
+    }
+}
@@ -0,0 +1,340 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.events.Event;
+import org.hcjf.events.EventListener;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Cache of the responses of the rest queries. The entries expire with the time to live, the least recently used
+ * entries are evicted when the cache exceeds the max size and the layers can evict the entries of a resource
+ * sending an {@link InvalidationEvent} when the resource changes. The concurrent misses of the same key are
+ * resolved with only one evaluation.
+ * @author javaito
+ */
+public class RestCache implements EventListener<RestCache.InvalidationEvent> {
+
+    private static final String WEAK_E_TAG_PREFIX = "W/";
+    private static final char E_TAG_QUOTE = '"';
+    private static final String ANY_E_TAG = "*";
+
+    private final Map<String, Entry> entries;
+    private final Map<String, CompletableFuture<Entry>> loads;
+    private final AtomicLong generation;
+    private final long timeToLive;
+    private final long maxSize;
+    private long size;
+
+    public RestCache(long timeToLive, long maxSize) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.loads = new ConcurrentHashMap<>();
+        this.generation = new AtomicLong();
+        this.timeToLive = timeToLive;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the entry for the key, if the entry is not into the cache then the loader creates it. Only one
+     * thread evaluates the loader for each key and the other threads wait for the result.
+     * @param key Key of the entry.
+     * @param loader Supplier that evaluates the query and creates the entry.
+     * @return Entry instance.
+     */
+    public Entry get(String key, Supplier<Entry> loader) {
+        Entry result = getEntry(key);
+        if(result == null) {
+            CompletableFuture<Entry> load = new CompletableFuture<>();
+            CompletableFuture<Entry> currentLoad = loads.putIfAbsent(key, load);
+            if(currentLoad == null) {
+                //If some resource changes while the entry is loading then the entry is not stored.
+                long loadGeneration = generation.get();
+                try {
+                    result = getEntry(key);
+                    if(result == null) {
+                        result = loader.get();
+                        if(result.isCacheable()) {
+                            put(key, result, loadGeneration);
+                        }
+                    }
+                    load.complete(result);
+                } catch (RuntimeException | Error ex) {
+                    load.completeExceptionally(ex);
+                    throw ex;
+                } finally {
+                    loads.remove(key);
+                }
+            } else {
+                try {
+                    result = currentLoad.join();
+                } catch (CompletionException ex) {
+                    if(ex.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) ex.getCause();
+                    }
+                    throw new HCJFRuntimeException("Unable to load the rest cache entry", ex.getCause());
+                }
+
+                if(!result.isCacheable()) {
+                    //The response of the other thread can't be shared.
+                    result = loader.get();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the entry if it is into the cache and it is not expired.
+     * @param key Key of the entry.
+     * @return Entry instance or null.
+     */
+    private Entry getEntry(String key) {
+        Entry result;
+        synchronized (entries) {
+            result = entries.get(key);
+            if(result != null && result.expiration < System.currentTimeMillis()) {
+                entries.remove(key);
+                size -= result.size();
+                result = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stores the entry evicting the least recently used entries when the cache exceeds the max size.
+     * @param key Key of the entry.
+     * @param entry Entry instance.
+     * @param loadGeneration Generation of the cache when the load started.
+     */
+    private void put(String key, Entry entry, long loadGeneration) {
+        if(entry.size() <= maxSize) {
+            entry.expiration = System.currentTimeMillis() + timeToLive;
+            synchronized (entries) {
+                if(loadGeneration == generation.get()) {
+                    Entry oldEntry = entries.put(key, entry);
+                    if(oldEntry != null) {
+                        size -= oldEntry.size();
+                    }
+                    size += entry.size();
+                    Iterator<Entry> iterator = entries.values().iterator();
+                    while(size > maxSize && iterator.hasNext()) {
+                        Entry evictedEntry = iterator.next();
+                        if(evictedEntry != entry) {
+                            size -= evictedEntry.size();
+                            iterator.remove();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries that depend on the resource.
+     * @param resourceName Resource name.
+     */
+    public void invalidate(String resourceName) {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while(iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if(entry.resources.contains(resourceName.toLowerCase())) {
+                    size -= entry.size();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the entries of the cache.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            entries.clear();
+            size = 0;
+        }
+    }
+
+    /**
+     * Evicts the entries of the resource of the event, or all the entries if the event has not resource.
+     * @param event Invalidation event.
+     */
+    @Override
+    public void onEventReceived(InvalidationEvent event) {
+        if(event.getResourceName() == null) {
+            invalidateAll();
+        } else {
+            invalidate(event.getResourceName());
+        }
+    }
+
+    /**
+     * Entry of the cache, the entries that are not cacheable contain the response for only one request.
+     */
+    public static final class Entry {
+
+        private final Set<String> resources;
+        private final Collection<HttpHeader> headers;
+        private final byte[] body;
+        private final String checksum;
+        private final HttpResponse response;
+        private long expiration;
+
+        /**
+         * Creates a cacheable entry.
+         * @param resources Names of the resources of the query.
+         * @param headers Headers of the response.
+         * @param body Body of the response.
+         */
+        public Entry(Collection<String> resources, Collection<HttpHeader> headers, byte[] body) {
+            this.resources = new HashSet<>();
+            for(String resourceName : resources) {
+                this.resources.add(resourceName.toLowerCase());
+            }
+            this.headers = headers;
+            this.body = body;
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            //The e-tag is weak because the same tag is sent for all the content encodings of the body.
+            this.checksum = WEAK_E_TAG_PREFIX + E_TAG_QUOTE + Long.toHexString(crc.getValue()) + "-" +
+                    Integer.toHexString(body.length) + E_TAG_QUOTE;
+            this.response = null;
+        }
+
+        /**
+         * Creates an entry that is not cacheable, like the streaming responses.
+         * @param response Response instance.
+         */
+        public Entry(HttpResponse response) {
+            this.resources = Set.of();
+            this.headers = null;
+            this.body = null;
+            this.checksum = null;
+            this.response = response;
+        }
+
+        /**
+         * Verify if the entry can be stored and shared between requests.
+         * @return True if the entry is cacheable and false in the otherwise.
+         */
+        public boolean isCacheable() {
+            return response == null;
+        }
+
+        /**
+         * Returns the size of the body.
+         * @return Size of the body.
+         */
+        private long size() {
+            return body == null ? 0 : body.length;
+        }
+
+        /**
+         * Creates the response for the request, if the request contains the e-tag of the entry then the response
+         * is not modified.
+         * @param request Http request instance.
+         * @return Http response instance.
+         */
+        public HttpResponse createResponse(HttpRequest request) {
+            HttpResponse result = response;
+            if(result == null) {
+                result = new HttpResponse();
+                HttpHeader ifNonMatch = request.getHeader(HttpHeader.IF_NONE_MATCH);
+                if(ifNonMatch != null && matches(ifNonMatch.getHeaderValue(), checksum)) {
+                    result.setResponseCode(HttpResponseCode.NOT_MODIFIED);
+                } else {
+                    result.setResponseCode(HttpResponseCode.OK);
+                    for(HttpHeader header : headers) {
+                        result.addHeader(header);
+                    }
+                    result.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+                    result.setBody(body);
+                }
+                result.addHeader(new HttpHeader(HttpHeader.E_TAG, checksum));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Verify if the value of the if-none-match header contains the e-tag. The value could be '*' or a list of
+     * e-tags separated by commas, and the tags are compared using the weak comparison.
+     * https://www.rfc-editor.org/rfc/rfc9110#name-if-none-match
+     * @param ifNoneMatch Value of the if-none-match header.
+     * @param eTag E-tag of the entry.
+     * @return True if the header matches with the e-tag.
+     */
+    private static boolean matches(String ifNoneMatch, String eTag) {
+        String value = ifNoneMatch.trim();
+        String opaqueTag = eTag.startsWith(WEAK_E_TAG_PREFIX) ? eTag.substring(WEAK_E_TAG_PREFIX.length()) : eTag;
+        boolean result = value.equals(ANY_E_TAG);
+        int index = 0;
+        while(!result && index < value.length()) {
+            char character = value.charAt(index);
+            if(character == ',' || Character.isWhitespace(character)) {
+                index++;
+            } else {
+                int start = value.startsWith(WEAK_E_TAG_PREFIX, index) ? index + WEAK_E_TAG_PREFIX.length() : index;
+                int end;
+                if(start < value.length() && value.charAt(start) == E_TAG_QUOTE) {
+                    end = value.indexOf(E_TAG_QUOTE, start + 1);
+                    end = end < 0 ? value.length() : end + 1;
+                } else {
+                    end = value.indexOf(',', start);
+                    end = end < 0 ? value.length() : end;
+                }
+                result = value.substring(start, end).trim().equals(opaqueTag);
+                index = end;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Event to evict the cached responses of a resource, the layers send this event when the resource changes.
+     */
+    public static final class InvalidationEvent implements Event {
+
+        private static final String NAME = "RestCacheInvalidation";
+
+        private final String resourceName;
+
+        /**
+         * Creates the event to evict all the entries.
+         */
+        public InvalidationEvent() {
+            this(null);
+        }
+
+        /**
+         * Creates the event to evict the entries of the resource.
+         * @param resourceName Resource name.
+         */
+        public InvalidationEvent(String resourceName) {
+            this.resourceName = resourceName;
+        }
+
+        /**
+         * Returns the name of the modified resource.
+         * @return Resource name or null if all the resources were modified.
+         */
+        public String getResourceName() {
+            return resourceName;
+        }
+
+        @Override
+        public String getName() {
+            return NAME;
+        }
+    }
+}
@@ -3,8 +3,10 @@ package org.hcjf.io.net.http;
 import com.google.gson.*;
 import org.hcjf.encoding.MimeType;
 import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.events.Events;
 import org.hcjf.io.net.http.datasources.DataSourceService;
 import org.hcjf.io.net.http.datasources.DataSourceServiceConsumer;
+import org.hcjf.io.net.http.pipeline.JsonHttpPipelineResponse;
 import org.hcjf.layers.Layers;
 import org.hcjf.layers.crud.CreateLayerInterface;
 import org.hcjf.layers.crud.DeleteLayerInterface;
@@ -13,8 +15,11 @@ import org.hcjf.layers.crud.UpdateLayerInterface;
 import org.hcjf.layers.crud.command.CommandRequestModel;
 import org.hcjf.layers.crud.command.CommandUpdateLayerInterface;
 import org.hcjf.layers.query.*;
+import org.hcjf.layers.query.model.QueryResource;
 import org.hcjf.properties.SystemProperties;
 import org.hcjf.service.Service;
+import org.hcjf.service.ServiceSession;
+import org.hcjf.service.security.Grants;
 import org.hcjf.utils.Introspection;
 import org.hcjf.utils.JsonUtils;
 import org.hcjf.utils.Strings;
@@ -22,6 +27,7 @@ import org.hcjf.utils.Strings;
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -48,8 +54,10 @@ public class RestContext extends Context {
 
     private static final String REGEX_TEMPLATE = "\\/%s(\\/(?<resource>[A-Za-z0-9\\-\\_]{0,})){0,}";
     private static final String DEFAULT_QUERY_PARAMETER = "q";
+    private static final Map<String, Gson> gsonByDateFormat = new ConcurrentHashMap<>();
 
     private final List<Pattern> idRegexList;
+    private volatile RestCache cache;
 
     public RestContext(String baseContext) {
         this(baseContext, List.of(SystemProperties.getPattern(SystemProperties.HCJF_UUID_REGEX)));
@@ -58,6 +66,39 @@ public class RestContext extends Context {
     public RestContext(String baseContext, List<Pattern> idRegexList) {
         super(String.format(REGEX_TEMPLATE, Strings.trim(baseContext, Strings.SLASH)));
         this.idRegexList = idRegexList;
+        setCacheEnabled(SystemProperties.getBoolean(SystemProperties.Net.Rest.CACHE_ENABLED));
+    }
+
+    /**
+     * Verify if the responses of the get queries are cached.
+     * @return True if the cache is enabled and false in the otherwise.
+     */
+    public final boolean isCacheEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * Enables or disables the cache of the get queries, the cache listens the invalidation events
+     * while it is enabled.
+     * @param cacheEnabled True to enable the cache.
+     */
+    public final synchronized void setCacheEnabled(boolean cacheEnabled) {
+        if(cacheEnabled && cache == null) {
+            cache = new RestCache(SystemProperties.getLong(SystemProperties.Net.Rest.CACHE_TIME_TO_LIVE),
+                    SystemProperties.getLong(SystemProperties.Net.Rest.CACHE_MAX_SIZE));
+            Events.addEventListener(cache);
+        } else if(!cacheEnabled && cache != null) {
+            Events.removeEventListener(cache);
+            cache = null;
+        }
+    }
+
+    /**
+     * Returns the cache of the context.
+     * @return Cache instance or null if the cache is disabled.
+     */
+    public final RestCache getCache() {
+        return cache;
     }
 
     /**
@@ -69,8 +110,11 @@ public class RestContext extends Context {
     @Override
     public HttpResponse onContext(HttpRequest request) {
         HttpMethod method = request.getMethod();
-        Gson gson = new GsonBuilder().setDateFormat(SystemProperties.get(SystemProperties.HCJF_DEFAULT_DATE_FORMAT)).create();
-        JsonElement jsonElement;
+        Gson gson = getGson();
+        JsonElement jsonElement = null;
+        Collection<?> streamingResult = null;
+        HttpResponse cachedResponse = null;
+        boolean modification = false;
         Collection<HttpHeader> headers = new ArrayList<>();
 
         String lastPart = request.getPathParts().get(request.getPathParts().size() -1);
@@ -87,20 +131,19 @@ public class RestContext extends Context {
         if(method.equals(HttpMethod.GET)) {
             if(id == null) {
                 if (request.hasParameter(DEFAULT_QUERY_PARAMETER)) {
-                    Queryable queryable = Query.compile(request.getParameter(DEFAULT_QUERY_PARAMETER));
-                    Collection<JoinableMap> queryResult = queryable.evaluate(getDataSource());
-                    if(queryResult instanceof ResultSet) {
-                        ResultSet<JoinableMap> resultSet = (ResultSet<JoinableMap>) queryResult;
-                        headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TOTAL_TIME, resultSet.getTotalTime().toString()));
-                        headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TIME_COMPILING, resultSet.getTimeCompilingQuery().toString()));
-                        headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TIME_COLLECTING_DATA, resultSet.getTimeCollectingData().toString()));
-                        headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TIME_EVALUATING_CONDITIONS, resultSet.getTimeEvaluatingConditions().toString()));
-                        headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_AVERAGE_TIME_EVALUATING_CONDITIONS, resultSet.getAverageTimeFormattingDataByRow().toString()));
-                        headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TIME_FORMATTING_DATA, resultSet.getTimeFormattingData().toString()));
-                        headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_AVERAGE_TIME_FORMATTING_DATA, resultSet.getAverageTimeFormattingDataByRow().toString()));
-                        headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_PRESENT_FIELDS, Strings.join(resultSet.getPresentFields(), Strings.ARGUMENT_SEPARATOR)));
+                    String query = request.getParameter(DEFAULT_QUERY_PARAMETER);
+                    RestCache currentCache = cache;
+                    if(currentCache != null) {
+                        cachedResponse = currentCache.get(createCacheKey(request, query),
+                                () -> createCacheEntry(gson, query)).createResponse(request);
+                    } else {
+                        Collection<JoinableMap> queryResult = evaluateQuery(Query.compile(query), headers);
+                        if(isStreamingResult(queryResult)) {
+                            streamingResult = queryResult;
+                        } else {
+                            jsonElement = gson.toJsonTree(queryResult);
+                        }
                     }
-                    jsonElement = gson.toJsonTree(queryResult);
                 } else {
                     ReadLayerInterface readLayerInterface = Layers.get(ReadLayerInterface.class, resourceName);
                     jsonElement = gson.toJsonTree(readLayerInterface.read());
@@ -122,7 +165,12 @@ public class RestContext extends Context {
                 // query instance or a group of queryable instances.
                 Queryable.DataSource dataSource = requestModel.getDataSource();
                 if(requestModel.getQueryable() != null) {
-                    jsonElement = gson.toJsonTree(requestModel.getQueryable().evaluate(verifyDataSource(dataSource)));
+                    Collection<?> queryResult = requestModel.getQueryable().evaluate(verifyDataSource(dataSource));
+                    if(isStreamingResult(queryResult)) {
+                        streamingResult = queryResult;
+                    } else {
+                        jsonElement = gson.toJsonTree(queryResult);
+                    }
                 } else if(requestModel.getQueryables() != null){
                     JsonObject queriesResult = new JsonObject();
                     for(String key : requestModel.getQueryables().keySet()) {
@@ -142,6 +190,7 @@ public class RestContext extends Context {
                 }
             } else {
                 // This method call by default to create layer interface implementation.
+                modification = true;
                 CreateLayerInterface createLayerInterface = Layers.get(CreateLayerInterface.class, resourceName);
                 if(requestModel.getBody() instanceof Collection) {
                     jsonElement = gson.toJsonTree(createLayerInterface.create((Collection) requestModel.getBody()));
@@ -152,6 +201,7 @@ public class RestContext extends Context {
         } else if(method.equals(HttpMethod.PUT)) {
             // This method call to update layer or command update layer interface implementation.
             RequestModel requestModel = new RequestModel(getDataSource(), JsonParser.parseString(new String(request.getBody())).getAsJsonObject(), id);
+            modification = true;
 
             if (requestModel.getCommands() != null || requestModel.getCommand() != null) { // request has commands
                 CommandUpdateLayerInterface commandUpdateLayerInterface = Layers.get(CommandUpdateLayerInterface.class, resourceName);
@@ -178,6 +228,7 @@ public class RestContext extends Context {
         } else if(method.equals(HttpMethod.DELETE)) {
             // This method call to delete layer interface implementation.
             DeleteLayerInterface deleteLayerInterface = Layers.get(DeleteLayerInterface.class, resourceName);
+            modification = true;
             if(id != null && (request.getBody() == null || request.getBody().length == 0)) {
                 jsonElement = gson.toJsonTree(deleteLayerInterface.delete(id));
             } else {
@@ -192,18 +243,143 @@ public class RestContext extends Context {
             throw new HCJFRuntimeException("Unsupported http method: %s", method.toString());
         }
 
-        HttpResponse response = new HttpResponse();
-        response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.APPLICATION_JSON.toString()));
-        byte[] body = jsonElement.toString().getBytes();
-        response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+        RestCache currentCache = cache;
+        if(modification && currentCache != null) {
+            currentCache.invalidate(resourceName);
+        }
+
+        HttpResponse response;
+        if(cachedResponse != null) {
+            response = cachedResponse;
+        } else if(streamingResult != null) {
+            response = new JsonHttpPipelineResponse(gson, streamingResult,
+                    SystemProperties.getInteger(SystemProperties.Net.Rest.STREAMING_BUFFER_SIZE));
+        } else {
+            response = new HttpResponse();
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.APPLICATION_JSON.toString()));
+            byte[] body = jsonElement.toString().getBytes();
+            response.addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+            response.setBody(body);
+        }
         for(HttpHeader header : headers) {
             response.addHeader(header);
         }
-        response.setBody(body);
 
         return response;
     }
 
+    /**
+     * Evaluates the query and adds the execution times of the result set into the headers.
+     * @param queryable Query to evaluate.
+     * @param headers Headers of the response.
+     * @return Query result.
+     */
+    private Collection<JoinableMap> evaluateQuery(Queryable queryable, Collection<HttpHeader> headers) {
+        Collection<JoinableMap> queryResult = queryable.evaluate(getDataSource());
+        if(queryResult instanceof ResultSet) {
+            ResultSet<JoinableMap> resultSet = (ResultSet<JoinableMap>) queryResult;
+            headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TOTAL_TIME, resultSet.getTotalTime().toString()));
+            headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TIME_COMPILING, resultSet.getTimeCompilingQuery().toString()));
+            headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TIME_COLLECTING_DATA, resultSet.getTimeCollectingData().toString()));
+            headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TIME_EVALUATING_CONDITIONS, resultSet.getTimeEvaluatingConditions().toString()));
+            headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_AVERAGE_TIME_EVALUATING_CONDITIONS, resultSet.getAverageTimeFormattingDataByRow().toString()));
+            headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_TIME_FORMATTING_DATA, resultSet.getTimeFormattingData().toString()));
+            headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_AVERAGE_TIME_FORMATTING_DATA, resultSet.getAverageTimeFormattingDataByRow().toString()));
+            headers.add(new HttpHeader(HttpHeader.X_HCJF_QUERY_PRESENT_FIELDS, Strings.join(resultSet.getPresentFields(), Strings.ARGUMENT_SEPARATOR)));
+        }
+        return queryResult;
+    }
+
+    /**
+     * Evaluates the query and creates the cache entry with the serialized result, the streaming results
+     * are not cacheable.
+     * @param gson Gson instance.
+     * @param query Query to evaluate.
+     * @return Cache entry.
+     */
+    private RestCache.Entry createCacheEntry(Gson gson, String query) {
+        Query queryable = Query.compile(query);
+        Collection<HttpHeader> headers = new ArrayList<>();
+        Collection<JoinableMap> queryResult = evaluateQuery(queryable, headers);
+        RestCache.Entry result;
+        if(isStreamingResult(queryResult)) {
+            HttpResponse response = new JsonHttpPipelineResponse(gson, queryResult,
+                    SystemProperties.getInteger(SystemProperties.Net.Rest.STREAMING_BUFFER_SIZE));
+            for(HttpHeader header : headers) {
+                response.addHeader(header);
+            }
+            result = new RestCache.Entry(response);
+        } else {
+            List<String> resources = new ArrayList<>();
+            for(QueryResource resource : queryable.getResources()) {
+                resources.add(resource.getResourceName());
+            }
+            headers.add(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.APPLICATION_JSON.toString()));
+            result = new RestCache.Entry(resources, headers, gson.toJsonTree(queryResult).toString().getBytes());
+        }
+        return result;
+    }
+
+    /**
+     * Creates the key of the cache with the path, the query without redundant white spaces and the grants of
+     * the caller, then the callers with different grants never share the responses.
+     * @param request Http request instance.
+     * @param query Query of the request.
+     * @return Cache key.
+     */
+    private String createCacheKey(HttpRequest request, String query) {
+        StringBuilder key = new StringBuilder();
+        key.append(request.getContext()).append(Strings.CARRIAGE_RETURN_AND_LINE_SEPARATOR);
+        boolean quoted = false;
+        boolean whitespace = false;
+        for(char character : query.trim().toCharArray()) {
+            if(character == Strings.RICH_TEXT_SEPARATOR.charAt(0)) {
+                quoted = !quoted;
+            }
+            if(!quoted && Character.isWhitespace(character)) {
+                whitespace = true;
+            } else {
+                if(whitespace) {
+                    key.append(Strings.WHITE_SPACE);
+                    whitespace = false;
+                }
+                key.append(character);
+            }
+        }
+        key.append(Strings.CARRIAGE_RETURN_AND_LINE_SEPARATOR);
+        ServiceSession session = ServiceSession.getCurrentIdentity();
+        if(session != null) {
+            List<String> grants = new ArrayList<>();
+            for(Grants.Grant grant : session.getGrants()) {
+                grants.add(grant.getPermissionId());
+            }
+            Collections.sort(grants);
+            key.append(Strings.join(grants, Strings.ARGUMENT_SEPARATOR));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the gson instance for the default date format, the instances are thread safe then
+     * one instance is shared by all the requests. The html escaping is disabled in order to serialize
+     * the streaming results with the same format that the json trees.
+     * @return Gson instance.
+     */
+    private static Gson getGson() {
+        return gsonByDateFormat.computeIfAbsent(SystemProperties.get(SystemProperties.HCJF_DEFAULT_DATE_FORMAT),
+                dateFormat -> new GsonBuilder().setDateFormat(dateFormat).create());
+    }
+
+    /**
+     * Verify if the query result must be serialized row by row into a streaming response.
+     * @param queryResult Query result.
+     * @return True if the size of the result is greater or equals than the streaming min size.
+     */
+    private boolean isStreamingResult(Collection<?> queryResult) {
+        int minSize = SystemProperties.getInteger(SystemProperties.Net.Rest.STREAMING_MIN_SIZE);
+        return minSize > 0 && queryResult.size() >= minSize;
+    }
+
     /**
      * This method generate error response all the times that the request generates an throwable instance.
      * @param request All the request information.
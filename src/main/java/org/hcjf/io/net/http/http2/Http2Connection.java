@@ -0,0 +1,981 @@
+package org.hcjf.io.net.http.http2;
+
+import org.hcjf.io.net.http.http2.frames.*;
+import org.hcjf.io.net.http.http2.hpack.HeaderField;
+import org.hcjf.io.net.http.http2.hpack.HeaderTable;
+import org.hcjf.io.net.http.http2.hpack.HpackDecoder;
+import org.hcjf.io.net.http.http2.hpack.HpackEncoder;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Server side of a http2 connection. This class parses the frames received over the connection, keeps the
+ * state of each stream and the hpack context, and multiplexes the responses of the streams applying the flow
+ * control windows and the priority of each stream. The implementation is notified when the request of a stream
+ * is complete and it is the owner of the write operations over the session.
+ * https://httpwg.org/specs/rfc7540.html
+ * @author javaito
+ */
+public abstract class Http2Connection {
+
+    //Sequence of octets that the client sends at the beginning of the connection.
+    //https://httpwg.org/specs/rfc7540.html#ConnectionHeader
+    public static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    //Headers that are not allowed into the http2 messages.
+    public static final Set<String> CONNECTION_HEADERS = Set.of("connection", "keep-alive", "proxy-connection",
+            "transfer-encoding", "upgrade");
+
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+    private static final int MAX_FRAME_SIZE_LIMIT = 16777215;
+
+    private final StreamSettings localSettings;
+    private final StreamSettings remoteSettings;
+    private final HpackDecoder decoder;
+    private final HpackEncoder encoder;
+    private final Map<Integer, Stream> streams;
+    private final int queueSize;
+    private final long writeTimeout;
+    private ByteBuffer input;
+    private int prefaceIndex;
+    private boolean started;
+    private boolean closed;
+    private boolean goAwaySent;
+    private boolean goAwayReceived;
+    private int lastStreamId;
+    private Stream headersStream;
+    private Http2Frame.Error headersError;
+    private boolean headersIgnored;
+    private long sendWindow;
+    private int receiveWindow;
+    private int initialReceiveWindow;
+    private long virtualClock;
+
+    public Http2Connection(StreamSettings localSettings) {
+        this.localSettings = localSettings;
+        this.remoteSettings = StreamSettings.createInitialSettings();
+        //The peer uses the initial size of the table until it receives the settings of the server.
+        this.decoder = new HpackDecoder(HeaderTable.DEFAULT_MAX_SIZE, localSettings.getMaxHeaderListSize());
+        this.encoder = new HpackEncoder(localSettings.getHeaderTableSize());
+        this.streams = new HashMap<>();
+        this.queueSize = SystemProperties.getInteger(SystemProperties.Net.Http.Http2.STREAM_FRAMES_QUEUE_MAX_SIZE);
+        this.writeTimeout = SystemProperties.getLong(SystemProperties.Net.Http.Http2.WRITE_TIMEOUT);
+        this.input = ByteBuffer.allocate(localSettings.getMaxFrameSize() + Http2Frame.FRAME_HEADER_LENGTH);
+        this.sendWindow = DEFAULT_WINDOW_SIZE;
+        this.receiveWindow = DEFAULT_WINDOW_SIZE;
+        this.initialReceiveWindow = DEFAULT_WINDOW_SIZE;
+    }
+
+    /**
+     * Verify if the data starts with the complete connection preface.
+     * @param data Data received.
+     * @return Returns true if the data is the beginning of a http2 connection.
+     */
+    public static boolean isPreface(byte[] data) {
+        return data.length >= PREFACE.length && matchesPreface(data);
+    }
+
+    /**
+     * Verify if the data is shorter than the connection preface and all the bytes match with the beginning of
+     * the preface, in this case the protocol of the connection can't be decided until more data is received.
+     * @param data Data received.
+     * @return Returns true if the data is an incomplete preface.
+     */
+    public static boolean isIncompletePreface(byte[] data) {
+        return data.length < PREFACE.length && matchesPreface(data);
+    }
+
+    /**
+     * Verify if all the bytes of the data, up to the length of the preface, match with the preface.
+     * @param data Data received.
+     * @return Returns true if the bytes match.
+     */
+    private static boolean matchesPreface(byte[] data) {
+        boolean result = true;
+        for (int i = 0; i < data.length && i < PREFACE.length && result; i++) {
+            result = data[i] == PREFACE[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the settings of the peer.
+     * @return Remote settings.
+     */
+    public final StreamSettings getRemoteSettings() {
+        return remoteSettings;
+    }
+
+    /**
+     * Sends the settings of the server, this frame must be the first frame sent over the connection.
+     */
+    public synchronized final void start() {
+        if(!started) {
+            started = true;
+            writeFrame(SettingsFrame.createSettingsFrame(0, localSettings));
+            int initialWindowSize = localSettings.getInitialWindowSize();
+            if(initialWindowSize > DEFAULT_WINDOW_SIZE) {
+                //The connection window is increased with the same size that the stream windows.
+                writeFrame(createWindowUpdate(0, initialWindowSize - DEFAULT_WINDOW_SIZE));
+                receiveWindow = initialWindowSize;
+                initialReceiveWindow = initialWindowSize;
+            }
+        }
+    }
+
+    /**
+     * Creates the first stream of a connection upgraded from http/1.1, this stream is half closed because
+     * the request was received using http/1.1 and only the response is sent over the stream.
+     * https://httpwg.org/specs/rfc7540.html#discover-http
+     * @param http2Settings Value of the HTTP2-Settings header, base64url encoded settings payload.
+     * @return Stream with id 1.
+     */
+    public synchronized final Stream upgrade(String http2Settings) {
+        byte[] payload;
+        try {
+            payload = Base64.getUrlDecoder().decode(http2Settings.trim());
+        } catch (IllegalArgumentException ex) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Invalid HTTP2-Settings header");
+        }
+        SettingsFrame settingsFrame = new SettingsFrame(0, (byte)0, payload.length);
+        settingsFrame.setPayload(ByteBuffer.wrap(payload));
+        applySettings(settingsFrame);
+
+        Stream stream = new Stream(1, localSettings, remoteSettings);
+        stream.setState(Stream.State.HALF_CLOSED_REMOTE);
+        stream.setEndStreamReceived(true);
+        streams.put(stream.getStreamId(), stream);
+        lastStreamId = stream.getStreamId();
+        return stream;
+    }
+
+    /**
+     * Adds the data received over the connection, the complete frames are processed immediately.
+     * @param data Data received.
+     */
+    public synchronized final void addData(byte[] data) {
+        if(closed) {
+            return;
+        }
+        start();
+
+        if(input.remaining() < data.length) {
+            ByteBuffer newInput = ByteBuffer.allocate(input.position() + data.length);
+            input.flip();
+            newInput.put(input);
+            input = newInput;
+        }
+        input.put(data);
+        input.flip();
+        try {
+            while(prefaceIndex < PREFACE.length && input.hasRemaining()) {
+                if(input.get() != PREFACE[prefaceIndex++]) {
+                    throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Invalid connection preface");
+                }
+            }
+            while(!closed && prefaceIndex == PREFACE.length && input.remaining() >= Http2Frame.FRAME_HEADER_LENGTH) {
+                int position = input.position();
+                int length = ((input.get(position) & 0xFF) << 16) | ((input.get(position + 1) & 0xFF) << 8) |
+                        (input.get(position + 2) & 0xFF);
+                if(length > localSettings.getMaxFrameSize()) {
+                    throw new Http2Exception(Http2Frame.Error.FRAME_SIZE_ERROR, "Frame size %d exceeds the maximum", length);
+                }
+                if(input.remaining() < Http2Frame.FRAME_HEADER_LENGTH + length) {
+                    break;
+                }
+                byte type = input.get(position + 3);
+                byte flags = input.get(position + 4);
+                int streamId = input.getInt(position + 5) & 0x7FFFFFFF;
+                input.position(position + Http2Frame.FRAME_HEADER_LENGTH);
+                byte[] payload = new byte[length];
+                input.get(payload);
+
+                Http2Frame frame = Http2Frame.Builder.build(streamId, flags, length, type);
+                if(frame != null) {
+                    try {
+                        frame.setPayload(ByteBuffer.wrap(payload));
+                        processFrame(frame);
+                    } catch (Http2Exception ex) {
+                        if(ex.isConnectionError()) {
+                            throw ex;
+                        }
+                        Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG),
+                                "Http2 stream %d error: %s", ex.getStreamId(), ex.getMessage());
+                        resetStream(ex.getStreamId(), ex.getError());
+                    }
+                } else if(headersStream != null) {
+                    throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Unknown frame into a header block");
+                }
+            }
+        } catch (Http2Exception ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http2 connection error: %s", ex.getMessage());
+            goAway(ex.getError(), ex.getMessage());
+            close();
+            onClose();
+        }
+        input.compact();
+    }
+
+    /**
+     * Process one frame.
+     * @param frame Frame instance.
+     */
+    private void processFrame(Http2Frame frame) {
+        if(headersStream != null && !(frame instanceof ContinuationFrame && frame.getId().equals(headersStream.getStreamId()))) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Continuation frame expected");
+        }
+
+        if(frame instanceof SettingsFrame) {
+            onSettings((SettingsFrame) frame);
+        } else if(frame instanceof PingFrame) {
+            onPing((PingFrame) frame);
+        } else if(frame instanceof GoAwayFrame) {
+            onGoAway((GoAwayFrame) frame);
+        } else if(frame instanceof WindowsUpdateFrame) {
+            onWindowUpdate((WindowsUpdateFrame) frame);
+        } else if(frame instanceof HeadersFrame) {
+            onHeaders((HeadersFrame) frame);
+        } else if(frame instanceof ContinuationFrame) {
+            onContinuation((ContinuationFrame) frame);
+        } else if(frame instanceof DataFrame) {
+            onData((DataFrame) frame);
+        } else if(frame instanceof RstStreamFrame) {
+            onReset((RstStreamFrame) frame);
+        } else if(frame instanceof PriorityFrame) {
+            onPriority((PriorityFrame) frame);
+        } else if(frame instanceof PushPromiseFrame) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "The clients can't push streams");
+        }
+    }
+
+    /**
+     * Applies the settings of the peer and sends the ack.
+     * @param frame Settings frame.
+     */
+    private void onSettings(SettingsFrame frame) {
+        if(frame.getId() != 0) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Settings frame with stream id");
+        }
+        if(frame.isFlag(Http2Frame.FLAG_ACK)) {
+            //The peer knows the size of the table from now on.
+            decoder.setMaxTableSize(localSettings.getHeaderTableSize());
+        } else {
+            applySettings(frame);
+            writeFrame(SettingsFrame.createAckFrame());
+            flush();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Updates the remote settings with the values of the frame.
+     * @param frame Settings frame.
+     */
+    private void applySettings(SettingsFrame frame) {
+        for(Short id : frame.getOrder()) {
+            int value = frame.getSetting(id);
+            if(id == SettingsFrame.Settings.SETTINGS_HEADER_TABLE_SIZE.getId()) {
+                remoteSettings.setHeaderTableSize(value);
+                encoder.setPeerTableSize(value);
+            } else if(id == SettingsFrame.Settings.SETTINGS_ENABLE_PUSH.getId()) {
+                if(value != 0 && value != 1) {
+                    throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Invalid enable push value %d", value);
+                }
+                remoteSettings.setEnablePush(value == 1);
+            } else if(id == SettingsFrame.Settings.SETTINGS_MAX_CONCURRENT_STREAMS.getId()) {
+                remoteSettings.setMaxConcurrentStream(value);
+            } else if(id == SettingsFrame.Settings.SETTINGS_INITIAL_WINDOW_SIZE.getId()) {
+                if(value < 0) {
+                    throw new Http2Exception(Http2Frame.Error.FLOW_CONTROL_ERROR, "Invalid initial window size");
+                }
+                //The difference is applied to all the streams, the windows could be negative.
+                int delta = value - remoteSettings.getInitialWindowSize();
+                for(Stream stream : streams.values()) {
+                    stream.setSendWindow(stream.getSendWindow() + delta);
+                    if(stream.getSendWindow() > Integer.MAX_VALUE) {
+                        throw new Http2Exception(Http2Frame.Error.FLOW_CONTROL_ERROR, "Stream window overflow");
+                    }
+                }
+                remoteSettings.setInitialWindowSize(value);
+            } else if(id == SettingsFrame.Settings.SETTINGS_MAX_FRAME_SIZE.getId()) {
+                if(value < SettingsFrame.Settings.SETTINGS_MAX_FRAME_SIZE.getDefaultValue() || value > MAX_FRAME_SIZE_LIMIT) {
+                    throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Invalid max frame size %d", value);
+                }
+                remoteSettings.setMaxFrameSize(value);
+            } else if(id == SettingsFrame.Settings.SETTINGS_MAX_HEADER_LIST_SIZE.getId()) {
+                remoteSettings.setMaxHeaderListSize(value);
+            }
+        }
+    }
+
+    /**
+     * Responds the ping with the same opaque data.
+     * @param frame Ping frame.
+     */
+    private void onPing(PingFrame frame) {
+        if(frame.getId() != 0) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Ping frame with stream id");
+        }
+        if(!frame.isFlag(Http2Frame.FLAG_ACK)) {
+            PingFrame ack = new PingFrame(0, Http2Frame.FLAG_ACK, 0);
+            ack.setOpaqueData(frame.getOpaqueData());
+            writeFrame(ack);
+        }
+    }
+
+    /**
+     * The peer is closing the connection, the active streams are completed and then the connection is closed.
+     * @param frame Go away frame.
+     */
+    private void onGoAway(GoAwayFrame frame) {
+        if(frame.getId() != 0) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Go away frame with stream id");
+        }
+        Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http2 go away received: %s %s",
+                Http2Frame.Error.valueOf(frame.getErrorCode()), frame.getAdditionalDebugData());
+        goAwayReceived = true;
+        if(streams.isEmpty()) {
+            close();
+            onClose();
+        }
+    }
+
+    /**
+     * Increases the send window of the connection or the stream.
+     * @param frame Window update frame.
+     */
+    private void onWindowUpdate(WindowsUpdateFrame frame) {
+        int increment = frame.getWindowsSize();
+        if(frame.getId() == 0) {
+            if(increment == 0) {
+                throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Window update with zero increment");
+            }
+            sendWindow += increment;
+            if(sendWindow > Integer.MAX_VALUE) {
+                throw new Http2Exception(Http2Frame.Error.FLOW_CONTROL_ERROR, "Connection window overflow");
+            }
+        } else {
+            checkIdle(frame.getId());
+            if(increment == 0) {
+                throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, frame.getId(), "Window update with zero increment");
+            }
+            Stream stream = streams.get(frame.getId());
+            if(stream != null) {
+                stream.setSendWindow(stream.getSendWindow() + increment);
+                if(stream.getSendWindow() > Integer.MAX_VALUE) {
+                    throw new Http2Exception(Http2Frame.Error.FLOW_CONTROL_ERROR, frame.getId(), "Stream window overflow");
+                }
+            }
+        }
+        flush();
+        notifyAll();
+    }
+
+    /**
+     * Opens a new stream or receives the trailers of an open stream.
+     * @param frame Headers frame.
+     */
+    private void onHeaders(HeadersFrame frame) {
+        int streamId = frame.getId();
+        if(streamId == 0 || streamId % 2 == 0) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Invalid stream id %d", streamId);
+        }
+
+        //The errors are reported after decode the block, because the hpack context must be updated anyway.
+        headersError = null;
+        headersIgnored = false;
+        Stream stream = streams.get(streamId);
+        if(stream == null) {
+            if(streamId <= lastStreamId) {
+                throw new Http2Exception(Http2Frame.Error.STREAM_CLOSED, "Headers over closed stream %d", streamId);
+            }
+            stream = new Stream(streamId, localSettings, remoteSettings);
+            stream.setVirtualTime(virtualClock);
+            if(goAwaySent) {
+                headersIgnored = true;
+            } else {
+                lastStreamId = streamId;
+                int maxConcurrentStreams = localSettings.getMaxConcurrentStream();
+                if(maxConcurrentStreams >= 0 && streams.size() >= maxConcurrentStreams) {
+                    headersError = Http2Frame.Error.REFUSED_STREAM;
+                } else {
+                    streams.put(streamId, stream);
+                }
+            }
+        } else if(stream.isEndStreamReceived()) {
+            headersError = Http2Frame.Error.STREAM_CLOSED;
+        } else if(!frame.isFlag(Http2Frame.FLAG_END_STREAM)) {
+            //Only the trailers are accepted after the first header block.
+            headersError = Http2Frame.Error.PROTOCOL_ERROR;
+        }
+
+        if(frame.isFlag(Http2Frame.FLAG_PRIORITY)) {
+            if(frame.getStreamDependency() == streamId) {
+                headersError = Http2Frame.Error.PROTOCOL_ERROR;
+            } else {
+                applyPriority(stream, frame.getStreamDependency(), frame.getWeight(), frame.isExclusive());
+            }
+        }
+        if(frame.isFlag(Http2Frame.FLAG_END_STREAM)) {
+            stream.setEndStreamReceived(true);
+        }
+        addFragment(stream, frame.getFragment(), frame.isFlag(Http2Frame.FLAG_END_HEADERS));
+    }
+
+    /**
+     * Receives the next fragment of the header block.
+     * @param frame Continuation frame.
+     */
+    private void onContinuation(ContinuationFrame frame) {
+        if(headersStream == null) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Unexpected continuation frame");
+        }
+        addFragment(headersStream, frame.getFragment(), frame.isFlag(Http2Frame.FLAG_END_HEADERS));
+    }
+
+    /**
+     * Accumulates the fragment of the header block and decodes the block if it is complete.
+     * @param stream Stream of the block.
+     * @param fragment Fragment of the block.
+     * @param endHeaders True if the fragment is the last one.
+     */
+    private void addFragment(Stream stream, ByteBuffer fragment, boolean endHeaders) {
+        ByteArrayOutputStream headerBlock = stream.getHeaderBlock();
+        headerBlock.write(fragment.array(), fragment.arrayOffset() + fragment.position(), fragment.remaining());
+        if(localSettings.getMaxHeaderListSize() >= 0 && headerBlock.size() > localSettings.getMaxHeaderListSize() * 2L) {
+            throw new Http2Exception(Http2Frame.Error.ENHANCE_YOUR_CALM, "Header block too large");
+        }
+        if(endHeaders) {
+            headersStream = null;
+            completeHeaders(stream);
+        } else {
+            headersStream = stream;
+        }
+    }
+
+    /**
+     * Decodes the complete header block of the stream.
+     * @param stream Stream instance.
+     */
+    private void completeHeaders(Stream stream) {
+        List<HeaderField> fields;
+        try {
+            fields = decoder.decode(ByteBuffer.wrap(stream.getHeaderBlock().toByteArray()));
+        } catch (Http2Exception ex) {
+            if(ex.getError() == Http2Frame.Error.COMPRESSION_ERROR) {
+                throw ex;
+            }
+            throw new Http2Exception(ex.getError(), stream.getStreamId(), "Invalid header list");
+        } finally {
+            stream.getHeaderBlock().reset();
+        }
+
+        if(!headersIgnored) {
+            if(headersError != null) {
+                throw new Http2Exception(headersError, stream.getStreamId(), "Invalid headers frame");
+            }
+            if(stream.getHeaders() == null) {
+                validateHeaders(stream.getStreamId(), fields);
+                stream.setHeaders(fields);
+            }
+            if(stream.isEndStreamReceived()) {
+                endRemote(stream);
+            }
+        }
+    }
+
+    /**
+     * Verify the header list of a request.
+     * https://httpwg.org/specs/rfc7540.html#HttpRequest
+     * @param streamId Id of the stream.
+     * @param fields Header list.
+     */
+    private void validateHeaders(int streamId, List<HeaderField> fields) {
+        boolean regularFound = false;
+        String method = null;
+        String path = null;
+        String scheme = null;
+        for(HeaderField field : fields) {
+            String name = field.getName();
+            if(!name.toLowerCase().equals(name)) {
+                throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, streamId, "Upper case header name");
+            }
+            if(name.startsWith(":")) {
+                if(regularFound) {
+                    throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, streamId, "Pseudo header after regular header");
+                }
+                switch (name) {
+                    case ":method": method = field.getValue(); break;
+                    case ":path": path = field.getValue(); break;
+                    case ":scheme": scheme = field.getValue(); break;
+                    case ":authority": break;
+                    default: throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, streamId, "Unknown pseudo header");
+                }
+            } else {
+                regularFound = true;
+                if(CONNECTION_HEADERS.contains(name) || (name.equals("te") && !field.getValue().equals("trailers"))) {
+                    throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, streamId, "Connection specific header");
+                }
+            }
+        }
+        if(method == null || path == null || path.isEmpty() || scheme == null) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, streamId, "Missing pseudo header");
+        }
+    }
+
+    /**
+     * Receives a portion of the body of the stream.
+     * @param frame Data frame.
+     */
+    private void onData(DataFrame frame) {
+        int streamId = frame.getId();
+        if(streamId == 0) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Data frame without stream id");
+        }
+        checkIdle(streamId);
+
+        //The complete frame, including the padding, is counted by the flow control.
+        int length = frame.getLength();
+        if(length > receiveWindow) {
+            throw new Http2Exception(Http2Frame.Error.FLOW_CONTROL_ERROR, "Connection window exceeded");
+        }
+        receiveWindow -= length;
+        if(receiveWindow <= initialReceiveWindow / 2) {
+            writeFrame(createWindowUpdate(0, initialReceiveWindow - receiveWindow));
+            receiveWindow = initialReceiveWindow;
+        }
+
+        Stream stream = streams.get(streamId);
+        if(stream == null || stream.isEndStreamReceived()) {
+            throw new Http2Exception(Http2Frame.Error.STREAM_CLOSED, streamId, "Data over closed stream");
+        }
+        if(length > stream.getReceiveWindow()) {
+            throw new Http2Exception(Http2Frame.Error.FLOW_CONTROL_ERROR, streamId, "Stream window exceeded");
+        }
+        stream.setReceiveWindow(stream.getReceiveWindow() - length);
+
+        ByteBuffer data = frame.getData();
+        if(stream.getBody().size() + data.remaining() > SystemProperties.getInteger(SystemProperties.Net.Http.MAX_PACKAGE_SIZE)) {
+            throw new Http2Exception(Http2Frame.Error.CANCEL, streamId, "Request body too large");
+        }
+        stream.getBody().write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+
+        if(frame.isFlag(Http2Frame.FLAG_END_STREAM)) {
+            stream.setEndStreamReceived(true);
+            endRemote(stream);
+        } else if(stream.getReceiveWindow() <= localSettings.getInitialWindowSize() / 2) {
+            writeFrame(createWindowUpdate(streamId, localSettings.getInitialWindowSize() - stream.getReceiveWindow()));
+            stream.setReceiveWindow(localSettings.getInitialWindowSize());
+        }
+    }
+
+    /**
+     * The peer cancels the stream.
+     * @param frame Reset frame.
+     */
+    private void onReset(RstStreamFrame frame) {
+        if(frame.getId() == 0) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Reset frame without stream id");
+        }
+        checkIdle(frame.getId());
+        Stream stream = streams.get(frame.getId());
+        if(stream != null) {
+            Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http2 stream %d reset by peer: %s",
+                    frame.getId(), Http2Frame.Error.valueOf(frame.getErrorCode()));
+            removeStream(stream);
+        }
+    }
+
+    /**
+     * Changes the priority of the stream.
+     * @param frame Priority frame.
+     */
+    private void onPriority(PriorityFrame frame) {
+        if(frame.getId() == 0) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Priority frame without stream id");
+        }
+        if(frame.getStreamDependency().equals(frame.getId())) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, frame.getId(), "Stream depends on itself");
+        }
+        //The priority of the idle and closed streams is ignored.
+        Stream stream = streams.get(frame.getId());
+        if(stream != null) {
+            applyPriority(stream, frame.getStreamDependency(), frame.getWeight(), frame.isExclusive());
+        }
+    }
+
+    /**
+     * Updates the dependency tree with the new priority of the stream.
+     * https://httpwg.org/specs/rfc7540.html#reprioritize
+     * @param stream Stream instance.
+     * @param dependency Id of the parent stream.
+     * @param weight Weight of the stream.
+     * @param exclusive If this flag is true, the stream becomes the only child of the parent.
+     */
+    private void applyPriority(Stream stream, int dependency, int weight, boolean exclusive) {
+        //If the new parent depends on the stream then the parent is moved to the old position of the stream.
+        Stream ancestor = streams.get(dependency);
+        for (int i = 0; ancestor != null && i < streams.size(); i++) {
+            if(ancestor.getDependency() == stream.getStreamId()) {
+                Stream parent = streams.get(dependency);
+                parent.setPriority(stream.getDependency(), parent.getWeight());
+                break;
+            }
+            ancestor = streams.get(ancestor.getDependency());
+        }
+        if(exclusive) {
+            for(Stream sibling : streams.values()) {
+                if(sibling != stream && sibling.getDependency() == dependency) {
+                    sibling.setPriority(stream.getStreamId(), sibling.getWeight());
+                }
+            }
+        }
+        stream.setPriority(dependency, weight);
+    }
+
+    /**
+     * The frames over idle streams are connection errors.
+     * @param streamId Stream id.
+     */
+    private void checkIdle(int streamId) {
+        if(streamId > lastStreamId) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Frame over idle stream %d", streamId);
+        }
+    }
+
+    /**
+     * The peer closes its side of the stream, then the request is complete.
+     * @param stream Stream instance.
+     */
+    private void endRemote(Stream stream) {
+        if(stream.getState() == Stream.State.HALF_CLOSED_LOCAL) {
+            removeStream(stream);
+        } else {
+            stream.setState(Stream.State.HALF_CLOSED_REMOTE);
+            onRequest(stream);
+        }
+    }
+
+    /**
+     * The server closes its side of the stream.
+     * @param stream Stream instance.
+     */
+    private void endLocal(Stream stream) {
+        if(stream.getState() == Stream.State.HALF_CLOSED_REMOTE) {
+            removeStream(stream);
+        } else {
+            stream.setState(Stream.State.HALF_CLOSED_LOCAL);
+        }
+    }
+
+    /**
+     * Closes the stream and releases the data queued.
+     * @param stream Stream instance.
+     */
+    private void removeStream(Stream stream) {
+        stream.setState(Stream.State.CLOSED);
+        stream.getPendingData().clear();
+        streams.remove(stream.getStreamId());
+        notifyAll();
+        if(goAwayReceived && streams.isEmpty()) {
+            close();
+            onClose();
+        }
+    }
+
+    /**
+     * Sends the headers of the response, the header block is split into a headers frame and continuation frames
+     * using the max frame size of the peer.
+     * @param stream Stream of the response.
+     * @param fields Header list.
+     * @param endStream True if the response hasn't body.
+     * @throws IOException If the stream or the connection are closed.
+     */
+    public synchronized final void sendHeaders(Stream stream, List<HeaderField> fields, boolean endStream) throws IOException {
+        checkWritable(stream);
+        byte[] block = encoder.encode(fields);
+        int maxFrameSize = remoteSettings.getMaxFrameSize();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(block.length + Http2Frame.FRAME_HEADER_LENGTH);
+        int offset = 0;
+        do {
+            int size = Math.min(maxFrameSize, block.length - offset);
+            byte flags = offset + size == block.length ? Http2Frame.FLAG_END_HEADERS : 0;
+            Http2Frame frame;
+            if(offset == 0) {
+                HeadersFrame headersFrame = new HeadersFrame(stream.getStreamId(),
+                        (byte)(flags | (endStream ? Http2Frame.FLAG_END_STREAM : 0)), 0);
+                headersFrame.setFragment(ByteBuffer.wrap(block, offset, size));
+                frame = headersFrame;
+            } else {
+                ContinuationFrame continuationFrame = new ContinuationFrame(stream.getStreamId(), flags, 0);
+                continuationFrame.setFragment(ByteBuffer.wrap(block, offset, size));
+                frame = continuationFrame;
+            }
+            out.writeBytes(frame.serialize().array());
+            offset += size;
+        } while (offset < block.length);
+        write(out.toByteArray());
+        if(endStream) {
+            endLocal(stream);
+        }
+    }
+
+    /**
+     * Queues a portion of the body of the response. The data is split using the max frame size of the peer and
+     * the frames are sent when the flow control windows allow it. If the queue of the stream is full then the
+     * caller is blocked until the frames are sent or the write timeout is exceeded.
+     * The array must not be modified after the call because the frames are created using the same array.
+     * @param stream Stream of the response.
+     * @param data Body data.
+     * @param offset Offset of the data into the array.
+     * @param length Length of the data.
+     * @param endStream True if this is the last portion of the body.
+     * @throws IOException If the stream or the connection are closed or if the write timeout is exceeded.
+     */
+    public synchronized final void sendData(Stream stream, byte[] data, int offset, int length, boolean endStream) throws IOException {
+        do {
+            long deadline = System.currentTimeMillis() + writeTimeout;
+            while(stream.getPendingData().size() >= queueSize && stream.isActive() && !closed) {
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0) {
+                    throw new IOException("Http2 write timeout");
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Http2 write interrupted");
+                }
+            }
+            checkWritable(stream);
+
+            int size = Math.min(remoteSettings.getMaxFrameSize(), length);
+            if(stream.getPendingData().isEmpty()) {
+                //The idle streams can't accumulate credit over the active streams.
+                stream.setVirtualTime(Math.max(stream.getVirtualTime(), virtualClock));
+            }
+            stream.getPendingData().add(new Stream.DataChunk(ByteBuffer.wrap(data, offset, size), endStream && size == length));
+            flush();
+            offset += size;
+            length -= size;
+        } while(length > 0);
+    }
+
+    /**
+     * Sends the frames queued that are allowed by the flow control windows. The next frame is taken from the
+     * stream with the lowest virtual time, and a stream is not scheduled while any of its ancestors has frames
+     * ready to be sent.
+     */
+    private void flush() {
+        ByteArrayOutputStream out = null;
+        Stream stream;
+        while(!closed && (stream = nextStream()) != null) {
+            Stream.DataChunk chunk = stream.getPendingData().peek();
+            ByteBuffer data = chunk.getData();
+            int size = (int) Math.min(data.remaining(), Math.min(sendWindow, stream.getSendWindow()));
+            boolean last = size == data.remaining();
+            DataFrame frame = new DataFrame(stream.getStreamId(),
+                    last && chunk.isEndStream() ? Http2Frame.FLAG_END_STREAM : 0, 0);
+            ByteBuffer frameData = data.slice();
+            frameData.limit(size);
+            frame.setData(frameData);
+            data.position(data.position() + size);
+
+            sendWindow -= size;
+            stream.setSendWindow(stream.getSendWindow() - size);
+            virtualClock = stream.getVirtualTime();
+            stream.setVirtualTime(stream.getVirtualTime() + (((long) Math.max(size, 1)) << 8) / stream.getWeight());
+
+            if(out == null) {
+                out = new ByteArrayOutputStream(size + Http2Frame.FRAME_HEADER_LENGTH);
+            }
+            out.writeBytes(frame.serialize().array());
+            if(last) {
+                stream.getPendingData().poll();
+                if(chunk.isEndStream()) {
+                    endLocal(stream);
+                }
+            }
+        }
+        if(out != null) {
+            write(out.toByteArray());
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the next stream to be scheduled or null if there aren't streams with frames ready to be sent.
+     * @return Stream instance.
+     */
+    private Stream nextStream() {
+        Stream result = null;
+        for(Stream stream : streams.values()) {
+            if(isReady(stream) && !hasReadyAncestor(stream) && (result == null ||
+                    stream.getVirtualTime() < result.getVirtualTime() ||
+                    (stream.getVirtualTime() == result.getVirtualTime() && stream.getStreamId() < result.getStreamId()))) {
+                result = stream;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Verify if the stream has a frame that could be sent.
+     * @param stream Stream instance.
+     * @return Returns true if the next frame of the stream is allowed by the flow control windows.
+     */
+    private boolean isReady(Stream stream) {
+        Stream.DataChunk chunk = stream.getPendingData().peek();
+        return chunk != null && (!chunk.getData().hasRemaining() || (sendWindow > 0 && stream.getSendWindow() > 0));
+    }
+
+    /**
+     * Verify if any ancestor of the stream has a frame that could be sent.
+     * @param stream Stream instance.
+     * @return Returns true if the stream must wait for its ancestors.
+     */
+    private boolean hasReadyAncestor(Stream stream) {
+        boolean result = false;
+        Stream ancestor = streams.get(stream.getDependency());
+        for (int i = 0; ancestor != null && i < streams.size() && !result; i++) {
+            result = isReady(ancestor);
+            ancestor = streams.get(ancestor.getDependency());
+        }
+        return result;
+    }
+
+    /**
+     * Resets the stream.
+     * @param stream Stream instance.
+     * @param error Error code.
+     */
+    public synchronized final void resetStream(Stream stream, Http2Frame.Error error) {
+        if(stream.isActive()) {
+            resetStream(stream.getStreamId(), error);
+        }
+    }
+
+    /**
+     * Sends the reset frame and closes the stream.
+     * @param streamId Stream id.
+     * @param error Error code.
+     */
+    private void resetStream(int streamId, Http2Frame.Error error) {
+        RstStreamFrame frame = new RstStreamFrame(streamId, (byte)0, 0);
+        frame.setErrorCode((int) error.getId());
+        writeFrame(frame);
+        Stream stream = streams.get(streamId);
+        if(stream != null) {
+            removeStream(stream);
+        }
+    }
+
+    /**
+     * Sends the go away frame with the last stream processed.
+     * @param error Error code.
+     * @param debugData Debug information.
+     */
+    private void goAway(Http2Frame.Error error, String debugData) {
+        if(!goAwaySent) {
+            goAwaySent = true;
+            GoAwayFrame frame = new GoAwayFrame(0, (byte)0, 0);
+            frame.setLastStreamId(lastStreamId);
+            frame.setErrorCode((int) error.getId());
+            frame.setAdditionalDebugData(debugData);
+            writeFrame(frame);
+        }
+    }
+
+    /**
+     * Closes all the streams and wakes up the writers, this method must be called when the session is closed.
+     */
+    public synchronized final void close() {
+        if(!closed) {
+            closed = true;
+            for(Stream stream : streams.values()) {
+                stream.setState(Stream.State.CLOSED);
+                stream.getPendingData().clear();
+            }
+            streams.clear();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Verify that is possible write over the stream.
+     * @param stream Stream instance.
+     * @throws IOException If the stream or the connection are closed.
+     */
+    private void checkWritable(Stream stream) throws IOException {
+        if(closed) {
+            throw new IOException("Http2 connection closed");
+        }
+        if(stream.getState() == Stream.State.CLOSED || stream.getState() == Stream.State.HALF_CLOSED_LOCAL) {
+            throw new IOException("Http2 stream closed: " + stream.getStreamId());
+        }
+    }
+
+    /**
+     * Creates a window update frame.
+     * @param streamId Stream id.
+     * @param increment Window increment.
+     * @return Window update frame.
+     */
+    private WindowsUpdateFrame createWindowUpdate(int streamId, int increment) {
+        WindowsUpdateFrame frame = new WindowsUpdateFrame(streamId, (byte)0, 0);
+        frame.setWindowsSize(increment);
+        return frame;
+    }
+
+    /**
+     * Writes the frame over the connection.
+     * @param frame Frame instance.
+     */
+    private void writeFrame(Http2Frame frame) {
+        write(frame.serialize().array());
+    }
+
+    /**
+     * Writes the data over the connection, if the write fails the connection is closed.
+     * @param data Data to write.
+     */
+    private void write(byte[] data) {
+        if(!closed) {
+            try {
+                onWrite(data);
+            } catch (IOException ex) {
+                Log.d(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Http2 write fail: %s", ex.getMessage());
+                close();
+            }
+        }
+    }
+
+    /**
+     * This method must write the data over the session.
+     * @param data Data to write.
+     * @throws IOException If the session is closed.
+     */
+    protected abstract void onWrite(byte[] data) throws IOException;
+
+    /**
+     * This method is called when the request of the stream is complete, the implementation must not block the
+     * caller because the caller is processing the frames of the connection.
+     * @param stream Stream with the request.
+     */
+    protected abstract void onRequest(Stream stream);
+
+    /**
+     * This method is called when the connection must be closed.
+     */
+    protected abstract void onClose();
+}
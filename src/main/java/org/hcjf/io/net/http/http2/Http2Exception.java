@@ -0,0 +1,49 @@
+package org.hcjf.io.net.http.http2;
+
+import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.io.net.http.http2.frames.Http2Frame;
+
+/**
+ * Error of the http2 protocol. If the stream id is zero then the error is a connection error and the connection
+ * must be closed with a go away frame, in the otherwise only the stream is reset.
+ * @author javaito
+ */
+public class Http2Exception extends HCJFRuntimeException {
+
+    private final Http2Frame.Error error;
+    private final int streamId;
+
+    public Http2Exception(Http2Frame.Error error, String message, Object... params) {
+        this(error, 0, message, params);
+    }
+
+    public Http2Exception(Http2Frame.Error error, int streamId, String message, Object... params) {
+        super(message, params);
+        this.error = error;
+        this.streamId = streamId;
+    }
+
+    /**
+     * Returns the error code.
+     * @return Error code.
+     */
+    public Http2Frame.Error getError() {
+        return error;
+    }
+
+    /**
+     * Returns the id of the stream with error.
+     * @return Stream id, zero for the connection errors.
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Returns true if the error affects the whole connection.
+     * @return Connection error flag.
+     */
+    public boolean isConnectionError() {
+        return streamId == 0;
+    }
+}
@@ -1,123 +1,207 @@
 package org.hcjf.io.net.http.http2;
 
-import org.hcjf.io.net.http.http2.frames.Http2Frame;
-import org.hcjf.properties.SystemProperties;
-import org.hcjf.utils.Strings;
+import org.hcjf.io.net.http.http2.hpack.HeaderField;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Queue;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
 
 /**
+ * State of a http2 stream, each stream is a request-response exchange multiplexed into the connection.
+ * All the methods of this class are called with the monitor of the connection.
+ * https://httpwg.org/specs/rfc7540.html#StreamsLayer
  * @author javaito.
  */
 public class Stream {
 
+    public static final int DEFAULT_WEIGHT = 16;
+
     private final Integer streamId;
-    private final Integer headerTableSize;
-    private final Boolean enablePush;
-    private final Integer maxConcurrentStream;
-    private final Integer initialWindowSize;
-    private final Integer maxFrameSize;
-    private final Integer maxHeaderListSize;
-    private String http2Preface;
-    private final Queue<Http2Frame> frames;
-    private final ByteBuffer buffer;
-
-    public Stream(Integer streamId, StreamSettings settings) {
+    private State state;
+    private long sendWindow;
+    private int receiveWindow;
+    private int weight;
+    private int dependency;
+    private long virtualTime;
+    private boolean endStreamReceived;
+    private final ByteArrayOutputStream headerBlock;
+    private List<HeaderField> headers;
+    private final ByteArrayOutputStream body;
+    private final Deque<DataChunk> pendingData;
+
+    public Stream(Integer streamId, StreamSettings localSettings, StreamSettings remoteSettings) {
         this.streamId = streamId;
-        headerTableSize = settings.getHeaderTableSize();
-        enablePush = settings.getEnablePush();
-        maxConcurrentStream = settings.getMaxConcurrentStream();
-        initialWindowSize = settings.getInitialWindowSize();
-        maxFrameSize = settings.getMaxFrameSize();
-        maxHeaderListSize = settings.getMaxHeaderListSize();
-        frames = new ArrayBlockingQueue<>(SystemProperties.getInteger(SystemProperties.Net.Http.Http2.STREAM_FRAMES_QUEUE_MAX_SIZE));
-        buffer = ByteBuffer.allocate(maxFrameSize + Http2Frame.FRAME_HEADER_LENGTH);
+        this.state = State.OPEN;
+        this.sendWindow = remoteSettings.getInitialWindowSize();
+        this.receiveWindow = localSettings.getInitialWindowSize();
+        this.weight = DEFAULT_WEIGHT;
+        this.headerBlock = new ByteArrayOutputStream();
+        this.body = new ByteArrayOutputStream();
+        this.pendingData = new ArrayDeque<>();
     }
 
     public Integer getStreamId() {
         return streamId;
     }
 
-    public Integer getHeaderTableSize() {
-        return headerTableSize;
+    public State getState() {
+        return state;
     }
 
-    public Boolean getEnablePush() {
-        return enablePush;
+    public void setState(State state) {
+        this.state = state;
     }
 
-    public Integer getMaxConcurrentStream() {
-        return maxConcurrentStream;
+    /**
+     * Returns the number of bytes that the server can send before receive a window update, this value could
+     * be negative if the peer reduces the initial window size.
+     * @return Send window.
+     */
+    public long getSendWindow() {
+        return sendWindow;
     }
 
-    public Integer getInitialWindowSize() {
-        return initialWindowSize;
+    public void setSendWindow(long sendWindow) {
+        this.sendWindow = sendWindow;
     }
 
-    public Integer getMaxFrameSize() {
-        return maxFrameSize;
+    /**
+     * Returns the number of bytes that the peer can send before the server sends a window update.
+     * @return Receive window.
+     */
+    public int getReceiveWindow() {
+        return receiveWindow;
     }
 
-    public Integer getMaxHeaderListSize() {
-        return maxHeaderListSize;
+    public void setReceiveWindow(int receiveWindow) {
+        this.receiveWindow = receiveWindow;
     }
 
-    public String getHttpClientPreface() {
-        return http2Preface;
+    public int getWeight() {
+        return weight;
     }
 
-    public Collection<Http2Frame> getAndRemoveFrames() {
-        Collection<Http2Frame> result = new ArrayList<>();
-        while(!frames.isEmpty()) {
-            result.add(frames.remove());
-        }
-        return result;
+    public int getDependency() {
+        return dependency;
+    }
+
+    /**
+     * Updates the priority of the stream.
+     * @param dependency Id of the parent stream.
+     * @param weight Weight of the stream between 1 and 256.
+     */
+    public void setPriority(int dependency, int weight) {
+        this.dependency = dependency;
+        this.weight = weight;
+    }
+
+    /**
+     * Returns the virtual time of the stream, the scheduler sends the frames of the stream with the lowest
+     * virtual time and each frame increases the virtual time in inverse proportion to the weight.
+     * @return Virtual time.
+     */
+    public long getVirtualTime() {
+        return virtualTime;
+    }
+
+    public void setVirtualTime(long virtualTime) {
+        this.virtualTime = virtualTime;
+    }
+
+    public boolean isEndStreamReceived() {
+        return endStreamReceived;
     }
 
-    public void setHttpClientPreface(String http2Preface) {
-        this.http2Preface = http2Preface;
+    public void setEndStreamReceived(boolean endStreamReceived) {
+        this.endStreamReceived = endStreamReceived;
     }
 
-    public synchronized final void addData(byte[] data, int start) {
-        Integer dataStart = start;
-        Integer dataLength = (data.length - start) - (buffer.capacity() - buffer.position());
-        if(dataLength < 0) {
-            dataLength = data.length - start;
+    /**
+     * Returns the buffer where the fragments of the header block are accumulated.
+     * @return Header block buffer.
+     */
+    public ByteArrayOutputStream getHeaderBlock() {
+        return headerBlock;
+    }
+
+    /**
+     * Returns the decoded headers of the request.
+     * @return List of header fields.
+     */
+    public List<HeaderField> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(List<HeaderField> headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * Returns the buffer with the body of the request.
+     * @return Body buffer.
+     */
+    public ByteArrayOutputStream getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the queue of data waiting for window to be sent.
+     * @return Queue of chunks.
+     */
+    public Deque<DataChunk> getPendingData() {
+        return pendingData;
+    }
+
+    /**
+     * Returns true if the stream is not closed.
+     * @return Active flag.
+     */
+    public boolean isActive() {
+        return state != State.CLOSED;
+    }
+
+    @Override
+    public String toString() {
+        return "Stream[" + streamId + ":" + state + "]";
+    }
+
+    /**
+     * States of the stream, the reserved states are not used because the server never pushes streams.
+     * https://httpwg.org/specs/rfc7540.html#StreamStates
+     */
+    public enum State {
+
+        OPEN,
+
+        HALF_CLOSED_REMOTE,
+
+        HALF_CLOSED_LOCAL,
+
+        CLOSED
+
+    }
+
+    /**
+     * Portion of the body waiting to be sent.
+     */
+    public static final class DataChunk {
+
+        private final ByteBuffer data;
+        private final boolean endStream;
+
+        public DataChunk(ByteBuffer data, boolean endStream) {
+            this.data = data;
+            this.endStream = endStream;
         }
-        buffer.put(data, dataStart, dataLength);
-        buffer.flip();
-        while(true) {
-            if (buffer.limit() >= Http2Frame.FRAME_HEADER_LENGTH) {
-                Integer length = ((buffer.get() & 0x0F) << 16) | ((buffer.get() & 0xFF) << 8) | (buffer.get() & 0xFF);
-                Byte type = buffer.get();
-                Byte flags = buffer.get();
-                Integer id = (((buffer.get() & ~0b10000000) & 0x0F) << 24) | ((buffer.get() & 0xFF) << 16) | ((buffer.get() & 0xFF) << 8) | (buffer.get() & 0xFF);
-                if (buffer.limit() >= length) {
-                    Http2Frame frame = Http2Frame.Builder.build(id, flags, length, type);
-                    byte[] completeFrameData = new byte[length];
-                    buffer.get(completeFrameData);
-                    frame.setPayload(ByteBuffer.wrap(completeFrameData));
-                    frames.add(frame);
-                    if(buffer.limit() - buffer.position() > 0) {
-                        byte[] rest = new byte[buffer.limit() - (length + Http2Frame.FRAME_HEADER_LENGTH)];
-                        buffer.get(rest);
-                        buffer.clear();
-                        buffer.put(rest);
-                        buffer.flip();
-                    } else {
-                        buffer.clear();
-                        break;
-                    }
-                } else {
-                    buffer.position(0);
-                    break;
-                }
-            }
+
+        public ByteBuffer getData() {
+            return data;
         }
-    }
 
+        public boolean isEndStream() {
+            return endStream;
+        }
+    }
 }
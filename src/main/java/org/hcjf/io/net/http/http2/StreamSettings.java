@@ -1,8 +1,11 @@
 package org.hcjf.io.net.http.http2;
 
+import org.hcjf.io.net.http.http2.frames.SettingsFrame;
 import org.hcjf.properties.SystemProperties;
 
 /**
+ * Settings of one of the endpoints of a http2 connection, the default constructor creates the local settings
+ * using the system properties.
  * @author javaito.
  */
 public class StreamSettings {
@@ -23,6 +26,22 @@ public class StreamSettings {
         setMaxHeaderListSize(SystemProperties.getInteger(SystemProperties.Net.Http.Http2.MAX_HEADER_LIST_SIZE));
     }
 
+    /**
+     * Creates the settings with the initial values defined by the protocol, this values are used for the peer
+     * until the first settings frame is received.
+     * @return Stream settings.
+     */
+    public static StreamSettings createInitialSettings() {
+        StreamSettings result = new StreamSettings();
+        result.setHeaderTableSize(SettingsFrame.Settings.SETTINGS_HEADER_TABLE_SIZE.getDefaultValue());
+        result.setEnablePush(SettingsFrame.Settings.SETTINGS_ENABLE_PUSH.getDefaultValue() == 1);
+        result.setMaxConcurrentStream(-1);
+        result.setInitialWindowSize(SettingsFrame.Settings.SETTINGS_INITIAL_WINDOW_SIZE.getDefaultValue());
+        result.setMaxFrameSize(SettingsFrame.Settings.SETTINGS_MAX_FRAME_SIZE.getDefaultValue());
+        result.setMaxHeaderListSize(-1);
+        return result;
+    }
+
     public Integer getHeaderTableSize() {
         return headerTableSize;
     }
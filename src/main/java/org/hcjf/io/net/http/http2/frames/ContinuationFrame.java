@@ -2,24 +2,40 @@ package org.hcjf.io.net.http.http2.frames;
 
 import java.nio.ByteBuffer;
 
+/**
+ * Frame with the next fragment of a header block.
+ * https://httpwg.org/specs/rfc7540.html#CONTINUATION
+ * @author javaito
+ */
 public class ContinuationFrame extends Http2Frame {
 
+    private ByteBuffer fragment;
+
     public ContinuationFrame(Integer id, Byte flags, Integer length) {
         super(id, flags, length, Type.CONTINUATION);
     }
 
+    public ByteBuffer getFragment() {
+        return fragment;
+    }
+
+    public void setFragment(ByteBuffer fragment) {
+        this.fragment = fragment;
+    }
+
     @Override
     protected Integer recalculateLength() {
-        return null;
+        return getFragment().remaining();
     }
 
     @Override
     protected void processPayload() {
-
+        fragment = getPayload();
     }
 
     @Override
     protected ByteBuffer serializePayload(ByteBuffer fixedBuffer) {
+        fixedBuffer.put(getFragment());
         return fixedBuffer;
     }
 }
@@ -2,9 +2,14 @@ package org.hcjf.io.net.http.http2.frames;
 
 import java.nio.ByteBuffer;
 
+/**
+ * Frame with a portion of the body of the stream.
+ * https://httpwg.org/specs/rfc7540.html#DATA
+ * @author javaito
+ */
 public class DataFrame extends Http2Frame {
 
-    private Byte pathLength;
+    private Byte padLength;
     private ByteBuffer padding;
     private ByteBuffer data;
 
@@ -12,12 +17,12 @@ public class DataFrame extends Http2Frame {
         super(id, flags, length, Type.DATA);
     }
 
-    public Byte getPathLength() {
-        return pathLength;
+    public Byte getPadLength() {
+        return padLength;
     }
 
-    public void setPathLength(Byte pathLength) {
-        this.pathLength = pathLength;
+    public void setPadLength(Byte padLength) {
+        this.padLength = padLength;
     }
 
     public ByteBuffer getPadding() {
@@ -38,18 +43,25 @@ public class DataFrame extends Http2Frame {
 
     @Override
     protected Integer recalculateLength() {
-        return getData().limit() + (getPadding() != null ? getPadding().limit() : 0) + 1;
+        Integer result = getData().remaining();
+        if(isFlag(FLAG_PADDED)) {
+            result += 1 + (getPadding() != null ? getPadding().remaining() : 0);
+        }
+        return result;
     }
 
     @Override
     protected void processPayload() {
+        data = removePadding();
     }
 
     @Override
     protected ByteBuffer serializePayload(ByteBuffer fixedBuffer) {
-        fixedBuffer.put(getPathLength());
+        if(isFlag(FLAG_PADDED)) {
+            fixedBuffer.put(getPadding() != null ? (byte) getPadding().remaining() : 0);
+        }
         fixedBuffer.put(getData());
-        if(getPathLength() > 0) {
+        if(isFlag(FLAG_PADDED) && getPadding() != null) {
             fixedBuffer.put(getPadding());
         }
         return fixedBuffer;
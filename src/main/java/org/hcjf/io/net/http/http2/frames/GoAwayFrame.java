@@ -1,7 +1,16 @@
 package org.hcjf.io.net.http.http2.frames;
 
+import org.hcjf.io.net.http.http2.Http2Exception;
+
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
+/**
+ * Frame to initiate the shutdown of the connection, the last stream id is the greatest stream id processed
+ * by the sender.
+ * https://httpwg.org/specs/rfc7540.html#GOAWAY
+ * @author javaito
+ */
 public class GoAwayFrame extends Http2Frame {
 
     private Integer lastStreamId;
@@ -38,20 +47,28 @@ public class GoAwayFrame extends Http2Frame {
 
     @Override
     protected Integer recalculateLength() {
-        return null;
+        return 8 + (additionalDebugData == null ? 0 : additionalDebugData.getBytes(StandardCharsets.UTF_8).length);
     }
 
     @Override
     protected void processPayload() {
-        setLastStreamId(getPayload().getInt());
+        if(getLength() < 8) {
+            throw new Http2Exception(Error.FRAME_SIZE_ERROR, "Invalid go away length %d", getLength());
+        }
+        setLastStreamId(getPayload().getInt() & 0x7FFFFFFF);
         setErrorCode(getPayload().getInt());
         byte[] debugData = new byte[getLength() - 8];
         getPayload().get(debugData);
-        setAdditionalDebugData(new String(debugData));
+        setAdditionalDebugData(new String(debugData, StandardCharsets.UTF_8));
     }
 
     @Override
     protected ByteBuffer serializePayload(ByteBuffer fixedBuffer) {
-        return null;
+        fixedBuffer.putInt(lastStreamId);
+        fixedBuffer.putInt(errorCode);
+        if(additionalDebugData != null) {
+            fixedBuffer.put(additionalDebugData.getBytes(StandardCharsets.UTF_8));
+        }
+        return fixedBuffer;
     }
 }
@@ -1,25 +1,88 @@
 package org.hcjf.io.net.http.http2.frames;
 
+import org.hcjf.io.net.http.http2.Http2Exception;
+
 import java.nio.ByteBuffer;
 
+/**
+ * Frame that opens a stream and carries the first fragment of a header block.
+ * https://httpwg.org/specs/rfc7540.html#HEADERS
+ * @author javaito
+ */
 public class HeadersFrame extends Http2Frame {
 
+    private boolean exclusive;
+    private Integer streamDependency;
+    private Integer weight;
+    private ByteBuffer fragment;
+
     public HeadersFrame(Integer id, Byte flags, Integer length) {
         super(id, flags, length, Type.HEADERS);
     }
 
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    public void setExclusive(boolean exclusive) {
+        this.exclusive = exclusive;
+    }
+
+    public Integer getStreamDependency() {
+        return streamDependency;
+    }
+
+    public void setStreamDependency(Integer streamDependency) {
+        this.streamDependency = streamDependency;
+    }
+
+    /**
+     * Returns the weight of the stream, between 1 and 256.
+     * @return Weight of the stream.
+     */
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
+
+    public ByteBuffer getFragment() {
+        return fragment;
+    }
+
+    public void setFragment(ByteBuffer fragment) {
+        this.fragment = fragment;
+    }
+
     @Override
     protected Integer recalculateLength() {
-        return null;
+        return getFragment().remaining() + (isFlag(FLAG_PRIORITY) ? 5 : 0);
     }
 
     @Override
     protected void processPayload() {
-
+        ByteBuffer payload = removePadding();
+        if(isFlag(FLAG_PRIORITY)) {
+            if(payload.remaining() < 5) {
+                throw new Http2Exception(Error.FRAME_SIZE_ERROR, "Incomplete priority fields");
+            }
+            int dependency = payload.getInt();
+            exclusive = dependency < 0;
+            streamDependency = dependency & 0x7FFFFFFF;
+            weight = (payload.get() & 0xFF) + 1;
+        }
+        fragment = payload.slice();
     }
 
     @Override
     protected ByteBuffer serializePayload(ByteBuffer fixedBuffer) {
-        return null;
+        if(isFlag(FLAG_PRIORITY)) {
+            fixedBuffer.putInt(exclusive ? streamDependency | 0x80000000 : streamDependency);
+            fixedBuffer.put((byte)(weight - 1));
+        }
+        fixedBuffer.put(getFragment());
+        return fixedBuffer;
     }
 }
@@ -1,7 +1,7 @@
 package org.hcjf.io.net.http.http2.frames;
 
 import org.hcjf.errors.HCJFRuntimeException;
-import org.hcjf.utils.Strings;
+import org.hcjf.io.net.http.http2.Http2Exception;
 
 import java.nio.ByteBuffer;
 
@@ -14,6 +14,14 @@ public abstract class Http2Frame {
     //https://httpwg.org/specs/rfc7540.html#FramingLayer
     public static final Integer FRAME_HEADER_LENGTH = 9;
 
+    //Flags defined by the specification, the meaning of each flag depends on the type of the frame.
+    //https://httpwg.org/specs/rfc7540.html#FrameTypes
+    public static final byte FLAG_END_STREAM = 0x1;
+    public static final byte FLAG_ACK = 0x1;
+    public static final byte FLAG_END_HEADERS = 0x4;
+    public static final byte FLAG_PADDED = 0x8;
+    public static final byte FLAG_PRIORITY = 0x20;
+
     private Integer id;
     private Byte flags;
     private Integer length;
@@ -44,6 +52,15 @@ public abstract class Http2Frame {
         this.flags = flags;
     }
 
+    /**
+     * Verify if the flag is present into the flags of the frame.
+     * @param flag Flag to verify.
+     * @return Returns true if the flag is present and false in the otherwise.
+     */
+    public boolean isFlag(byte flag) {
+        return (flags & flag) == flag;
+    }
+
     public Integer getLength() {
         return length;
     }
@@ -91,6 +108,26 @@ public abstract class Http2Frame {
         return serializePayload(fixedBuffer);
     }
 
+    /**
+     * Returns the content of the payload without the padding, only for the frames that support the padded flag.
+     * @return Payload without padding.
+     */
+    protected ByteBuffer removePadding() {
+        ByteBuffer result = getPayload();
+        if(isFlag(FLAG_PADDED)) {
+            if(!result.hasRemaining()) {
+                throw new Http2Exception(Error.FRAME_SIZE_ERROR, "Padded frame without pad length");
+            }
+            int padLength = result.get() & 0xFF;
+            if(padLength > result.remaining()) {
+                throw new Http2Exception(Error.PROTOCOL_ERROR, "Pad length %d exceeds the frame payload", padLength);
+            }
+            result = result.slice();
+            result.limit(result.limit() - padLength);
+        }
+        return result;
+    }
+
     protected abstract Integer recalculateLength();
 
     protected abstract void processPayload();
@@ -99,10 +136,20 @@ public abstract class Http2Frame {
 
     public static final class Builder {
 
+        /**
+         * Creates the instance of the frame for the type, the frames with unknown types must be ignored
+         * then the result is null for this types.
+         * @param id Stream id.
+         * @param flags Flags of the frame.
+         * @param length Length of the payload.
+         * @param type Type of the frame.
+         * @param <F> Expected frame class.
+         * @return Frame instance or null if the type is unknown.
+         */
         public static <F extends Http2Frame> F build(Integer id, Byte flags, Integer length, Byte type) {
             Class<? extends Http2Frame> frameClass = Type.getClassById(type);
             if(frameClass == null) {
-                throw new HCJFRuntimeException("Frame type not found: %d", type);
+                return null;
             }
             try {
                 return (F) frameClass.getConstructor(Integer.class, Byte.class, Integer.class).newInstance(id, flags, length);
@@ -197,6 +244,22 @@ public abstract class Http2Frame {
         public byte getId() {
             return id;
         }
+
+        /**
+         * Returns the error for the code, the unknown codes are internal errors.
+         * @param code Error code.
+         * @return Error instance.
+         */
+        public static Error valueOf(int code) {
+            Error result = INTERNAL_ERROR;
+            for(Error error : values()) {
+                if(error.id == code) {
+                    result = error;
+                    break;
+                }
+            }
+            return result;
+        }
     }
 
 }
@@ -1,25 +1,49 @@
 package org.hcjf.io.net.http.http2.frames;
 
+import org.hcjf.io.net.http.http2.Http2Exception;
+
 import java.nio.ByteBuffer;
 
+/**
+ * Frame to measure the round trip time and to check if the connection is alive, the receiver must
+ * respond with the same opaque data and the ack flag.
+ * https://httpwg.org/specs/rfc7540.html#PING
+ * @author javaito
+ */
 public class PingFrame extends Http2Frame {
 
+    private static final Integer PING_PAYLOAD_LENGTH = 8;
+
+    private long opaqueData;
+
     public PingFrame(Integer id, Byte flags, Integer length) {
         super(id, flags, length, Type.PING);
     }
 
+    public long getOpaqueData() {
+        return opaqueData;
+    }
+
+    public void setOpaqueData(long opaqueData) {
+        this.opaqueData = opaqueData;
+    }
+
     @Override
     protected Integer recalculateLength() {
-        return null;
+        return PING_PAYLOAD_LENGTH;
     }
 
     @Override
     protected void processPayload() {
-
+        if(getLength() != PING_PAYLOAD_LENGTH) {
+            throw new Http2Exception(Error.FRAME_SIZE_ERROR, "Invalid ping length %d", getLength());
+        }
+        opaqueData = getPayload().getLong();
     }
 
     @Override
     protected ByteBuffer serializePayload(ByteBuffer fixedBuffer) {
-        return null;
+        fixedBuffer.putLong(opaqueData);
+        return fixedBuffer;
     }
 }
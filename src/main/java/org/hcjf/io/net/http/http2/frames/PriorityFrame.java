@@ -1,25 +1,74 @@
 package org.hcjf.io.net.http.http2.frames;
 
+import org.hcjf.io.net.http.http2.Http2Exception;
+
 import java.nio.ByteBuffer;
 
+/**
+ * Frame with the priority of a stream.
+ * https://httpwg.org/specs/rfc7540.html#PRIORITY
+ * @author javaito
+ */
 public class PriorityFrame extends Http2Frame {
 
+    private static final Integer PRIORITY_PAYLOAD_LENGTH = 5;
+
+    private boolean exclusive;
+    private Integer streamDependency;
+    private Integer weight;
+
     public PriorityFrame(Integer id, Byte flags, Integer length) {
         super(id, flags, length, Type.PRIORITY);
     }
 
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    public void setExclusive(boolean exclusive) {
+        this.exclusive = exclusive;
+    }
+
+    public Integer getStreamDependency() {
+        return streamDependency;
+    }
+
+    public void setStreamDependency(Integer streamDependency) {
+        this.streamDependency = streamDependency;
+    }
+
+    /**
+     * Returns the weight of the stream, between 1 and 256.
+     * @return Weight of the stream.
+     */
+    public Integer getWeight() {
+        return weight;
+    }
+
+    public void setWeight(Integer weight) {
+        this.weight = weight;
+    }
+
     @Override
     protected Integer recalculateLength() {
-        return null;
+        return PRIORITY_PAYLOAD_LENGTH;
     }
 
     @Override
     protected void processPayload() {
-
+        if(getLength() != PRIORITY_PAYLOAD_LENGTH) {
+            throw new Http2Exception(Error.FRAME_SIZE_ERROR, getId(), "Invalid priority length %d", getLength());
+        }
+        int dependency = getPayload().getInt();
+        exclusive = dependency < 0;
+        streamDependency = dependency & 0x7FFFFFFF;
+        weight = (getPayload().get() & 0xFF) + 1;
     }
 
     @Override
     protected ByteBuffer serializePayload(ByteBuffer fixedBuffer) {
-        return null;
+        fixedBuffer.putInt(exclusive ? streamDependency | 0x80000000 : streamDependency);
+        fixedBuffer.put((byte)(weight - 1));
+        return fixedBuffer;
     }
 }
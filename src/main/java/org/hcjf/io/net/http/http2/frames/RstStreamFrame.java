@@ -1,25 +1,48 @@
 package org.hcjf.io.net.http.http2.frames;
 
+import org.hcjf.io.net.http.http2.Http2Exception;
+
 import java.nio.ByteBuffer;
 
+/**
+ * Frame to terminate a stream immediately.
+ * https://httpwg.org/specs/rfc7540.html#RST_STREAM
+ * @author javaito
+ */
 public class RstStreamFrame extends Http2Frame {
 
+    private static final Integer RST_STREAM_PAYLOAD_LENGTH = 4;
+
+    private Integer errorCode;
+
     public RstStreamFrame(Integer id, Byte flags, Integer length) {
         super(id, flags, length, Type.RST_STREAM);
     }
 
+    public Integer getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(Integer errorCode) {
+        this.errorCode = errorCode;
+    }
+
     @Override
     protected Integer recalculateLength() {
-        return null;
+        return RST_STREAM_PAYLOAD_LENGTH;
     }
 
     @Override
     protected void processPayload() {
-
+        if(getLength() != RST_STREAM_PAYLOAD_LENGTH) {
+            throw new Http2Exception(Error.FRAME_SIZE_ERROR, "Invalid rst stream length %d", getLength());
+        }
+        errorCode = getPayload().getInt();
     }
 
     @Override
     protected ByteBuffer serializePayload(ByteBuffer fixedBuffer) {
-        return null;
+        fixedBuffer.putInt(errorCode);
+        return fixedBuffer;
     }
 }
@@ -1,11 +1,20 @@
 package org.hcjf.io.net.http.http2.frames;
 
+import org.hcjf.io.net.http.http2.Http2Exception;
+import org.hcjf.io.net.http.http2.StreamSettings;
+
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Frame with the configuration parameters of the sender, the receiver must respond with an empty settings frame
+ * with the ack flag.
+ * https://httpwg.org/specs/rfc7540.html#SETTINGS
+ * @author javaito
+ */
 public class SettingsFrame extends Http2Frame {
 
     private static final Integer SETTING_PAYLOAD_LENGTH = 6;
@@ -22,21 +31,69 @@ public class SettingsFrame extends Http2Frame {
         super(id, flags, settingsFrame.getLength(), Type.SETTINGS);
         this.settings = new HashMap<>();
         this.settings.putAll(settingsFrame.settings);
-        this.order = new ArrayList<>();
-        this.order.addAll(settingsFrame.order);
+        if(settingsFrame.order != null) {
+            this.order = new ArrayList<>();
+            this.order.addAll(settingsFrame.order);
+        }
     }
 
     public static SettingsFrame createDefaultSettingsFrame(Integer id) {
-        SettingsFrame settingsFrame = new SettingsFrame(id, (byte)0, 1);
-        settingsFrame.setMaxHeaderListSize(Settings.SETTINGS_MAX_HEADER_LIST_SIZE.getDefaultValue());
-        settingsFrame.setMaxConcurrentStreams(Settings.SETTINGS_MAX_CONCURRENT_STREAMS.getDefaultValue());
-        settingsFrame.setMaxFrameSize(Settings.SETTINGS_MAX_FRAME_SIZE.getDefaultValue());
-        settingsFrame.setInitialWindowsSize(Settings.SETTINGS_INITIAL_WINDOW_SIZE.getDefaultValue());
-        settingsFrame.setHeaderTableSize(Settings.SETTINGS_HEADER_TABLE_SIZE.getDefaultValue());
-        //settingsFrame.setEnablePush(Settings.SETTINGS_ENABLE_PUSH.getDefaultValue());
+        return createSettingsFrame(id, new StreamSettings());
+    }
+
+    /**
+     * Creates the settings frame with the values of the stream settings, the negative values are not sent
+     * because these values means that the peer must use the initial values of the protocol.
+     * @param id Stream id, always zero for the settings frames.
+     * @param streamSettings Stream settings.
+     * @return Settings frame.
+     */
+    public static SettingsFrame createSettingsFrame(Integer id, StreamSettings streamSettings) {
+        SettingsFrame settingsFrame = new SettingsFrame(id, (byte)0, 0);
+        if(streamSettings.getHeaderTableSize() >= 0) {
+            settingsFrame.setHeaderTableSize(streamSettings.getHeaderTableSize());
+        }
+        //The server never pushes streams, this setting is only meaningful for the clients.
+        if(streamSettings.getMaxConcurrentStream() >= 0) {
+            settingsFrame.setMaxConcurrentStreams(streamSettings.getMaxConcurrentStream());
+        }
+        if(streamSettings.getInitialWindowSize() >= 0) {
+            settingsFrame.setInitialWindowsSize(streamSettings.getInitialWindowSize());
+        }
+        if(streamSettings.getMaxFrameSize() >= 0) {
+            settingsFrame.setMaxFrameSize(streamSettings.getMaxFrameSize());
+        }
+        if(streamSettings.getMaxHeaderListSize() >= 0) {
+            settingsFrame.setMaxHeaderListSize(streamSettings.getMaxHeaderListSize());
+        }
         return settingsFrame;
     }
 
+    /**
+     * Creates the empty settings frame with the ack flag.
+     * @return Settings frame.
+     */
+    public static SettingsFrame createAckFrame() {
+        return new SettingsFrame(0, FLAG_ACK, 0);
+    }
+
+    /**
+     * Returns the ids of the settings in the same order that were received.
+     * @return List of settings ids.
+     */
+    public List<Short> getOrder() {
+        return order == null ? new ArrayList<>(settings.keySet()) : order;
+    }
+
+    /**
+     * Returns the value of the setting.
+     * @param id Setting id.
+     * @return Value of the setting or null if the setting is not present.
+     */
+    public Integer getSetting(Short id) {
+        return settings.get(id);
+    }
+
     @Override
     protected Integer recalculateLength() {
         Integer length = settings.size() * SETTING_PAYLOAD_LENGTH;
@@ -45,10 +102,13 @@ public class SettingsFrame extends Http2Frame {
 
     @Override
     protected void processPayload() {
+        if(getLength() % SETTING_PAYLOAD_LENGTH != 0 || (isFlag(FLAG_ACK) && getLength() != 0)) {
+            throw new Http2Exception(Error.FRAME_SIZE_ERROR, "Invalid settings length %d", getLength());
+        }
         order = new ArrayList<>();
         ByteBuffer payload = getPayload();
         while(payload.limit() > payload.position()) {
-            Short settingId = (short) (((payload.get() & 0x0F) << 8) | (payload.get() & 0xFF));
+            Short settingId = (short) (((payload.get() & 0xFF) << 8) | (payload.get() & 0xFF));
             Integer settingValue = ((payload.get() & 0xFF) << 24) | ((payload.get() & 0xFF) << 16) | ((payload.get() & 0xFF) << 8) | (payload.get() & 0xFF);
             setSetting(settingId, settingValue);
             order.add(settingId);
@@ -129,7 +189,7 @@ public class SettingsFrame extends Http2Frame {
 
         SETTINGS_ENABLE_PUSH((short)0x2, 1),
 
-        SETTINGS_MAX_CONCURRENT_STREAMS((short)0x3, 0),
+        SETTINGS_MAX_CONCURRENT_STREAMS((short)0x3, Integer.MAX_VALUE),
 
         SETTINGS_INITIAL_WINDOW_SIZE((short)0x4, 65535),
 
@@ -1,23 +1,47 @@
 package org.hcjf.io.net.http.http2.frames;
 
+import org.hcjf.io.net.http.http2.Http2Exception;
+
 import java.nio.ByteBuffer;
 
+/**
+ * Frame to increase the flow control window of a stream, or of the connection if the stream id is zero.
+ * https://httpwg.org/specs/rfc7540.html#WINDOW_UPDATE
+ * @author javaito
+ */
 public class WindowsUpdateFrame extends Http2Frame {
 
+    private static final Integer WINDOW_UPDATE_PAYLOAD_LENGTH = 4;
+
     private Integer windowsSize;
 
     public WindowsUpdateFrame(Integer id, Byte flags, Integer length) {
         super(id, flags, length, Type.WINDOW_UPDATE);
     }
 
+    /**
+     * Returns the increment of the window.
+     * @return Window size increment.
+     */
+    public Integer getWindowsSize() {
+        return windowsSize;
+    }
+
+    public void setWindowsSize(Integer windowsSize) {
+        this.windowsSize = windowsSize;
+    }
+
     @Override
     protected Integer recalculateLength() {
-        return getLength();
+        return WINDOW_UPDATE_PAYLOAD_LENGTH;
     }
 
     @Override
     protected void processPayload() {
-        windowsSize = getPayload().getInt();
+        if(getLength() != WINDOW_UPDATE_PAYLOAD_LENGTH) {
+            throw new Http2Exception(Error.FRAME_SIZE_ERROR, "Invalid window update length %d", getLength());
+        }
+        windowsSize = getPayload().getInt() & 0x7FFFFFFF;
     }
 
     @Override
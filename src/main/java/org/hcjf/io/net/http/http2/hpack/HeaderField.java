@@ -0,0 +1,69 @@
+package org.hcjf.io.net.http.http2.hpack;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Name-value pair of a header list, the names of the http2 headers are always lower case.
+ * @author javaito
+ */
+public final class HeaderField {
+
+    //Overhead defined by the specification for each entry of the dynamic table.
+    //https://httpwg.org/specs/rfc7541.html#calculating.table.size
+    public static final int ENTRY_OVERHEAD = 32;
+
+    private final String name;
+    private final String value;
+    private final int size;
+
+    public HeaderField(String name, String value) {
+        this.name = name;
+        this.value = value;
+        this.size = name.getBytes(StandardCharsets.ISO_8859_1).length +
+                value.getBytes(StandardCharsets.ISO_8859_1).length + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * Returns the name of the field.
+     * @return Field name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the value of the field.
+     * @return Field value.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the size of the entry into the dynamic table.
+     * @return Size of the entry.
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        boolean result = false;
+        if(other instanceof HeaderField) {
+            result = name.equals(((HeaderField) other).name) && value.equals(((HeaderField) other).value);
+        }
+        return result;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, value);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + value;
+    }
+}
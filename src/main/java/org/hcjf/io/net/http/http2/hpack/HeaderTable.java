@@ -0,0 +1,224 @@
+package org.hcjf.io.net.http.http2.hpack;
+
+import org.hcjf.io.net.http.http2.Http2Exception;
+import org.hcjf.io.net.http.http2.frames.Http2Frame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Index address space of hpack, the first entries are the static table and then the dynamic table.
+ * The dynamic table is a fifo buffer, the newest entry has the lowest index and the oldest entries are
+ * evicted when the size of the table exceeds the maximum size.
+ * https://httpwg.org/specs/rfc7541.html#indexing.tables
+ * @author javaito
+ */
+public final class HeaderTable {
+
+    private static final HeaderField[] STATIC_TABLE = {
+            new HeaderField(":authority", ""),
+            new HeaderField(":method", "GET"),
+            new HeaderField(":method", "POST"),
+            new HeaderField(":path", "/"),
+            new HeaderField(":path", "/index.html"),
+            new HeaderField(":scheme", "http"),
+            new HeaderField(":scheme", "https"),
+            new HeaderField(":status", "200"),
+            new HeaderField(":status", "204"),
+            new HeaderField(":status", "206"),
+            new HeaderField(":status", "304"),
+            new HeaderField(":status", "400"),
+            new HeaderField(":status", "404"),
+            new HeaderField(":status", "500"),
+            new HeaderField("accept-charset", ""),
+            new HeaderField("accept-encoding", "gzip, deflate"),
+            new HeaderField("accept-language", ""),
+            new HeaderField("accept-ranges", ""),
+            new HeaderField("accept", ""),
+            new HeaderField("access-control-allow-origin", ""),
+            new HeaderField("age", ""),
+            new HeaderField("allow", ""),
+            new HeaderField("authorization", ""),
+            new HeaderField("cache-control", ""),
+            new HeaderField("content-disposition", ""),
+            new HeaderField("content-encoding", ""),
+            new HeaderField("content-language", ""),
+            new HeaderField("content-length", ""),
+            new HeaderField("content-location", ""),
+            new HeaderField("content-range", ""),
+            new HeaderField("content-type", ""),
+            new HeaderField("cookie", ""),
+            new HeaderField("date", ""),
+            new HeaderField("etag", ""),
+            new HeaderField("expect", ""),
+            new HeaderField("expires", ""),
+            new HeaderField("from", ""),
+            new HeaderField("host", ""),
+            new HeaderField("if-match", ""),
+            new HeaderField("if-modified-since", ""),
+            new HeaderField("if-none-match", ""),
+            new HeaderField("if-range", ""),
+            new HeaderField("if-unmodified-since", ""),
+            new HeaderField("last-modified", ""),
+            new HeaderField("link", ""),
+            new HeaderField("location", ""),
+            new HeaderField("max-forwards", ""),
+            new HeaderField("proxy-authenticate", ""),
+            new HeaderField("proxy-authorization", ""),
+            new HeaderField("range", ""),
+            new HeaderField("referer", ""),
+            new HeaderField("refresh", ""),
+            new HeaderField("retry-after", ""),
+            new HeaderField("server", ""),
+            new HeaderField("set-cookie", ""),
+            new HeaderField("strict-transport-security", ""),
+            new HeaderField("transfer-encoding", ""),
+            new HeaderField("user-agent", ""),
+            new HeaderField("vary", ""),
+            new HeaderField("via", ""),
+            new HeaderField("www-authenticate", "")
+    };
+
+    public static final int STATIC_TABLE_LENGTH = STATIC_TABLE.length;
+
+    //Initial size of the dynamic table defined by the specification.
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    private static final Map<HeaderField, Integer> STATIC_FIELD_INDEX = new HashMap<>();
+    private static final Map<String, Integer> STATIC_NAME_INDEX = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_FIELD_INDEX.put(STATIC_TABLE[i], i + 1);
+            STATIC_NAME_INDEX.put(STATIC_TABLE[i].getName(), i + 1);
+        }
+    }
+
+    private HeaderField[] entries;
+    private int head;
+    private int length;
+    private int size;
+    private int maxSize;
+
+    public HeaderTable(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new HeaderField[Math.max(maxSize / HeaderField.ENTRY_OVERHEAD, 1)];
+    }
+
+    /**
+     * Returns the field of the index, the index is one based and it includes the static table.
+     * @param index Index of the field.
+     * @return Header field.
+     */
+    public HeaderField get(int index) {
+        HeaderField result;
+        if(index <= 0 || index > STATIC_TABLE_LENGTH + length) {
+            throw new Http2Exception(Http2Frame.Error.COMPRESSION_ERROR, "Invalid header index %d", index);
+        } else if(index <= STATIC_TABLE_LENGTH) {
+            result = STATIC_TABLE[index - 1];
+        } else {
+            result = entries[Math.floorMod(head - (index - STATIC_TABLE_LENGTH), entries.length)];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the field or the negative index of the first entry with the same name if the field
+     * is not into the table. If there isn't any entry with the name the result is zero.
+     * @param field Header field to find.
+     * @return Index of the field.
+     */
+    public int indexOf(HeaderField field) {
+        Integer staticIndex = STATIC_FIELD_INDEX.get(field);
+        int result = staticIndex == null ? 0 : staticIndex;
+        if(result == 0) {
+            Integer nameIndex = STATIC_NAME_INDEX.get(field.getName());
+            int nameResult = nameIndex == null ? 0 : -nameIndex;
+            for (int i = 1; i <= length; i++) {
+                HeaderField entry = entries[Math.floorMod(head - i, entries.length)];
+                if(entry.getName().equals(field.getName())) {
+                    if(entry.getValue().equals(field.getValue())) {
+                        result = STATIC_TABLE_LENGTH + i;
+                        break;
+                    } else if(nameResult == 0) {
+                        nameResult = -(STATIC_TABLE_LENGTH + i);
+                    }
+                }
+            }
+            if(result == 0) {
+                result = nameResult;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a new entry into the dynamic table, the oldest entries are evicted in order to keep the size of the
+     * table under the maximum size. If the entry is bigger than the maximum size then the table is emptied.
+     * @param field Header field.
+     */
+    public void add(HeaderField field) {
+        int fieldSize = field.size();
+        evict(maxSize - fieldSize);
+        if(fieldSize <= maxSize) {
+            if(length == entries.length) {
+                HeaderField[] newEntries = new HeaderField[entries.length * 2];
+                for (int i = 0; i < length; i++) {
+                    newEntries[length - 1 - i] = entries[Math.floorMod(head - 1 - i, entries.length)];
+                }
+                entries = newEntries;
+                head = length;
+            }
+            entries[head] = field;
+            head = (head + 1) % entries.length;
+            length++;
+            size += fieldSize;
+        }
+    }
+
+    /**
+     * Changes the maximum size of the dynamic table.
+     * @param maxSize New maximum size.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    /**
+     * Returns the maximum size of the dynamic table.
+     * @return Maximum size.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the current size of the dynamic table.
+     * @return Size of the table.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of entries of the dynamic table.
+     * @return Number of entries.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Removes the oldest entries until the size of the table is under the limit.
+     * @param limit Size limit.
+     */
+    private void evict(int limit) {
+        while (length > 0 && size > limit) {
+            int tail = Math.floorMod(head - length, entries.length);
+            size -= entries[tail].size();
+            entries[tail] = null;
+            length--;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package org.hcjf.io.net.http.http2.hpack;
+
+import org.hcjf.io.net.http.http2.Http2Exception;
+import org.hcjf.io.net.http.http2.frames.Http2Frame;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoder of the header blocks, each connection has one decoder because the dynamic table is shared
+ * by all the header blocks received over the connection.
+ * https://httpwg.org/specs/rfc7541.html#detailed.format
+ * @author javaito
+ */
+public class HpackDecoder {
+
+    private final HeaderTable table;
+    private final int maxHeaderListSize;
+    private int maxTableSize;
+
+    /**
+     * Creates the decoder.
+     * @param maxTableSize Maximum size of the dynamic table advertised to the peer.
+     * @param maxHeaderListSize Maximum size of the header list, a negative value means without limit.
+     */
+    public HpackDecoder(int maxTableSize, int maxHeaderListSize) {
+        this.table = new HeaderTable(maxTableSize);
+        this.maxTableSize = maxTableSize;
+        this.maxHeaderListSize = maxHeaderListSize;
+    }
+
+    /**
+     * Changes the maximum size of the dynamic table advertised to the peer, the peer is who reduce the table
+     * sending a size update into the next header block.
+     * @param maxTableSize Maximum size of the table.
+     */
+    public void setMaxTableSize(int maxTableSize) {
+        this.maxTableSize = maxTableSize;
+    }
+
+    /**
+     * Returns the table of the decoder.
+     * @return Header table.
+     */
+    public HeaderTable getTable() {
+        return table;
+    }
+
+    /**
+     * Decodes a complete header block.
+     * @param block Buffer with the header block.
+     * @return List of the header fields in the same order that the block.
+     */
+    public List<HeaderField> decode(ByteBuffer block) {
+        List<HeaderField> result = new ArrayList<>();
+        long listSize = 0;
+        boolean fieldFound = false;
+        while (block.hasRemaining()) {
+            int first = block.get(block.position()) & 0xFF;
+            HeaderField field;
+            if ((first & 0x80) != 0) {
+                //Indexed header field
+                field = table.get(decodeInteger(block, 7));
+            } else if ((first & 0x40) != 0) {
+                //Literal header field with incremental indexing
+                field = decodeLiteral(block, 6);
+                table.add(field);
+            } else if ((first & 0x20) != 0) {
+                //Dynamic table size update, only at the beginning of the block
+                if (fieldFound) {
+                    throw new Http2Exception(Http2Frame.Error.COMPRESSION_ERROR, "Table size update after header field");
+                }
+                int size = decodeInteger(block, 5);
+                if (size > maxTableSize) {
+                    throw new Http2Exception(Http2Frame.Error.COMPRESSION_ERROR,
+                            "Table size update %d exceeds the maximum %d", size, maxTableSize);
+                }
+                table.setMaxSize(size);
+                continue;
+            } else {
+                //Literal header field without indexing or never indexed
+                field = decodeLiteral(block, 4);
+            }
+            fieldFound = true;
+            listSize += field.size();
+            result.add(field);
+        }
+        //The block is decoded completely in order to keep the dynamic table synchronized with the encoder.
+        if (maxHeaderListSize >= 0 && listSize > maxHeaderListSize) {
+            throw new Http2Exception(Http2Frame.Error.PROTOCOL_ERROR, "Header list size exceeds %d", maxHeaderListSize);
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a literal field, the name could be an index or a string literal.
+     * @param block Header block.
+     * @param prefix Size of the prefix of the name index.
+     * @return Header field.
+     */
+    private HeaderField decodeLiteral(ByteBuffer block, int prefix) {
+        int nameIndex = decodeInteger(block, prefix);
+        String name = nameIndex == 0 ? decodeString(block) : table.get(nameIndex).getName();
+        return new HeaderField(name, decodeString(block));
+    }
+
+    /**
+     * Decodes a string literal, the string could be huffman encoded.
+     * @param block Header block.
+     * @return Decoded string.
+     */
+    private String decodeString(ByteBuffer block) {
+        if (!block.hasRemaining()) {
+            throw new Http2Exception(Http2Frame.Error.COMPRESSION_ERROR, "Incomplete string literal");
+        }
+        boolean huffman = (block.get(block.position()) & 0x80) != 0;
+        int length = decodeInteger(block, 7);
+        if (length > block.remaining()) {
+            throw new Http2Exception(Http2Frame.Error.COMPRESSION_ERROR, "Incomplete string literal");
+        }
+        byte[] value;
+        if (huffman) {
+            value = Huffman.decode(block, length);
+        } else {
+            value = new byte[length];
+            block.get(value);
+        }
+        return new String(value, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Decodes an integer with prefix.
+     * https://httpwg.org/specs/rfc7541.html#integer.representation
+     * @param block Header block.
+     * @param prefix Number of bits of the prefix.
+     * @return Decoded integer.
+     */
+    static int decodeInteger(ByteBuffer block, int prefix) {
+        int mask = (1 << prefix) - 1;
+        int result = block.get() & mask;
+        if (result == mask) {
+            int shift = 0;
+            int b;
+            do {
+                if (!block.hasRemaining() || shift > 28) {
+                    throw new Http2Exception(Http2Frame.Error.COMPRESSION_ERROR, "Invalid integer representation");
+                }
+                b = block.get() & 0xFF;
+                result += (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            if (result < 0) {
+                throw new Http2Exception(Http2Frame.Error.COMPRESSION_ERROR, "Integer overflow");
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package org.hcjf.io.net.http.http2.hpack;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encoder of the header blocks, each connection has one encoder because the dynamic table is shared
+ * by all the header blocks sent over the connection.
+ * https://httpwg.org/specs/rfc7541.html#detailed.format
+ * @author javaito
+ */
+public class HpackEncoder {
+
+    //This headers are sent as never indexed literals in order to avoid compression based attacks.
+    //https://httpwg.org/specs/rfc7541.html#never.indexed.literals
+    private static final Set<String> SENSITIVE_HEADERS = Set.of("authorization", "proxy-authorization", "cookie", "set-cookie");
+
+    private final HeaderTable table;
+    private final int maxTableSize;
+    private int minPendingSize;
+    private boolean sizeUpdatePending;
+
+    /**
+     * Creates the encoder.
+     * @param maxTableSize Maximum size of the dynamic table that the encoder is willing to use.
+     */
+    public HpackEncoder(int maxTableSize) {
+        this.maxTableSize = maxTableSize;
+        this.table = new HeaderTable(Math.min(maxTableSize, HeaderTable.DEFAULT_MAX_SIZE));
+    }
+
+    /**
+     * Returns the table of the encoder.
+     * @return Header table.
+     */
+    public HeaderTable getTable() {
+        return table;
+    }
+
+    /**
+     * This method is called when the peer changes the size of its dynamic table, the size update is emitted
+     * at the beginning of the next header block.
+     * @param peerTableSize Table size advertised by the peer.
+     */
+    public void setPeerTableSize(int peerTableSize) {
+        int size = Math.min(peerTableSize, maxTableSize);
+        if (!sizeUpdatePending) {
+            minPendingSize = size;
+            sizeUpdatePending = true;
+        } else {
+            minPendingSize = Math.min(minPendingSize, size);
+        }
+        table.setMaxSize(size);
+    }
+
+    /**
+     * Encodes the header list.
+     * @param fields Header fields.
+     * @return Header block.
+     */
+    public byte[] encode(List<HeaderField> fields) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (sizeUpdatePending) {
+            //If the size was reduced and increased again then both updates are sent.
+            if (minPendingSize < table.getMaxSize()) {
+                encodeInteger(out, 0x20, 5, minPendingSize);
+            }
+            encodeInteger(out, 0x20, 5, table.getMaxSize());
+            sizeUpdatePending = false;
+        }
+        for (HeaderField field : fields) {
+            encode(out, field);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes one header field.
+     * @param out Output stream.
+     * @param field Header field.
+     */
+    private void encode(ByteArrayOutputStream out, HeaderField field) {
+        int index = table.indexOf(field);
+        boolean sensitive = SENSITIVE_HEADERS.contains(field.getName());
+        if (index > 0 && !sensitive) {
+            encodeInteger(out, 0x80, 7, index);
+        } else {
+            int nameIndex = Math.abs(index);
+            if (sensitive) {
+                encodeInteger(out, 0x10, 4, nameIndex);
+            } else if (field.size() > table.getMaxSize() / 2) {
+                //The big fields are not indexed because they evict a lot of entries from the table.
+                encodeInteger(out, 0x00, 4, nameIndex);
+            } else {
+                encodeInteger(out, 0x40, 6, nameIndex);
+                table.add(field);
+            }
+            if (nameIndex == 0) {
+                encodeString(out, field.getName());
+            }
+            encodeString(out, field.getValue());
+        }
+    }
+
+    /**
+     * Encodes a string literal using huffman if the result is not longer than the raw string.
+     * @param out Output stream.
+     * @param value String value.
+     */
+    private void encodeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        int huffmanLength = Huffman.encodedLength(bytes);
+        if (huffmanLength <= bytes.length) {
+            encodeInteger(out, 0x80, 7, huffmanLength);
+            Huffman.encode(bytes, out);
+        } else {
+            encodeInteger(out, 0x00, 7, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Encodes an integer with prefix.
+     * https://httpwg.org/specs/rfc7541.html#integer.representation
+     * @param out Output stream.
+     * @param pattern Bits of the first byte that are not part of the prefix.
+     * @param prefix Number of bits of the prefix.
+     * @param value Value to encode.
+     */
+    static void encodeInteger(ByteArrayOutputStream out, int pattern, int prefix, int value) {
+        int mask = (1 << prefix) - 1;
+        if (value < mask) {
+            out.write(pattern | value);
+        } else {
+            out.write(pattern | mask);
+            value -= mask;
+            while (value >= 0x80) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.hcjf.io.net.http.pipeline;
+
+import org.hcjf.io.net.http.HttpHeader;
+import org.hcjf.io.net.http.HttpResponseCode;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This pipeline streams some ranges of a file as a multipart/byteranges body, the file is read in chunks
+ * with the size of the buffer of the pipeline.
+ * https://tools.ietf.org/html/rfc7233#section-4.1
+ * @author javaito
+ */
+public class ByteRangesHttpPipelineResponse extends HttpPipelineResponse {
+
+    private static final String LINE_SEPARATOR = "\r\n";
+    private static final String BOUNDARY_START = "--";
+    private static final String PART_HEADER_FORMAT = LINE_SEPARATOR + BOUNDARY_START + "%s" + LINE_SEPARATOR +
+            HttpHeader.CONTENT_TYPE + ": %s" + LINE_SEPARATOR +
+            HttpHeader.CONTENT_RANGE + ": %s" + LINE_SEPARATOR + LINE_SEPARATOR;
+    private static final String END_FORMAT = LINE_SEPARATOR + BOUNDARY_START + "%s" + BOUNDARY_START + LINE_SEPARATOR;
+    private static final String CONTENT_TYPE_FORMAT = HttpHeader.MULTIPART_BYTERANGES + "; " + HttpHeader.BOUNDARY + "=%s";
+
+    private final Path path;
+    private final List<Range> ranges;
+    private final List<byte[]> partHeaders;
+    private final byte[] end;
+    private FileChannel fileChannel;
+    private int rangeIndex;
+    private int headerPosition;
+    private long rangePosition;
+
+    /**
+     * Creates the pipeline and adds the content type and content length headers.
+     * @param path Path of the file.
+     * @param length Length of the file.
+     * @param contentType Content type of the file.
+     * @param ranges Ranges to send.
+     * @param bufferSize Size of the chunks read from the file.
+     */
+    public ByteRangesHttpPipelineResponse(Path path, long length, String contentType, List<Range> ranges, int bufferSize) {
+        super(bufferSize, bufferSize);
+        this.path = path;
+        this.ranges = ranges;
+        this.partHeaders = new ArrayList<>();
+
+        String boundary = createBoundary();
+        long contentLength = 0;
+        for(Range range : ranges) {
+            byte[] partHeader = createPartHeader(boundary, contentType, range, length);
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length + range.getLength();
+        }
+        this.end = createEnd(boundary);
+        contentLength += end.length;
+        this.rangePosition = ranges.get(0).getStart();
+
+        setResponseCode(HttpResponseCode.PARTIAL_CONTENT);
+        addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, createContentType(boundary)));
+        addHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Long.toString(contentLength)));
+    }
+
+    /**
+     * Opens the file before the first read.
+     */
+    @Override
+    public void onStart() {
+        try {
+            fileChannel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (IOException ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to open file %s", ex, path);
+        }
+    }
+
+    /**
+     * Closes the file after the last read.
+     */
+    @Override
+    public void onEnd() {
+        if(fileChannel != null) {
+            try {
+                fileChannel.close();
+            } catch (IOException ex) {}
+        }
+    }
+
+    /**
+     * Puts into the buffer the header of the current part and the bytes of the current range.
+     * @param streamingPackage Buffer to put all the read bytes.
+     * @return Number of bytes read or -1 if all the ranges was read.
+     */
+    @Override
+    protected int readPipeline(StreamingPackage streamingPackage) {
+        byte[] buffer = streamingPackage.getBuffer();
+        int size = 0;
+        try {
+            while(fileChannel != null && size < buffer.length && rangeIndex <= ranges.size()) {
+                byte[] header = rangeIndex < ranges.size() ? partHeaders.get(rangeIndex) : end;
+                if(headerPosition < header.length) {
+                    int length = Math.min(buffer.length - size, header.length - headerPosition);
+                    System.arraycopy(header, headerPosition, buffer, size, length);
+                    headerPosition += length;
+                    size += length;
+                } else if(rangeIndex < ranges.size() && rangePosition <= ranges.get(rangeIndex).getEnd()) {
+                    int length = (int) Math.min(buffer.length - size, ranges.get(rangeIndex).getEnd() - rangePosition + 1);
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, size, length);
+                    while(byteBuffer.hasRemaining()) {
+                        if(fileChannel.read(byteBuffer, rangePosition + byteBuffer.position() - size) < 0) {
+                            throw new EOFException("Unexpected end of file " + path);
+                        }
+                    }
+                    rangePosition += length;
+                    size += length;
+                } else {
+                    rangeIndex++;
+                    headerPosition = 0;
+                    if(rangeIndex < ranges.size()) {
+                        rangePosition = ranges.get(rangeIndex).getStart();
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Unable to read file %s", ex, path);
+            size = 0;
+            rangeIndex = ranges.size() + 1;
+        }
+        return size == 0 ? -1 : size;
+    }
+
+    /**
+     * The end of the pipeline is not wrapped.
+     * @param result Buffer to put the content.
+     * @param streamingPackage All the bytes read from the application source.
+     * @param size Size of the buffer used to read the application source.
+     * @return Returns the amount of bytes read or -1 if the pipeline is done.
+     */
+    @Override
+    protected int wrap(ByteBuffer result, StreamingPackage streamingPackage, int size) {
+        return size < 0 ? -1 : super.wrap(result, streamingPackage, size);
+    }
+
+    /**
+     * Creates a new random boundary.
+     * @return Boundary.
+     */
+    public static String createBoundary() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    /**
+     * Creates the value of the content type header for the boundary.
+     * @param boundary Boundary of the parts.
+     * @return Content type value.
+     */
+    public static String createContentType(String boundary) {
+        return String.format(CONTENT_TYPE_FORMAT, boundary);
+    }
+
+    /**
+     * Creates the bytes before the content of each range.
+     * @param boundary Boundary of the parts.
+     * @param contentType Content type of the file.
+     * @param range Range of the part.
+     * @param length Length of the file.
+     * @return Header of the part.
+     */
+    public static byte[] createPartHeader(String boundary, String contentType, Range range, long length) {
+        return String.format(PART_HEADER_FORMAT, boundary, contentType, range.toContentRange(length)).getBytes();
+    }
+
+    /**
+     * Creates the bytes after the last part.
+     * @param boundary Boundary of the parts.
+     * @return End of the multipart body.
+     */
+    public static byte[] createEnd(String boundary) {
+        return String.format(END_FORMAT, boundary).getBytes();
+    }
+
+    /**
+     * Range of bytes, the first and the last positions are inclusive.
+     */
+    public static final class Range {
+
+        private static final String CONTENT_RANGE_FORMAT = HttpHeader.BYTES + " %d-%d/%d";
+
+        private final long start;
+        private final long end;
+
+        public Range(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Returns the position of the first byte.
+         * @return First byte position.
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * Returns the position of the last byte.
+         * @return Last byte position.
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * Returns the number of bytes of the range.
+         * @return Length of the range.
+         */
+        public long getLength() {
+            return end - start + 1;
+        }
+
+        /**
+         * Creates the value of the content range header.
+         * @param length Complete length of the file.
+         * @return Content range value.
+         */
+        public String toContentRange(long length) {
+            return String.format(CONTENT_RANGE_FORMAT, start, end, length);
+        }
+    }
+}
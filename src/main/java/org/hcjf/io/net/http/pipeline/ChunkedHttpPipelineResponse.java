@@ -30,13 +30,36 @@ public abstract class ChunkedHttpPipelineResponse extends HttpPipelineResponse {
      */
     @Override
     protected int wrap(ByteBuffer result, StreamingPackage streamingPackage, int size) {
+        return putChunk(result, streamingPackage.getBuffer(), size);
+    }
+
+    /**
+     * Wrap the encoded content with the chunked encoding separators.
+     * @param result Buffer to put the chunk.
+     * @param encodedContent Array with the encoded bytes.
+     * @param size Number of encoded bytes or -1 if the encoded content is done.
+     * @return Returns the amount of bytes of the chunk.
+     */
+    @Override
+    protected int wrapEncoded(ByteBuffer result, byte[] encodedContent, int size) {
+        return putChunk(result, encodedContent, size);
+    }
+
+    /**
+     * Puts the chunk into the buffer, the size -1 puts the last chunk.
+     * @param result Buffer to put the chunk.
+     * @param data Data of the chunk.
+     * @param size Size of the data.
+     * @return Returns the amount of bytes of the chunk or -1 if the last chunk was put.
+     */
+    private int putChunk(ByteBuffer result, byte[] data, int size) {
         int resultSize;
         if(size == -1 && end) {
             resultSize = -1;
         } else {
             result.put(Integer.toString(size > 0 ? size : 0, 16).getBytes());
             result.put(CHUNKED_SEPARATOR);
-            result.put(streamingPackage.getBuffer(), 0, size > 0 ? size : 0);
+            result.put(data, 0, size > 0 ? size : 0);
             result.put(CHUNKED_SEPARATOR);
             resultSize = result.position();
             if(size == -1) {
@@ -46,6 +69,23 @@ public abstract class ChunkedHttpPipelineResponse extends HttpPipelineResponse {
         return resultSize;
     }
 
+    /**
+     * The content is put into the buffer without the chunked separators.
+     * @param result Buffer to put the content.
+     * @param streamingPackage All the bytes read from the application source.
+     * @param size Size of the buffer used to read the application source.
+     * @return Returns the amount of bytes read.
+     */
+    @Override
+    protected int wrapContent(ByteBuffer result, StreamingPackage streamingPackage, int size) {
+        int resultSize = -1;
+        if(size >= 0) {
+            result.put(streamingPackage.getBuffer(), 0, size);
+            resultSize = result.position();
+        }
+        return resultSize;
+    }
+
     /**
      * This is a utility method to calculate the buffer size necessary to
      * wrap each chunked package.
@@ -1,5 +1,7 @@
 package org.hcjf.io.net.http.pipeline;
 
+import org.hcjf.io.net.http.ContentEncoder;
+import org.hcjf.io.net.http.HttpCompression;
 import org.hcjf.io.net.http.HttpResponse;
 
 import java.nio.ByteBuffer;
@@ -16,6 +18,11 @@ public abstract class HttpPipelineResponse extends HttpResponse {
     private final ByteBuffer mainBuffer;
     private final StreamingPackage streamingPackage;
     private int readCounter;
+    private String contentEncoding;
+    private ContentEncoder encoder;
+    private ByteBuffer contentBuffer;
+    private byte[] encodedBuffer;
+    private boolean contentEnd;
 
     public HttpPipelineResponse(int mainBufferSize, int bufferSize) {
         this.mainBuffer = ByteBuffer.allocate(mainBufferSize);
@@ -23,6 +30,22 @@ public abstract class HttpPipelineResponse extends HttpResponse {
         this.readCounter = 0;
     }
 
+    /**
+     * Returns the content encoding of the pipeline.
+     * @return Content encoding name or null if the content is not encoded.
+     */
+    public final String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Sets the content encoding of the pipeline, the content is encoded incrementally on each read operation.
+     * @param contentEncoding Content encoding name.
+     */
+    public final void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
     /**
      * Verify if the first read over the pipeline.
      * @return Returns true if the first read operation and false in the otherwise.
@@ -47,14 +70,92 @@ public abstract class HttpPipelineResponse extends HttpResponse {
      * to -1 then this pipeline is done.
      */
     public final int read() {
-        mainBuffer.rewind();
-        streamingPackage.clear();
-        int size = readPipeline(streamingPackage);
-        readCounter++;
-        size = wrap(mainBuffer, streamingPackage, size);
+        int size;
+        if(contentEncoding == null) {
+            mainBuffer.rewind();
+            streamingPackage.clear();
+            size = readPipeline(streamingPackage);
+            readCounter++;
+            size = wrap(mainBuffer, streamingPackage, size);
+        } else {
+            size = readEncoded();
+            readCounter++;
+            mainBuffer.rewind();
+            size = wrapEncoded(mainBuffer, encodedBuffer, size);
+        }
+        return size;
+    }
+
+    /**
+     * This method reads the bytes of the application side of the pipeline without the transfer
+     * encoding, the http2 streams have their own framing.
+     * @return Size of the content into the main buffer, if the size is equals to -1 then this pipeline is done.
+     */
+    public final int readContent() {
+        int size;
+        if(contentEncoding == null) {
+            mainBuffer.rewind();
+            streamingPackage.clear();
+            size = readPipeline(streamingPackage);
+            readCounter++;
+            size = wrapContent(mainBuffer, streamingPackage, size);
+        } else {
+            size = readEncoded();
+            readCounter++;
+            mainBuffer.rewind();
+            if(size > 0) {
+                mainBuffer.put(encodedBuffer, 0, size);
+            }
+        }
         return size;
     }
 
+    /**
+     * Reads the content of the pipeline and encodes it until some encoded bytes are available, the encoder can
+     * keep the bytes of many reads before producing output.
+     * @return Number of encoded bytes into the encoded buffer or -1 if the encoded content is done.
+     */
+    private int readEncoded() {
+        if(encoder == null) {
+            encoder = HttpCompression.createEncoder(contentEncoding);
+            contentBuffer = ByteBuffer.allocate(mainBuffer.capacity());
+            encodedBuffer = new byte[streamingPackage.getBuffer().length];
+        }
+
+        int result = 0;
+        while(result == 0) {
+            if(encoder.needsInput() && !contentEnd) {
+                //The encoder keeps a reference to the content then each read uses its own buffer.
+                contentBuffer.rewind();
+                streamingPackage.clear();
+                int size = wrapContent(contentBuffer, streamingPackage, readPipeline(streamingPackage));
+                if(size < 0) {
+                    contentEnd = true;
+                    encoder.finish();
+                } else {
+                    encoder.setInput(contentBuffer.array(), 0, size);
+                }
+            }
+
+            if(encoder.isFinished()) {
+                result = -1;
+            } else {
+                result = encoder.encode(encodedBuffer, 0, encodedBuffer.length);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Releases the encoder of the pipeline, this method is called after the last read over the pipeline.
+     */
+    public final void release() {
+        if(encoder != null) {
+            encoder.close();
+            encoder = null;
+        }
+    }
+
     /**
      * Return the buffer, this method must be call before the read method.
      * @return Main buffer with all the read bytes.
@@ -76,6 +177,35 @@ public abstract class HttpPipelineResponse extends HttpResponse {
         return result.position();
     }
 
+    /**
+     * This method wrap the bytes with the content encoding only, by default is the same that the
+     * wrap method and the transfer encodings must override it.
+     * @param result Buffer to put the content.
+     * @param streamingPackage All the bytes read from the application source.
+     * @param size Size of the buffer used to read the application source.
+     * @return Size of the content.
+     */
+    protected int wrapContent(ByteBuffer result, StreamingPackage streamingPackage, int size) {
+        return wrap(result, streamingPackage, size);
+    }
+
+    /**
+     * This method wrap the encoded content with the transfer encoding, by default the encoded bytes are put
+     * without framing and the transfer encodings must override it.
+     * @param result Buffer to put the encoded content.
+     * @param encodedContent Array with the encoded bytes.
+     * @param size Number of encoded bytes or -1 if the encoded content is done.
+     * @return Size of the wrapped bytes.
+     */
+    protected int wrapEncoded(ByteBuffer result, byte[] encodedContent, int size) {
+        int resultSize = -1;
+        if(size >= 0) {
+            result.put(encodedContent, 0, size);
+            resultSize = result.position();
+        }
+        return resultSize;
+    }
+
     /**
      * This method is called before the fir read over the pipeline.
      */
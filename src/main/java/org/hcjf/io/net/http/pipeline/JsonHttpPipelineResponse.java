@@ -0,0 +1,108 @@
+package org.hcjf.io.net.http.pipeline;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import org.hcjf.encoding.MimeType;
+import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.io.net.http.HttpHeader;
+import org.hcjf.io.net.http.HttpResponseCode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * This pipeline serializes a collection as a json array using chunked transfer encoding, the rows are
+ * serialized one by one when the connection needs more bytes, then only the bytes of the current
+ * chunk are into the heap instead of the complete json document.
+ * @author javaito
+ */
+public class JsonHttpPipelineResponse extends ChunkedHttpPipelineResponse {
+
+    private final Gson gson;
+    private final Iterator<?> iterator;
+    private final JsonBuffer jsonBuffer;
+    private final JsonWriter jsonWriter;
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * Creates the pipeline for the collection.
+     * @param gson Gson instance used to serialize each row.
+     * @param collection Collection to serialize.
+     * @param bufferSize Size of each chunk.
+     */
+    public JsonHttpPipelineResponse(Gson gson, Collection<?> collection, int bufferSize) {
+        super(bufferSize);
+        this.gson = gson;
+        this.iterator = collection.iterator();
+        this.jsonBuffer = new JsonBuffer(bufferSize);
+        try {
+            //The writer uses the same configuration of the gson instance, then the output is the same as gson.toJson.
+            this.jsonWriter = gson.newJsonWriter(new OutputStreamWriter(jsonBuffer, StandardCharsets.UTF_8));
+        } catch (IOException ex) {
+            throw new HCJFRuntimeException("Unable to create json writer", ex);
+        }
+        setResponseCode(HttpResponseCode.OK);
+        addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.APPLICATION_JSON.toString()));
+    }
+
+    /**
+     * Serializes rows until there are enough bytes to fill the buffer or the collection is done.
+     * @param streamingPackage Buffer to put all the read bytes.
+     * @return Number of bytes read or -1 if the json array is complete.
+     */
+    @Override
+    protected int readPipeline(StreamingPackage streamingPackage) {
+        byte[] buffer = streamingPackage.getBuffer();
+        try {
+            while(jsonBuffer.size() < buffer.length && !finished) {
+                if(!started) {
+                    jsonWriter.beginArray();
+                    started = true;
+                } else if(iterator.hasNext()) {
+                    Object row = iterator.next();
+                    if(row == null) {
+                        jsonWriter.nullValue();
+                    } else {
+                        gson.toJson(row, row.getClass(), jsonWriter);
+                    }
+                } else {
+                    jsonWriter.endArray();
+                    finished = true;
+                }
+                jsonWriter.flush();
+            }
+        } catch (IOException ex) {
+            throw new HCJFRuntimeException("Unable to serialize json row", ex);
+        }
+        int size = jsonBuffer.drain(buffer);
+        return size == 0 ? -1 : size;
+    }
+
+    /**
+     * Buffer of the serialized bytes that are not sent yet.
+     */
+    private static final class JsonBuffer extends ByteArrayOutputStream {
+
+        private JsonBuffer(int size) {
+            super(size);
+        }
+
+        /**
+         * Moves the first bytes of the buffer to the target array.
+         * @param target Target array.
+         * @return Number of bytes moved.
+         */
+        private int drain(byte[] target) {
+            int length = Math.min(count, target.length);
+            System.arraycopy(buf, 0, target, 0, length);
+            System.arraycopy(buf, length, buf, 0, count - length);
+            count -= length;
+            return length;
+        }
+    }
+}
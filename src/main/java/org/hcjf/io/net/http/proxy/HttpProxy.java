@@ -58,6 +58,10 @@ public class HttpProxy extends HttpServer {
             throw new NullPointerException(Errors.getMessage(Errors.ORG_HCJF_IO_NET_HTTP_PROXY_1));
         }
         rules.add(rule);
+        if(rule.isStreamingBody()) {
+            //The body of the requests is streamed for all the rules, the other rules read the body from the stream.
+            defaultContext.setStreamingBody(true);
+        }
     }
 
     /**
@@ -22,4 +22,13 @@ public abstract class HttpProxyRule {
      */
     public abstract ProxyTask getTask();
 
+    /**
+     * Indicates if the task of the rule consumes the body of the request while it arrives, in this case the body
+     * must be read using the body stream of the request. By default returns false.
+     * @return True if the rule consumes the body as a stream.
+     */
+    public boolean isStreamingBody() {
+        return false;
+    }
+
 }
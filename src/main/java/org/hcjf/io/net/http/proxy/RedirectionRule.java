@@ -1,11 +1,14 @@
 package org.hcjf.io.net.http.proxy;
 
+import org.hcjf.errors.HCJFRuntimeException;
 import org.hcjf.io.net.http.HttpClient;
 import org.hcjf.io.net.http.HttpHeader;
 import org.hcjf.io.net.http.HttpRequest;
 import org.hcjf.io.net.http.HttpResponse;
 
+import java.io.IOException;
 import java.net.URL;
+import java.util.regex.Pattern;
 
 /**
  * Proxy task that implements a redirection rule.
@@ -13,17 +16,17 @@ import java.net.URL;
  */
 public class RedirectionRule extends HttpProxyRule {
 
-    private final String contextRegex;
+    private final Pattern contextPattern;
     private final URL url;
 
     public RedirectionRule(String contextRegex, URL url) {
-        this.contextRegex = contextRegex;
+        this.contextPattern = Pattern.compile(contextRegex);
         this.url = url;
     }
 
     @Override
     public boolean evaluate(HttpRequest request) {
-        return request.getContext().matches(contextRegex);
+        return contextPattern.matcher(request.getContext()).matches();
     }
 
     @Override
@@ -39,10 +42,22 @@ public class RedirectionRule extends HttpProxyRule {
         public HttpResponse execute(HttpRequest request) {
             HttpClient client = new HttpClient(url);
             client.setHttpMethod(request.getMethod());
-            //TODO: Set body
+            byte[] body;
+            try {
+                //If the proxy streams the bodies then the body is read from the stream.
+                body = request.getBodyStream().readAllBytes();
+            } catch (IOException ex) {
+                throw new HCJFRuntimeException("Unable to read the request body", ex);
+            }
+            client.setBody(body);
             request.getHeaders().stream().filter(
-                    header -> !header.getHeaderName().equals(HttpHeader.HOST))
+                    header -> !header.getHeaderName().equals(HttpHeader.HOST) &&
+                            !header.getHeaderName().equals(HttpHeader.TRANSFER_ENCODING) &&
+                            !header.getHeaderName().equals(HttpHeader.CONTENT_LENGTH))
                     .forEach(client::addHttpHeader);
+            if(body.length > 0) {
+                client.addHttpHeader(new HttpHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(body.length)));
+            }
             return client.request();
         }
 
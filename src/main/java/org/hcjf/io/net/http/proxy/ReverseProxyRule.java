@@ -0,0 +1,533 @@
+package org.hcjf.io.net.http.proxy;
+
+import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.io.net.http.*;
+import org.hcjf.io.net.http.pipeline.ChunkedHttpPipelineResponse;
+import org.hcjf.io.net.http.pipeline.HttpPipelineResponse;
+import org.hcjf.log.Log;
+import org.hcjf.properties.SystemProperties;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Proxy rule that forwards the requests to a group of upstream servers. The bodies of the request and the
+ * response are streamed between the downstream and the upstream connections without being accumulated, the
+ * upstream connections are taken from the http client pool and the upstream for each request is selected
+ * using weighted round robin or least connections. The upstreams that fail consecutively are ejected for
+ * a while.
+ * @author javaito
+ */
+public class ReverseProxyRule extends HttpProxyRule {
+
+    private static final Set<String> HOP_BY_HOP_HEADERS;
+
+    static {
+        HOP_BY_HOP_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.CONNECTION);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.KEEP_ALIVE);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.TRANSFER_ENCODING);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.UPGRADE);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.HOST);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.TE);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.PROXY_AUTHORIZATION);
+        HOP_BY_HOP_HEADERS.add(HttpHeader.PROXY_CONNECTION);
+    }
+
+    private final Pattern contextPattern;
+    private final List<Upstream> upstreams;
+    private final ProxyTask task;
+    private BalancingStrategy balancingStrategy;
+
+    public ReverseProxyRule(String contextRegex) {
+        this.contextPattern = Pattern.compile(contextRegex);
+        this.upstreams = Collections.synchronizedList(new ArrayList<>());
+        this.task = new ReverseProxyTask();
+        this.balancingStrategy = BalancingStrategy.ROUND_ROBIN;
+    }
+
+    /**
+     * Adds an upstream server with weight 1.
+     * @param url Base url of the upstream.
+     */
+    public final void addUpstream(URL url) {
+        addUpstream(url, 1);
+    }
+
+    /**
+     * Adds an upstream server, the path of the url is prepended to the path of the requests.
+     * @param url Base url of the upstream.
+     * @param weight Weight of the upstream, must be greater than zero.
+     */
+    public final void addUpstream(URL url, int weight) {
+        if(weight <= 0) {
+            throw new IllegalArgumentException("The weight of the upstream must be greater than zero");
+        }
+        upstreams.add(new Upstream(url, weight));
+    }
+
+    /**
+     * Returns the balancing strategy of the rule.
+     * @return Balancing strategy.
+     */
+    public final BalancingStrategy getBalancingStrategy() {
+        return balancingStrategy;
+    }
+
+    /**
+     * Set the balancing strategy of the rule.
+     * @param balancingStrategy Balancing strategy.
+     */
+    public final void setBalancingStrategy(BalancingStrategy balancingStrategy) {
+        this.balancingStrategy = balancingStrategy;
+    }
+
+    /**
+     * The request body is forwarded while it arrives.
+     * @return Always returns true.
+     */
+    @Override
+    public boolean isStreamingBody() {
+        return true;
+    }
+
+    @Override
+    public boolean evaluate(HttpRequest request) {
+        return contextPattern.matcher(request.getContext()).matches();
+    }
+
+    @Override
+    public ProxyTask getTask() {
+        return task;
+    }
+
+    /**
+     * Selects the upstream for the next request using the balancing strategy, the ejected upstreams are not
+     * selected unless all the upstreams are ejected.
+     * @return Selected upstream or null if the rule has no upstreams.
+     */
+    private Upstream select() {
+        Upstream result = null;
+        long now = System.currentTimeMillis();
+        synchronized (upstreams) {
+            List<Upstream> candidates = new ArrayList<>();
+            for(Upstream upstream : upstreams) {
+                if(upstream.ejectedUntil <= now) {
+                    candidates.add(upstream);
+                }
+            }
+            if(candidates.isEmpty()) {
+                //If all the upstreams are ejected then all of them are candidates.
+                candidates.addAll(upstreams);
+            }
+
+            if(balancingStrategy == BalancingStrategy.LEAST_CONNECTIONS) {
+                for(Upstream upstream : candidates) {
+                    if(result == null || (long) upstream.activeRequests.get() * result.weight <
+                            (long) result.activeRequests.get() * upstream.weight) {
+                        result = upstream;
+                    }
+                }
+            } else {
+                //Smooth weighted round robin, the upstreams are interleaved according to their weights.
+                int totalWeight = 0;
+                for(Upstream upstream : candidates) {
+                    upstream.currentWeight += upstream.weight;
+                    totalWeight += upstream.weight;
+                    if(result == null || upstream.currentWeight > result.currentWeight) {
+                        result = upstream;
+                    }
+                }
+                if(result != null) {
+                    result.currentWeight -= totalWeight;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Balancing strategies.
+     */
+    public enum BalancingStrategy {
+
+        ROUND_ROBIN,
+
+        LEAST_CONNECTIONS
+
+    }
+
+    /**
+     * Upstream server and its state.
+     */
+    private static final class Upstream {
+
+        private final URL url;
+        private final String host;
+        private final Integer port;
+        private final String basePath;
+        private final HttpPackage.HttpProtocol protocol;
+        private final int weight;
+        private final AtomicInteger activeRequests;
+        private int currentWeight;
+        private int failures;
+        private volatile long ejectedUntil;
+
+        private Upstream(URL url, int weight) {
+            this.url = url;
+            this.weight = weight;
+            this.host = url.getHost();
+            this.protocol = url.getProtocol().equalsIgnoreCase(HttpPackage.HttpProtocol.HTTPS.toString()) ?
+                    HttpPackage.HttpProtocol.HTTPS : HttpPackage.HttpProtocol.HTTP;
+            this.port = url.getPort() != -1 ? url.getPort() : protocol.equals(HttpPackage.HttpProtocol.HTTPS) ?
+                    SystemProperties.getInteger(SystemProperties.Net.Https.DEFAULT_CLIENT_PORT) :
+                    SystemProperties.getInteger(SystemProperties.Net.Http.DEFAULT_CLIENT_PORT);
+            String path = url.getPath();
+            this.basePath = path.endsWith(HttpPackage.HTTP_CONTEXT_SEPARATOR) ?
+                    path.substring(0, path.length() - 1) : path;
+            this.activeRequests = new AtomicInteger();
+        }
+
+        /**
+         * Resets the failures counter.
+         */
+        private synchronized void onSuccess() {
+            failures = 0;
+        }
+
+        /**
+         * Counts a failure, when the limit of consecutive failures is reached the upstream is ejected.
+         */
+        private synchronized void onFailure() {
+            failures++;
+            if(failures >= SystemProperties.getInteger(SystemProperties.Net.Http.Proxy.HEALTH_MAX_FAILURES)) {
+                failures = 0;
+                ejectedUntil = System.currentTimeMillis() +
+                        SystemProperties.getLong(SystemProperties.Net.Http.Proxy.HEALTH_EJECTION_TIME);
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Upstream ejected: %s", url);
+            }
+        }
+    }
+
+    /**
+     * Stream between the body of the upstream response and the downstream response. When the buffered bytes
+     * reach the limit the reading of the upstream connection is suspended until the downstream consumes them.
+     * The connection is returned to the pool only when the upstream response is complete and the stream was
+     * drained or closed, then the connection never is released with the reading suspended.
+     */
+    private static final class UpstreamBody extends HttpBodyInputStream {
+
+        private final HttpClientConnection connection;
+        private final CompletableFuture<HttpResponse> headers;
+        private boolean responseDone;
+        private boolean bodyDone;
+        private boolean released;
+
+        private UpstreamBody(HttpClientConnection connection) {
+            super(SystemProperties.getInteger(SystemProperties.Net.Http.Proxy.STREAMING_BUFFER_SIZE),
+                    SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_READ_TIMEOUT));
+            this.connection = connection;
+            this.headers = new CompletableFuture<>();
+        }
+
+        @Override
+        public void start(HttpPackage httpPackage) {
+            headers.complete((HttpResponse) httpPackage);
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            int result = super.read(target, offset, length);
+            if(result < 0) {
+                finish(false, true);
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+            //The reading of the connection is resumed by the stream before the release.
+            super.close();
+            finish(false, true);
+        }
+
+        /**
+         * This method is called when the upstream response ends, if the response is not complete then the
+         * stream is aborted and the connection is released without waiting for the downstream.
+         * @param complete True if the upstream response is complete.
+         */
+        private void complete(boolean complete) {
+            if(!complete) {
+                abort();
+            }
+            finish(true, !complete);
+        }
+
+        /**
+         * Releases the connection when the response and the body are done.
+         * @param responseDone True if the upstream response is done.
+         * @param bodyDone True if the body was drained or closed.
+         */
+        private void finish(boolean responseDone, boolean bodyDone) {
+            boolean release;
+            synchronized (this) {
+                this.responseDone |= responseDone;
+                this.bodyDone |= bodyDone;
+                release = this.responseDone && this.bodyDone && !released;
+                if(release) {
+                    released = true;
+                }
+            }
+            if(release) {
+                HttpConnectionPool.getInstance().release(connection);
+            }
+        }
+
+        @Override
+        protected void onSuspend() {
+            if(!released) {
+                connection.suspendRead();
+            }
+        }
+
+        @Override
+        protected void onResume() {
+            //After the release the connection could be used by other request.
+            if(!released) {
+                connection.resumeRead();
+            }
+        }
+    }
+
+    /**
+     * Task that forwards the request to the selected upstream.
+     */
+    private class ReverseProxyTask extends ProxyTask {
+
+        @Override
+        public HttpResponse execute(HttpRequest request) {
+            HttpResponse response;
+            Upstream upstream = select();
+            if(upstream == null) {
+                response = createErrorResponse(HttpResponseCode.BAD_GATEWAY);
+            } else {
+                response = forward(request, upstream);
+            }
+            return response;
+        }
+
+        /**
+         * Sends the request to the upstream and waits for the headers of the response, then the body of the
+         * upstream response is streamed into the downstream response.
+         * @param request Downstream request.
+         * @param upstream Selected upstream.
+         * @return Downstream response.
+         */
+        private HttpResponse forward(HttpRequest request, Upstream upstream) {
+            upstream.activeRequests.incrementAndGet();
+            HttpClientConnection connection = HttpConnectionPool.getInstance().acquire(upstream.protocol,
+                    upstream.host, upstream.port, SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_CONNECT_TIMEOUT));
+            if(connection == null) {
+                upstream.activeRequests.decrementAndGet();
+                upstream.onFailure();
+                Log.w(SystemProperties.get(SystemProperties.Net.Http.LOG_TAG), "Upstream connection fail: %s", upstream.url);
+                return createErrorResponse(HttpResponseCode.BAD_GATEWAY);
+            }
+
+            UpstreamBody body = new UpstreamBody(connection);
+            HttpRequest upstreamRequest = createUpstreamRequest(request, upstream);
+            InputStream bodyStream = upstreamRequest.containsHeader(HttpHeader.CONTENT_LENGTH) ||
+                    upstreamRequest.containsHeader(HttpHeader.TRANSFER_ENCODING) ? request.getBodyStream() : null;
+            CompletableFuture<HttpResponse> future = connection.sendAsync(upstreamRequest, bodyStream,
+                    SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_WRITE_TIMEOUT),
+                    SystemProperties.getLong(SystemProperties.Net.Http.DEFAULT_CLIENT_READ_TIMEOUT), body);
+            future.whenComplete((upstreamResponse, throwable) -> {
+                upstream.activeRequests.decrementAndGet();
+                if(body.headers.isDone()) {
+                    HttpResponse headers = body.headers.getNow(null);
+                    if(headers.getResponseCode() >= HttpResponseCode.BAD_GATEWAY &&
+                            headers.getResponseCode() <= HttpResponseCode.GATEWAY_TIMEOUT) {
+                        upstream.onFailure();
+                    } else {
+                        upstream.onSuccess();
+                    }
+                } else {
+                    upstream.onFailure();
+                    body.headers.complete(null);
+                }
+                //If the response is not complete then the downstream response can't be completed.
+                body.complete(upstreamResponse != null && upstreamResponse == body.headers.getNow(null));
+            });
+
+            HttpResponse headers;
+            try {
+                //The future of the headers is completed by the upstream connection, including the errors.
+                headers = body.headers.get();
+            } catch (Exception ex) {
+                headers = null;
+            }
+
+            HttpResponse response;
+            if(headers == null) {
+                response = createErrorResponse(HttpResponseCode.BAD_GATEWAY);
+            } else if(hasBody(request, headers)) {
+                response = createStreamingResponse(headers, body);
+            } else {
+                response = new HttpResponse();
+                copyHeaders(headers, response);
+                response.setBody(new byte[0]);
+                body.close();
+            }
+            return response;
+        }
+
+        /**
+         * Verify if the upstream response has body, the responses of the head requests and the responses
+         * with the codes 1xx, 204 and 304 never have body even if they contain the content length header.
+         * @param request Downstream request.
+         * @param headers Upstream response headers.
+         * @return True if the response has body.
+         */
+        private boolean hasBody(HttpRequest request, HttpResponse headers) {
+            boolean result;
+            HttpHeader contentLength = headers.getHeader(HttpHeader.CONTENT_LENGTH);
+            if(request.getMethod().equals(HttpMethod.HEAD) || !headers.isBodyAllowed()) {
+                result = false;
+            } else if(contentLength != null) {
+                result = Long.parseLong(contentLength.getHeaderValue().trim()) > 0;
+            } else {
+                result = headers.containsHeader(HttpHeader.TRANSFER_ENCODING);
+            }
+            return result;
+        }
+
+        /**
+         * Creates the request for the upstream, the hop-by-hop headers are removed.
+         * @param request Downstream request.
+         * @param upstream Selected upstream.
+         * @return Upstream request.
+         */
+        private HttpRequest createUpstreamRequest(HttpRequest request, Upstream upstream) {
+            HttpRequest result = new HttpRequest(upstream.basePath + request.getPath(), request.getMethod());
+            result.setProtocol(upstream.protocol);
+            result.setHttpVersion(HttpVersion.VERSION_1_1);
+            for(HttpHeader header : request.getHeaders()) {
+                if(!HOP_BY_HOP_HEADERS.contains(header.getHeaderName())) {
+                    result.addHeader(header);
+                }
+            }
+            for(Cookie cookie : request.getCookies()) {
+                result.addCookie(cookie);
+            }
+            HttpHeader transferEncoding = request.getHeader(HttpHeader.TRANSFER_ENCODING);
+            if(transferEncoding != null && transferEncoding.getHeaderValue().equalsIgnoreCase(HttpHeader.CHUNKED)) {
+                result.addHeader(new HttpHeader(HttpHeader.TRANSFER_ENCODING, HttpHeader.CHUNKED));
+            }
+            result.addHeader(new HttpHeader(HttpHeader.HOST, upstream.url.getPort() == -1 ?
+                    upstream.host : upstream.host + ":" + upstream.port));
+            HttpHeader host = request.getHeader(HttpHeader.HOST);
+            if(host != null) {
+                result.addHeader(new HttpHeader(HttpHeader.X_FORWARDED_HOST, host.getHeaderValue()));
+            }
+            return result;
+        }
+
+        /**
+         * Creates the downstream response that reads the body of the upstream response. If the upstream response
+         * has content length then the same length is used, in the otherwise the body is written using chunks.
+         * @param headers Upstream response headers.
+         * @param body Upstream body stream.
+         * @return Downstream response.
+         */
+        private HttpResponse createStreamingResponse(HttpResponse headers, UpstreamBody body) {
+            int bufferSize = SystemProperties.getInteger(SystemProperties.Net.Http.Proxy.STREAMING_CHUNK_SIZE);
+            HttpPipelineResponse response;
+            if(headers.containsHeader(HttpHeader.CONTENT_LENGTH)) {
+                response = new HttpPipelineResponse(bufferSize, bufferSize) {
+                    @Override
+                    protected int readPipeline(StreamingPackage streamingPackage) {
+                        return readBody(body, streamingPackage.getBuffer());
+                    }
+
+                    @Override
+                    protected int wrap(ByteBuffer result, StreamingPackage streamingPackage, int size) {
+                        return size < 0 ? -1 : super.wrap(result, streamingPackage, size);
+                    }
+
+                    @Override
+                    public void onEnd() {
+                        body.close();
+                    }
+                };
+            } else {
+                response = new ChunkedHttpPipelineResponse(bufferSize) {
+                    @Override
+                    protected int readPipeline(StreamingPackage streamingPackage) {
+                        return readBody(body, streamingPackage.getBuffer());
+                    }
+
+                    @Override
+                    public void onEnd() {
+                        body.close();
+                    }
+                };
+            }
+            copyHeaders(headers, response);
+            return response;
+        }
+
+        /**
+         * Reads the next fragment of the upstream body.
+         * @param body Upstream body.
+         * @param buffer Target buffer.
+         * @return Number of read bytes or -1 if the body is complete.
+         */
+        private int readBody(UpstreamBody body, byte[] buffer) {
+            try {
+                return body.read(buffer, 0, buffer.length);
+            } catch (IOException ex) {
+                throw new HCJFRuntimeException("Upstream body interrupted", ex);
+            }
+        }
+
+        /**
+         * Copies the status and the end-to-end headers of the upstream response.
+         * @param source Upstream response.
+         * @param target Downstream response.
+         */
+        private void copyHeaders(HttpResponse source, HttpResponse target) {
+            target.setResponseCode(source.getResponseCode());
+            target.setReasonPhrase(source.getReasonPhrase());
+            for(HttpHeader header : source.getHeaders()) {
+                if(!HOP_BY_HOP_HEADERS.contains(header.getHeaderName()) && !target.containsHeader(header.getHeaderName())) {
+                    target.addHeader(header);
+                }
+            }
+            for(Cookie cookie : source.getCookies()) {
+                target.addCookie(cookie);
+            }
+        }
+
+        /**
+         * Creates the response for the requests that can't be forwarded.
+         * @param responseCode Response code.
+         * @return Http response instance.
+         */
+        private HttpResponse createErrorResponse(Integer responseCode) {
+            HttpResponse response = new HttpResponse();
+            response.setResponseCode(responseCode);
+            response.setBody(new byte[0]);
+            return response;
+        }
+    }
+}
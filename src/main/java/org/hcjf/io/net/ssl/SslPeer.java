@@ -1,9 +1,10 @@
 package org.hcjf.io.net.ssl;
 
 import org.hcjf.errors.HCJFRuntimeException;
+import org.hcjf.io.net.ByteBufferPool;
+import org.hcjf.io.net.PooledByteBuffer;
 import org.hcjf.log.Log;
-import org.hcjf.service.Service;
-import org.hcjf.service.ServiceSession;
+import org.hcjf.properties.SystemProperties;
 
 import javax.net.ssl.*;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
@@ -11,197 +12,470 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Base class of the ssl peers. Each channel only keeps the ssl engine and the bytes of an incomplete record,
+ * the buffers to wrap and unwrap are taken from the buffer pool only while the operation is in flight.
+ * The handshake is non-blocking and it's driven by the reads of the channel, the delegated tasks of the
+ * engines are executed by a bounded executor shared by all the peers. The writes don't block, the records
+ * that the socket doesn't accept are kept by the channel until the channel is writable again.
+ */
 public abstract class SslPeer {
 
-    public abstract ByteBuffer getMyAppData(SocketChannel socketChannel);
+    private static final String SSL_LOG_TAG = "SSL";
+    private static final int MAX_RECORDS_BY_WRAP = 4;
+    private static ThreadPoolExecutor engineExecutor;
 
-    public abstract void setMyAppData(SocketChannel socketChannel, ByteBuffer myAppData);
+    private final Map<SocketChannel, SslChannel> sslChannels;
 
-    public abstract ByteBuffer getMyNetData(SocketChannel socketChannel);
-
-    public abstract void setMyNetData(SocketChannel socketChannel, ByteBuffer myNetData);
-
-    public abstract ByteBuffer getPeerAppData(SocketChannel socketChannel);
-
-    public abstract void setPeerAppData(SocketChannel socketChannel, ByteBuffer peerAppData);
-
-    public abstract ByteBuffer getPeerNetData(SocketChannel socketChannel);
-
-    public abstract void setPeerNetData(SocketChannel socketChannel, ByteBuffer peerNetData);
+    public SslPeer() {
+        this.sslChannels = new ConcurrentHashMap<>();
+    }
 
-    public abstract int read(SocketChannel socketChannel, ByteBuffer buffer) throws Exception;
+    /**
+     * Creates a new ssl engine for a channel.
+     * @return Ssl engine instance.
+     */
+    protected abstract SSLEngine createSslEngine();
 
-    public abstract void write(SocketChannel socketChannel, ByteBuffer buffer) throws Exception;
+    /**
+     * Returns the engine of the channel.
+     * @param socketChannel Socket channel.
+     * @return Ssl engine or null if the channel was not initialized.
+     */
+    protected SSLEngine getSslEngine(SocketChannel socketChannel) {
+        SslChannel sslChannel = sslChannels.get(socketChannel);
+        return sslChannel == null ? null : sslChannel.engine;
+    }
 
-    protected abstract SSLEngine getSslEngine(SocketChannel socketChannel);
+    /**
+     * Returns the executor for the delegated tasks of the engines, the size of the pool is limited by the
+     * property 'hcjf.net.ssl.max.io.thread.pool.size' in order to limit the cpu used by the handshakes.
+     * @return Executor instance.
+     */
+    private static synchronized ThreadPoolExecutor getEngineExecutor() {
+        if(engineExecutor == null) {
+            int poolSize = SystemProperties.getInteger(SystemProperties.Net.SSL_MAX_IO_THREAD_POOL_SIZE);
+            String threadName = SystemProperties.get(SystemProperties.Net.Ssl.ENGINE_THREAD_NAME);
+            AtomicInteger threadCounter = new AtomicInteger();
+            engineExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, threadName + "-" + threadCounter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            engineExecutor.allowCoreThreadTimeOut(true);
+        }
+        return engineExecutor;
+    }
 
+    /**
+     * Initialize the ssl engine of the channel and starts the handshake.
+     * @param socketChannel Socket channel.
+     * @return Returns true if the handshake was started.
+     */
     public final boolean init(SocketChannel socketChannel) {
+        return init(socketChannel, () -> {});
+    }
+
+    /**
+     * Initialize the ssl engine of the channel and starts the handshake. The handshake continues with each
+     * read of the channel, if the engine is in client mode then this method waits until the handshake ends.
+     * @param socketChannel Socket channel.
+     * @param readyCallback This callback is called when the channel must be read again without new data
+     *                      into the socket, for example when a delegated task ends.
+     * @return Returns true if the handshake was started or finished for the client mode.
+     */
+    public final boolean init(SocketChannel socketChannel, Runnable readyCallback) {
         try {
-            getSslEngine(socketChannel).beginHandshake();
-            return doHandshake(socketChannel, getSslEngine(socketChannel));
+            SslChannel sslChannel = new SslChannel(createSslEngine(), readyCallback);
+            sslChannels.put(socketChannel, sslChannel);
+            sslChannel.engine.beginHandshake();
+            boolean result = process(socketChannel, sslChannel, null, false) >= 0;
+            if(result && sslChannel.engine.getUseClientMode()) {
+                result = awaitHandshake(socketChannel, sslChannel,
+                        SystemProperties.getLong(SystemProperties.Net.Ssl.HANDSHAKE_TIMEOUT));
+            }
+            return result;
         } catch (Exception ex) {
             throw new HCJFRuntimeException("Ssl peer init fail", ex);
         }
     }
 
     /**
-     *
-     * @param socketChannel
-     * @param engine
-     * @return
-     * @throws IOException
+     * Waits until the end of the handshake, this method reads the channel using a temporal selector because the
+     * channel is not registered yet for reading.
+     * @param socketChannel Socket channel.
+     * @param sslChannel Ssl information of the channel.
+     * @param timeout Maximum time to wait in milliseconds.
+     * @return Returns true if the handshake ends successfully.
+     * @throws IOException IO Exception.
+     * @throws InterruptedException If the thread is interrupted.
      */
-    protected boolean doHandshake(SocketChannel socketChannel, SSLEngine engine) throws IOException {
-
-        Log.i("SSL", "About to do handshake...");
-
-        SSLEngineResult result;
-        HandshakeStatus handshakeStatus;
-        int appBufferSize = engine.getSession().getApplicationBufferSize();
-        ByteBuffer myAppData = ByteBuffer.allocate(appBufferSize);
-        ByteBuffer peerAppData = ByteBuffer.allocate(appBufferSize);
-        getMyNetData(socketChannel).clear();
-        getPeerNetData(socketChannel).clear();
-
-        handshakeStatus = engine.getHandshakeStatus();
-        while (handshakeStatus != SSLEngineResult.HandshakeStatus.FINISHED && handshakeStatus != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING) {
-            switch (handshakeStatus) {
-                case NEED_UNWRAP:
-                    if (socketChannel.read(getPeerNetData(socketChannel)) < 0) {
-                        if (engine.isInboundDone() && engine.isOutboundDone()) {
-                            return false;
-                        }
-                        try {
-                            engine.closeInbound();
-                        } catch (SSLException e) {
-                            Log.i("SSL", "This engine was forced to close inbound, without having received the proper SSL/TLS close notification message from the peer, due to end of stream.");
+    private boolean awaitHandshake(SocketChannel socketChannel, SslChannel sslChannel, long timeout)
+            throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        try (Selector selector = Selector.open()) {
+            SelectionKey key = socketChannel.register(selector, SelectionKey.OP_READ);
+            sslChannel.awaiting = true;
+            try {
+                while (sslChannel.isHandshaking()) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new SSLException("Handshake timeout");
+                    }
+                    boolean taskPending;
+                    synchronized (sslChannel) {
+                        taskPending = sslChannel.taskPending;
+                        if (taskPending) {
+                            sslChannel.wait(remaining);
                         }
-                        engine.closeOutbound();
-                        handshakeStatus = engine.getHandshakeStatus();
-                        break;
                     }
-                    getPeerNetData(socketChannel).flip();
-                    try {
-                        result = engine.unwrap(getPeerNetData(socketChannel), peerAppData);
-                        getPeerNetData(socketChannel).compact();
-                        handshakeStatus = result.getHandshakeStatus();
-                    } catch (SSLException sslException) {
-                        Log.i("SSL", "A problem was encountered while processing the data that caused the SSLEngine to abort. Will try to properly close connection...");
-                        engine.closeOutbound();
-                        handshakeStatus = engine.getHandshakeStatus();
-                        break;
+                    //The socket is selected only if the engine can't continue with the bytes already received.
+                    if (!taskPending && sslChannel.underflow && selector.select(remaining) > 0) {
+                        selector.selectedKeys().clear();
+                    }
+                    if (process(socketChannel, sslChannel, null, true) < 0) {
+                        return false;
                     }
-                    switch (result.getStatus()) {
-                        case OK:
-                            break;
-                        case BUFFER_OVERFLOW:
-                            peerAppData = enlargeApplicationBuffer(engine, peerAppData);
-                            break;
-                        case BUFFER_UNDERFLOW:
-                            setPeerNetData(socketChannel, handleBufferUnderflow(engine, getPeerNetData(socketChannel)));
-                            break;
-                        case CLOSED:
-                            if (engine.isOutboundDone()) {
-                                return false;
-                            } else {
-                                engine.closeOutbound();
-                                handshakeStatus = engine.getHandshakeStatus();
+                }
+            } finally {
+                sslChannel.awaiting = false;
+                key.cancel();
+            }
+        }
+        if(sslChannel.hasInbound()) {
+            //The bytes received with the last handshake record must be processed by the next read.
+            sslChannel.readyCallback.run();
+        }
+        return true;
+    }
+
+    /**
+     * Reads the available bytes of the channel and unwraps all the records received into the buffer.
+     * @param socketChannel Socket channel.
+     * @param buffer Buffer to put the application data.
+     * @return Number of bytes of application data or -1 if the channel was closed.
+     * @throws IOException IO Exception.
+     */
+    public int read(SocketChannel socketChannel, ByteBuffer buffer) throws IOException {
+        SslChannel sslChannel = sslChannels.get(socketChannel);
+        if(sslChannel == null) {
+            throw new SSLException("Ssl channel not initialized");
+        }
+        return process(socketChannel, sslChannel, buffer, true);
+    }
+
+    /**
+     * Process the inbound data of the channel, this method continues the handshake if it's necessary and unwraps
+     * all the complete records received. The bytes of the incomplete records are kept for the next invocation.
+     * @param socketChannel Socket channel.
+     * @param sslChannel Ssl information of the channel.
+     * @param buffer Buffer to put the application data, if it's null then the process ends with the handshake.
+     * @param readSocket Indicates if the socket must be read.
+     * @return Number of bytes of application data or -1 if the channel was closed.
+     * @throws IOException IO Exception.
+     */
+    private int process(SocketChannel socketChannel, SslChannel sslChannel, ByteBuffer buffer, boolean readSocket) throws IOException {
+        int result = 0;
+        synchronized (sslChannel) {
+            SSLEngine engine = sslChannel.engine;
+            if(sslChannel.taskPending) {
+                return 0;
+            }
+            if(engine.isInboundDone()) {
+                return -1;
+            }
+
+            int packetBufferSize = engine.getSession().getPacketBufferSize();
+            int applicationBufferSize = engine.getSession().getApplicationBufferSize();
+            PooledByteBuffer inbound = sslChannel.takeInbound(packetBufferSize);
+            PooledByteBuffer handshakeBuffer = null;
+            try {
+                ByteBuffer netData = inbound.getBuffer();
+                boolean endOfStream = false;
+                if(readSocket && netData.hasRemaining()) {
+                    endOfStream = socketChannel.read(netData) < 0;
+                }
+                netData.flip();
+
+                sslChannel.underflow = false;
+                boolean stop = false;
+                while (!stop) {
+                    HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
+                    if (handshakeStatus == HandshakeStatus.NEED_TASK) {
+                        runDelegatedTasks(sslChannel);
+                        stop = true;
+                    } else if (handshakeStatus == HandshakeStatus.NEED_WRAP) {
+                        wrap(socketChannel, sslChannel, ByteBuffer.allocate(0), true);
+                        if (engine.isOutboundDone()) {
+                            if (result == 0) {
+                                result = -1;
+                            }
+                            stop = true;
+                        }
+                    } else if ((buffer == null && !sslChannel.isHandshaking()) || !netData.hasRemaining()) {
+                        sslChannel.underflow = !netData.hasRemaining();
+                        stop = true;
+                    } else {
+                        ByteBuffer appData = buffer;
+                        if (appData == null || appData.remaining() < applicationBufferSize) {
+                            if (appData != null && !sslChannel.isHandshaking()) {
+                                //The buffer is full, the rest of the records are unwrapped in the next read.
+                                sslChannel.readyCallback.run();
                                 break;
                             }
-                        default:
-                            throw new IllegalStateException("Invalid SSL status: " + result.getStatus());
-                    }
-                    break;
-                case NEED_WRAP:
-                    getMyNetData(socketChannel).clear();
-                    try {
-                        result = engine.wrap(myAppData, getMyNetData(socketChannel));
-                        handshakeStatus = result.getHandshakeStatus();
-                    } catch (SSLException ex) {
-                        Log.e("SSL", "A problem was encountered while processing the data that caused the SSLEngine to abort. Will try to properly close connection...", ex);
-                        engine.closeOutbound();
-                        handshakeStatus = engine.getHandshakeStatus();
-                        break;
-                    }
-                    switch (result.getStatus()) {
-                        case OK :
-                            getMyNetData(socketChannel).flip();
-                            while (getMyNetData(socketChannel).hasRemaining()) {
-                                socketChannel.write(getMyNetData(socketChannel));
+                            if (handshakeBuffer == null) {
+                                handshakeBuffer = ByteBufferPool.getInstance().acquire(applicationBufferSize);
                             }
-                            break;
-                        case BUFFER_OVERFLOW:
-                            setMyNetData(socketChannel, enlargePacketBuffer(engine, getMyNetData(socketChannel)));
-                            break;
-                        case BUFFER_UNDERFLOW:
-                            throw new SSLException("Buffer underflow occurred after a wrap. I don't think we should ever get here.");
-                        case CLOSED:
-                            try {
-                                getMyNetData(socketChannel).flip();
-                                while (getMyNetData(socketChannel).hasRemaining()) {
-                                    socketChannel.write(getMyNetData(socketChannel));
+                            appData = handshakeBuffer.getBuffer();
+                            appData.clear();
+                        }
+                        int position = appData.position();
+                        SSLEngineResult engineResult = engine.unwrap(netData, appData);
+                        if (appData == buffer) {
+                            result += appData.position() - position;
+                        } else if (appData.position() > position) {
+                            Log.w(SSL_LOG_TAG, "Application data discarded during the handshake: %d bytes",
+                                    appData.position() - position);
+                        }
+                        switch (engineResult.getStatus()) {
+                            case OK: {
+                                if (engineResult.bytesConsumed() == 0 && engineResult.bytesProduced() == 0 &&
+                                        engineResult.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP) {
+                                    sslChannel.underflow = true;
+                                    stop = true;
                                 }
-                                getPeerNetData(socketChannel).clear();
-                            } catch (Exception e) {
-                                Log.w("SSL", "Failed to send server's CLOSE message due to socket channel's failure.");
-                                handshakeStatus = engine.getHandshakeStatus();
+                                break;
                             }
-                            break;
-                        default:
-                            throw new IllegalStateException("Invalid SSL status: " + result.getStatus());
-                    }
-                    break;
-                case NEED_TASK:
-                    Runnable task;
-                    while ((task = engine.getDelegatedTask()) != null) {
-                        Service.run(task, ServiceSession.getSystemSession());
+                            case BUFFER_UNDERFLOW: {
+                                //Incomplete record, the bytes are kept until the next read.
+                                sslChannel.underflow = true;
+                                stop = true;
+                                break;
+                            }
+                            case BUFFER_OVERFLOW: {
+                                sslChannel.readyCallback.run();
+                                stop = true;
+                                break;
+                            }
+                            case CLOSED: {
+                                if (engine.getHandshakeStatus() != HandshakeStatus.NEED_WRAP) {
+                                    stop = true;
+                                }
+                                if (result == 0) {
+                                    result = -1;
+                                }
+                                break;
+                            }
+                        }
                     }
-                    handshakeStatus = engine.getHandshakeStatus();
-                    break;
-                case FINISHED:
-                case NOT_HANDSHAKING:
-                    Log.w("SSL", "Not handshaking");
-                    break;
-                default:
-                    throw new IllegalStateException("Invalid SSL status: " + handshakeStatus);
+                }
+
+                sslChannel.keepInbound(netData);
+                if(endOfStream && result == 0) {
+                    result = -1;
+                }
+            } finally {
+                inbound.release();
+                if(handshakeBuffer != null) {
+                    handshakeBuffer.release();
+                }
             }
         }
-
-        Log.i("SSL", "Return handshake");
-        return true;
-
+        return result;
     }
 
-    protected ByteBuffer enlargePacketBuffer(SSLEngine engine, ByteBuffer buffer) {
-        return enlargeBuffer(buffer, engine.getSession().getPacketBufferSize());
+    /**
+     * Executes the delegated tasks of the engine using the shared executor, when the tasks end the ready callback
+     * of the channel is called in order to continue with the handshake, unless some thread is awaiting the
+     * handshake, in this case the awaiting thread is notified.
+     * @param sslChannel Ssl information of the channel.
+     */
+    private void runDelegatedTasks(SslChannel sslChannel) {
+        List<Runnable> tasks = new ArrayList<>();
+        Runnable task;
+        while ((task = sslChannel.engine.getDelegatedTask()) != null) {
+            tasks.add(task);
+        }
+        sslChannel.taskPending = true;
+        getEngineExecutor().execute(() -> {
+            try {
+                for (Runnable delegatedTask : tasks) {
+                    delegatedTask.run();
+                }
+            } catch (Throwable throwable) {
+                Log.w(SSL_LOG_TAG, "Ssl delegated task fail", throwable);
+            } finally {
+                synchronized (sslChannel) {
+                    sslChannel.taskPending = false;
+                    sslChannel.notifyAll();
+                }
+                if(!sslChannel.awaiting) {
+                    sslChannel.readyCallback.run();
+                }
+            }
+        });
     }
 
-    protected ByteBuffer enlargeApplicationBuffer(SSLEngine engine, ByteBuffer buffer) {
-        return enlargeBuffer(buffer, engine.getSession().getApplicationBufferSize());
+    /**
+     * Wraps the buffer and writes the records over the channel without blocking. Several records are wrapped
+     * into the same pooled buffer before to write the channel. If the socket buffer is full then the records
+     * already wrapped are kept by the channel and the buffer keeps the bytes that were not wrapped, in this case
+     * the method must be called again with the same buffer when the channel is writable.
+     * @param socketChannel Socket channel.
+     * @param message Application data.
+     * @return Returns true if all the message was written and false if the socket buffer is full.
+     * @throws IOException IO Exception.
+     */
+    public boolean write(SocketChannel socketChannel, ByteBuffer message) throws IOException {
+        SslChannel sslChannel = sslChannels.get(socketChannel);
+        if(sslChannel == null) {
+            throw new SSLException("Ssl channel not initialized");
+        }
+        return wrap(socketChannel, sslChannel, message, false);
     }
 
-    protected ByteBuffer enlargeBuffer(ByteBuffer buffer, int sessionProposedCapacity) {
-        if (sessionProposedCapacity > buffer.capacity()) {
-            buffer = ByteBuffer.allocate(10000);
-        } else {
-            buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+    /**
+     * Wraps the message and writes the records over the channel, if the message is empty then only the
+     * handshake records are wrapped. The records that the socket doesn't accept are kept by the channel and
+     * they are written before any other record.
+     * @param socketChannel Socket channel.
+     * @param sslChannel Ssl information of the channel.
+     * @param message Application data.
+     * @param await If it's true then the method waits until the channel is writable instead of keeping the records,
+     *              only the handshake uses this option because the remote peer is waiting for the records.
+     * @return Returns true if all the message was written and false if the socket buffer is full.
+     * @throws IOException IO Exception.
+     */
+    private boolean wrap(SocketChannel socketChannel, SslChannel sslChannel, ByteBuffer message, boolean await) throws IOException {
+        SSLEngine engine = sslChannel.engine;
+        synchronized (sslChannel.wrapMonitor) {
+            if(!flushOutbound(socketChannel, sslChannel, await)) {
+                return false;
+            }
+            int packetBufferSize = engine.getSession().getPacketBufferSize();
+            int records = Math.min(MAX_RECORDS_BY_WRAP,
+                    message.remaining() / engine.getSession().getApplicationBufferSize() + 1);
+            PooledByteBuffer outbound = ByteBufferPool.getInstance().acquire(packetBufferSize * records);
+            try {
+                ByteBuffer netData = outbound.getBuffer();
+                boolean done = false;
+                while (!done) {
+                    netData.clear();
+                    while (!done && netData.remaining() >= packetBufferSize) {
+                        SSLEngineResult engineResult = engine.wrap(message, netData);
+                        switch (engineResult.getStatus()) {
+                            case OK: {
+                                done = !message.hasRemaining() &&
+                                        engineResult.getHandshakeStatus() != HandshakeStatus.NEED_WRAP;
+                                break;
+                            }
+                            case CLOSED: {
+                                done = true;
+                                break;
+                            }
+                            default: {
+                                throw new SSLException("Invalid SSL status: " + engineResult.getStatus());
+                            }
+                        }
+                    }
+                    netData.flip();
+                    socketChannel.write(netData);
+                    if (netData.hasRemaining()) {
+                        sslChannel.keepOutbound(netData);
+                        if (!flushOutbound(socketChannel, sslChannel, await)) {
+                            return false;
+                        }
+                    }
+                    if (engine.isOutboundDone() && message.hasRemaining()) {
+                        throw new SSLException("Ssl engine closed");
+                    }
+                }
+            } finally {
+                outbound.release();
+            }
         }
-        return buffer;
+        return true;
     }
 
-    protected ByteBuffer handleBufferUnderflow(SSLEngine engine, ByteBuffer buffer) {
-        ByteBuffer replaceBuffer = enlargePacketBuffer(engine, buffer);
-        buffer.flip();
-        replaceBuffer.put(buffer);
-        return replaceBuffer;
+    /**
+     * Writes the records that the socket didn't accept in the previous wraps.
+     * @param socketChannel Socket channel.
+     * @param sslChannel Ssl information of the channel.
+     * @param await If it's true then the method waits until all the records are written, using a temporal selector
+     *              and the handshake timeout.
+     * @return Returns true if there are not records pending.
+     * @throws IOException IO Exception.
+     */
+    private boolean flushOutbound(SocketChannel socketChannel, SslChannel sslChannel, boolean await) throws IOException {
+        if(sslChannel.outbound == null) {
+            return true;
+        }
+        ByteBuffer pending = sslChannel.outbound.getBuffer();
+        socketChannel.write(pending);
+        if(pending.hasRemaining() && await) {
+            long deadline = System.currentTimeMillis() + SystemProperties.getLong(SystemProperties.Net.Ssl.HANDSHAKE_TIMEOUT);
+            try (Selector selector = Selector.open()) {
+                SelectionKey key = socketChannel.register(selector, SelectionKey.OP_WRITE);
+                try {
+                    while (pending.hasRemaining()) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            throw new SSLException("Handshake write timeout");
+                        }
+                        if (selector.select(remaining) > 0) {
+                            selector.selectedKeys().clear();
+                        }
+                        socketChannel.write(pending);
+                    }
+                } finally {
+                    key.cancel();
+                }
+            }
+        }
+        boolean result = !pending.hasRemaining();
+        if(result) {
+            sslChannel.keepOutbound(pending);
+        }
+        return result;
     }
 
+    /**
+     * Sends the close notification to the remote peer and releases all the resources of the channel.
+     * @param socketChannel Socket channel.
+     * @throws IOException IO Exception.
+     */
     public void close(SocketChannel socketChannel) throws IOException  {
-        getSslEngine(socketChannel).closeOutbound();
-        doHandshake(socketChannel, getSslEngine(socketChannel));
+        SslChannel sslChannel = sslChannels.remove(socketChannel);
+        if(sslChannel != null) {
+            try {
+                sslChannel.engine.closeOutbound();
+                if (socketChannel.isOpen()) {
+                    //The close notification is sent only if the socket accepts it without blocking.
+                    wrap(socketChannel, sslChannel, ByteBuffer.allocate(0), false);
+                }
+            } finally {
+                synchronized (sslChannel) {
+                    sslChannel.keepInbound(ByteBuffer.allocate(0));
+                }
+                synchronized (sslChannel.wrapMonitor) {
+                    sslChannel.keepOutbound(ByteBuffer.allocate(0));
+                }
+            }
+        }
     }
 
     protected KeyManager[] createKeyManagers(String filepath, String keystorePassword, String keyPassword) throws Exception {
@@ -224,4 +498,94 @@ public abstract class SslPeer {
         return trustFactory.getTrustManagers();
     }
 
+    /**
+     * Ssl information of each channel.
+     */
+    private static final class SslChannel {
+
+        private final SSLEngine engine;
+        private final Runnable readyCallback;
+        private final Object wrapMonitor;
+        private PooledByteBuffer inbound;
+        private PooledByteBuffer outbound;
+        private volatile boolean taskPending;
+        private volatile boolean awaiting;
+        private boolean underflow;
+
+        private SslChannel(SSLEngine engine, Runnable readyCallback) {
+            this.engine = engine;
+            this.readyCallback = readyCallback;
+            this.wrapMonitor = new Object();
+        }
+
+        /**
+         * Returns true if the handshake of the engine is not finished.
+         * @return Handshaking flag.
+         */
+        private boolean isHandshaking() {
+            HandshakeStatus handshakeStatus = engine.getHandshakeStatus();
+            return handshakeStatus != HandshakeStatus.NOT_HANDSHAKING && handshakeStatus != HandshakeStatus.FINISHED;
+        }
+
+        /**
+         * Returns true if the channel has bytes of an incomplete record.
+         * @return Inbound flag.
+         */
+        private synchronized boolean hasInbound() {
+            return inbound != null;
+        }
+
+        /**
+         * Returns a pooled buffer ready to read the socket, the buffer contains the bytes of the incomplete record
+         * of the previous read.
+         * @param packetBufferSize Size of a ssl packet.
+         * @return Pooled buffer.
+         */
+        private PooledByteBuffer takeInbound(int packetBufferSize) {
+            PooledByteBuffer result = ByteBufferPool.getInstance().acquire(packetBufferSize);
+            if(inbound != null) {
+                ByteBuffer previous = inbound.getBuffer();
+                if(previous.remaining() > result.getBuffer().capacity()) {
+                    result.release();
+                    result = ByteBufferPool.getInstance().acquire(previous.remaining() + packetBufferSize);
+                }
+                result.getBuffer().put(previous);
+                inbound.release();
+                inbound = null;
+            }
+            return result;
+        }
+
+        /**
+         * Keeps the remaining bytes of the buffer into a pooled buffer with the size of the remaining bytes.
+         * @param netData Buffer with the bytes that was not unwrapped.
+         */
+        private void keepInbound(ByteBuffer netData) {
+            if(inbound != null) {
+                inbound.release();
+                inbound = null;
+            }
+            if(netData.hasRemaining()) {
+                inbound = ByteBufferPool.getInstance().acquire(netData.remaining());
+                inbound.getBuffer().put(netData).flip();
+            }
+        }
+
+        /**
+         * Keeps the records that the socket didn't accept into a pooled buffer with the size of the remaining bytes,
+         * if the buffer has not remaining bytes then the previous records are released.
+         * @param netData Buffer with the records that were not written.
+         */
+        private void keepOutbound(ByteBuffer netData) {
+            PooledByteBuffer previous = outbound;
+            outbound = null;
+            if(netData.hasRemaining()) {
+                outbound = ByteBufferPool.getInstance().acquire(netData.remaining());
+                outbound.getBuffer().put(netData).flip();
+            }
+            if(previous != null) {
+                previous.release();
+            }
+        }
+    }
 }
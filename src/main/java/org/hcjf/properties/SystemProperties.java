@@ -165,14 +165,34 @@ public final class SystemProperties extends Properties {
         public static final String CONNECTION_TIMEOUT_AVAILABLE = "hcjf.net.connection.timeout.available";
         public static final String CONNECTION_TIMEOUT = "hcjf.net.connection.timeout";
         public static final String WRITE_TIMEOUT = "hcjf.net.write.timeout";
+        public static final String WRITE_HIGH_WATERMARK = "hcjf.net.write.high.watermark";
+        public static final String WRITE_LOW_WATERMARK = "hcjf.net.write.low.watermark";
+        public static final String WRITE_BACKPRESSURE_TIMEOUT = "hcjf.net.write.backpressure.timeout";
+        public static final String IDLE_TIMEOUT = "hcjf.net.idle.timeout";
+        public static final String READ_IDLE_TIMEOUT = "hcjf.net.read.idle.timeout";
+        public static final String PENDING_WRITE_TIMEOUT = "hcjf.net.pending.write.timeout";
+        public static final String TIMING_WHEEL_TICK = "hcjf.net.timing.wheel.tick";
+        public static final String TIMING_WHEEL_SIZE = "hcjf.net.timing.wheel.size";
         public static final String IO_UDP_LRU_SESSIONS_SIZE = "hcjf.net.io.udp.lru.sessions.size";
         public static final String IO_UDP_LRU_ADDRESSES_SIZE = "hcjf.net.io.udp.lru.addresses.size";
+        public static final String IO_UDP_RECEIVE_BATCH_SIZE = "hcjf.net.io.udp.receive.batch.size";
+        public static final String IO_UDP_SESSIONS_SHARDS = "hcjf.net.io.udp.sessions.shards";
+        public static final String IO_UDP_SESSION_TIMEOUT = "hcjf.net.io.udp.session.timeout";
+        public static final String IO_UDP_CONNECTED_PEERS_ENABLED = "hcjf.net.io.udp.connected.peers.enabled";
+        public static final String IO_UDP_CONNECTED_PEER_THRESHOLD = "hcjf.net.io.udp.connected.peer.threshold";
         public static final String IO_QUEUE_SIZE = "hcjf.net.io.queue.size";
+        public static final String IO_GATHERING_WRITE_MAX_PACKAGES = "hcjf.net.io.gathering.write.max.packages";
         public static final String IO_THREAD_POOL_KEEP_ALIVE_TIME = "hcjf.net.io.thread.pool.keep.alive.time";
         public static final String IO_THREAD_POOL_NAME = "hcjf.net.io.thread.pool.name";
         public static final String DEFAULT_INPUT_BUFFER_SIZE = "hcjf.net.default.input.buffer.size";
         public static final String DEFAULT_OUTPUT_BUFFER_SIZE = "hcjf.net.default.output.buffer.size";
         public static final String IO_THREAD_DIRECT_ALLOCATE_MEMORY = "hcjf.net.io.thread.direct.allocate.memory";
+        public static final String BUFFER_POOL_MIN_SIZE = "hcjf.net.buffer.pool.min.size";
+        public static final String BUFFER_POOL_MAX_SIZE = "hcjf.net.buffer.pool.max.size";
+        public static final String BUFFER_POOL_THREAD_CACHE_SIZE = "hcjf.net.buffer.pool.thread.cache.size";
+        public static final String BUFFER_POOL_SHARED_SIZE = "hcjf.net.buffer.pool.shared.size";
+        public static final String BUFFER_POOL_DIRECT_ALLOCATE_MEMORY = "hcjf.net.buffer.pool.direct.allocate.memory";
+        public static final String BUFFER_POOL_LEAK_DETECTION = "hcjf.net.buffer.pool.leak.detection";
         public static final String SSL_MAX_IO_THREAD_POOL_SIZE = "hcjf.net.ssl.max.io.thread.pool.size";
         public static final String PORT_PROVIDER_TIME_WINDOWS_SIZE = "hcjf.net.port.provider.time.windows.size";
         public static final String PORT_PROBE_CONNECTION_TIMEOUT = "hcjf.net.port.probe.connection.timeout";
@@ -183,6 +203,7 @@ public final class SystemProperties extends Properties {
         public static final String NIO_SELECTOR_HEALTH_CHECKER_DANGEROUS_THRESHOLD = "hcjf.net.nio.selector.health.checker.dangerous.threshold";
         public static final String NIO_SELECTOR_HEALTH_CHECKER_DANGEROUS_REPEATS = "hcjf.net.nio.selector.health.checker.dangerous.repeats";
         public static final String NIO_SELECTOR_HEALTH_CHECKER_DANGEROUS_ACTION = "hcjf.net.nio.selector.health.checker.dangerous.action";
+        public static final String NIO_SELECTOR_WORKERS = "hcjf.net.nio.selector.workers";
 
         public static final class Broadcast {
             public static final String SERVICE_NAME = "hcjf.net.broadcast.service.name";
@@ -226,6 +247,9 @@ public final class SystemProperties extends Properties {
             public static final String DEFAULT_KEYSTORE_FILE_PATH = "hcjf.net.ssl.default.keystore.file.path";
             public static final String DEFAULT_TRUSTED_CERTS_FILE_PATH = "hcjf.net.ssl.default.trusted.certs.file.path";
             public static final String DEFAULT_KEY_TYPE = "hcjf.net.ssl.default.key.type";
+            public static final String HANDSHAKE_TIMEOUT = "hcjf.net.ssl.handshake.timeout";
+            public static final String SESSION_CACHE_SIZE = "hcjf.net.ssl.session.cache.size";
+            public static final String SESSION_TIMEOUT = "hcjf.net.ssl.session.timeout";
 
         }
 
@@ -261,6 +285,18 @@ public final class SystemProperties extends Properties {
             public static final String SERVER_IO_WORKERS = "hcjf.net.http.server.io.workers";
             public static final String HOST_ACCESS_CONTROL_REGEX_START_CHAR = "hcjf.net.http.host.access.control.regex.start.char";
             public static final String CLIENT_RESPONSE_HANDLER_QUEUE_SIZE = "hcjf.net.http.client.response.handler.queue.size";
+            public static final String PIPELINE_MAX_DEPTH = "hcjf.net.http.pipeline.max.depth";
+            public static final String CONTEXT_ROUTER_CACHE_SIZE = "hcjf.net.http.context.router.cache.size";
+            public static final String MULTIPART_STREAMING_ENABLED = "hcjf.net.http.multipart.streaming.enabled";
+            public static final String MULTIPART_MEMORY_THRESHOLD = "hcjf.net.http.multipart.memory.threshold";
+            public static final String MULTIPART_MAX_SIZE = "hcjf.net.http.multipart.max.size";
+            public static final String MULTIPART_TEMP_FOLDER = "hcjf.net.http.multipart.temp.folder";
+            public static final String STREAMING_BODY_BUFFER_SIZE = "hcjf.net.http.streaming.body.buffer.size";
+            public static final String STREAMING_BODY_READ_TIMEOUT = "hcjf.net.http.streaming.body.read.timeout";
+            public static final String CLIENT_POOL_ENABLED = "hcjf.net.http.client.pool.enabled";
+            public static final String CLIENT_POOL_MAX_CONNECTIONS_PER_HOST = "hcjf.net.http.client.pool.max.connections.per.host";
+            public static final String CLIENT_POOL_IDLE_TIMEOUT = "hcjf.net.http.client.pool.idle.timeout";
+            public static final String CLIENT_POOL_MAX_PENDING_REQUESTS_PER_HOST = "hcjf.net.http.client.pool.max.pending.requests.per.host";
 
             public static final class Http2 {
                 public static final String HEADER_TABLE_SIZE = "hcjf.net.http.http2.header.table.size";
@@ -270,6 +306,8 @@ public final class SystemProperties extends Properties {
                 public static final String MAX_FRAME_SIZE = "hcjf.net.http.http2.max.frame.size";
                 public static final String MAX_HEADER_LIST_SIZE = "hcjf.net.http.http2.max.header.list.size";
                 public static final String STREAM_FRAMES_QUEUE_MAX_SIZE = "hcjf.net.http.http2.stream.frames.queue.max.size";
+                public static final String ENABLED = "hcjf.net.http.http2.enabled";
+                public static final String WRITE_TIMEOUT = "hcjf.net.http.http2.write.timeout";
             }
 
             public static final class Folder {
@@ -283,6 +321,37 @@ public final class SystemProperties extends Properties {
                 public static final String ZIP_TEMP_PREFIX = "hcjf.net.http.folder.zip.temp.prefix";
                 public static final String JAR_CONTAINER = "hcjf.net.http.folder.jar.container";
                 public static final String JAR_TEMP_PREFIX = "hcjf.net.http.folder.jar.temp.prefix";
+                public static final String FILE_REGION_MIN_SIZE = "hcjf.net.http.folder.file.region.min.size";
+                public static final String CACHE_ENABLED = "hcjf.net.http.folder.cache.enabled";
+                public static final String CACHE_MAX_SIZE = "hcjf.net.http.folder.cache.max.size";
+                public static final String MAX_RANGES = "hcjf.net.http.folder.max.ranges";
+                public static final String RANGE_BUFFER_SIZE = "hcjf.net.http.folder.range.buffer.size";
+            }
+
+            public static final class Proxy {
+                public static final String STREAMING_BUFFER_SIZE = "hcjf.net.http.proxy.streaming.buffer.size";
+                public static final String STREAMING_CHUNK_SIZE = "hcjf.net.http.proxy.streaming.chunk.size";
+                public static final String HEALTH_MAX_FAILURES = "hcjf.net.http.proxy.health.max.failures";
+                public static final String HEALTH_EJECTION_TIME = "hcjf.net.http.proxy.health.ejection.time";
+            }
+
+            public static final class Compression {
+                public static final String ENABLED = "hcjf.net.http.compression.enabled";
+                public static final String ENCODINGS = "hcjf.net.http.compression.encodings";
+                public static final String LEVEL = "hcjf.net.http.compression.level";
+                public static final String MIN_SIZE = "hcjf.net.http.compression.min.size";
+            }
+
+            public static final class Admission {
+                public static final String ENABLED = "hcjf.net.http.admission.enabled";
+                public static final String INITIAL_LIMIT = "hcjf.net.http.admission.initial.limit";
+                public static final String MIN_LIMIT = "hcjf.net.http.admission.min.limit";
+                public static final String MAX_LIMIT = "hcjf.net.http.admission.max.limit";
+                public static final String MAX_QUEUE_SIZE = "hcjf.net.http.admission.max.queue.size";
+                public static final String MAX_QUEUE_TIME = "hcjf.net.http.admission.max.queue.time";
+                public static final String BACKOFF_RATIO = "hcjf.net.http.admission.backoff.ratio";
+                public static final String LATENCY_TOLERANCE = "hcjf.net.http.admission.latency.tolerance";
+                public static final String RETRY_AFTER = "hcjf.net.http.admission.retry.after";
             }
 
             public static final class EndPoint {
@@ -319,6 +388,11 @@ public final class SystemProperties extends Properties {
             public static final String DATA_SOURCE_FIELD = "hcjf.net.http.rest.data.source.field";
             public static final String COMMAND_FIELD = "hcjf.net.http.rest.command.field";
             public static final String COMMANDS_FIELD = "hcjf.net.http.rest.commands.field";
+            public static final String STREAMING_MIN_SIZE = "hcjf.net.http.rest.streaming.min.size";
+            public static final String STREAMING_BUFFER_SIZE = "hcjf.net.http.rest.streaming.buffer.size";
+            public static final String CACHE_ENABLED = "hcjf.net.http.rest.cache.enabled";
+            public static final String CACHE_TIME_TO_LIVE = "hcjf.net.http.rest.cache.time.to.live";
+            public static final String CACHE_MAX_SIZE = "hcjf.net.http.rest.cache.max.size";
         }
 
     }
@@ -671,14 +745,34 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.CONNECTION_TIMEOUT, "30000");
         defaults.put(Net.DISCONNECT_AND_REMOVE, "true");
         defaults.put(Net.WRITE_TIMEOUT, "100");
+        defaults.put(Net.WRITE_HIGH_WATERMARK, "1048576");
+        defaults.put(Net.WRITE_LOW_WATERMARK, "262144");
+        defaults.put(Net.WRITE_BACKPRESSURE_TIMEOUT, "30000");
+        defaults.put(Net.IDLE_TIMEOUT, "0");
+        defaults.put(Net.READ_IDLE_TIMEOUT, "0");
+        defaults.put(Net.PENDING_WRITE_TIMEOUT, "0");
+        defaults.put(Net.TIMING_WHEEL_TICK, "100");
+        defaults.put(Net.TIMING_WHEEL_SIZE, "512");
         defaults.put(Net.IO_UDP_LRU_ADDRESSES_SIZE, "1000");
         defaults.put(Net.IO_UDP_LRU_SESSIONS_SIZE, "1000");
+        defaults.put(Net.IO_UDP_RECEIVE_BATCH_SIZE, "64");
+        defaults.put(Net.IO_UDP_SESSIONS_SHARDS, "16");
+        defaults.put(Net.IO_UDP_SESSION_TIMEOUT, "300000");
+        defaults.put(Net.IO_UDP_CONNECTED_PEERS_ENABLED, "false");
+        defaults.put(Net.IO_UDP_CONNECTED_PEER_THRESHOLD, "1000");
         defaults.put(Net.IO_QUEUE_SIZE, "1000000");
+        defaults.put(Net.IO_GATHERING_WRITE_MAX_PACKAGES, "64");
         defaults.put(Net.IO_THREAD_POOL_KEEP_ALIVE_TIME, "120");
         defaults.put(Net.IO_THREAD_POOL_NAME, "IoThreadPool");
         defaults.put(Net.DEFAULT_INPUT_BUFFER_SIZE, "102400");
         defaults.put(Net.DEFAULT_OUTPUT_BUFFER_SIZE, "102400");
         defaults.put(Net.IO_THREAD_DIRECT_ALLOCATE_MEMORY, "false");
+        defaults.put(Net.BUFFER_POOL_MIN_SIZE, "1024");
+        defaults.put(Net.BUFFER_POOL_MAX_SIZE, "1048576");
+        defaults.put(Net.BUFFER_POOL_THREAD_CACHE_SIZE, "4");
+        defaults.put(Net.BUFFER_POOL_SHARED_SIZE, "256");
+        defaults.put(Net.BUFFER_POOL_DIRECT_ALLOCATE_MEMORY, "true");
+        defaults.put(Net.BUFFER_POOL_LEAK_DETECTION, "false");
         defaults.put(Net.SSL_MAX_IO_THREAD_POOL_SIZE, "2");
         defaults.put(Net.PORT_PROVIDER_TIME_WINDOWS_SIZE, "15000");
         defaults.put(Net.PORT_PROBE_CONNECTION_TIMEOUT, "1000");
@@ -689,6 +783,7 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.NIO_SELECTOR_HEALTH_CHECKER_DANGEROUS_THRESHOLD, "60");
         defaults.put(Net.NIO_SELECTOR_HEALTH_CHECKER_DANGEROUS_REPEATS, "5");
         defaults.put(Net.NIO_SELECTOR_HEALTH_CHECKER_DANGEROUS_ACTION, "RECREATE_SELECTOR"); //Valid values [RECREATE_SELECTOR, SHUTDOWN, VOID]
+        defaults.put(Net.NIO_SELECTOR_WORKERS, "0"); //Zero or negative value means the number of available processors
         defaults.put(Net.Http.HOST_ACCESS_CONTROL_REGEX_START_CHAR,"^");
         defaults.put(Net.Http.CLIENT_RESPONSE_HANDLER_QUEUE_SIZE, "1000");
 
@@ -726,6 +821,9 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.Ssl.DEFAULT_PROTOCOL, "TLSv1.2");
         defaults.put(Net.Ssl.IO_THREAD_NAME, "SslIoThread");
         defaults.put(Net.Ssl.ENGINE_THREAD_NAME, "SslEngineThread");
+        defaults.put(Net.Ssl.HANDSHAKE_TIMEOUT, "10000");
+        defaults.put(Net.Ssl.SESSION_CACHE_SIZE, "20480");
+        defaults.put(Net.Ssl.SESSION_TIMEOUT, "86400");
 
         defaults.put(Net.Messages.LOG_TAG, "MESSAGES");
         defaults.put(Net.Messages.SERVER_DECOUPLED_IO_ACTION, "true");
@@ -754,17 +852,31 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.Http.SERVER_DECOUPLED_IO_ACTION, "true");
         defaults.put(Net.Http.SERVER_IO_QUEUE_SIZE, "100000");
         defaults.put(Net.Http.SERVER_IO_WORKERS, "5");
+        defaults.put(Net.Http.PIPELINE_MAX_DEPTH, "16");
+        defaults.put(Net.Http.CONTEXT_ROUTER_CACHE_SIZE, "1024");
+        defaults.put(Net.Http.MULTIPART_STREAMING_ENABLED, "true");
+        defaults.put(Net.Http.MULTIPART_MEMORY_THRESHOLD, Integer.toString(1024 * 1024));
+        defaults.put(Net.Http.MULTIPART_MAX_SIZE, Long.toString(1024L * 1024 * 1024));
+        defaults.put(Net.Http.MULTIPART_TEMP_FOLDER, System.getProperty("java.io.tmpdir"));
+        defaults.put(Net.Http.STREAMING_BODY_BUFFER_SIZE, Integer.toString(1024 * 1024));
+        defaults.put(Net.Http.STREAMING_BODY_READ_TIMEOUT, "30000");
+        defaults.put(Net.Http.CLIENT_POOL_ENABLED, "true");
+        defaults.put(Net.Http.CLIENT_POOL_MAX_CONNECTIONS_PER_HOST, "20");
+        defaults.put(Net.Http.CLIENT_POOL_IDLE_TIMEOUT, "60000");
+        defaults.put(Net.Http.CLIENT_POOL_MAX_PENDING_REQUESTS_PER_HOST, "1000");
 
         defaults.put(Net.Https.DEFAULT_SERVER_PORT, "443");
         defaults.put(Net.Https.DEFAULT_CLIENT_PORT, "443");
 
         defaults.put(Net.Http.Http2.HEADER_TABLE_SIZE, "4096");
         defaults.put(Net.Http.Http2.ENABLE_PUSH, "true");
-        defaults.put(Net.Http.Http2.MAX_CONCURRENT_STREAMS, "-1");
+        defaults.put(Net.Http.Http2.MAX_CONCURRENT_STREAMS, "100");
         defaults.put(Net.Http.Http2.INITIAL_WINDOWS_SIZE, "65535");
         defaults.put(Net.Http.Http2.MAX_FRAME_SIZE, "16384");
         defaults.put(Net.Http.Http2.MAX_HEADER_LIST_SIZE, "-1");
         defaults.put(Net.Http.Http2.STREAM_FRAMES_QUEUE_MAX_SIZE, "10");
+        defaults.put(Net.Http.Http2.ENABLED, "true");
+        defaults.put(Net.Http.Http2.WRITE_TIMEOUT, "30000");
 
         defaults.put(Net.Http.Folder.LOG_TAG, "FOLDER_CONTEXT");
         defaults.put(Net.Http.Folder.FORBIDDEN_CHARACTERS, "[]");
@@ -776,6 +888,31 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.Http.Folder.ZIP_TEMP_PREFIX, "hcjf_zip_temp");
         defaults.put(Net.Http.Folder.JAR_CONTAINER, System.getProperty("user.home"));
         defaults.put(Net.Http.Folder.JAR_TEMP_PREFIX, "hcjf_jar_temp");
+        defaults.put(Net.Http.Folder.FILE_REGION_MIN_SIZE, "1048576");
+        defaults.put(Net.Http.Folder.CACHE_ENABLED, "true");
+        defaults.put(Net.Http.Folder.CACHE_MAX_SIZE, "67108864");
+        defaults.put(Net.Http.Folder.MAX_RANGES, "16");
+        defaults.put(Net.Http.Folder.RANGE_BUFFER_SIZE, "65536");
+
+        defaults.put(Net.Http.Proxy.STREAMING_BUFFER_SIZE, Integer.toString(1024 * 1024));
+        defaults.put(Net.Http.Proxy.STREAMING_CHUNK_SIZE, "65536");
+        defaults.put(Net.Http.Proxy.HEALTH_MAX_FAILURES, "3");
+        defaults.put(Net.Http.Proxy.HEALTH_EJECTION_TIME, "30000");
+
+        defaults.put(Net.Http.Compression.ENABLED, "true");
+        defaults.put(Net.Http.Compression.ENCODINGS, "[br,gzip,deflate]");
+        defaults.put(Net.Http.Compression.LEVEL, "6");
+        defaults.put(Net.Http.Compression.MIN_SIZE, "1024");
+
+        defaults.put(Net.Http.Admission.ENABLED, "false");
+        defaults.put(Net.Http.Admission.INITIAL_LIMIT, "20");
+        defaults.put(Net.Http.Admission.MIN_LIMIT, "1");
+        defaults.put(Net.Http.Admission.MAX_LIMIT, "200");
+        defaults.put(Net.Http.Admission.MAX_QUEUE_SIZE, "100");
+        defaults.put(Net.Http.Admission.MAX_QUEUE_TIME, "1000");
+        defaults.put(Net.Http.Admission.BACKOFF_RATIO, "0.9");
+        defaults.put(Net.Http.Admission.LATENCY_TOLERANCE, "2.0");
+        defaults.put(Net.Http.Admission.RETRY_AFTER, "1");
 
         defaults.put(Net.Http.EndPoint.Json.DATE_FORMATS, " [dd/M/yyyy,dd/MM/yyyy]");
 
@@ -796,6 +933,11 @@ public final class SystemProperties extends Properties {
         defaults.put(Net.Rest.DATA_SOURCE_FIELD, "_dataSource");
         defaults.put(Net.Rest.COMMAND_FIELD, "_command");
         defaults.put(Net.Rest.COMMANDS_FIELD, "_commands");
+        defaults.put(Net.Rest.STREAMING_MIN_SIZE, "1000");
+        defaults.put(Net.Rest.STREAMING_BUFFER_SIZE, "65536");
+        defaults.put(Net.Rest.CACHE_ENABLED, "false");
+        defaults.put(Net.Rest.CACHE_TIME_TO_LIVE, "5000");
+        defaults.put(Net.Rest.CACHE_MAX_SIZE, "33554432");
 
         defaults.put(ProcessDiscovery.LOG_TAG, "PROCESS_DISCOVERY");
         defaults.put(ProcessDiscovery.SERVICE_NAME, "Process Discovery Service");
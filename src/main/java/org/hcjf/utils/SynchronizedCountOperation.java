@@ -10,6 +10,7 @@ public final class SynchronizedCountOperation {
 
     private static final Operation meanOperation = new Mean();
     private static final Operation harmonicMeanOperation = new HarmonicMean();
+    private static final Operation rateOperation = new Rate();
 
     private final int maxCount;
     private final long maxTime;
@@ -56,6 +57,10 @@ public final class SynchronizedCountOperation {
         return harmonicMeanOperation;
     }
 
+    public static Operation getRateOperation() {
+        return rateOperation;
+    }
+
     public interface Operation {
 
         double accumulate(double accumulator, double value);
@@ -88,4 +93,21 @@ public final class SynchronizedCountOperation {
             return currentValue == 0 ? counter / accumulator : ((counter / accumulator) + currentValue) / 2;
         }
     }
+
+    /**
+     * This operation calculates the accumulated value per second since the last execution.
+     */
+    private static class Rate implements Operation {
+
+        @Override
+        public double accumulate(double accumulator, double value) {
+            return accumulator + value;
+        }
+
+        @Override
+        public double execute(double currentValue, double accumulator, int counter, long lastExecution) {
+            long elapsedTime = System.currentTimeMillis() - lastExecution;
+            return elapsedTime == 0 ? currentValue : (accumulator * 1000) / elapsedTime;
+        }
+    }
 }
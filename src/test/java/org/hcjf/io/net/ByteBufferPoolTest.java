@@ -0,0 +1,63 @@
+package org.hcjf.io.net;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class ByteBufferPoolTest {
+
+    @Test
+    public void testRecycle() {
+        PooledByteBuffer pooledBuffer = ByteBufferPool.getInstance().acquire(1500);
+        ByteBuffer buffer = pooledBuffer.getBuffer();
+        Assert.assertEquals(2048, buffer.capacity());
+        Assert.assertTrue(pooledBuffer.release());
+
+        PooledByteBuffer secondPooledBuffer = ByteBufferPool.getInstance().acquire(2000);
+        Assert.assertSame(buffer, secondPooledBuffer.getBuffer());
+        secondPooledBuffer.release();
+    }
+
+    @Test
+    public void testReferenceCount() {
+        PooledByteBuffer pooledBuffer = ByteBufferPool.getInstance().acquire(100);
+        pooledBuffer.retain();
+        Assert.assertEquals(2, pooledBuffer.getReferenceCount());
+        Assert.assertFalse(pooledBuffer.release());
+        Assert.assertTrue(pooledBuffer.release());
+
+        try {
+            pooledBuffer.getBuffer();
+            Assert.fail("Released buffer");
+        } catch (IllegalStateException ex) {}
+
+        try {
+            pooledBuffer.retain();
+            Assert.fail("Released buffer");
+        } catch (IllegalStateException ex) {}
+    }
+
+    @Test
+    public void testPooledPackage() {
+        PooledByteBuffer pooledBuffer = ByteBufferPool.getInstance().acquire(100);
+        pooledBuffer.getBuffer().put("Hello world".getBytes());
+        pooledBuffer.getBuffer().flip();
+
+        NetPackage netPackage = new PooledNetPackage("", "", 0, 0, pooledBuffer, NetPackage.ActionEvent.READ);
+        Assert.assertEquals(11, netPackage.getPayloadSize());
+        Assert.assertTrue(netPackage.getPayloadBuffer().isReadOnly());
+        Assert.assertEquals("Hello world", new String(netPackage.getPayload()));
+
+        netPackage.release();
+        Assert.assertEquals(0, pooledBuffer.getReferenceCount());
+        Assert.assertEquals("Hello world", new String(netPackage.getPayload()));
+    }
+
+    @Test
+    public void testBigBuffer() {
+        PooledByteBuffer pooledBuffer = ByteBufferPool.getInstance().acquire(10 * 1024 * 1024);
+        Assert.assertEquals(10 * 1024 * 1024, pooledBuffer.getBuffer().capacity());
+        Assert.assertTrue(pooledBuffer.release());
+    }
+}
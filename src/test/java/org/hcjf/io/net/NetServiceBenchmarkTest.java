@@ -0,0 +1,164 @@
+package org.hcjf.io.net;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Throughput benchmark of the net service. An echo server is created and a number of client connections sends
+ * one message and waits for the echo before to send the next one, the result is the number of round trips per second.
+ * The benchmark is ignored by the build, it must be executed manually and the values of the constants can be
+ * changed to measure different scenarios.
+ * @author javaito
+ */
+@Ignore("Benchmark, it must be executed manually")
+public class NetServiceBenchmarkTest {
+
+    private static final int CONNECTIONS = 1000;
+    private static final int SECONDS = 10;
+    private static final int MESSAGE_SIZE = 64;
+    private static final int PORT = 18090;
+    private static final long MIN_ROUND_TRIPS_PER_SECOND = 1000;
+
+    @Test
+    public void testEchoThroughput() throws Exception {
+        EchoServer server = new EchoServer(PORT);
+        server.start();
+        Thread.sleep(1000);
+
+        List<Connection> connections = new ArrayList<>();
+        try (Selector selector = Selector.open()) {
+            byte[] message = new byte[MESSAGE_SIZE];
+            for (int i = 0; i < CONNECTIONS; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", PORT));
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.configureBlocking(false);
+                Connection connection = new Connection(channel, message);
+                connections.add(connection);
+                channel.register(selector, SelectionKey.OP_READ, connection);
+                connection.send();
+            }
+
+            //Warm up
+            run(selector, 2000);
+            long roundTrips = run(selector, SECONDS * 1000L);
+            Assert.assertTrue("Round trips per second: " + roundTrips / SECONDS,
+                    roundTrips / SECONDS >= MIN_ROUND_TRIPS_PER_SECOND);
+        } finally {
+            for (Connection connection : connections) {
+                connection.channel.close();
+            }
+            server.stop();
+        }
+    }
+
+    private static long run(Selector selector, long time) throws IOException {
+        long roundTrips = 0;
+        long deadline = System.currentTimeMillis() + time;
+        while (System.currentTimeMillis() < deadline) {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Connection connection = (Connection) key.attachment();
+                if (connection.receive()) {
+                    roundTrips++;
+                    connection.send();
+                }
+            }
+        }
+        return roundTrips;
+    }
+
+    private static class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer output;
+        private final ByteBuffer input;
+
+        private Connection(SocketChannel channel, byte[] message) {
+            this.channel = channel;
+            this.output = ByteBuffer.wrap(message);
+            this.input = ByteBuffer.allocate(message.length);
+        }
+
+        private void send() throws IOException {
+            output.rewind();
+            while (output.hasRemaining()) {
+                channel.write(output);
+            }
+        }
+
+        private boolean receive() throws IOException {
+            boolean result = false;
+            if (channel.read(input) < 0) {
+                throw new IOException("Connection closed");
+            }
+            if (!input.hasRemaining()) {
+                input.clear();
+                result = true;
+            }
+            return result;
+        }
+    }
+
+    private static class EchoServer extends NetServer<EchoSession, byte[]> {
+
+        private EchoServer(Integer port) {
+            super(port, NetService.TransportLayerProtocol.TCP, false, false);
+        }
+
+        @Override
+        public EchoSession createSession(NetPackage netPackage) {
+            return new EchoSession(this);
+        }
+
+        @Override
+        public EchoSession checkSession(EchoSession session, byte[] payLoad, NetPackage netPackage) {
+            return session;
+        }
+
+        @Override
+        public void destroySession(NetSession session) {
+        }
+
+        @Override
+        protected byte[] encode(byte[] payLoad) {
+            return payLoad;
+        }
+
+        @Override
+        protected byte[] decode(NetPackage netPackage) {
+            return netPackage.getPayload();
+        }
+
+        @Override
+        protected void onRead(EchoSession session, byte[] payLoad, NetPackage netPackage) {
+            try {
+                write(session, payLoad, false);
+            } catch (IOException ex) {
+                disconnect(session, "");
+            }
+        }
+    }
+
+    private static class EchoSession extends NetSession {
+
+        private EchoSession(NetServiceConsumer consumer) {
+            super(UUID.randomUUID(), consumer);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.hcjf.io.net;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TimingWheelTest {
+
+    private TimingWheel timingWheel;
+
+    @Before
+    public void start() {
+        timingWheel = new TimingWheel(10, 8);
+        Thread thread = new Thread(timingWheel);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @After
+    public void stop() {
+        timingWheel.stop();
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long startTime = System.currentTimeMillis();
+        TimingWheel.Timeout timeout = timingWheel.schedule(latch::countDown, 100);
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= 100);
+        Assert.assertTrue(timeout.isExpired());
+        Assert.assertFalse(timeout.cancel());
+        Assert.assertEquals(0, timingWheel.getPendingTimeouts());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        TimingWheel.Timeout timeout = timingWheel.schedule(counter::incrementAndGet, 50);
+        Assert.assertEquals(1, timingWheel.getPendingTimeouts());
+        Assert.assertTrue(timeout.cancel());
+        Assert.assertTrue(timeout.isCancelled());
+        Assert.assertEquals(0, timingWheel.getPendingTimeouts());
+        Thread.sleep(200);
+        Assert.assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void testSeveralRounds() throws Exception {
+        //The wheel has 8 buckets of 10 ms, then a timeout of 250 ms needs three rounds.
+        CountDownLatch latch = new CountDownLatch(2);
+        long startTime = System.currentTimeMillis();
+        timingWheel.schedule(latch::countDown, 250);
+        timingWheel.schedule(latch::countDown, 30);
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.currentTimeMillis() - startTime >= 250);
+    }
+
+    @Test
+    public void testManyTimeouts() throws Exception {
+        int size = 10000;
+        CountDownLatch latch = new CountDownLatch(size / 2);
+        AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < size; i++) {
+            TimingWheel.Timeout timeout = timingWheel.schedule(() -> {
+                counter.incrementAndGet();
+                latch.countDown();
+            }, 100 + i % 200);
+            if(i % 2 == 0) {
+                timeout.cancel();
+            }
+        }
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        Assert.assertEquals(size / 2, counter.get());
+        Assert.assertEquals(0, timingWheel.getPendingTimeouts());
+    }
+}
@@ -0,0 +1,84 @@
+package org.hcjf.io.net;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class UdpSessionTableTest {
+
+    private TimingWheel timingWheel;
+    private List<UdpSessionTable.Entry> removed;
+
+    @Before
+    public void start() {
+        timingWheel = new TimingWheel(10, 8);
+        Thread thread = new Thread(timingWheel);
+        thread.setDaemon(true);
+        thread.start();
+        removed = new CopyOnWriteArrayList<>();
+    }
+
+    @After
+    public void stop() {
+        timingWheel.stop();
+    }
+
+    private NetSession createSession() {
+        return new NetSession(UUID.randomUUID(), null) {};
+    }
+
+    @Test
+    public void testPutAndGet() {
+        UdpSessionTable table = new UdpSessionTable(4, 100, 0, timingWheel, removed::add);
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 5000);
+        NetSession session = createSession();
+        UdpSessionTable.Entry entry = table.putIfAbsent(address, session, false);
+        Assert.assertSame(session, entry.getSession());
+        Assert.assertSame(entry, table.get(new InetSocketAddress("127.0.0.1", 5000)));
+
+        UdpSessionTable.Entry secondEntry = table.putIfAbsent(address, createSession(), false);
+        Assert.assertSame(entry, secondEntry);
+        Assert.assertEquals(1, table.size());
+
+        Assert.assertTrue(table.remove(entry));
+        Assert.assertFalse(table.remove(entry));
+        Assert.assertNull(table.get(address));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        UdpSessionTable table = new UdpSessionTable(4, 100, 200, timingWheel, removed::add);
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 5000);
+        InetSocketAddress pinnedAddress = new InetSocketAddress("127.0.0.1", 5001);
+        table.putIfAbsent(address, createSession(), false);
+        table.putIfAbsent(pinnedAddress, createSession(), true);
+
+        //The access during the timeout keeps alive the entry.
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(100);
+            Assert.assertNotNull(table.get(address));
+        }
+
+        Thread.sleep(500);
+        Assert.assertNull(table.get(address));
+        Assert.assertNotNull(table.get(pinnedAddress));
+        Assert.assertEquals(1, removed.size());
+    }
+
+    @Test
+    public void testEviction() {
+        UdpSessionTable table = new UdpSessionTable(1, 10, 0, timingWheel, removed::add);
+        for (int i = 0; i < 20; i++) {
+            table.putIfAbsent(new InetSocketAddress("127.0.0.1", 5000 + i), createSession(), false);
+        }
+        Assert.assertEquals(10, table.size());
+        Assert.assertEquals(10, removed.size());
+        Assert.assertNotNull(table.get(new InetSocketAddress("127.0.0.1", 5019)));
+    }
+}
@@ -0,0 +1,204 @@
+package org.hcjf.io.net.http;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ConcurrencyLimiterTest {
+
+    private static final int PORT = 18983;
+
+    private static HttpServer server;
+    private static ConcurrencyLimiter timeoutLimiter;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        server = new HttpServer(PORT);
+        Context slowContext = new Context("/slow") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                }
+                return createResponse("slow");
+            }
+        };
+        slowContext.setLimiter(new ConcurrencyLimiter(1, 0, 0));
+        server.addContext(slowContext);
+        server.addContext(new Context("/other") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                return createResponse("other");
+            }
+        });
+        Context healthContext = new Context("/health") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                return createResponse("ok");
+            }
+        };
+        healthContext.setPriority(true);
+        server.addContext(healthContext);
+        Context timeoutContext = new Context("/timeout") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                //The execution ignores the interruption of the timeout.
+                long deadline = System.currentTimeMillis() + 1000;
+                while (System.currentTimeMillis() < deadline) {
+                    try {
+                        Thread.sleep(deadline - System.currentTimeMillis());
+                    } catch (InterruptedException e) {
+                    }
+                }
+                return createResponse("timeout");
+            }
+        };
+        timeoutContext.setPriority(true);
+        timeoutContext.setTimeout(100);
+        timeoutLimiter = new ConcurrencyLimiter(1, 0, 0);
+        timeoutContext.setLimiter(timeoutLimiter);
+        server.addContext(timeoutContext);
+        server.setLimiter(new ConcurrencyLimiter(1, 0, 0));
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    private static HttpResponse createResponse(String body) {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.OK);
+        response.setBody(body.getBytes());
+        return response;
+    }
+
+    private static HttpURLConnection get(String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + path).openConnection();
+        connection.getResponseCode();
+        return connection;
+    }
+
+    @Test
+    public void testQueue() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 2000);
+        Assert.assertTrue(limiter.acquire());
+
+        AtomicBoolean queued = new AtomicBoolean();
+        Thread thread = new Thread(() -> queued.set(limiter.acquire()));
+        thread.start();
+        while (limiter.getQueueSize() == 0) {
+            Thread.sleep(10);
+        }
+
+        //The queue is full.
+        Assert.assertFalse(limiter.acquire());
+
+        limiter.release(10, false);
+        thread.join();
+        Assert.assertTrue(queued.get());
+        Assert.assertEquals(1, limiter.getInFlight());
+        Assert.assertEquals(2, limiter.getAdmitted());
+        Assert.assertEquals(1, limiter.getRejected());
+
+        //The queue time is consumed.
+        ConcurrencyLimiter timeoutLimiter = new ConcurrencyLimiter(1, 1, 100);
+        Assert.assertTrue(timeoutLimiter.acquire());
+        long time = System.currentTimeMillis();
+        Assert.assertFalse(timeoutLimiter.acquire());
+        Assert.assertTrue(System.currentTimeMillis() - time >= 100);
+        Assert.assertEquals(0, timeoutLimiter.getQueueSize());
+    }
+
+    @Test
+    public void testAdaptiveLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(limiter.acquire());
+        }
+        Assert.assertFalse(limiter.acquire());
+
+        //Latency near of the base latency increases the limit.
+        for (int i = 0; i < 100; i++) {
+            limiter.release(10, false);
+            Assert.assertTrue(limiter.acquire());
+        }
+        int limit = limiter.getLimit();
+        Assert.assertTrue(limit > 10);
+        Assert.assertTrue(limit <= 20);
+
+        //The latency grows then the limit decreases.
+        limiter.release(100, false);
+        Assert.assertTrue(limiter.getLimit() < limit);
+        limit = limiter.getLimit();
+
+        //The limit decreases once for each latency window.
+        limiter.release(100, false);
+        Assert.assertEquals(limit, limiter.getLimit());
+
+        Thread.sleep(50);
+        limiter.release(10, true);
+        Assert.assertTrue(limiter.getLimit() < limit);
+
+        for (int i = 0; i < 50; i++) {
+            Thread.sleep(5);
+            limiter.release(1, true);
+            if (limiter.getInFlight() == 0) {
+                Assert.assertTrue(limiter.acquire());
+            }
+        }
+        Assert.assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testLoadShedding() throws Exception {
+        Thread thread = new Thread(() -> {
+            try {
+                get("/slow");
+            } catch (Exception e) {
+            }
+        });
+        thread.start();
+        Thread.sleep(300);
+
+        //The context limiter is full.
+        HttpURLConnection connection = get("/slow");
+        Assert.assertEquals(HttpResponseCode.SERVICE_UNAVAILABLE, Integer.valueOf(connection.getResponseCode()));
+        Assert.assertEquals("1", connection.getHeaderField(HttpHeader.RETRY_AFTER));
+
+        //The server limiter is full.
+        connection = get("/other");
+        Assert.assertEquals(HttpResponseCode.SERVICE_UNAVAILABLE, Integer.valueOf(connection.getResponseCode()));
+
+        //The priority contexts are not limited by the server limiter.
+        connection = get("/health");
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+
+        thread.join();
+        connection = get("/other");
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        Assert.assertEquals(0, server.getLimiter().getInFlight());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        HttpURLConnection connection = get("/timeout");
+        Assert.assertNotEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+
+        //The slot is released when the execution ends, not when the timeout is reached.
+        Assert.assertEquals(1, timeoutLimiter.getInFlight());
+        connection = get("/timeout");
+        Assert.assertEquals(HttpResponseCode.SERVICE_UNAVAILABLE, Integer.valueOf(connection.getResponseCode()));
+
+        Thread.sleep(1500);
+        Assert.assertEquals(0, timeoutLimiter.getInFlight());
+    }
+}
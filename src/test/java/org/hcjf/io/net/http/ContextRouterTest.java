@@ -0,0 +1,73 @@
+package org.hcjf.io.net.http;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ContextRouterTest {
+
+    private static Context createContext(String regex) {
+        return new Context(regex) {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testPrefixesAndOrder() {
+        Context exact = createContext("/api/status");
+        Context api = createContext("^/api.*");
+        Context users = createContext("^/api/users.*");
+        Context rest = new RestContext("/rest/resources");
+        Context alternation = createContext("/first|/second");
+        Context any = createContext(".*");
+
+        ContextRouter router = new ContextRouter();
+        router.add(exact);
+        router.add(api);
+        router.add(users);
+        router.add(rest);
+        router.add(alternation);
+        router.add(any);
+
+        Assert.assertSame(exact, router.find("/api/status").getContext());
+        //The first context added has priority even if there are a longer prefix.
+        Assert.assertSame(api, router.find("/api/users/1").getContext());
+        Assert.assertSame(api, router.find("/api/status/more").getContext());
+        Assert.assertSame(api, router.find("/apiv2").getContext());
+        Assert.assertSame(alternation, router.find("/second").getContext());
+        Assert.assertSame(any, router.find("/rest/resourcesx").getContext());
+        Assert.assertSame(any, router.find("/other").getContext());
+
+        HttpServer.ContextMatcher matcher = router.find("/rest/resources/entity");
+        Assert.assertSame(rest, matcher.getContext());
+        Assert.assertEquals("entity", matcher.getMatcher().group("resource"));
+
+        //The second lookup is resolved from the cache with a new matcher.
+        HttpServer.ContextMatcher cachedMatcher = router.find("/rest/resources/entity");
+        Assert.assertSame(rest, cachedMatcher.getContext());
+        Assert.assertNotSame(matcher.getMatcher(), cachedMatcher.getMatcher());
+        Assert.assertEquals("entity", cachedMatcher.getMatcher().group("resource"));
+    }
+
+    @Test
+    public void testNoMatch() {
+        ContextRouter router = new ContextRouter();
+        router.add(createContext("/a/b"));
+        router.add(createContext("/a/c?"));
+        router.add(createContext("/x\\.y"));
+
+        Assert.assertNull(router.find("/a"));
+        Assert.assertNull(router.find("/a/b/c"));
+        Assert.assertNull(router.find("/a"));
+        Assert.assertNotNull(router.find("/a/"));
+        Assert.assertNotNull(router.find("/a/c"));
+        Assert.assertNotNull(router.find("/x.y"));
+        Assert.assertNull(router.find("/xzy"));
+
+        //The cache is discarded when a new context is added.
+        router.add(createContext("/a"));
+        Assert.assertNotNull(router.find("/a"));
+    }
+}
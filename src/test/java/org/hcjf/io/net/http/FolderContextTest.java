@@ -0,0 +1,211 @@
+package org.hcjf.io.net.http;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class FolderContextTest {
+
+    private static final int PORT = 18970;
+    private static final int LARGE_FILE_SIZE = 3 * 1024 * 1024 + 17;
+
+    private static Path folder;
+    private static byte[] largeFile;
+    private static HttpServer server;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        folder = Files.createTempDirectory("hcjf-folder-context");
+        largeFile = new byte[LARGE_FILE_SIZE];
+        new Random(7).nextBytes(largeFile);
+        Files.write(folder.resolve("large.bin"), largeFile);
+        Files.write(folder.resolve("small.txt"), "small file".getBytes());
+
+        server = new HttpServer(PORT);
+        server.addContext(new FolderContext("files", folder, null));
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() throws Exception {
+        server.stop();
+        Files.deleteIfExists(folder.resolve("large.bin"));
+        Files.deleteIfExists(folder.resolve("small.txt"));
+        Files.deleteIfExists(folder.resolve("cached.txt"));
+        Files.deleteIfExists(folder);
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int readSize;
+        while ((readSize = inputStream.read(buffer)) >= 0) {
+            out.write(buffer, 0, readSize);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testLargeFile() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/files/large.bin").openConnection();
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        Assert.assertEquals(LARGE_FILE_SIZE, connection.getContentLengthLong());
+        String eTag = connection.getHeaderField(HttpHeader.E_TAG);
+        try (InputStream inputStream = connection.getInputStream()) {
+            Assert.assertArrayEquals(largeFile, readAll(inputStream));
+        }
+
+        connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/files/large.bin").openConnection();
+        connection.setRequestProperty(HttpHeader.IF_NONE_MATCH, eTag);
+        Assert.assertEquals(HttpResponseCode.NOT_MODIFIED, Integer.valueOf(connection.getResponseCode()));
+    }
+
+    @Test
+    public void testSmallFile() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/files/small.txt").openConnection();
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        try (InputStream inputStream = connection.getInputStream()) {
+            Assert.assertEquals("small file", new String(readAll(inputStream)));
+        }
+    }
+
+    private static HttpURLConnection request(String file, String acceptEncoding) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/files/" + file).openConnection();
+        connection.setRequestProperty(HttpHeader.ACCEPT_ENCODING, acceptEncoding);
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        return connection;
+    }
+
+    @Test
+    public void testCachedFile() throws Exception {
+        String content = "cached content ".repeat(100);
+        Files.write(folder.resolve("cached.txt"), content.getBytes());
+
+        HttpURLConnection connection = request("cached.txt", HttpHeader.GZIP);
+        Assert.assertEquals(HttpHeader.GZIP, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertTrue(connection.getContentLength() < content.length());
+        String eTag = connection.getHeaderField(HttpHeader.E_TAG);
+        try (InputStream inputStream = new GZIPInputStream(connection.getInputStream())) {
+            Assert.assertEquals(content, new String(readAll(inputStream)));
+        }
+
+        connection = request("cached.txt", HttpHeader.DEFLATE);
+        Assert.assertEquals(HttpHeader.DEFLATE, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertEquals(eTag, connection.getHeaderField(HttpHeader.E_TAG));
+        try (InputStream inputStream = new InflaterInputStream(connection.getInputStream())) {
+            Assert.assertEquals(content, new String(readAll(inputStream)));
+        }
+
+        Assert.assertEquals(HttpHeader.ACCEPT_ENCODING, connection.getHeaderField(HttpHeader.VARY));
+
+        //The encodings with quality zero and the unknown encodings are sent without encoding.
+        for (String acceptEncoding : new String[]{"gzip;q=0", "br", "*;q=0", "unknown"}) {
+            connection = request("cached.txt", acceptEncoding);
+            Assert.assertEquals(HttpHeader.IDENTITY, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+            try (InputStream inputStream = connection.getInputStream()) {
+                Assert.assertEquals(content, new String(readAll(inputStream)));
+            }
+        }
+
+        //The encoding with the greater quality is selected.
+        connection = request("cached.txt", "gzip;q=0.5, deflate;q=0.8");
+        Assert.assertEquals(HttpHeader.DEFLATE, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+
+        //The small files are never encoded.
+        connection = request("small.txt", HttpHeader.GZIP);
+        Assert.assertEquals(HttpHeader.IDENTITY, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertNull(connection.getHeaderField(HttpHeader.VARY));
+
+        //The cached file is removed when the file system watcher notifies the change.
+        String newContent = "new content";
+        Files.write(folder.resolve("cached.txt"), newContent.getBytes());
+        String body = null;
+        for (int i = 0; i < 100 && !newContent.equals(body); i++) {
+            Thread.sleep(100);
+            try (InputStream inputStream = request("cached.txt", HttpHeader.IDENTITY).getInputStream()) {
+                body = new String(readAll(inputStream));
+            }
+        }
+        Assert.assertEquals(newContent, body);
+    }
+
+    private static HttpURLConnection requestRange(String file, String range) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/files/" + file).openConnection();
+        connection.setRequestProperty(HttpHeader.RANGE, range);
+        return connection;
+    }
+
+    @Test
+    public void testRanges() throws Exception {
+        //Single range of a file region.
+        HttpURLConnection connection = requestRange("large.bin", "bytes=1000-1999");
+        Assert.assertEquals(HttpResponseCode.PARTIAL_CONTENT, Integer.valueOf(connection.getResponseCode()));
+        Assert.assertEquals(HttpHeader.BYTES, connection.getHeaderField(HttpHeader.ACCEPT_RANGES));
+        Assert.assertEquals("bytes 1000-1999/" + LARGE_FILE_SIZE, connection.getHeaderField(HttpHeader.CONTENT_RANGE));
+        String contentType = connection.getContentType();
+        try (InputStream inputStream = connection.getInputStream()) {
+            Assert.assertArrayEquals(Arrays.copyOfRange(largeFile, 1000, 2000), readAll(inputStream));
+        }
+
+        //Multiple ranges of a file region, the last range is a suffix range.
+        connection = requestRange("large.bin", "bytes=0-9, 2000000-2200000, -100");
+        Assert.assertEquals(HttpResponseCode.PARTIAL_CONTENT, Integer.valueOf(connection.getResponseCode()));
+        Assert.assertTrue(connection.getContentType().startsWith(HttpHeader.MULTIPART_BYTERANGES));
+        String boundary = connection.getContentType().substring(connection.getContentType().indexOf('=') + 1);
+        byte[] body;
+        try (InputStream inputStream = connection.getInputStream()) {
+            body = readAll(inputStream);
+        }
+        Assert.assertEquals(connection.getContentLengthLong(), body.length);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        long[][] ranges = {{0, 9}, {2000000, 2200000}, {LARGE_FILE_SIZE - 100, LARGE_FILE_SIZE - 1}};
+        for (long[] range : ranges) {
+            expected.writeBytes(("\r\n--" + boundary + "\r\nContent-Type: " + contentType + "\r\n" +
+                    "Content-Range: bytes " + range[0] + "-" + range[1] + "/" + LARGE_FILE_SIZE + "\r\n\r\n").getBytes());
+            expected.writeBytes(Arrays.copyOfRange(largeFile, (int) range[0], (int) range[1] + 1));
+        }
+        expected.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes());
+        Assert.assertArrayEquals(expected.toByteArray(), body);
+
+        //Ranges of a cached file.
+        connection = requestRange("small.txt", "bytes=-4");
+        Assert.assertEquals(HttpResponseCode.PARTIAL_CONTENT, Integer.valueOf(connection.getResponseCode()));
+        Assert.assertEquals("bytes 6-9/10", connection.getHeaderField(HttpHeader.CONTENT_RANGE));
+        try (InputStream inputStream = connection.getInputStream()) {
+            Assert.assertEquals("file", new String(readAll(inputStream)));
+        }
+
+        connection = requestRange("small.txt", "bytes=0-4,6-");
+        Assert.assertEquals(HttpResponseCode.PARTIAL_CONTENT, Integer.valueOf(connection.getResponseCode()));
+        try (InputStream inputStream = connection.getInputStream()) {
+            String multipart = new String(readAll(inputStream));
+            Assert.assertTrue(multipart.contains("Content-Range: bytes 0-4/10\r\n\r\nsmall\r\n"));
+            Assert.assertTrue(multipart.contains("Content-Range: bytes 6-9/10\r\n\r\nfile\r\n"));
+        }
+
+        connection = requestRange("small.txt", "bytes=10-");
+        Assert.assertEquals(HttpResponseCode.REQUESTED_RANGE_NOT_SATISFIABLE, Integer.valueOf(connection.getResponseCode()));
+        Assert.assertEquals("bytes */10", connection.getHeaderField(HttpHeader.CONTENT_RANGE));
+
+        //The range is ignored when the validator of the if-range header doesn't match.
+        connection = requestRange("small.txt", "bytes=0-4");
+        connection.setRequestProperty(HttpHeader.IF_RANGE, "old-etag");
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        try (InputStream inputStream = connection.getInputStream()) {
+            Assert.assertEquals("small file", new String(readAll(inputStream)));
+        }
+    }
+}
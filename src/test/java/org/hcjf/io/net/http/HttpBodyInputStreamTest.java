@@ -0,0 +1,132 @@
+package org.hcjf.io.net.http;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpBodyInputStreamTest {
+
+    private static final int PORT = 18974;
+    private static final int BODY_SIZE = 50 * 1024 * 1024;
+
+    private static HttpServer server;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        server = new HttpServer(PORT);
+        Context context = new Context("/ingest") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                long count = 0;
+                long sum = 0;
+                byte[] buffer = new byte[8192];
+                try (InputStream inputStream = request.getBodyStream()) {
+                    int read;
+                    while ((read = inputStream.read(buffer)) >= 0) {
+                        for (int i = 0; i < read; i++) {
+                            sum += buffer[i];
+                        }
+                        count += read;
+                    }
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody((count + ":" + sum).getBytes());
+                return response;
+            }
+        };
+        context.setStreamingBody(true);
+        server.addContext(context);
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        AtomicInteger suspended = new AtomicInteger();
+        AtomicInteger resumed = new AtomicInteger();
+        HttpBodyInputStream bodyStream = new HttpBodyInputStream(10, 1000) {
+            @Override
+            protected void onSuspend() {
+                suspended.incrementAndGet();
+            }
+
+            @Override
+            protected void onResume() {
+                resumed.incrementAndGet();
+            }
+        };
+
+        bodyStream.add(ByteBuffer.wrap("01234".getBytes()));
+        Assert.assertEquals(0, suspended.get());
+        bodyStream.add(ByteBuffer.wrap("56789a".getBytes()));
+        Assert.assertEquals(1, suspended.get());
+        Assert.assertEquals(11, bodyStream.available());
+
+        byte[] buffer = new byte[5];
+        Assert.assertEquals(5, bodyStream.read(buffer));
+        Assert.assertEquals(0, resumed.get());
+        Assert.assertEquals(5, bodyStream.read(buffer));
+        Assert.assertEquals(1, resumed.get());
+        Assert.assertEquals("56789", new String(buffer));
+
+        bodyStream.done();
+        Assert.assertEquals('a', bodyStream.read());
+        Assert.assertEquals(-1, bodyStream.read());
+
+        HttpBodyInputStream abortedStream = new HttpBodyInputStream(10, 1000);
+        abortedStream.abort();
+        try {
+            abortedStream.read();
+            Assert.fail();
+        } catch (IOException ex) {
+        }
+    }
+
+    @Test
+    public void testStreamingContext() throws Exception {
+        for (boolean chunked : new boolean[]{false, true}) {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/ingest").openConnection();
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            if (chunked) {
+                connection.setChunkedStreamingMode(16 * 1024);
+            } else {
+                connection.setFixedLengthStreamingMode(BODY_SIZE);
+            }
+
+            //The body is bigger than the maximum size of the package.
+            long sum = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (OutputStream outputStream = connection.getOutputStream()) {
+                for (int written = 0; written < BODY_SIZE; written += buffer.length) {
+                    for (int i = 0; i < buffer.length; i++) {
+                        buffer[i] = (byte) (written + i);
+                        sum += buffer[i];
+                    }
+                    outputStream.write(buffer);
+                }
+            }
+            Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+            try (InputStream inputStream = connection.getInputStream()) {
+                Assert.assertEquals(BODY_SIZE + ":" + sum, new String(inputStream.readAllBytes()));
+            }
+        }
+    }
+}
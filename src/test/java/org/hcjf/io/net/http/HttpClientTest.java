@@ -0,0 +1,174 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.properties.SystemProperties;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HttpClientTest {
+
+    private static final int PORT = 18976;
+    private static final int CLOSING_PORT = 18986;
+    private static final int BODY_SIZE = 5 * 1024 * 1024;
+
+    private static HttpServer server;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        server = new HttpServer(PORT);
+        server.addContext(new Context("/echo") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(request.getParameters().getOrDefault("id", "").toString().getBytes());
+                return response;
+            }
+        });
+        server.addContext(new Context("/download") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                byte[] body = new byte[BODY_SIZE];
+                for (int i = 0; i < body.length; i++) {
+                    body[i] = (byte) i;
+                }
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(body);
+                return response;
+            }
+        });
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void testRequestAsync() throws Exception {
+        List<CompletableFuture<HttpResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            HttpClient client = new HttpClient(new URL("http://localhost:" + PORT + "/echo?id=" + i));
+            futures.add(client.requestAsync());
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            HttpResponse response = futures.get(i).get(30, TimeUnit.SECONDS);
+            Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+            Assert.assertEquals(Integer.toString(i), new String(response.getBody()));
+        }
+        Assert.assertTrue(HttpConnectionPool.getInstance().getConnectionsCount(HttpPackage.HttpProtocol.HTTP, "localhost", PORT) <=
+                SystemProperties.getInteger(SystemProperties.Net.Http.CLIENT_POOL_MAX_CONNECTIONS_PER_HOST));
+    }
+
+    @Test
+    public void testStreamingBody() throws Exception {
+        AtomicLong count = new AtomicLong();
+        AtomicLong sum = new AtomicLong();
+        AtomicBoolean done = new AtomicBoolean();
+        HttpClient client = new HttpClient(new URL("http://localhost:" + PORT + "/download"));
+        HttpResponse response = client.requestAsync(new HttpPackage.BodyConsumer() {
+            @Override
+            public void add(ByteBuffer bodyFragment) {
+                while (bodyFragment.hasRemaining()) {
+                    sum.addAndGet(bodyFragment.get());
+                    count.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void done() {
+                done.set(true);
+            }
+        }).get(30, TimeUnit.SECONDS);
+
+        long expectedSum = 0;
+        for (int i = 0; i < BODY_SIZE; i++) {
+            expectedSum += (byte) i;
+        }
+        Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+        Assert.assertEquals(0, response.getBody().length);
+        Assert.assertTrue(done.get());
+        Assert.assertEquals(BODY_SIZE, count.get());
+        Assert.assertEquals(expectedSum, sum.get());
+    }
+
+    @Test
+    public void testRetryOnClosedConnection() throws Exception {
+        //The server answers the first request of each connection and closes the connection on the second one.
+        AtomicInteger requests = new AtomicInteger();
+        try (ServerSocket serverSocket = new ServerSocket(CLOSING_PORT)) {
+            Thread thread = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        new Thread(() -> {
+                            try (socket) {
+                                InputStream in = socket.getInputStream();
+                                readRequest(in);
+                                requests.incrementAndGet();
+                                socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes());
+                                socket.getOutputStream().flush();
+                                if (readRequest(in)) {
+                                    requests.incrementAndGet();
+                                }
+                            } catch (IOException ex) {
+                            }
+                        }).start();
+                    } catch (IOException ex) {
+                        break;
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+
+            HttpClient client = new HttpClient(new URL("http://localhost:" + CLOSING_PORT + "/resource"));
+            Assert.assertEquals(HttpResponseCode.OK, client.requestAsync().get(10, TimeUnit.SECONDS).getResponseCode());
+            Assert.assertEquals(1, requests.get());
+
+            //The idempotent requests are sent again using other connection.
+            client = new HttpClient(new URL("http://localhost:" + CLOSING_PORT + "/resource"));
+            Assert.assertEquals(HttpResponseCode.OK, client.requestAsync().get(10, TimeUnit.SECONDS).getResponseCode());
+            Assert.assertEquals(3, requests.get());
+
+            //The server could have processed the request, then it is not sent again.
+            client = new HttpClient(new URL("http://localhost:" + CLOSING_PORT + "/resource"));
+            client.setHttpMethod(HttpMethod.POST);
+            client.setBody("body".getBytes());
+            Assert.assertNotEquals(HttpResponseCode.OK, client.requestAsync().get(10, TimeUnit.SECONDS).getResponseCode());
+            Assert.assertEquals(4, requests.get());
+        }
+    }
+
+    private static boolean readRequest(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int b;
+        while (!header.toString().endsWith("\r\n\r\n") && (b = in.read()) >= 0) {
+            header.append((char) b);
+        }
+        int index = header.toString().toLowerCase().indexOf("content-length:");
+        if (index >= 0) {
+            int length = Integer.parseInt(header.substring(index + 15, header.indexOf("\r\n", index)).trim());
+            in.readNBytes(length);
+        }
+        return header.toString().endsWith("\r\n\r\n");
+    }
+}
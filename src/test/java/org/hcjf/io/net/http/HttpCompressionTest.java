@@ -0,0 +1,155 @@
+package org.hcjf.io.net.http;
+
+import com.google.gson.Gson;
+import org.hcjf.encoding.MimeType;
+import org.hcjf.io.net.http.pipeline.JsonHttpPipelineResponse;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class HttpCompressionTest {
+
+    private static final int PORT = 18981;
+    private static final int ROWS = 5000;
+
+    private static HttpServer server;
+    private static List<Map<String,Object>> rows;
+    private static String json;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            Map<String,Object> row = new HashMap<>();
+            row.put("id", i);
+            row.put("name", "row " + i);
+            rows.add(row);
+        }
+        json = new Gson().toJson(rows);
+
+        server = new HttpServer(PORT);
+        server.addContext(new Context("/json") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.APPLICATION_JSON.toString()));
+                response.setBody(json.getBytes());
+                return response;
+            }
+        });
+        server.addContext(new Context("/small") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.APPLICATION_JSON.toString()));
+                response.setBody("{}".getBytes());
+                return response;
+            }
+        });
+        server.addContext(new Context("/image") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, MimeType.IMAGE_PNG.toString()));
+                response.setBody(json.getBytes());
+                return response;
+            }
+        });
+        server.addContext(new Context("/stream") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                return new JsonHttpPipelineResponse(new Gson(), rows, 4096);
+            }
+        });
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    private static HttpURLConnection open(String path, String acceptEncoding) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + path).openConnection();
+        if(acceptEncoding != null) {
+            connection.setRequestProperty(HttpHeader.ACCEPT_ENCODING, acceptEncoding);
+        }
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        return connection;
+    }
+
+    private static String read(InputStream inputStream) throws Exception {
+        try (inputStream) {
+            return new String(inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testNegotiation() {
+        HttpRequest request = new HttpRequest("/", HttpMethod.GET);
+        Assert.assertNull(HttpCompression.negotiate(request));
+        request.addHeader(new HttpHeader(HttpHeader.ACCEPT_ENCODING, "gzip, deflate"));
+        Assert.assertEquals(HttpHeader.GZIP, HttpCompression.negotiate(request));
+        request.addHeader(new HttpHeader(HttpHeader.ACCEPT_ENCODING, "gzip;q=0.5, deflate"));
+        Assert.assertEquals(HttpHeader.DEFLATE, HttpCompression.negotiate(request));
+        request.addHeader(new HttpHeader(HttpHeader.ACCEPT_ENCODING, "*;q=0.2, gzip;q=0"));
+        Assert.assertEquals(HttpHeader.DEFLATE, HttpCompression.negotiate(request));
+        request.addHeader(new HttpHeader(HttpHeader.ACCEPT_ENCODING, "identity, br"));
+        Assert.assertNull(HttpCompression.negotiate(request));
+    }
+
+    @Test
+    public void testBodyEncoding() throws Exception {
+        HttpURLConnection connection = open("/json", "gzip");
+        Assert.assertEquals(HttpHeader.GZIP, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertEquals(HttpHeader.ACCEPT_ENCODING, connection.getHeaderField(HttpHeader.VARY));
+        Assert.assertTrue(connection.getContentLength() < json.length() / 5);
+        Assert.assertEquals(json, read(new GZIPInputStream(connection.getInputStream())));
+
+        connection = open("/json", "deflate");
+        Assert.assertEquals(HttpHeader.DEFLATE, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertEquals(json, read(new InflaterInputStream(connection.getInputStream())));
+
+        connection = open("/json", null);
+        Assert.assertNull(connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertEquals(json, read(connection.getInputStream()));
+    }
+
+    @Test
+    public void testSkippedResponses() throws Exception {
+        HttpURLConnection connection = open("/small", "gzip");
+        Assert.assertNull(connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertEquals("{}", read(connection.getInputStream()));
+
+        connection = open("/image", "gzip");
+        Assert.assertNull(connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertEquals(json, read(connection.getInputStream()));
+    }
+
+    @Test
+    public void testPipelineEncoding() throws Exception {
+        HttpURLConnection connection = open("/stream", "gzip");
+        Assert.assertEquals(HttpHeader.GZIP, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertEquals(HttpHeader.CHUNKED, connection.getHeaderField(HttpHeader.TRANSFER_ENCODING));
+        Assert.assertEquals(json, read(new GZIPInputStream(connection.getInputStream())));
+
+        connection = open("/stream", "deflate");
+        Assert.assertEquals(HttpHeader.DEFLATE, connection.getHeaderField(HttpHeader.CONTENT_ENCODING));
+        Assert.assertEquals(json, read(new InflaterInputStream(connection.getInputStream())));
+    }
+}
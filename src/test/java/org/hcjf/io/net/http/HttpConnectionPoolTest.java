@@ -0,0 +1,122 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.properties.SystemProperties;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HttpConnectionPoolTest {
+
+    private static final int PORT = 18975;
+    private static final int MAX_CONNECTIONS = 2;
+
+    private static final AtomicInteger concurrentRequests = new AtomicInteger();
+    private static final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+    private static HttpServer server;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        System.setProperty(SystemProperties.Net.Http.CLIENT_POOL_MAX_CONNECTIONS_PER_HOST, Integer.toString(MAX_CONNECTIONS));
+        server = new HttpServer(PORT);
+        server.addContext(new Context("/pool") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                int current = concurrentRequests.incrementAndGet();
+                maxConcurrentRequests.accumulateAndGet(current, Math::max);
+                try {
+                    if(request.getParameters().containsKey("sleep")) {
+                        Thread.sleep(100);
+                    }
+                } catch (InterruptedException e) {
+                } finally {
+                    concurrentRequests.decrementAndGet();
+                }
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(request.getParameters().getOrDefault("id", "").toString().getBytes());
+                return response;
+            }
+        });
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        Integer connections = null;
+        for (int i = 0; i < 20; i++) {
+            HttpClient client = new HttpClient(new URL("http://localhost:" + PORT + "/pool?id=" + i));
+            HttpResponse response = client.request();
+            Assert.assertEquals(HttpResponseCode.OK, response.getResponseCode());
+            Assert.assertEquals(Integer.toString(i), new String(response.getBody()));
+            int currentConnections = HttpConnectionPool.getInstance().getConnectionsCount(
+                    HttpPackage.HttpProtocol.HTTP, "localhost", PORT);
+            if(connections == null) {
+                connections = currentConnections;
+            }
+            //The sequential requests reuse the same connections.
+            Assert.assertEquals(connections.intValue(), currentConnections);
+        }
+    }
+
+    @Test
+    public void testMaxConnectionsPerHost() throws Exception {
+        maxConcurrentRequests.set(0);
+        AtomicInteger okResponses = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    HttpClient client = new HttpClient(new URL("http://localhost:" + PORT + "/pool?sleep=true"));
+                    if(client.request().getResponseCode().equals(HttpResponseCode.OK)) {
+                        okResponses.incrementAndGet();
+                    }
+                } catch (Exception ex) {
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(10, okResponses.get());
+        Assert.assertTrue(maxConcurrentRequests.get() <= MAX_CONNECTIONS);
+        Assert.assertTrue(HttpConnectionPool.getInstance().getConnectionsCount(
+                HttpPackage.HttpProtocol.HTTP, "localhost", PORT) <= MAX_CONNECTIONS);
+    }
+
+    @Test
+    public void testConnectionsShareSelectors() throws Exception {
+        int connectionsSize = 30;
+        //The first connection creates the workers shared by all the clients.
+        HttpClientConnection first = new HttpClientConnection("selectors", "localhost", PORT, HttpPackage.HttpProtocol.HTTP);
+        Assert.assertTrue(first.openAsync(5000L).get());
+        int threads = Thread.activeCount();
+
+        List<HttpClientConnection> connections = new ArrayList<>();
+        for (int i = 0; i < connectionsSize; i++) {
+            HttpClientConnection connection = new HttpClientConnection("selectors", "localhost", PORT, HttpPackage.HttpProtocol.HTTP);
+            Assert.assertTrue(connection.openAsync(5000L).get());
+            connections.add(connection);
+        }
+        //The connections don't create selectors and io threads.
+        Assert.assertTrue(Thread.activeCount() - threads < connectionsSize);
+
+        first.close();
+        for (HttpClientConnection connection : connections) {
+            connection.close();
+        }
+    }
+}
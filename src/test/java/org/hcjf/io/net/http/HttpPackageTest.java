@@ -3,6 +3,13 @@ package org.hcjf.io.net.http;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
 public class HttpPackageTest {
 
     @Test
@@ -40,4 +47,126 @@ public class HttpPackageTest {
         System.out.println(request.toString());
     }
 
+    @Test
+    public void testLeftover() {
+        String pipelined =
+                "POST /first HTTP/1.1\r\n" +
+                "Content-Length: 5\r\n\r\n" +
+                "helloGET /second HTTP/1.1\r\n\r\n";
+
+        HttpRequest request = new HttpRequest();
+        request.addData(pipelined.getBytes());
+        Assert.assertTrue(request.isComplete());
+        Assert.assertEquals("hello", new String(request.getBody()));
+        Assert.assertEquals("GET /second HTTP/1.1\r\n\r\n", new String(request.getLeftover()));
+
+        String chunked =
+                "POST /chunked HTTP/1.1\r\n" +
+                "Transfer-Encoding: chunked\r\n\r\n" +
+                "5\r\nhello\r\n0\r\nTrailer: value\r\n\r\n" +
+                "GET /next HTTP/1.1\r\n\r\n";
+        request = new HttpRequest();
+        request.addData(chunked.getBytes());
+        Assert.assertTrue(request.isComplete());
+        Assert.assertEquals("hello", new String(request.getBody()));
+        Assert.assertEquals("GET /next HTTP/1.1\r\n\r\n", new String(request.getLeftover()));
+
+        request = new HttpRequest();
+        request.addData("GET /last HTTP/1.1\r\n\r\n".getBytes());
+        Assert.assertTrue(request.isComplete());
+        Assert.assertNull(request.getLeftover());
+    }
+
+    @Test
+    public void testIncrementalParsing() {
+        String raw =
+                "\r\nPOST /incremental?a=b HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Content-Type: application/json; charset=utf-8\r\n" +
+                "Cookie: first=1; second=2\r\n" +
+                "transfer-encoding: chunked\r\n\r\n" +
+                "4;ext=1\r\nhell\r\n" +
+                "a\r\no chunked!\r\n" +
+                "0\r\n\r\n";
+
+        //The package is added byte by byte to split every line and every chunk.
+        HttpRequest request = new HttpRequest();
+        byte[] data = raw.getBytes();
+        for (int i = 0; i < data.length; i++) {
+            Assert.assertFalse(request.isComplete());
+            request.addData(ByteBuffer.wrap(data, i, 1));
+        }
+        Assert.assertTrue(request.isComplete());
+        Assert.assertNull(request.getLeftover());
+        Assert.assertEquals("hello chunked!", new String(request.getBody()));
+        Assert.assertEquals(HttpMethod.POST, request.getMethod());
+        Assert.assertEquals("/incremental", request.getContext());
+        Assert.assertEquals("b", request.getParameter("a"));
+        Assert.assertEquals("localhost", request.getHeader("host").getHeaderValue());
+        Assert.assertEquals("utf-8", request.getHeader(HttpHeader.CONTENT_TYPE)
+                .getParameter("application/json", HttpHeader.PARAM_CHARSET));
+        Assert.assertEquals("2", request.getCookie("second").getValue());
+        Assert.assertNotNull(request.getHeader(HttpHeader.TRANSFER_ENCODING));
+        //The cookie header is stored as cookies.
+        Assert.assertEquals(3, request.getHeaders().size());
+
+        request = new HttpRequest();
+        request.addData(ByteBuffer.wrap("PUT /body HTTP/1.1\r\nContent-Length: 10\r\n\r\n0123".getBytes()));
+        Assert.assertFalse(request.isComplete());
+        Assert.assertEquals("10", request.getHeader(HttpHeader.CONTENT_LENGTH).getHeaderValue());
+        request.addData(ByteBuffer.wrap("456789".getBytes()));
+        Assert.assertTrue(request.isComplete());
+        Assert.assertEquals("0123456789", new String(request.getBody()));
+    }
+
+    @Test
+    public void testMultipartStreaming() throws Exception {
+        String boundary = "----hcjfBoundary";
+        byte[] bigFile = new byte[3 * 1024 * 1024];
+        for (int i = 0; i < bigFile.length; i++) {
+            //The content contains partial boundaries.
+            bigFile[i] = (byte) (i % 1000 == 0 ? '\r' : i % 1000 == 1 ? '\n' : i % 1000 < 8 ? '-' : i);
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("preamble\r\n--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"field\"\r\n\r\n" +
+                "hello%20world\r\n--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"files\"; filename=\"small.txt\"\r\n" +
+                "Content-Type: text/plain\r\n\r\n" +
+                "small\r\n--" + boundary + "\r\n" +
+                "Content-Disposition: form-data; name=\"files\"; filename=\"big.bin\"\r\n\r\n").getBytes());
+        body.write(bigFile);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes());
+
+        byte[] data = ("POST /upload HTTP/1.1\r\n" +
+                "Content-Type: multipart/form-data; boundary=" + boundary + "\r\n" +
+                "Content-Length: " + body.size() + "\r\n\r\n").getBytes();
+        HttpRequest request = new HttpRequest();
+        request.addData(ByteBuffer.wrap(data));
+        byte[] bodyData = body.toByteArray();
+        for (int i = 0; i < bodyData.length; i += 1013) {
+            request.addData(ByteBuffer.wrap(bodyData, i, Math.min(1013, bodyData.length - i)));
+        }
+        Assert.assertTrue(request.isComplete());
+        Assert.assertEquals(0, request.getBody().length);
+        Assert.assertEquals("hello world", request.getParameter("field"));
+
+        List<HttpRequest.AttachFile> files = request.getParameter("files");
+        Assert.assertEquals(2, files.size());
+        Assert.assertEquals("small.txt", files.get(0).getFileName());
+        Assert.assertNull(files.get(0).getPath());
+        Assert.assertEquals("small", new String(files.get(0).getFile()));
+
+        //The big file is stored into a temporary file.
+        Path path = files.get(1).getPath();
+        Assert.assertNotNull(path);
+        Assert.assertEquals(bigFile.length, files.get(1).getSize());
+        try (InputStream inputStream = files.get(1).getInputStream()) {
+            Assert.assertArrayEquals(bigFile, inputStream.readAllBytes());
+        }
+        request.deleteTempFiles();
+        Assert.assertFalse(Files.exists(path));
+    }
+
 }
@@ -0,0 +1,181 @@
+package org.hcjf.io.net.http;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+public class HttpPipeliningTest {
+
+    private static final int PORT = 18972;
+    private static final int FULL_QUEUE_PORT = 18985;
+
+    private static HttpServer server;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        server = new HttpServer(PORT);
+        server.addContext(new Context("/slow") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {}
+                return createResponse("slow");
+            }
+        });
+        server.addContext(new Context("/echo.*") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                return createResponse(request.getContext() + new String(request.getBody()));
+            }
+        });
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    private static HttpResponse createResponse(String body) {
+        HttpResponse response = new HttpResponse();
+        response.setResponseCode(HttpResponseCode.OK);
+        response.setBody(body.getBytes());
+        return response;
+    }
+
+    /**
+     * Reads one response delimited by the content length header.
+     */
+    private static String readResponse(InputStream in) throws Exception {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        while (!header.toString().endsWith("\r\n\r\n")) {
+            int b = in.read();
+            Assert.assertTrue("Unexpected end of stream", b >= 0);
+            header.write(b);
+        }
+        Assert.assertTrue(header.toString(), header.toString().startsWith("HTTP/1.1 200"));
+        int length = 0;
+        for (String line : header.toString().split("\r\n")) {
+            if (line.toLowerCase().startsWith("content-length:")) {
+                length = Integer.parseInt(line.substring(line.indexOf(':') + 1).trim());
+            }
+        }
+        byte[] body = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int readSize = in.read(body, offset, length - offset);
+            Assert.assertTrue("Unexpected end of stream", readSize >= 0);
+            offset += readSize;
+        }
+        return new String(body);
+    }
+
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            socket.setSoTimeout(10000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            //All the requests are sent into the same segment, the slow request is the first one.
+            out.write(("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "GET /echo/1 HTTP/1.1\r\nHost: localhost\r\n\r\n" +
+                    "POST /echo/2 HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody" +
+                    "POST /echo/3 HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                    "3\r\nabc\r\n0\r\n\r\n" +
+                    "GET /echo/4 HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+            out.flush();
+
+            Assert.assertEquals("slow", readResponse(in));
+            Assert.assertEquals("/echo/1", readResponse(in));
+            Assert.assertEquals("/echo/2body", readResponse(in));
+            Assert.assertEquals("/echo/3abc", readResponse(in));
+            Assert.assertEquals("/echo/4", readResponse(in));
+
+            //The connection is still open for the next requests.
+            out.write("GET /echo/5 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+            out.flush();
+            Assert.assertEquals("/echo/5", readResponse(in));
+            Assert.assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testPipelineDeeperThanMaxDepth() throws Exception {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            socket.setSoTimeout(10000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+
+            //The requests over the maximum depth are parsed when the first responses are written.
+            StringBuilder requests = new StringBuilder("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            for (int i = 0; i < 50; i++) {
+                requests.append("GET /echo/").append(i).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+            }
+            out.write(requests.toString().getBytes());
+            out.flush();
+
+            Assert.assertEquals("slow", readResponse(in));
+            for (int i = 0; i < 50; i++) {
+                Assert.assertEquals("/echo/" + i, readResponse(in));
+            }
+        }
+    }
+
+    @Test
+    public void testPipelinesFillingTheActionsQueue() throws Exception {
+        //Only one worker with the smallest queue, the pipelines of all the connections add more actions
+        //than the queue capacity, some of them from the worker executing the actions.
+        HttpServer fullQueueServer = new HttpServer(FULL_QUEUE_PORT);
+        fullQueueServer.decoupleIoAction(11, 1);
+        fullQueueServer.addContext(new Context("/echo.*") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {}
+                return createResponse(request.getContext());
+            }
+        });
+        fullQueueServer.start();
+        Thread.sleep(1000);
+
+        Socket[] sockets = new Socket[5];
+        try {
+            for (int i = 0; i < sockets.length; i++) {
+                sockets[i] = new Socket("localhost", FULL_QUEUE_PORT);
+                sockets[i].setSoTimeout(10000);
+            }
+            for (int i = 0; i < sockets.length; i++) {
+                StringBuilder requests = new StringBuilder();
+                for (int j = 0; j < 30; j++) {
+                    requests.append("GET /echo/").append(i).append("/").append(j).append(" HTTP/1.1\r\nHost: localhost\r\n\r\n");
+                }
+                OutputStream out = sockets[i].getOutputStream();
+                out.write(requests.toString().getBytes());
+                out.flush();
+            }
+            for (int i = 0; i < sockets.length; i++) {
+                InputStream in = sockets[i].getInputStream();
+                for (int j = 0; j < 30; j++) {
+                    Assert.assertEquals("/echo/" + i + "/" + j, readResponse(in));
+                }
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+            fullQueueServer.stop();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.hcjf.io.net.http;
+
+import org.hcjf.events.Events;
+import org.hcjf.layers.query.JoinableMap;
+import org.hcjf.layers.query.Queryable;
+import org.hcjf.properties.SystemProperties;
+import org.junit.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RestCacheTest {
+
+    private static final int PORT = 18982;
+    private static final long TIME_TO_LIVE = 3000;
+
+    private static final AtomicInteger evaluations = new AtomicInteger();
+    private static HttpServer server;
+    private static RestContext context;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        System.setProperty(SystemProperties.Net.Rest.CACHE_TIME_TO_LIVE, Long.toString(TIME_TO_LIVE));
+        List<JoinableMap> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            JoinableMap row = new JoinableMap("rows");
+            row.put("id", i);
+            rows.add(row);
+        }
+        context = new RestContext("/cache") {
+            @Override
+            protected Queryable.DataSource<JoinableMap> getDataSource() {
+                return queryable -> {
+                    evaluations.incrementAndGet();
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                    }
+                    return rows;
+                };
+            }
+        };
+        context.setCacheEnabled(true);
+        server = new HttpServer(PORT);
+        server.addContext(context);
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    @Before
+    public void reset() {
+        context.getCache().invalidateAll();
+        evaluations.set(0);
+    }
+
+    private static HttpURLConnection get(String query, String eTag) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + "/cache?q=" +
+                URLEncoder.encode(query, StandardCharsets.UTF_8)).openConnection();
+        if(eTag != null) {
+            connection.setRequestProperty(HttpHeader.IF_NONE_MATCH, eTag);
+        }
+        connection.getResponseCode();
+        return connection;
+    }
+
+    private static String read(HttpURLConnection connection) throws Exception {
+        try (InputStream inputStream = connection.getInputStream()) {
+            return new String(inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        List<String> bodies = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    String body = read(get("SELECT * FROM rows", null));
+                    synchronized (bodies) {
+                        bodies.add(body);
+                    }
+                } catch (Exception ex) {
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(20, bodies.size());
+        Assert.assertEquals(1, evaluations.get());
+        for (String body : bodies) {
+            Assert.assertEquals(bodies.get(0), body);
+        }
+
+        //The same query with other white spaces uses the same entry.
+        read(get("SELECT  *   FROM rows ", null));
+        Assert.assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    public void testNotModified() throws Exception {
+        HttpURLConnection connection = get("SELECT * FROM rows WHERE id > 5", null);
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        String eTag = connection.getHeaderField(HttpHeader.E_TAG);
+        Assert.assertNotNull(eTag);
+        Assert.assertEquals(4, read(connection).split("id").length - 1);
+
+        Assert.assertTrue(eTag.startsWith("W/\"") && eTag.endsWith("\""));
+
+        connection = get("SELECT * FROM rows WHERE id > 5", eTag);
+        Assert.assertEquals(HttpResponseCode.NOT_MODIFIED, Integer.valueOf(connection.getResponseCode()));
+
+        //Lists, the strong form of the tag and the wildcard are compared using the weak comparison.
+        String opaqueTag = eTag.substring(2);
+        connection = get("SELECT * FROM rows WHERE id > 5", "\"other\", W/\"a,b\" ," + opaqueTag);
+        Assert.assertEquals(HttpResponseCode.NOT_MODIFIED, Integer.valueOf(connection.getResponseCode()));
+        connection = get("SELECT * FROM rows WHERE id > 5", "*");
+        Assert.assertEquals(HttpResponseCode.NOT_MODIFIED, Integer.valueOf(connection.getResponseCode()));
+
+        connection = get("SELECT * FROM rows WHERE id > 5", "\"other\", " + opaqueTag.replace("\"", ""));
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        read(connection);
+        Assert.assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception {
+        read(get("SELECT * FROM rows", null));
+        read(get("SELECT * FROM rows", null));
+        Assert.assertEquals(1, evaluations.get());
+
+        Events.processEvent(new RestCache.InvalidationEvent("other"));
+        read(get("SELECT * FROM rows", null));
+        Assert.assertEquals(1, evaluations.get());
+
+        Events.processEvent(new RestCache.InvalidationEvent("rows"));
+        read(get("SELECT * FROM rows", null));
+        Assert.assertEquals(2, evaluations.get());
+
+        Thread.sleep(TIME_TO_LIVE + 200);
+        read(get("SELECT * FROM rows", null));
+        Assert.assertEquals(3, evaluations.get());
+    }
+}
@@ -0,0 +1,189 @@
+package org.hcjf.io.net.http.http2;
+
+import org.hcjf.io.net.http.*;
+import org.hcjf.io.net.http.http2.frames.Http2Frame;
+import org.hcjf.io.net.http.http2.hpack.HeaderField;
+import org.hcjf.io.net.http.http2.hpack.HpackDecoder;
+import org.hcjf.io.net.http.http2.hpack.HpackEncoder;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class Http2ServerTest {
+
+    private static final int PORT = 18971;
+    private static final int LARGE_BODY_SIZE = 1024 * 1024 + 13;
+    private static final byte DATA_TYPE = 0x0;
+    private static final byte HEADERS_TYPE = 0x1;
+    private static final byte RST_STREAM_TYPE = 0x3;
+    private static final byte SETTINGS_TYPE = 0x4;
+    private static final byte GO_AWAY_TYPE = 0x7;
+
+    private static byte[] largeBody;
+    private static HttpServer server;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        largeBody = new byte[LARGE_BODY_SIZE];
+        for (int i = 0; i < largeBody.length; i++) {
+            largeBody[i] = (byte) i;
+        }
+
+        server = new HttpServer(PORT);
+        server.addContext(new Context("/large") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(largeBody);
+                return response;
+            }
+        });
+        server.addContext(new Context("/echo.*") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                String body = request.getMethod() + " " + request.getContext() + " " +
+                        request.getHttpVersion() + " " + new String(request.getBody());
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.addHeader(new HttpHeader(HttpHeader.CONTENT_TYPE, "text/plain"));
+                response.setBody(body.getBytes());
+                return response;
+            }
+        });
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void testUpgradeAndConcurrentStreams() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+
+        //The first request upgrades the connection and the others are multiplexed into the same connection.
+        java.net.http.HttpResponse<String> first = client.send(java.net.http.HttpRequest.newBuilder(
+                URI.create("http://localhost:" + PORT + "/echo/first")).build(),
+                java.net.http.HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(HttpClient.Version.HTTP_2, first.version());
+        Assert.assertEquals("GET /echo/first HTTP/2.0 ", first.body());
+
+        List<CompletableFuture<java.net.http.HttpResponse<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(client.sendAsync(java.net.http.HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + PORT + "/echo/" + i))
+                    .POST(java.net.http.HttpRequest.BodyPublishers.ofString("body" + i)).build(),
+                    java.net.http.HttpResponse.BodyHandlers.ofString()));
+        }
+        CompletableFuture<java.net.http.HttpResponse<byte[]>> large = client.sendAsync(java.net.http.HttpRequest.newBuilder(
+                URI.create("http://localhost:" + PORT + "/large")).build(),
+                java.net.http.HttpResponse.BodyHandlers.ofByteArray());
+
+        for (int i = 0; i < futures.size(); i++) {
+            java.net.http.HttpResponse<String> response = futures.get(i).get();
+            Assert.assertEquals(HttpClient.Version.HTTP_2, response.version());
+            Assert.assertEquals("POST /echo/" + i + " HTTP/2.0 body" + i, response.body());
+        }
+        Assert.assertArrayEquals(largeBody, large.get().body());
+    }
+
+    @Test
+    public void testHttp11RequestStartingLikePreface() throws Exception {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            socket.setSoTimeout(10000);
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            //The first segment is a prefix of the preface, the protocol is decided with the next segment.
+            out.write("P".getBytes());
+            out.flush();
+            Thread.sleep(200);
+            out.write("OST /echo/split HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\nConnection: close\r\n\r\nbody".getBytes());
+            out.flush();
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int readSize;
+            while ((readSize = socket.getInputStream().read(buffer)) >= 0) {
+                response.write(buffer, 0, readSize);
+            }
+            String result = response.toString();
+            Assert.assertTrue(result, result.startsWith("HTTP/1.1 200"));
+            Assert.assertTrue(result, result.endsWith("POST /echo/split HTTP/1.1 body"));
+        }
+    }
+
+    @Test
+    public void testPriorKnowledge() throws Exception {
+        try (Socket socket = new Socket("localhost", PORT)) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.write(Http2Connection.PREFACE);
+            writeFrame(out, SETTINGS_TYPE, (byte) 0, 0, new byte[0]);
+
+            HpackEncoder encoder = new HpackEncoder(4096);
+            byte[] block = encoder.encode(List.of(new HeaderField(":method", "GET"), new HeaderField(":scheme", "http"),
+                    new HeaderField(":path", "/echo/prior"), new HeaderField(":authority", "localhost")));
+            writeFrame(out, HEADERS_TYPE,
+                    (byte) (Http2Frame.FLAG_END_HEADERS | Http2Frame.FLAG_END_STREAM), 1, block);
+            out.flush();
+
+            HpackDecoder decoder = new HpackDecoder(4096, -1);
+            List<HeaderField> headers = null;
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            boolean end = false;
+            while (!end) {
+                int length = (in.readUnsignedShort() << 8) | in.readUnsignedByte();
+                byte type = in.readByte();
+                byte flags = in.readByte();
+                int streamId = in.readInt() & 0x7FFFFFFF;
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                if (type == HEADERS_TYPE) {
+                    Assert.assertEquals(1, streamId);
+                    headers = decoder.decode(ByteBuffer.wrap(payload));
+                    end = (flags & Http2Frame.FLAG_END_STREAM) != 0;
+                } else if (type == DATA_TYPE) {
+                    Assert.assertEquals(1, streamId);
+                    body.write(payload);
+                    end = (flags & Http2Frame.FLAG_END_STREAM) != 0;
+                } else if (type == SETTINGS_TYPE && (flags & Http2Frame.FLAG_ACK) == 0) {
+                    writeFrame(out, SETTINGS_TYPE, Http2Frame.FLAG_ACK, 0, new byte[0]);
+                } else if (type == GO_AWAY_TYPE || type == RST_STREAM_TYPE) {
+                    Assert.fail("Unexpected frame " + type + ": " + Arrays.toString(payload));
+                }
+            }
+
+            Assert.assertNotNull(headers);
+            Assert.assertEquals(new HeaderField(":status", "200"), headers.get(0));
+            Assert.assertTrue(headers.stream().noneMatch(F -> Http2Connection.CONNECTION_HEADERS.contains(F.getName())));
+            Assert.assertEquals("GET /echo/prior HTTP/2.0 ", body.toString());
+        }
+    }
+
+    private static void writeFrame(OutputStream out, byte type, byte flags, int streamId, byte[] payload) throws Exception {
+        ByteBuffer header = ByteBuffer.allocate(Http2Frame.FRAME_HEADER_LENGTH);
+        header.put((byte) (payload.length >>> 16));
+        header.putShort((short) payload.length);
+        header.put(type);
+        header.put(flags);
+        header.putInt(streamId);
+        out.write(header.array());
+        out.write(payload);
+    }
+}
@@ -0,0 +1,155 @@
+package org.hcjf.io.net.http.http2.hpack;
+
+import org.hcjf.io.net.http.http2.Http2Exception;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The header blocks are the examples of the appendix C of the rfc 7541.
+ */
+public class HpackTest {
+
+    private static byte[] hex(String value) {
+        value = value.replace(" ", "");
+        byte[] result = new byte[value.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) Integer.parseInt(value.substring(i * 2, i * 2 + 2), 16);
+        }
+        return result;
+    }
+
+    private static List<HeaderField> fields(String... namesAndValues) {
+        HeaderField[] result = new HeaderField[namesAndValues.length / 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new HeaderField(namesAndValues[i * 2], namesAndValues[i * 2 + 1]);
+        }
+        return List.of(result);
+    }
+
+    private static final List<HeaderField> REQUEST_1 = fields(
+            ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com");
+    private static final List<HeaderField> REQUEST_2 = fields(
+            ":method", "GET", ":scheme", "http", ":path", "/", ":authority", "www.example.com",
+            "cache-control", "no-cache");
+    private static final List<HeaderField> REQUEST_3 = fields(
+            ":method", "GET", ":scheme", "https", ":path", "/index.html", ":authority", "www.example.com",
+            "custom-key", "custom-value");
+
+    private static final List<HeaderField> RESPONSE_1 = fields(
+            ":status", "302", "cache-control", "private", "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+            "location", "https://www.example.com");
+    private static final List<HeaderField> RESPONSE_2 = fields(
+            ":status", "307", "cache-control", "private", "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+            "location", "https://www.example.com");
+    private static final List<HeaderField> RESPONSE_3 = fields(
+            ":status", "200", "cache-control", "private", "date", "Mon, 21 Oct 2013 20:13:22 GMT",
+            "location", "https://www.example.com", "content-encoding", "gzip",
+            "set-cookie", "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1");
+
+    @Test
+    public void testRequestsWithoutHuffman() {
+        HpackDecoder decoder = new HpackDecoder(4096, -1);
+        Assert.assertEquals(REQUEST_1, decoder.decode(ByteBuffer.wrap(hex(
+                "8286 8441 0f77 7777 2e65 7861 6d70 6c65 2e63 6f6d"))));
+        Assert.assertEquals(57, decoder.getTable().getSize());
+        Assert.assertEquals(REQUEST_2, decoder.decode(ByteBuffer.wrap(hex(
+                "8286 84be 5808 6e6f 2d63 6163 6865"))));
+        Assert.assertEquals(110, decoder.getTable().getSize());
+        Assert.assertEquals(REQUEST_3, decoder.decode(ByteBuffer.wrap(hex(
+                "8287 85bf 400a 6375 7374 6f6d 2d6b 6579 0c63 7573 746f 6d2d 7661 6c75 65"))));
+        Assert.assertEquals(164, decoder.getTable().getSize());
+        Assert.assertEquals(3, decoder.getTable().getLength());
+    }
+
+    @Test
+    public void testRequestsWithHuffman() {
+        String[] blocks = {
+                "8286 8441 8cf1 e3c2 e5f2 3a6b a0ab 90f4 ff",
+                "8286 84be 5886 a8eb 1064 9cbf",
+                "8287 85bf 4088 25a8 49e9 5ba9 7d7f 8925 a849 e95b b8e8 b4bf"
+        };
+        List<List<HeaderField>> requests = List.of(REQUEST_1, REQUEST_2, REQUEST_3);
+        HpackDecoder decoder = new HpackDecoder(4096, -1);
+        HpackEncoder encoder = new HpackEncoder(4096);
+        for (int i = 0; i < blocks.length; i++) {
+            Assert.assertEquals(requests.get(i), decoder.decode(ByteBuffer.wrap(hex(blocks[i]))));
+            Assert.assertArrayEquals(hex(blocks[i]), encoder.encode(requests.get(i)));
+        }
+        Assert.assertEquals(164, decoder.getTable().getSize());
+        Assert.assertEquals(164, encoder.getTable().getSize());
+    }
+
+    @Test
+    public void testResponsesWithEviction() {
+        HpackDecoder decoder = new HpackDecoder(256, -1);
+        HpackEncoder encoder = new HpackEncoder(256);
+
+        String block = "4882 6402 5885 aec3 771a 4b61 96d0 7abe 9410 54d4 44a8 2005 9504 0b81 66e0 82a6 " +
+                "2d1b ff6e 919d 29ad 1718 63c7 8f0b 97c8 e9ae 82ae 43d3";
+        Assert.assertEquals(RESPONSE_1, decoder.decode(ByteBuffer.wrap(hex(block))));
+        Assert.assertArrayEquals(hex(block), encoder.encode(RESPONSE_1));
+        Assert.assertEquals(222, decoder.getTable().getSize());
+
+        block = "4883 640e ffc1 c0bf";
+        Assert.assertEquals(RESPONSE_2, decoder.decode(ByteBuffer.wrap(hex(block))));
+        Assert.assertArrayEquals(hex(block), encoder.encode(RESPONSE_2));
+        Assert.assertEquals(222, decoder.getTable().getSize());
+
+        block = "88c1 6196 d07a be94 1054 d444 a820 0595 040b 8166 e084 a62d 1bff c05a 839b d9ab 77ad " +
+                "94e7 821d d7f2 e6c7 b335 dfdf cd5b 3960 d5af 2708 7f36 72c1 ab27 0fb5 291f 9587 3160 65c0 " +
+                "03ed 4ee5 b106 3d50 07";
+        Assert.assertEquals(RESPONSE_3, decoder.decode(ByteBuffer.wrap(hex(block))));
+        Assert.assertEquals(215, decoder.getTable().getSize());
+        Assert.assertEquals(3, decoder.getTable().getLength());
+
+        //The set-cookie header is never indexed by the encoder, then the block is not the same.
+        HpackDecoder roundTrip = new HpackDecoder(256, -1);
+        HpackEncoder roundTripEncoder = new HpackEncoder(256);
+        for (List<HeaderField> response : List.of(RESPONSE_1, RESPONSE_2, RESPONSE_3)) {
+            Assert.assertEquals(response, roundTrip.decode(ByteBuffer.wrap(roundTripEncoder.encode(response))));
+        }
+    }
+
+    @Test
+    public void testTableSizeUpdate() {
+        HpackDecoder decoder = new HpackDecoder(4096, -1);
+        HpackEncoder encoder = new HpackEncoder(4096);
+        decoder.decode(ByteBuffer.wrap(encoder.encode(REQUEST_3)));
+        Assert.assertEquals(2, decoder.getTable().getLength());
+
+        encoder.setPeerTableSize(0);
+        encoder.setPeerTableSize(200);
+        byte[] block = encoder.encode(REQUEST_1);
+        Assert.assertEquals(0x20, block[0] & 0xFF);
+        Assert.assertEquals(REQUEST_1, decoder.decode(ByteBuffer.wrap(block)));
+        Assert.assertEquals(200, decoder.getTable().getMaxSize());
+        Assert.assertEquals(1, decoder.getTable().getLength());
+
+        //The update can't exceed the size advertised by the decoder.
+        decoder.setMaxTableSize(50);
+        try {
+            decoder.decode(ByteBuffer.wrap(hex("3f45")));
+            Assert.fail("Invalid table size update");
+        } catch (Http2Exception ex) {}
+    }
+
+    @Test
+    public void testHuffman() {
+        byte[] value = "custom-value with spaces and symbols !\"#$%&/()=".getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Huffman.encode(value, out);
+        Assert.assertEquals(Huffman.encodedLength(value), out.size());
+        Assert.assertArrayEquals(value, Huffman.decode(ByteBuffer.wrap(out.toByteArray()), out.size()));
+
+        try {
+            //Padding longer than 7 bits.
+            Huffman.decode(ByteBuffer.wrap(hex("ffff")), 2);
+            Assert.fail("Invalid padding");
+        } catch (Http2Exception ex) {}
+    }
+}
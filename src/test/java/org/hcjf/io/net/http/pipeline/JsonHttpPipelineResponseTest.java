@@ -0,0 +1,96 @@
+package org.hcjf.io.net.http.pipeline;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import org.hcjf.io.net.http.*;
+import org.hcjf.layers.query.JoinableMap;
+import org.hcjf.layers.query.Queryable;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class JsonHttpPipelineResponseTest {
+
+    private static final int PORT = 18973;
+    private static final int ROWS = 5000;
+
+    private static HttpServer server;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        List<JoinableMap> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            JoinableMap row = new JoinableMap("rows");
+            row.put("id", i);
+            row.put("name", "row <" + i + ">");
+            rows.add(row);
+        }
+        server = new HttpServer(PORT);
+        server.addContext(new RestContext("/query") {
+            @Override
+            protected Queryable.DataSource<JoinableMap> getDataSource() {
+                return queryable -> rows;
+            }
+        });
+        server.start();
+        Thread.sleep(1000);
+    }
+
+    @AfterClass
+    public static void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void testSerialization() {
+        Gson gson = new GsonBuilder().create();
+        List<Object> collection = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", i);
+            row.put("value", "válue & <" + i + ">");
+            row.put("list", List.of(i, i + 1));
+            collection.add(row);
+        }
+        collection.add(null);
+
+        //The small buffer splits the rows in many chunks.
+        JsonHttpPipelineResponse response = new JsonHttpPipelineResponse(gson, collection, 16);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (response.readContent() >= 0) {
+            ByteBuffer mainBuffer = response.getMainBuffer();
+            Assert.assertTrue(mainBuffer.position() <= 16);
+            out.write(mainBuffer.array(), 0, mainBuffer.position());
+        }
+        Assert.assertEquals(gson.toJson(collection), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStreamingQuery() throws Exception {
+        URL url = new URL("http://localhost:" + PORT + "/query?q=" +
+                URLEncoder.encode("SELECT * FROM rows", StandardCharsets.UTF_8));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        Assert.assertEquals(HttpHeader.CHUNKED, connection.getHeaderField(HttpHeader.TRANSFER_ENCODING));
+        Assert.assertNotNull(connection.getHeaderField(HttpHeader.X_HCJF_QUERY_TOTAL_TIME));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream inputStream = connection.getInputStream()) {
+            inputStream.transferTo(out);
+        }
+        JsonArray result = JsonParser.parseString(out.toString(StandardCharsets.UTF_8)).getAsJsonArray();
+        Assert.assertEquals(ROWS, result.size());
+        Assert.assertEquals("row <4999>", result.get(ROWS - 1).getAsJsonObject().get("name").getAsString());
+    }
+}
@@ -0,0 +1,289 @@
+package org.hcjf.io.net.http.proxy;
+
+import org.hcjf.io.net.http.*;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ReverseProxyRuleTest {
+
+    private static final int PROXY_PORT = 18977;
+    private static final int FIRST_UPSTREAM_PORT = 18978;
+    private static final int SECOND_UPSTREAM_PORT = 18979;
+    private static final int DEAD_UPSTREAM_PORT = 18980;
+    private static final int RAW_UPSTREAM_PORT = 18984;
+    private static final int BODY_SIZE = 20 * 1024 * 1024;
+
+    private static HttpServer firstUpstream;
+    private static HttpServer secondUpstream;
+    private static HttpProxy proxy;
+    private static ServerSocket rawUpstream;
+
+    @BeforeClass
+    public static void start() throws Exception {
+        firstUpstream = createUpstream(FIRST_UPSTREAM_PORT, "first");
+        secondUpstream = createUpstream(SECOND_UPSTREAM_PORT, "second");
+
+        proxy = new HttpProxy(PROXY_PORT);
+        ReverseProxyRule balancedRule = new ReverseProxyRule("/balanced/.*");
+        balancedRule.addUpstream(new URL("http://localhost:" + FIRST_UPSTREAM_PORT));
+        balancedRule.addUpstream(new URL("http://localhost:" + SECOND_UPSTREAM_PORT));
+        proxy.addRule(balancedRule);
+        ReverseProxyRule unhealthyRule = new ReverseProxyRule("/unhealthy/.*");
+        unhealthyRule.addUpstream(new URL("http://localhost:" + FIRST_UPSTREAM_PORT));
+        unhealthyRule.addUpstream(new URL("http://localhost:" + DEAD_UPSTREAM_PORT));
+        proxy.addRule(unhealthyRule);
+        ReverseProxyRule singleRule = new ReverseProxyRule("/single/.*");
+        singleRule.addUpstream(new URL("http://localhost:" + FIRST_UPSTREAM_PORT));
+        proxy.addRule(singleRule);
+        rawUpstream = createRawUpstream(RAW_UPSTREAM_PORT);
+        ReverseProxyRule rawRule = new ReverseProxyRule("/raw/.*");
+        rawRule.addUpstream(new URL("http://localhost:" + RAW_UPSTREAM_PORT));
+        proxy.addRule(rawRule);
+        proxy.start();
+        Thread.sleep(1000);
+    }
+
+    private static HttpServer createUpstream(int port, String name) {
+        HttpServer server = new HttpServer(port);
+        server.addContext(new Context(".*/name") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(name.getBytes());
+                return response;
+            }
+        });
+        server.addContext(new Context(".*/download") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                byte[] body = new byte[BODY_SIZE];
+                for (int i = 0; i < body.length; i++) {
+                    body[i] = (byte) i;
+                }
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(body);
+                return response;
+            }
+        });
+        Context upload = new Context(".*/upload") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                long count = 0;
+                long sum = 0;
+                byte[] buffer = new byte[8192];
+                try (InputStream inputStream = request.getBodyStream()) {
+                    int read;
+                    while ((read = inputStream.read(buffer)) >= 0) {
+                        for (int i = 0; i < read; i++) {
+                            sum += buffer[i];
+                        }
+                        count += read;
+                    }
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody((count + ":" + sum).getBytes());
+                return response;
+            }
+        };
+        server.addContext(new Context(".*/buffer") {
+            @Override
+            public HttpResponse onContext(HttpRequest request) {
+                HttpResponse response = new HttpResponse();
+                response.setResponseCode(HttpResponseCode.OK);
+                response.setBody(new byte[1024 * 1024]);
+                return response;
+            }
+        });
+        upload.setStreamingBody(true);
+        server.addContext(upload);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Creates an upstream that responds each request with the content length header and without body, the
+     * head requests receive a 200 response and the other requests receive a 304 response.
+     */
+    private static ServerSocket createRawUpstream(int port) throws IOException {
+        ServerSocket serverSocket = new ServerSocket(port);
+        Thread thread = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    new Thread(() -> serveRaw(socket)).start();
+                } catch (IOException ex) {
+                    break;
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return serverSocket;
+    }
+
+    private static void serveRaw(Socket socket) {
+        try (socket) {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            StringBuilder header = new StringBuilder();
+            int b;
+            while ((b = in.read()) >= 0) {
+                header.append((char) b);
+                if (header.toString().endsWith("\r\n\r\n")) {
+                    if (header.toString().startsWith("HEAD")) {
+                        out.write("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n".getBytes());
+                    } else {
+                        out.write("HTTP/1.1 304 Not Modified\r\nContent-Length: 10\r\n\r\n".getBytes());
+                    }
+                    out.flush();
+                    header.setLength(0);
+                }
+            }
+        } catch (IOException ex) {
+        }
+    }
+
+    @AfterClass
+    public static void stop() throws IOException {
+        rawUpstream.close();
+        proxy.stop();
+        firstUpstream.stop();
+        secondUpstream.stop();
+    }
+
+    private static String get(String path) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PROXY_PORT + path).openConnection();
+        if(connection.getResponseCode() != HttpResponseCode.OK) {
+            return Integer.toString(connection.getResponseCode());
+        }
+        try (InputStream inputStream = connection.getInputStream()) {
+            return new String(inputStream.readAllBytes());
+        }
+    }
+
+    @Test
+    public void testRoundRobin() throws Exception {
+        Map<String, Integer> counters = new HashMap<>();
+        for (int i = 0; i < 10; i++) {
+            counters.merge(get("/balanced/name"), 1, Integer::sum);
+        }
+        Assert.assertEquals(Integer.valueOf(5), counters.get("first"));
+        Assert.assertEquals(Integer.valueOf(5), counters.get("second"));
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        long expectedSum = 0;
+        for (int i = 0; i < BODY_SIZE; i++) {
+            expectedSum += (byte) i;
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://localhost:" + PROXY_PORT + "/balanced/download").openConnection();
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        long count = 0;
+        long sum = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream inputStream = connection.getInputStream()) {
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++) {
+                    sum += buffer[i];
+                }
+                count += read;
+            }
+        }
+        Assert.assertEquals(BODY_SIZE, count);
+        Assert.assertEquals(expectedSum, sum);
+
+        connection = (HttpURLConnection) new URL(
+                "http://localhost:" + PROXY_PORT + "/balanced/upload").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(64 * 1024);
+        try (OutputStream outputStream = connection.getOutputStream()) {
+            byte[] chunk = new byte[64 * 1024];
+            for (int offset = 0; offset < BODY_SIZE; offset += chunk.length) {
+                for (int i = 0; i < chunk.length; i++) {
+                    chunk[i] = (byte) (offset + i);
+                }
+                outputStream.write(chunk);
+            }
+        }
+        Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+        try (InputStream inputStream = connection.getInputStream()) {
+            Assert.assertEquals(BODY_SIZE + ":" + expectedSum, new String(inputStream.readAllBytes()));
+        }
+    }
+
+    @Test
+    public void testEjection() throws Exception {
+        int failures = 0;
+        for (int i = 0; i < 20; i++) {
+            String result = get("/unhealthy/name");
+            if(result.equals("first")) {
+                continue;
+            }
+            Assert.assertEquals(HttpResponseCode.BAD_GATEWAY.toString(), result);
+            failures++;
+        }
+        //After the consecutive failures the dead upstream is ejected.
+        Assert.assertTrue(failures <= 3);
+    }
+
+    @Test
+    public void testBodilessResponses() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + PROXY_PORT + "/raw/resource").openConnection();
+            connection.setRequestMethod("HEAD");
+            connection.setReadTimeout(5000);
+            Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+            connection.disconnect();
+
+            connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + PROXY_PORT + "/raw/resource").openConnection();
+            connection.setReadTimeout(5000);
+            Assert.assertEquals(HttpResponseCode.NOT_MODIFIED, Integer.valueOf(connection.getResponseCode()));
+            connection.disconnect();
+        }
+    }
+
+    @Test
+    public void testConnectionReleasedAfterTheBody() throws Exception {
+        //The downstream doesn't read the response then the upstream body is kept into the proxy buffer.
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(1024);
+            socket.connect(new java.net.InetSocketAddress("localhost", PROXY_PORT));
+            socket.getOutputStream().write("GET /single/buffer HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+            socket.getOutputStream().flush();
+            Thread.sleep(1000);
+
+            //The connection of the pending body is not used by the next request.
+            HttpURLConnection connection = (HttpURLConnection) new URL(
+                    "http://localhost:" + PROXY_PORT + "/single/name").openConnection();
+            connection.setReadTimeout(5000);
+            Assert.assertEquals(HttpResponseCode.OK, Integer.valueOf(connection.getResponseCode()));
+            try (InputStream inputStream = connection.getInputStream()) {
+                Assert.assertEquals("first", new String(inputStream.readAllBytes()));
+            }
+        }
+    }
+}